@@ -0,0 +1,213 @@
+/*
+ * =============================================================================
+ *
+ *   Copyright (c) 2011-2016, The THYMELEAF team (http://www.thymeleaf.org)
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ * =============================================================================
+ */
+package org.thymeleaf.benchmarks;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import org.thymeleaf.TemplateEngine;
+import org.thymeleaf.context.Context;
+import org.thymeleaf.standard.StandardDialect;
+import org.thymeleaf.standard.expression.OGNLVariableExpressionEvaluator;
+import org.thymeleaf.templatemode.TemplateMode;
+import org.thymeleaf.templateresolver.ClassLoaderTemplateResolver;
+
+/*
+ * Shared fixtures for the render pipeline benchmarks: template engine configuration, model data and templates,
+ * which live at the "templates" folder in the classpath of the benchmarks project.
+ *
+ * Model data is deterministic (no randomness) so that results are reproducible between runs.
+ *
+ * @author Daniel Fernandez
+ * @since 3.0.3
+ *
+ */
+final class BenchmarkFixtures {
+
+    static final String TEMPLATES_FOLDER = "templates/";
+
+    private static final String[] CATEGORIES =
+            new String[] { "Books", "Music", "Electronics", "Garden", "Kitchen", "Toys", "Sports", "Clothing" };
+    private static final String[] TAGS =
+            new String[] { "new", "offer", "popular", "eco", "limited", "gift", "bestseller" };
+
+
+
+    static TemplateEngine createTemplateEngine(final boolean cacheable) {
+        return createTemplateEngine(cacheable, false);
+    }
+
+
+    static TemplateEngine createTemplateEngine(final boolean cacheable, final boolean specializeOGNLShortcuts) {
+
+        final ClassLoaderTemplateResolver templateResolver =
+                new ClassLoaderTemplateResolver(BenchmarkFixtures.class.getClassLoader());
+        templateResolver.setPrefix(TEMPLATES_FOLDER);
+        templateResolver.setCharacterEncoding("UTF-8");
+        templateResolver.setTemplateMode(TemplateMode.HTML);
+        templateResolver.setJavaScriptTemplateModePatterns(Collections.singleton("*.js"));
+        templateResolver.setCSSTemplateModePatterns(Collections.singleton("*.css"));
+        templateResolver.setTextTemplateModePatterns(Collections.singleton("*.txt"));
+        templateResolver.setSuffix("");
+        templateResolver.setCacheable(cacheable);
+
+        final StandardDialect standardDialect = new StandardDialect();
+        standardDialect.setVariableExpressionEvaluator(new OGNLVariableExpressionEvaluator(true, specializeOGNLShortcuts));
+
+        final TemplateEngine templateEngine = new TemplateEngine();
+        templateEngine.setTemplateResolver(templateResolver);
+        templateEngine.setDialect(standardDialect);
+        if (!cacheable) {
+            templateEngine.setCacheManager(null);
+        }
+        return templateEngine;
+
+    }
+
+
+    static Context createContext(final int productCount) {
+        return new Context(Locale.US, createVariables(productCount));
+    }
+
+
+    static Map<String,Object> createVariables(final int productCount) {
+
+        final Map<String,Object> variables = new HashMap<String, Object>(10);
+
+        variables.put("title", "Benchmark Store - Products");
+        variables.put("customer", new Customer(1234, "Jane Doe", true));
+        variables.put("products", createProducts(productCount));
+        variables.put("categories", Arrays.asList(CATEGORIES));
+
+        final Map<String,String> theme = new HashMap<String, String>(8);
+        theme.put("fontFamily", "Georgia, serif");
+        theme.put("background", "#fafafa");
+        theme.put("primary", "#7a1f3d");
+        theme.put("highlight", "#f5e6eb");
+        variables.put("theme", theme);
+
+        return variables;
+
+    }
+
+
+    static List<Product> createProducts(final int productCount) {
+        final List<Product> products = new ArrayList<Product>(productCount);
+        for (int i = 0; i < productCount; i++) {
+            final List<String> tags = new ArrayList<String>(3);
+            for (int j = 0; j < (i % 3) + 1; j++) {
+                tags.add(TAGS[(i + j) % TAGS.length]);
+            }
+            products.add(
+                    new Product(
+                            i + 1,
+                            "Product number " + (i + 1),
+                            "A long description for product number " + (i + 1) + ", so that it needs to be abbreviated " +
+                                    "when shown in lists & tables <with> some characters needing escaping.",
+                            CATEGORIES[i % CATEGORIES.length],
+                            new BigDecimal(((i * 37) % 10000) + 99).movePointLeft(2),
+                            (i % 7 != 0),
+                            tags));
+        }
+        return products;
+    }
+
+
+    static String readTemplate(final String template) throws IOException {
+        final InputStream inputStream =
+                BenchmarkFixtures.class.getClassLoader().getResourceAsStream(TEMPLATES_FOLDER + template);
+        if (inputStream == null) {
+            throw new IOException("Benchmark template not found: " + template);
+        }
+        final Reader reader = new InputStreamReader(inputStream, "UTF-8");
+        try {
+            final StringBuilder strBuilder = new StringBuilder(4096);
+            final char[] buffer = new char[4096];
+            int read;
+            while ((read = reader.read(buffer)) != -1) {
+                strBuilder.append(buffer, 0, read);
+            }
+            return strBuilder.toString();
+        } finally {
+            reader.close();
+        }
+    }
+
+
+
+
+    private BenchmarkFixtures() {
+        super();
+    }
+
+
+
+
+    /*
+     * Writer that discards its output, only counting the number of chars written. Used instead of a StringWriter
+     * so that buffer growth does not add noise to the allocation profiles of the engine itself.
+     */
+    static final class CountingWriter extends Writer {
+
+        private long count = 0L;
+
+        @Override
+        public void write(final int c) {
+            this.count++;
+        }
+
+        @Override
+        public void write(final char[] cbuf, final int off, final int len) {
+            this.count += len;
+        }
+
+        @Override
+        public void write(final String str, final int off, final int len) {
+            this.count += len;
+        }
+
+        @Override
+        public void flush() {
+            // Nothing to be done
+        }
+
+        @Override
+        public void close() {
+            // Nothing to be done
+        }
+
+        long getCount() {
+            return this.count;
+        }
+
+    }
+
+}
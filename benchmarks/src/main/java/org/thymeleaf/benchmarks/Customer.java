@@ -0,0 +1,56 @@
+/*
+ * =============================================================================
+ *
+ *   Copyright (c) 2011-2016, The THYMELEAF team (http://www.thymeleaf.org)
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ * =============================================================================
+ */
+package org.thymeleaf.benchmarks;
+
+/*
+ * Model object used by the benchmark templates.
+ *
+ * @author Daniel Fernandez
+ * @since 3.0.3
+ *
+ */
+public final class Customer {
+
+    private final int id;
+    private final String name;
+    private final boolean vip;
+
+
+    public Customer(final int id, final String name, final boolean vip) {
+        super();
+        this.id = id;
+        this.name = name;
+        this.vip = vip;
+    }
+
+
+    public int getId() {
+        return this.id;
+    }
+
+    public String getName() {
+        return this.name;
+    }
+
+    public boolean isVip() {
+        return this.vip;
+    }
+
+}
@@ -0,0 +1,133 @@
+/*
+ * =============================================================================
+ *
+ *   Copyright (c) 2011-2016, The THYMELEAF team (http://www.thymeleaf.org)
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ * =============================================================================
+ */
+package org.thymeleaf.benchmarks;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.thymeleaf.IEngineConfiguration;
+import org.thymeleaf.context.ExpressionContext;
+import org.thymeleaf.context.IExpressionContext;
+import org.thymeleaf.standard.expression.IStandardExpression;
+import org.thymeleaf.standard.expression.IStandardExpressionParser;
+import org.thymeleaf.standard.expression.StandardExpressions;
+
+/*
+ * Measures Standard Expression parsing and evaluation separately:
+ *
+ *    - parse: uses an engine with no cache manager, so that every call really parses the expression.
+ *    - evaluate: executes an expression parsed at setup on an engine with the default caches, so that the
+ *      OGNL trees of variable expressions are also cached (as they would be in production).
+ *
+ * @author Daniel Fernandez
+ * @since 3.0.3
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ExpressionBenchmark {
+
+    @Param({
+            "${product.name}",
+            "${customer.name}",
+            "${theme.primary}",
+            "${product.price * 2 > 10 and product.inStock}",
+            "${#strings.toUpperCase(product.name)}",
+            "${products[3].tags.size()}",
+            "${customer.vip}? 'free' : 'paid'",
+            "|Price: ${product.price} (${product.category})|"})
+    public String expression;
+
+    // Whether OGNL shortcut expressions (simple property paths) are specialized per receiver class
+    @Param({"false", "true"})
+    public boolean specialize;
+
+    private IExpressionContext parseContext;
+    private IStandardExpressionParser parser;
+
+    private IExpressionContext evaluationContext;
+    private IStandardExpression parsedExpression;
+
+
+    @Setup
+    public void setup() {
+
+        final Map<String,Object> variables = BenchmarkFixtures.createVariables(10);
+        variables.put("product", BenchmarkFixtures.createProducts(1).get(0));
+
+        final IEngineConfiguration parseConfiguration =
+                BenchmarkFixtures.createTemplateEngine(false).getConfiguration();
+        this.parseContext = new ExpressionContext(parseConfiguration, Locale.US, variables);
+        this.parser = StandardExpressions.getExpressionParser(parseConfiguration);
+
+        final IEngineConfiguration evaluationConfiguration =
+                BenchmarkFixtures.createTemplateEngine(true, this.specialize).getConfiguration();
+        this.evaluationContext = new ExpressionContext(evaluationConfiguration, Locale.US, variables);
+        this.parsedExpression =
+                StandardExpressions.getExpressionParser(evaluationConfiguration).parseExpression(this.evaluationContext, this.expression);
+
+    }
+
+
+    @Benchmark
+    public IStandardExpression parse() {
+        return this.parser.parseExpression(this.parseContext, this.expression);
+    }
+
+
+    @Benchmark
+    public Object evaluate() {
+        return this.parsedExpression.execute(this.evaluationContext);
+    }
+
+
+
+
+    public static void main(final String[] args) throws RunnerException {
+        final Options options =
+                new OptionsBuilder()
+                        .include(ExpressionBenchmark.class.getSimpleName())
+                        .addProfiler(GCProfiler.class)
+                        .build();
+        new Runner(options).run();
+    }
+
+}
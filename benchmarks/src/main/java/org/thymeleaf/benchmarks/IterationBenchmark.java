@@ -0,0 +1,98 @@
+/*
+ * =============================================================================
+ *
+ *   Copyright (c) 2011-2016, The THYMELEAF team (http://www.thymeleaf.org)
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ * =============================================================================
+ */
+package org.thymeleaf.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.thymeleaf.TemplateEngine;
+import org.thymeleaf.context.Context;
+
+/*
+ * Measures th:each iteration cost for different collection sizes, using a template in which almost all of the
+ * processing happens inside the iterated element (status variable, conditional attribute, several th:text).
+ *
+ * Dividing the results by the number of rows gives the per-iteration cost, which should stay flat as the
+ * number of rows grows.
+ *
+ * @author Daniel Fernandez
+ * @since 3.0.3
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class IterationBenchmark {
+
+    private static final String TEMPLATE = "iteration.html";
+
+    @Param({"10", "100", "1000"})
+    public int rows;
+
+    private TemplateEngine templateEngine;
+    private Context context;
+
+
+    @Setup
+    public void setup() {
+        this.templateEngine = BenchmarkFixtures.createTemplateEngine(true);
+        this.context = BenchmarkFixtures.createContext(this.rows);
+        this.templateEngine.process(TEMPLATE, this.context, new BenchmarkFixtures.CountingWriter());
+    }
+
+
+    @Benchmark
+    public long iterate() {
+        final BenchmarkFixtures.CountingWriter writer = new BenchmarkFixtures.CountingWriter();
+        this.templateEngine.process(TEMPLATE, this.context, writer);
+        return writer.getCount();
+    }
+
+
+
+
+    public static void main(final String[] args) throws RunnerException {
+        final Options options =
+                new OptionsBuilder()
+                        .include(IterationBenchmark.class.getSimpleName())
+                        .addProfiler(GCProfiler.class)
+                        .build();
+        new Runner(options).run();
+    }
+
+}
@@ -0,0 +1,86 @@
+/*
+ * =============================================================================
+ *
+ *   Copyright (c) 2011-2016, The THYMELEAF team (http://www.thymeleaf.org)
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ * =============================================================================
+ */
+package org.thymeleaf.benchmarks;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+/*
+ * Model object used by the benchmark templates. Needs to be a public class with public getters so that it can
+ * be accessed from expressions.
+ *
+ * @author Daniel Fernandez
+ * @since 3.0.3
+ *
+ */
+public final class Product {
+
+    private final int id;
+    private final String name;
+    private final String description;
+    private final String category;
+    private final BigDecimal price;
+    private final boolean inStock;
+    private final List<String> tags;
+
+
+    public Product(
+            final int id, final String name, final String description, final String category,
+            final BigDecimal price, final boolean inStock, final List<String> tags) {
+        super();
+        this.id = id;
+        this.name = name;
+        this.description = description;
+        this.category = category;
+        this.price = price;
+        this.inStock = inStock;
+        this.tags = tags;
+    }
+
+
+    public int getId() {
+        return this.id;
+    }
+
+    public String getName() {
+        return this.name;
+    }
+
+    public String getDescription() {
+        return this.description;
+    }
+
+    public String getCategory() {
+        return this.category;
+    }
+
+    public BigDecimal getPrice() {
+        return this.price;
+    }
+
+    public boolean isInStock() {
+        return this.inStock;
+    }
+
+    public List<String> getTags() {
+        return this.tags;
+    }
+
+}
@@ -0,0 +1,62 @@
+/*
+ * =============================================================================
+ *
+ *   Copyright (c) 2011-2016, The THYMELEAF team (http://www.thymeleaf.org)
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ * =============================================================================
+ */
+package org.thymeleaf.benchmarks;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/*
+ * Runs the whole render pipeline suite (all benchmarks in this package) with allocation profiling enabled,
+ * writing results as JSON so that they can be kept as a baseline and compared against later runs, e.g. with:
+ *
+ *     java -cp target/benchmarks.jar org.thymeleaf.benchmarks.RenderPipelineBenchmarks target/baseline.json
+ *
+ * The result file defaults to "render-pipeline.json" if not specified.
+ *
+ * @author Daniel Fernandez
+ * @since 3.0.3
+ *
+ */
+public final class RenderPipelineBenchmarks {
+
+    private static final String DEFAULT_RESULT_FILE = "render-pipeline.json";
+
+
+    public static void main(final String[] args) throws RunnerException {
+        final Options options =
+                new OptionsBuilder()
+                        .include(RenderPipelineBenchmarks.class.getPackage().getName().replace(".", "\\.") + "\\..*")
+                        .addProfiler(GCProfiler.class)
+                        .resultFormat(ResultFormatType.JSON)
+                        .result(args.length > 0 ? args[0] : DEFAULT_RESULT_FILE)
+                        .build();
+        new Runner(options).run();
+    }
+
+
+    private RenderPipelineBenchmarks() {
+        super();
+    }
+
+}
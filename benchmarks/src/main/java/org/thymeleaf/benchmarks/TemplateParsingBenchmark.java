@@ -0,0 +1,175 @@
+/*
+ * =============================================================================
+ *
+ *   Copyright (c) 2011-2016, The THYMELEAF team (http://www.thymeleaf.org)
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ * =============================================================================
+ */
+package org.thymeleaf.benchmarks;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.thymeleaf.IEngineConfiguration;
+import org.thymeleaf.engine.AbstractTemplateHandler;
+import org.thymeleaf.model.ICloseElementTag;
+import org.thymeleaf.model.IComment;
+import org.thymeleaf.model.IOpenElementTag;
+import org.thymeleaf.model.IStandaloneElementTag;
+import org.thymeleaf.model.IText;
+import org.thymeleaf.templatemode.TemplateMode;
+import org.thymeleaf.templateparser.ITemplateParser;
+import org.thymeleaf.templateparser.markup.HTMLTemplateParser;
+import org.thymeleaf.templateparser.text.CSSTemplateParser;
+import org.thymeleaf.templateparser.text.JavaScriptTemplateParser;
+import org.thymeleaf.templateparser.text.TextTemplateParser;
+import org.thymeleaf.templateresource.StringTemplateResource;
+
+/*
+ * Measures isolated template parsing (no processing at all) for each of the template parsers: the markup
+ * parser used for HTML (based on AttoParser) and the text parser used for TEXT, JAVASCRIPT and CSS.
+ *
+ * Templates are read from a String resource so that I/O does not affect results, and parsed events are
+ * simply counted (i.e. the TemplateModel-building step usually performed by the TemplateManager is left out).
+ *
+ * @author Daniel Fernandez
+ * @since 3.0.3
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TemplateParsingBenchmark {
+
+    // Same buffer configuration as the one used by the TemplateManager
+    private static final int PARSER_POOL_SIZE = 40;
+    private static final int PARSER_BLOCK_SIZE = 2048;
+
+    @Param({"product-list.html", "products.js", "theme.css", "order-confirmation.txt"})
+    public String template;
+
+    private IEngineConfiguration configuration;
+    private ITemplateParser parser;
+    private TemplateMode templateMode;
+    private StringTemplateResource resource;
+
+
+    @Setup
+    public void setup() throws IOException {
+
+        this.configuration = BenchmarkFixtures.createTemplateEngine(false).getConfiguration();
+        this.resource = new StringTemplateResource(BenchmarkFixtures.readTemplate(this.template));
+
+        final boolean standardDialectPresent = this.configuration.isStandardDialectPresent();
+        final String standardDialectPrefix = this.configuration.getStandardDialectPrefix();
+
+        if (this.template.endsWith(".html")) {
+            this.templateMode = TemplateMode.HTML;
+            this.parser = new HTMLTemplateParser(PARSER_POOL_SIZE, PARSER_BLOCK_SIZE);
+        } else if (this.template.endsWith(".js")) {
+            this.templateMode = TemplateMode.JAVASCRIPT;
+            this.parser =
+                    new JavaScriptTemplateParser(PARSER_POOL_SIZE, PARSER_BLOCK_SIZE, standardDialectPresent, standardDialectPrefix);
+        } else if (this.template.endsWith(".css")) {
+            this.templateMode = TemplateMode.CSS;
+            this.parser =
+                    new CSSTemplateParser(PARSER_POOL_SIZE, PARSER_BLOCK_SIZE, standardDialectPresent, standardDialectPrefix);
+        } else {
+            this.templateMode = TemplateMode.TEXT;
+            this.parser =
+                    new TextTemplateParser(PARSER_POOL_SIZE, PARSER_BLOCK_SIZE, standardDialectPresent, standardDialectPrefix);
+        }
+
+    }
+
+
+    @Benchmark
+    public int parse() {
+        final EventCountingHandler handler = new EventCountingHandler();
+        this.parser.parseStandalone(
+                this.configuration, null, this.template, null, this.resource, this.templateMode, false, handler);
+        return handler.count;
+    }
+
+
+
+
+    public static void main(final String[] args) throws RunnerException {
+        final Options options =
+                new OptionsBuilder()
+                        .include(TemplateParsingBenchmark.class.getSimpleName())
+                        .addProfiler(GCProfiler.class)
+                        .build();
+        new Runner(options).run();
+    }
+
+
+
+
+    private static final class EventCountingHandler extends AbstractTemplateHandler {
+
+        private int count = 0;
+
+        EventCountingHandler() {
+            super();
+        }
+
+        @Override
+        public void handleText(final IText text) {
+            this.count++;
+        }
+
+        @Override
+        public void handleComment(final IComment comment) {
+            this.count++;
+        }
+
+        @Override
+        public void handleStandaloneElement(final IStandaloneElementTag standaloneElementTag) {
+            this.count++;
+        }
+
+        @Override
+        public void handleOpenElement(final IOpenElementTag openElementTag) {
+            this.count++;
+        }
+
+        @Override
+        public void handleCloseElement(final ICloseElementTag closeElementTag) {
+            this.count++;
+        }
+
+    }
+
+}
@@ -0,0 +1,101 @@
+/*
+ * =============================================================================
+ *
+ *   Copyright (c) 2011-2016, The THYMELEAF team (http://www.thymeleaf.org)
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ * =============================================================================
+ */
+package org.thymeleaf.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.thymeleaf.TemplateEngine;
+import org.thymeleaf.context.Context;
+
+/*
+ * Measures end-to-end template processing (TemplateEngine.process(...)) for realistic templates in each of the
+ * main template modes: HTML (using fragments, iteration, conditionals, links and utility objects), JAVASCRIPT and
+ * CSS (with inlined expressions and iterations in natural templates) and TEXT (an e-mail body).
+ *
+ * Templates are cacheable, so this measures processing of already-parsed templates, which is the usual situation
+ * in production (see TemplateParsingBenchmark for parsing).
+ *
+ * @author Daniel Fernandez
+ * @since 3.0.3
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TemplateProcessingBenchmark {
+
+    @Param({"product-list.html", "products.js", "theme.css", "order-confirmation.txt"})
+    public String template;
+
+    @Param({"20", "200"})
+    public int products;
+
+    private TemplateEngine templateEngine;
+    private Context context;
+
+
+    @Setup
+    public void setup() {
+        this.templateEngine = BenchmarkFixtures.createTemplateEngine(true);
+        this.context = BenchmarkFixtures.createContext(this.products);
+        // Make sure the template exists and is processable before starting measurements
+        this.templateEngine.process(this.template, this.context, new BenchmarkFixtures.CountingWriter());
+    }
+
+
+    @Benchmark
+    public long process() {
+        final BenchmarkFixtures.CountingWriter writer = new BenchmarkFixtures.CountingWriter();
+        this.templateEngine.process(this.template, this.context, writer);
+        return writer.getCount();
+    }
+
+
+
+
+    public static void main(final String[] args) throws RunnerException {
+        final Options options =
+                new OptionsBuilder()
+                        .include(TemplateProcessingBenchmark.class.getSimpleName())
+                        .addProfiler(GCProfiler.class)
+                        .build();
+        new Runner(options).run();
+    }
+
+}
@@ -0,0 +1,136 @@
+/*
+ * =============================================================================
+ *
+ *   Copyright (c) 2011-2016, The THYMELEAF team (http://www.thymeleaf.org)
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ * =============================================================================
+ */
+package org.thymeleaf.cache;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/*
+ * Compares the bounded (maxSize > 0) data container of StandardCache against the synchronized FIFO container
+ * used up to 3.0.2, simulating the write-heavy access pattern of the expression cache during warm-up: keys are
+ * taken from a key space larger than the cache, so that misses (and therefore puts and evictions) are frequent.
+ *
+ * Thread count is not a @Param in JMH, so the main() method runs the benchmark once per thread count. It can
+ * also be run from the benchmarks uber jar with e.g. "java -jar target/benchmarks.jar CacheDataContainer -t 32"
+ *
+ * @author Daniel Fernandez
+ * @since 3.0.3
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CacheDataContainerBenchmark {
+
+    private static final int[] THREAD_COUNTS = new int[] { 1, 4, 8, 16, 32, 64 };
+
+    @Param({"legacy", "standard"})
+    public String container;
+
+    @Param({"500"})
+    public int maxSize;
+
+    // Ratio between the key space and the max size of the cache: 2 means roughly a 50% miss rate
+    @Param({"2"})
+    public int keySpaceFactor;
+
+    private LegacyCacheDataContainer<Integer,Object> legacyContainer;
+    private StandardCache.CacheDataContainer<Integer,Object> standardContainer;
+    private Integer[] keys;
+    private Object value;
+
+
+    @Setup
+    public void setup() {
+        this.legacyContainer = new LegacyCacheDataContainer<Integer,Object>(this.maxSize, this.maxSize);
+        this.standardContainer =
+                new StandardCache.CacheDataContainer<Integer,Object>("BENCHMARK", this.maxSize, this.maxSize, -1L, false, null);
+        this.keys = new Integer[this.maxSize * this.keySpaceFactor];
+        for (int i = 0; i < this.keys.length; i++) {
+            this.keys[i] = Integer.valueOf(i);
+        }
+        this.value = new Object();
+    }
+
+
+    @Benchmark
+    public Object getOrPut() {
+        final Integer key = this.keys[ThreadLocalRandom.current().nextInt(this.keys.length)];
+        if ("legacy".equals(this.container)) {
+            final StandardCache.CacheEntry<Object> entry = this.legacyContainer.get(key);
+            if (entry != null) {
+                return entry;
+            }
+            return Integer.valueOf(this.legacyContainer.put(key, new StandardCache.CacheEntry<Object>(this.value, false)));
+        }
+        final StandardCache.CacheEntry<Object> entry = this.standardContainer.get(key);
+        if (entry != null) {
+            return entry;
+        }
+        return Integer.valueOf(this.standardContainer.put(key, new StandardCache.CacheEntry<Object>(this.value, false)));
+    }
+
+
+    @Benchmark
+    public Object putAndRemove() {
+        // Exercises the removal path (invalid entries, clearKey), which used to scan the whole FIFO
+        final Integer key = this.keys[ThreadLocalRandom.current().nextInt(this.keys.length)];
+        if ("legacy".equals(this.container)) {
+            this.legacyContainer.put(key, new StandardCache.CacheEntry<Object>(this.value, false));
+            return Integer.valueOf(this.legacyContainer.remove(key));
+        }
+        this.standardContainer.put(key, new StandardCache.CacheEntry<Object>(this.value, false));
+        return Integer.valueOf(this.standardContainer.remove(key));
+    }
+
+
+
+
+    public static void main(final String[] args) throws RunnerException {
+        for (final int threads : THREAD_COUNTS) {
+            final Options options =
+                    new OptionsBuilder()
+                            .include(CacheDataContainerBenchmark.class.getSimpleName())
+                            .threads(threads)
+                            .build();
+            new Runner(options).run();
+        }
+    }
+
+}
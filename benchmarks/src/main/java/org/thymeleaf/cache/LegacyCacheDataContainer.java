@@ -0,0 +1,89 @@
+/*
+ * =============================================================================
+ *
+ *   Copyright (c) 2011-2016, The THYMELEAF team (http://www.thymeleaf.org)
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ * =============================================================================
+ */
+package org.thymeleaf.cache;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+/*
+ * Copy of the bounded StandardCache.CacheDataContainer as it was implemented up to 3.0.2 (insertion-ordered
+ * ring of keys protected by a global lock, linear scan on removal), kept here only as a baseline for
+ * CacheDataContainerBenchmark. Only the non-tracing code paths are copied.
+ *
+ * @author Daniel Fernandez
+ * @since 3.0.3
+ *
+ */
+final class LegacyCacheDataContainer<K,V> {
+
+    private final int maxSize;
+    private final ConcurrentHashMap<K,StandardCache.CacheEntry<V>> container;
+    private final Object[] fifo;
+    private int fifoPointer;
+
+
+    LegacyCacheDataContainer(final int initialCapacity, final int maxSize) {
+        super();
+        this.container = new ConcurrentHashMap<K,StandardCache.CacheEntry<V>>(initialCapacity, 0.9f, 2);
+        this.maxSize = maxSize;
+        this.fifo = new Object[this.maxSize];
+        Arrays.fill(this.fifo, null);
+        this.fifoPointer = 0;
+    }
+
+
+    StandardCache.CacheEntry<V> get(final Object key) {
+        return this.container.get(key);
+    }
+
+
+    int put(final K key, final StandardCache.CacheEntry<V> value) {
+        final StandardCache.CacheEntry<V> existing = this.container.putIfAbsent(key, value);
+        if (existing != null) {
+            return -1;
+        }
+        synchronized (this.fifo) {
+            final Object removedKey = this.fifo[this.fifoPointer];
+            if (removedKey != null) {
+                this.container.remove(removedKey);
+            }
+            this.fifo[this.fifoPointer] = key;
+            this.fifoPointer = (this.fifoPointer + 1) % this.maxSize;
+        }
+        return -1;
+    }
+
+
+    int remove(final K key) {
+        final StandardCache.CacheEntry<V> removed = this.container.remove(key);
+        if (removed != null) {
+            if (key != null) {
+                for (int i = 0; i < this.maxSize; i++) {
+                    if (key.equals(this.fifo[i])) {
+                        this.fifo[i] = null;
+                        break;
+                    }
+                }
+            }
+        }
+        return -1;
+    }
+
+}
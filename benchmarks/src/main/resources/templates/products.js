@@ -0,0 +1,34 @@
+/*
+ * Product catalogue client-side bootstrap
+ */
+var store = {
+
+    customer: {
+        id: /*[[${customer.id}]]*/ 0,
+        name: /*[[${customer.name}]]*/ "Customer name",
+        vip: /*[[${customer.vip}]]*/ false
+    },
+
+    products: [
+        /*[# th:each="product : ${products}"]*/
+        {
+            id: /*[[${product.id}]]*/ 0,
+            name: /*[[${product.name}]]*/ "name",
+            price: /*[[${product.price}]]*/ 0.0,
+            inStock: /*[[${product.inStock}]]*/ true,
+            tags: /*[[${product.tags}]]*/ []
+        },
+        /*[/]*/
+    ],
+
+    categories: /*[[${categories}]]*/ [],
+
+    total: function() {
+        var sum = 0;
+        for (var i = 0; i < this.products.length; i++) {
+            sum += this.products[i].price;
+        }
+        return sum;
+    }
+
+};
@@ -24,6 +24,7 @@
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Executor;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -34,9 +35,11 @@
 import org.thymeleaf.dialect.IPostProcessorDialect;
 import org.thymeleaf.dialect.IPreProcessorDialect;
 import org.thymeleaf.dialect.IProcessorDialect;
+import org.thymeleaf.engine.TemplateModelSnapshotStore;
 import org.thymeleaf.expression.IExpressionObjectFactory;
 import org.thymeleaf.linkbuilder.ILinkBuilder;
 import org.thymeleaf.messageresolver.IMessageResolver;
+import org.thymeleaf.metrics.IEngineMetricsListener;
 import org.thymeleaf.postprocessor.IPostProcessor;
 import org.thymeleaf.preprocessor.IPreProcessor;
 import org.thymeleaf.processor.IProcessor;
@@ -52,6 +55,7 @@
 import org.thymeleaf.processor.xmldeclaration.IXMLDeclarationProcessor;
 import org.thymeleaf.templatemode.TemplateMode;
 import org.thymeleaf.templateresolver.ITemplateResolver;
+import org.thymeleaf.util.EngineConfigurationUtils;
 import org.thymeleaf.util.ProcessorComparators;
 import org.thymeleaf.util.StringUtils;
 
@@ -93,6 +97,22 @@ static void printConfiguration(final IEngineConfiguration configuration) {
             }
         }
         logBuilder.line("[THYMELEAF] * Cache Manager implementation: {}", (cacheManager == null? "[no caches]" : cacheManager.getClass().getName()));
+        final TemplateModelSnapshotStore templateModelSnapshotStore = EngineConfigurationUtils.getTemplateModelSnapshotStore(configuration);
+        if (templateModelSnapshotStore != null) {
+            logBuilder.line("[THYMELEAF] * Template model snapshot file: {}", templateModelSnapshotStore.getSnapshotFile().getAbsolutePath());
+        }
+        final int processingHandlerPoolSize = EngineConfigurationUtils.getProcessingHandlerPoolSize(configuration);
+        if (processingHandlerPoolSize > 0) {
+            logBuilder.line("[THYMELEAF] * Processing handler pool size: {}", Integer.valueOf(processingHandlerPoolSize));
+        }
+        final IEngineMetricsListener metricsListener = EngineConfigurationUtils.getMetricsListener(configuration);
+        if (metricsListener != null) {
+            logBuilder.line("[THYMELEAF] * Metrics listener implementation: {}", metricsListener.getClass().getName());
+        }
+        final Executor parallelFragmentExecutor = EngineConfigurationUtils.getParallelFragmentExecutor(configuration);
+        if (parallelFragmentExecutor != null) {
+            logBuilder.line("[THYMELEAF] * Parallel fragment executor implementation: {}", parallelFragmentExecutor.getClass().getName());
+        }
         logBuilder.line("[THYMELEAF] * Template resolvers:");
         for (final ITemplateResolver templateResolver : templateResolvers) {
             if (templateResolver.getOrder() != null) {
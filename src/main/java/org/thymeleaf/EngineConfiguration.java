@@ -27,6 +27,7 @@
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
 
 import org.thymeleaf.cache.ICacheManager;
 import org.thymeleaf.context.IEngineContextFactory;
@@ -35,9 +36,11 @@
 import org.thymeleaf.engine.ElementDefinitions;
 import org.thymeleaf.engine.StandardModelFactory;
 import org.thymeleaf.engine.TemplateManager;
+import org.thymeleaf.engine.TemplateModelSnapshotStore;
 import org.thymeleaf.expression.IExpressionObjectFactory;
 import org.thymeleaf.linkbuilder.ILinkBuilder;
 import org.thymeleaf.messageresolver.IMessageResolver;
+import org.thymeleaf.metrics.IEngineMetricsListener;
 import org.thymeleaf.model.IModelFactory;
 import org.thymeleaf.postprocessor.IPostProcessor;
 import org.thymeleaf.preprocessor.IPreProcessor;
@@ -50,6 +53,7 @@
 import org.thymeleaf.processor.text.ITextProcessor;
 import org.thymeleaf.processor.xmldeclaration.IXMLDeclarationProcessor;
 import org.thymeleaf.templatemode.TemplateMode;
+import org.thymeleaf.templateparser.markup.decoupled.DecoupledTemplateLogicCache;
 import org.thymeleaf.templateparser.markup.decoupled.IDecoupledTemplateLogicResolver;
 import org.thymeleaf.templateresolver.ITemplateResolver;
 import org.thymeleaf.util.Validate;
@@ -66,7 +70,7 @@
  * @since 3.0.0
  * 
  */
-public class EngineConfiguration implements IEngineConfiguration {
+public class EngineConfiguration implements IExtendedEngineConfiguration {
 
     private final DialectSetConfiguration dialectSetConfiguration;
     private final Set<ITemplateResolver> templateResolvers;
@@ -75,6 +79,11 @@ public class EngineConfiguration implements IEngineConfiguration {
     private final ICacheManager cacheManager;
     private final IEngineContextFactory engineContextFactory;
     private final IDecoupledTemplateLogicResolver decoupledTemplateLogicResolver;
+    private final TemplateModelSnapshotStore templateModelSnapshotStore;
+    private final int processingHandlerPoolSize;
+    private final IEngineMetricsListener metricsListener;
+    private final Executor parallelFragmentExecutor;
+    private final DecoupledTemplateLogicCache decoupledTemplateLogicCache;
     private TemplateManager templateManager;
     private final ConcurrentHashMap<TemplateMode,IModelFactory> modelFactories;
 
@@ -89,7 +98,12 @@ public class EngineConfiguration implements IEngineConfiguration {
             final Set<DialectConfiguration> dialectConfigurations,
             final ICacheManager cacheManager,
             final IEngineContextFactory engineContextFactory,
-            final IDecoupledTemplateLogicResolver decoupledTemplateLogicResolver) {
+            final IDecoupledTemplateLogicResolver decoupledTemplateLogicResolver,
+            final TemplateModelSnapshotStore templateModelSnapshotStore,
+            final int processingHandlerPoolSize,
+            final IEngineMetricsListener metricsListener,
+            final Executor parallelFragmentExecutor,
+            final DecoupledTemplateLogicCache decoupledTemplateLogicCache) {
 
         super();
 
@@ -101,6 +115,11 @@ public class EngineConfiguration implements IEngineConfiguration {
         // Cache Manager CAN be null
         Validate.notNull(engineContextFactory, "Engine Context Factory cannot be null");
         Validate.notNull(decoupledTemplateLogicResolver, "Decoupled Template Logic Resolver cannot be null");
+        // Template Model Snapshot Store CAN be null
+        Validate.isTrue(processingHandlerPoolSize >= 0, "Processing handler pool size cannot be negative");
+        // Metrics Listener CAN be null
+        // Parallel Fragment Executor CAN be null
+        // Decoupled Template Logic Cache CAN be null
 
         final List<ITemplateResolver> templateResolversList = new ArrayList<ITemplateResolver>(templateResolvers);
         Collections.sort(templateResolversList, TemplateResolverComparator.INSTANCE);
@@ -120,6 +139,16 @@ public class EngineConfiguration implements IEngineConfiguration {
 
         this.decoupledTemplateLogicResolver = decoupledTemplateLogicResolver;
 
+        this.templateModelSnapshotStore = templateModelSnapshotStore;
+
+        this.processingHandlerPoolSize = processingHandlerPoolSize;
+
+        this.metricsListener = metricsListener;
+
+        this.parallelFragmentExecutor = parallelFragmentExecutor;
+
+        this.decoupledTemplateLogicCache = decoupledTemplateLogicCache;
+
         this.dialectSetConfiguration = DialectSetConfiguration.build(dialectConfigurations);
 
         // NOTE we are NOT initializing the templateManager here, but in #initialize()
@@ -169,6 +198,26 @@ public IDecoupledTemplateLogicResolver getDecoupledTemplateLogicResolver() {
         return this.decoupledTemplateLogicResolver;
     }
 
+    public TemplateModelSnapshotStore getTemplateModelSnapshotStore() {
+        return this.templateModelSnapshotStore;
+    }
+
+    public int getProcessingHandlerPoolSize() {
+        return this.processingHandlerPoolSize;
+    }
+
+    public IEngineMetricsListener getMetricsListener() {
+        return this.metricsListener;
+    }
+
+    public Executor getParallelFragmentExecutor() {
+        return this.parallelFragmentExecutor;
+    }
+
+    public DecoupledTemplateLogicCache getDecoupledTemplateLogicCache() {
+        return this.decoupledTemplateLogicCache;
+    }
+
 
 
 
@@ -0,0 +1,62 @@
+/*
+ * =============================================================================
+ *
+ *   Copyright (c) 2011-2016, The THYMELEAF team (http://www.thymeleaf.org)
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ * =============================================================================
+ */
+package org.thymeleaf;
+
+/**
+ * <p>
+ *   Extension of {@link IThrottledTemplateProcessor} for processors that can report whether processing stopped
+ *   because a <em>data-driven</em> iteration (see {@link org.thymeleaf.engine.DataDrivenTemplateIterator} and
+ *   {@link org.thymeleaf.engine.PublisherTemplateIterator}) has no more data buffered yet, as opposed to having
+ *   reached the output limit.
+ * </p>
+ * <p>
+ *   This allows callers driving throttled processing in a non-blocking manner to stop calling
+ *   <tt>process(...)</tt> until new data is available, instead of polling.
+ * </p>
+ *
+ * @author Daniel Fern&aacute;ndez
+ *
+ * @since 3.0.3
+ *
+ */
+public interface IDataDrivenThrottledTemplateProcessor extends IThrottledTemplateProcessor {
+
+    /**
+     * <p>
+     *   Checks whether the last call to any of the <tt>process(...)</tt> methods stopped because a data-driven
+     *   iteration was waiting for data.
+     * </p>
+     *
+     * @return true if processing is waiting for data, false if not.
+     */
+    public boolean isWaitingForData();
+
+    /**
+     * <p>
+     *   Sets a listener that will be called whenever a data-driven iteration being executed by this processor
+     *   receives new data (or is signalled as complete). The listener might be called from any thread, and
+     *   should normally just schedule a new call to <tt>process(...)</tt>.
+     * </p>
+     *
+     * @param listener the listener (can be null).
+     */
+    public void setDataAvailableListener(final Runnable listener);
+
+}
@@ -0,0 +1,96 @@
+/*
+ * =============================================================================
+ *
+ *   Copyright (c) 2011-2016, The THYMELEAF team (http://www.thymeleaf.org)
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ * =============================================================================
+ */
+package org.thymeleaf;
+
+import java.util.concurrent.Executor;
+
+import org.thymeleaf.engine.TemplateModelSnapshotStore;
+import org.thymeleaf.metrics.IEngineMetricsListener;
+import org.thymeleaf.templateparser.markup.decoupled.DecoupledTemplateLogicCache;
+
+/**
+ * <p>
+ *   Extension of {@link IEngineConfiguration} for engine configurations providing access to optional
+ *   engine features (such as the template model snapshot store).
+ * </p>
+ * <p>
+ *   These features are not part of {@link IEngineConfiguration} itself so that existing implementations of
+ *   that interface keep working: the engine will check whether its configuration implements this interface,
+ *   and consider these features disabled if not (see {@link org.thymeleaf.util.EngineConfigurationUtils}).
+ * </p>
+ * <p>
+ *   The standard {@link EngineConfiguration} implements this interface.
+ * </p>
+ *
+ * @author Daniel Fern&aacute;ndez
+ *
+ * @since 3.0.3
+ *
+ */
+public interface IExtendedEngineConfiguration extends IEngineConfiguration {
+
+    /**
+     * <p>
+     *   Returns the store of parsed template snapshots in effect, if any.
+     * </p>
+     *
+     * @return the template model snapshot store, or <tt>null</tt> if none has been configured.
+     */
+    public TemplateModelSnapshotStore getTemplateModelSnapshotStore();
+
+    /**
+     * <p>
+     *   Returns the maximum amount of processing handlers (the objects in charge of executing processors
+     *   during template processing) that will be kept for reuse between template executions.
+     * </p>
+     *
+     * @return the maximum amount of pooled processing handlers, <tt>0</tt> if pooling is disabled.
+     */
+    public int getProcessingHandlerPoolSize();
+
+    /**
+     * <p>
+     *   Returns the listener receiving render-time metrics from the engine, if any.
+     * </p>
+     *
+     * @return the metrics listener, or <tt>null</tt> if none has been configured.
+     */
+    public IEngineMetricsListener getMetricsListener();
+
+    /**
+     * <p>
+     *   Returns the executor used for rendering fragments marked for parallel rendering, if any.
+     * </p>
+     *
+     * @return the executor, or <tt>null</tt> if parallel fragment rendering is disabled.
+     */
+    public Executor getParallelFragmentExecutor();
+
+    /**
+     * <p>
+     *   Returns the cache used by markup template parsers for the logic read from decoupled template
+     *   logic resources, if any.
+     * </p>
+     *
+     * @return the decoupled template logic cache, or <tt>null</tt> if this logic is not cached.
+     */
+    public DecoupledTemplateLogicCache getDecoupledTemplateLogicCache();
+
+}
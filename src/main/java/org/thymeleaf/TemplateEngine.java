@@ -19,15 +19,25 @@
  */
 package org.thymeleaf;
 
+import java.io.FilterOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.io.Writer;
 import java.math.BigDecimal;
 import java.math.RoundingMode;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -37,7 +47,10 @@
 import org.thymeleaf.context.IEngineContextFactory;
 import org.thymeleaf.context.StandardEngineContextFactory;
 import org.thymeleaf.dialect.IDialect;
+import org.thymeleaf.engine.OutputStreamTemplateWriter;
 import org.thymeleaf.engine.TemplateManager;
+import org.thymeleaf.engine.TemplateModel;
+import org.thymeleaf.engine.TemplateModelSnapshotStore;
 import org.thymeleaf.exceptions.TemplateEngineException;
 import org.thymeleaf.exceptions.TemplateOutputException;
 import org.thymeleaf.exceptions.TemplateProcessingException;
@@ -45,11 +58,18 @@
 import org.thymeleaf.linkbuilder.StandardLinkBuilder;
 import org.thymeleaf.messageresolver.IMessageResolver;
 import org.thymeleaf.messageresolver.StandardMessageResolver;
+import org.thymeleaf.metrics.IEngineMetricsListener;
+import org.thymeleaf.metrics.StandardEngineMetricsListener;
+import org.thymeleaf.reactive.ByteBufferPool;
+import org.thymeleaf.reactive.IPublisher;
+import org.thymeleaf.reactive.ThrottledTemplatePublisher;
 import org.thymeleaf.standard.StandardDialect;
+import org.thymeleaf.templateparser.markup.decoupled.DecoupledTemplateLogicCache;
 import org.thymeleaf.templateparser.markup.decoupled.IDecoupledTemplateLogicResolver;
 import org.thymeleaf.templateparser.markup.decoupled.StandardDecoupledTemplateLogicResolver;
 import org.thymeleaf.templateresolver.ITemplateResolver;
 import org.thymeleaf.templateresolver.StringTemplateResolver;
+import org.thymeleaf.util.EngineConfigurationUtils;
 import org.thymeleaf.util.FastStringWriter;
 import org.thymeleaf.util.LoggingUtils;
 import org.thymeleaf.util.Validate;
@@ -250,6 +270,11 @@ public class TemplateEngine implements ITemplateEngine {
     private ICacheManager cacheManager = null;
     private IEngineContextFactory engineContextFactory = null;
     private IDecoupledTemplateLogicResolver decoupledTemplateLogicResolver = null;
+    private TemplateModelSnapshotStore templateModelSnapshotStore = null;
+    private int processingHandlerPoolSize = 0;
+    private IEngineMetricsListener metricsListener = null;
+    private Executor parallelFragmentExecutor = null;
+    private DecoupledTemplateLogicCache decoupledTemplateLogicCache = new DecoupledTemplateLogicCache();
 
 
     private IEngineConfiguration configuration = null;
@@ -332,7 +357,9 @@ void initialize() {
                             new EngineConfiguration(
                                     this.templateResolvers, this.messageResolvers, this.linkBuilders,
                                     this.dialectConfigurations, this.cacheManager, this.engineContextFactory,
-                                    this.decoupledTemplateLogicResolver);
+                                    this.decoupledTemplateLogicResolver, this.templateModelSnapshotStore,
+                                    this.processingHandlerPoolSize, this.metricsListener, this.parallelFragmentExecutor,
+                                    this.decoupledTemplateLogicCache);
                     ((EngineConfiguration)this.configuration).initialize();
 
                     initializeSpecific();
@@ -805,6 +832,240 @@ public void setDecoupledTemplateLogicResolver(final IDecoupledTemplateLogicResol
         this.decoupledTemplateLogicResolver = decoupledTemplateLogicResolver;
     }
 
+
+    /**
+     * <p>
+     *   Returns the template model snapshot store in effect, if any. This store allows the engine to persist
+     *   parsed templates and reuse them after a restart without parsing them again.
+     * </p>
+     *
+     * @return the template model snapshot store, or <tt>null</tt> if none has been set.
+     * @since 3.0.3
+     */
+    public final TemplateModelSnapshotStore getTemplateModelSnapshotStore() {
+        if (this.initialized) {
+            return EngineConfigurationUtils.getTemplateModelSnapshotStore(this.configuration);
+        }
+        return this.templateModelSnapshotStore;
+    }
+
+    /**
+     * <p>
+     *   Sets the template model snapshot store ({@link TemplateModelSnapshotStore}) to be used for persisting
+     *   parsed templates. If set to null (the default), no snapshots will be used.
+     * </p>
+     * <p>
+     *   Note the snapshot store will only be used for templates that are cacheable, and only if a cache manager
+     *   providing a template cache has been set. Saving the snapshot (e.g. at shutdown, or after calling
+     *   {@link #warmUp(Collection)}) is the responsibility of the application, by calling
+     *   {@link TemplateModelSnapshotStore#save()}.
+     * </p>
+     * <p>
+     *   This operation can only be executed before processing templates for the first
+     *   time. Once a template is processed, the template engine is considered to be
+     *   <i>initialized</i>, and from then on any attempt to change its configuration
+     *   will result in an exception.
+     * </p>
+     *
+     * @param templateModelSnapshotStore the template model snapshot store to be used.
+     * @since 3.0.3
+     *
+     */
+    public void setTemplateModelSnapshotStore(final TemplateModelSnapshotStore templateModelSnapshotStore) {
+        // Can be set to null (= no snapshots)
+        checkNotInitialized();
+        this.templateModelSnapshotStore = templateModelSnapshotStore;
+    }
+
+
+
+    /**
+     * <p>
+     *   Returns the maximum amount of processing handlers that will be pooled for reuse between template
+     *   executions (see {@link #setProcessingHandlerPoolSize(int)}).
+     * </p>
+     *
+     * @return the processing handler pool size, <tt>0</tt> (the default) if pooling is disabled.
+     * @since 3.0.3
+     */
+    public final int getProcessingHandlerPoolSize() {
+        if (this.initialized) {
+            return EngineConfigurationUtils.getProcessingHandlerPoolSize(this.configuration);
+        }
+        return this.processingHandlerPoolSize;
+    }
+
+    /**
+     * <p>
+     *   Sets the maximum amount of processing handlers to be pooled for reuse between template executions.
+     *   Processing handlers are the objects in charge of executing processors during template processing,
+     *   and pooling them (along with the structure handlers and other auxiliary objects they own) can reduce the
+     *   amount of allocations per execution, which can be noticeable for very small templates or fragments
+     *   that are processed very often.
+     * </p>
+     * <p>
+     *   Handlers are reset before being pooled, and pooling is not used for throttled processing. A value of
+     *   <tt>0</tt> (the default) disables pooling. A reasonable value would be the maximum amount of threads
+     *   expected to be processing templates at the same time.
+     * </p>
+     * <p>
+     *   This operation can only be executed before processing templates for the first
+     *   time. Once a template is processed, the template engine is considered to be
+     *   <i>initialized</i>, and from then on any attempt to change its configuration
+     *   will result in an exception.
+     * </p>
+     *
+     * @param processingHandlerPoolSize the maximum amount of processing handlers to be pooled.
+     * @since 3.0.3
+     *
+     */
+    public void setProcessingHandlerPoolSize(final int processingHandlerPoolSize) {
+        Validate.isTrue(processingHandlerPoolSize >= 0, "Processing handler pool size cannot be negative");
+        checkNotInitialized();
+        this.processingHandlerPoolSize = processingHandlerPoolSize;
+    }
+
+
+
+    /**
+     * <p>
+     *   Returns the listener receiving render-time metrics from this engine, if any.
+     * </p>
+     *
+     * @return the metrics listener, or <tt>null</tt> if none has been set.
+     * @since 3.0.3
+     */
+    public final IEngineMetricsListener getMetricsListener() {
+        if (this.initialized) {
+            return EngineConfigurationUtils.getMetricsListener(this.configuration);
+        }
+        return this.metricsListener;
+    }
+
+    /**
+     * <p>
+     *   Sets the listener ({@link IEngineMetricsListener}) that will receive render-time metrics from this engine:
+     *   template resolution, template cache lookups, parsing, fragment resolution, processor executions,
+     *   expression evaluations, template processing and output size. See {@link StandardEngineMetricsListener}
+     *   for an implementation aggregating these metrics into histograms.
+     * </p>
+     * <p>
+     *   If set to null (the default), no metrics will be measured at all.
+     * </p>
+     * <p>
+     *   This operation can only be executed before processing templates for the first
+     *   time. Once a template is processed, the template engine is considered to be
+     *   <i>initialized</i>, and from then on any attempt to change its configuration
+     *   will result in an exception.
+     * </p>
+     *
+     * @param metricsListener the metrics listener to be used.
+     * @since 3.0.3
+     *
+     */
+    public void setMetricsListener(final IEngineMetricsListener metricsListener) {
+        // Can be set to null (= no metrics)
+        checkNotInitialized();
+        this.metricsListener = metricsListener;
+    }
+
+
+    /**
+     * <p>
+     *   Returns the executor used for rendering fragments marked for parallel rendering, if any.
+     * </p>
+     *
+     * @return the executor, or <tt>null</tt> if parallel fragment rendering is disabled.
+     * @since 3.0.3
+     */
+    public final Executor getParallelFragmentExecutor() {
+        if (this.initialized) {
+            return EngineConfigurationUtils.getParallelFragmentExecutor(this.configuration);
+        }
+        return this.parallelFragmentExecutor;
+    }
+
+    /**
+     * <p>
+     *   Sets the executor that will be used for rendering the fragments inserted by <tt>th:insert</tt> or
+     *   <tt>th:replace</tt> attributes in elements also marked with <tt>th:parallel</tt>.
+     * </p>
+     * <p>
+     *   Marked fragments are rendered concurrently on this executor (using a snapshot of the context variables at
+     *   the moment of insertion) while the rest of the template keeps being processed, and their output is
+     *   stitched into the template's output in document order. This can overlap the resolution of slow
+     *   (e.g. lazy, I/O-bound) variables used by different fragments. Note the objects in the context will be
+     *   accessed by several threads at the same time, so they should be thread-safe.
+     * </p>
+     * <p>
+     *   If set to null (the default), marked fragments are rendered sequentially like any other fragments. Parallel
+     *   rendering is also not applied to throttled processing, to web contexts (whose variables are held by the
+     *   request and therefore cannot be snapshotted) or to nested processing operations.
+     * </p>
+     * <p>
+     *   This operation can only be executed before processing templates for the first
+     *   time. Once a template is processed, the template engine is considered to be
+     *   <i>initialized</i>, and from then on any attempt to change its configuration
+     *   will result in an exception.
+     * </p>
+     *
+     * @param parallelFragmentExecutor the executor to be used.
+     * @since 3.0.3
+     *
+     */
+    public void setParallelFragmentExecutor(final Executor parallelFragmentExecutor) {
+        // Can be set to null (= no parallel fragment rendering)
+        checkNotInitialized();
+        this.parallelFragmentExecutor = parallelFragmentExecutor;
+    }
+
+
+    /**
+     * <p>
+     *   Returns the cache used by markup template parsers for the logic read from decoupled template
+     *   logic resources, if any.
+     * </p>
+     *
+     * @return the decoupled template logic cache, or <tt>null</tt> if this logic is not cached.
+     * @since 3.0.3
+     */
+    public final DecoupledTemplateLogicCache getDecoupledTemplateLogicCache() {
+        if (this.initialized) {
+            return EngineConfigurationUtils.getDecoupledTemplateLogicCache(this.configuration);
+        }
+        return this.decoupledTemplateLogicCache;
+    }
+
+    /**
+     * <p>
+     *   Sets the cache ({@link DecoupledTemplateLogicCache}) that markup template parsers will use for avoiding
+     *   locating and parsing decoupled template logic resources every time their templates (or fragments of them)
+     *   are parsed. This allows configuring the maximum size of this cache and the interval at which its entries
+     *   are checked for changes.
+     * </p>
+     * <p>
+     *   By default, a cache with {@link DecoupledTemplateLogicCache#DEFAULT_MAX_SIZE} and
+     *   {@link DecoupledTemplateLogicCache#DEFAULT_CHECK_INTERVAL_MS} is used. If set to null, decoupled template
+     *   logic will be located and parsed again every time. This cache is cleared along with the template cache
+     *   (see {@link #clearTemplateCache()}).
+     * </p>
+     * <p>
+     *   This operation can only be executed before processing templates for the first
+     *   time. Once a template is processed, the template engine is considered to be
+     *   <i>initialized</i>, and from then on any attempt to change its configuration
+     *   will result in an exception.
+     * </p>
+     *
+     * @param decoupledTemplateLogicCache the decoupled template logic cache to be used.
+     * @since 3.0.3
+     *
+     */
+    public void setDecoupledTemplateLogicCache(final DecoupledTemplateLogicCache decoupledTemplateLogicCache) {
+        // Can be set to null (= no caching of decoupled template logic)
+        checkNotInitialized();
+        this.decoupledTemplateLogicCache = decoupledTemplateLogicCache;
+    }
+
     
     /**
      * <p>
@@ -975,7 +1236,7 @@ public void setLinkBuilder(final ILinkBuilder linkBuilder) {
     
     /**
      * <p>
-     *   Completely clears the Template Cache.
+     *   Completely clears the Template Cache (and also the cache of decoupled template logic, if any).
      * </p>
      * <p>
      *   If this method is called before the TemplateEngine has been initialized,
@@ -1087,6 +1348,11 @@ public final void process(final TemplateSpec templateSpec, final IContext contex
             templateManager.parseAndProcess(templateSpec, context, writer);
 
             final long endNanos = System.nanoTime();
+
+            final IEngineMetricsListener metricsListener = EngineConfigurationUtils.getMetricsListener(this.configuration);
+            if (metricsListener != null) {
+                metricsListener.templateProcessed(templateSpec.getTemplate(), endNanos - startNanos);
+            }
             
             if (logger.isTraceEnabled()) {
                 logger.trace("[THYMELEAF][{}] FINISHED PROCESS AND OUTPUT OF TEMPLATE \"{}\" WITH LOCALE {}",
@@ -1138,6 +1404,43 @@ public final void process(final TemplateSpec templateSpec, final IContext contex
 
 
 
+    /**
+     * <p>
+     *   Process the specified template, writing the result as bytes to the specified {@link OutputStream}
+     *   using the specified charset.
+     * </p>
+     * <p>
+     *   Output is written by means of an {@link OutputStreamTemplateWriter}, which copies the static parts of
+     *   cached templates to the output stream already encoded, so that only dynamic text needs to be encoded at
+     *   each execution. The output stream will be flushed (but not closed) at the end of processing.
+     * </p>
+     *
+     * @param templateSpec the template spec containing the template to be resolved (usually its name only).
+     * @param context the context object, containing the variables that will be available during processing.
+     * @param outputStream the output stream the output will be written to.
+     * @param charset the charset to be used for encoding output.
+     * @since 3.0.3
+     */
+    public final void process(
+            final TemplateSpec templateSpec, final IContext context, final OutputStream outputStream, final Charset charset) {
+        Validate.notNull(outputStream, "Output Stream cannot be null");
+        Validate.notNull(charset, "Charset cannot be null");
+        if (!this.initialized) {
+            initialize();
+        }
+        final IEngineMetricsListener metricsListener = EngineConfigurationUtils.getMetricsListener(this.configuration);
+        if (metricsListener == null) {
+            process(templateSpec, context, new OutputStreamTemplateWriter(outputStream, charset));
+            return;
+        }
+        final ByteCountingOutputStream countingOutputStream = new ByteCountingOutputStream(outputStream);
+        process(templateSpec, context, new OutputStreamTemplateWriter(countingOutputStream, charset));
+        metricsListener.outputWritten(templateSpec.getTemplate(), countingOutputStream.count);
+    }
+
+
+
+
     public final IThrottledTemplateProcessor processThrottled(final String template, final IContext context) {
         return processThrottled(new TemplateSpec(template, null, null, null), context);
     }
@@ -1217,5 +1520,249 @@ public final IThrottledTemplateProcessor processThrottled(final TemplateSpec tem
 
 
 
+    /**
+     * <p>
+     *   Creates an {@link IPublisher} that will process the specified template as a stream of {@link ByteBuffer}
+     *   chunks of at most {@link ThrottledTemplatePublisher#DEFAULT_CHUNK_SIZE_IN_BYTES} bytes, processing
+     *   the template in the threads signalling demand.
+     * </p>
+     * <p>
+     *   See {@link #processReactive(TemplateSpec, IContext, Charset, int, Executor)} for details.
+     * </p>
+     *
+     * @param templateSpec the template spec containing the template to be resolved (usually its name only).
+     * @param context the context object, containing the variables that will be available during processing.
+     * @param charset the charset to be used for encoding output.
+     * @return the publisher of the output chunks.
+     * @since 3.0.3
+     */
+    public final IPublisher<ByteBuffer> processReactive(
+            final TemplateSpec templateSpec, final IContext context, final Charset charset) {
+        return processReactive(templateSpec, context, charset, ThrottledTemplatePublisher.DEFAULT_CHUNK_SIZE_IN_BYTES, null);
+    }
+
+
+    /**
+     * <p>
+     *   Creates an {@link IPublisher} that will process the specified template as a stream of {@link ByteBuffer}
+     *   chunks, honouring subscriber demand by means of an {@link IThrottledTemplateProcessor}: each requested chunk
+     *   results in processing only the part of the template needed for producing (at most) <tt>chunkSizeInBytes</tt>
+     *   bytes of output.
+     * </p>
+     * <p>
+     *   Processing will happen in tasks submitted to the specified executor only while there is outstanding
+     *   demand, so that no threads are ever blocked between chunks. Chunk buffers are obtained from a pool
+     *   (see {@link ThrottledTemplatePublisher#getBufferPool()}) to which subscribers can return them.
+     * </p>
+     *
+     * @param templateSpec the template spec containing the template to be resolved (usually its name only).
+     * @param context the context object, containing the variables that will be available during processing.
+     * @param charset the charset to be used for encoding output.
+     * @param chunkSizeInBytes the maximum size of each output chunk.
+     * @param executor the executor in which processing will happen (can be null, meaning processing will
+     *                 happen in the threads signalling demand).
+     * @return the publisher of the output chunks.
+     * @since 3.0.3
+     */
+    public final IPublisher<ByteBuffer> processReactive(
+            final TemplateSpec templateSpec, final IContext context, final Charset charset,
+            final int chunkSizeInBytes, final Executor executor) {
+        Validate.isTrue(chunkSizeInBytes > 0, "Chunk size must be greater than zero");
+        return new ThrottledTemplatePublisher(
+                this, templateSpec, context, charset,
+                new ByteBufferPool(chunkSizeInBytes, ThrottledTemplatePublisher.DEFAULT_MAX_POOLED_BUFFERS), executor);
+    }
+
+
+
+
+    /**
+     * <p>
+     *   Warms up the specified templates by parsing them ahead of time (in the calling thread), so that the
+     *   template cache and the expression cache are already populated when they are first processed.
+     * </p>
+     * <p>
+     *   See {@link #warmUp(Collection, Executor)} for details.
+     * </p>
+     *
+     * @param templateSpecs the specifications of the templates to be warmed up.
+     * @return a report containing parse times and failures for each template.
+     * @since 3.0.3
+     */
+    public final TemplateWarmUpReport warmUp(final Collection<TemplateSpec> templateSpecs) {
+        return warmUp(templateSpecs, null);
+    }
+
+
+    /**
+     * <p>
+     *   Warms up the specified templates by parsing them ahead of time, so that the template cache and the
+     *   expression cache are already populated when they are first processed (e.g. before an application
+     *   starts receiving traffic).
+     * </p>
+     * <p>
+     *   Each template is resolved and parsed exactly as it would be for being processed, and the resulting
+     *   template model is put into the template cache (if the template is cacheable). Then, the values of
+     *   all the attributes in the template that will be executed by the Standard Dialect processors as
+     *   expressions are parsed and put into the expression cache.
+     * </p>
+     * <p>
+     *   Templates will be warmed up in parallel using the specified executor, and this method will return once
+     *   all of them have been processed. If the executor is null, templates will be warmed up sequentially
+     *   in the calling thread.
+     * </p>
+     * <p>
+     *   Errors will not be thrown, but reported in the returned object instead.
+     * </p>
+     *
+     * @param templateSpecs the specifications of the templates to be warmed up.
+     * @param executor the executor to be used for warming up templates in parallel (can be null).
+     * @return a report containing parse times and failures for each template.
+     * @since 3.0.3
+     */
+    public final TemplateWarmUpReport warmUp(final Collection<TemplateSpec> templateSpecs, final Executor executor) {
+
+        if (!this.initialized) {
+            initialize();
+        }
+
+        Validate.notNull(templateSpecs, "Template Specifications cannot be null");
+        Validate.containsNoNulls(templateSpecs, "Template Specifications cannot contain nulls");
+
+        final long startNanos = System.nanoTime();
+
+        final TemplateSpec[] specs = templateSpecs.toArray(new TemplateSpec[templateSpecs.size()]);
+        final TemplateWarmUpResult[] results = new TemplateWarmUpResult[specs.length];
+
+        if (executor == null) {
+
+            for (int i = 0; i < specs.length; i++) {
+                results[i] = warmUpTemplate(specs[i]);
+            }
+
+        } else {
+
+            final CountDownLatch latch = new CountDownLatch(specs.length);
+            final AtomicReferenceArray<TemplateWarmUpResult> asyncResults =
+                    new AtomicReferenceArray<TemplateWarmUpResult>(specs.length);
+
+            for (int i = 0; i < specs.length; i++) {
+                final int index = i;
+                final Runnable warmUpTask = new Runnable() {
+                    public void run() {
+                        try {
+                            asyncResults.set(index, warmUpTemplate(specs[index]));
+                        } catch (final Throwable t) {
+                            // Errors (exceptions are already reported by warmUpTemplate) would otherwise be lost in
+                            // the executor's thread, so we report them as failed results too
+                            logger.warn(String.format("[THYMELEAF][%s] Error warming up template \"%s\": %s", new Object[] {TemplateEngine.threadIndex(), specs[index], t.getMessage()}), t);
+                            asyncResults.set(index, new TemplateWarmUpResult(specs[index], 0L, 0L, 0, t));
+                        } finally {
+                            latch.countDown();
+                        }
+                    }
+                };
+                try {
+                    executor.execute(warmUpTask);
+                } catch (final RejectedExecutionException e) {
+                    // The executor cannot take more tasks: execute it in the calling thread
+                    warmUpTask.run();
+                }
+            }
+
+            try {
+                latch.await();
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new TemplateProcessingException("Interrupted while waiting for templates to be warmed up", e);
+            }
+
+            for (int i = 0; i < specs.length; i++) {
+                results[i] = asyncResults.get(i);
+            }
+
+        }
+
+        final TemplateWarmUpReport report =
+                new TemplateWarmUpReport(Arrays.asList(results), System.nanoTime() - startNanos);
+
+        if (logger.isDebugEnabled()) {
+            logger.debug("[THYMELEAF][{}] TEMPLATE WARM-UP FINISHED: {}", TemplateEngine.threadIndex(), report);
+        }
+
+        return report;
+
+    }
+
+
+    private TemplateWarmUpResult warmUpTemplate(final TemplateSpec templateSpec) {
+
+        final TemplateManager templateManager = this.configuration.getTemplateManager();
+
+        final long startNanos = System.nanoTime();
+        long parseTimeNanos = 0L;
+
+        try {
+
+            final TemplateModel templateModel = templateManager.parseAndCache(templateSpec);
+            final long parseEndNanos = System.nanoTime();
+            parseTimeNanos = parseEndNanos - startNanos;
+
+            final int parsedExpressionCount = templateManager.preParseExpressions(templateModel);
+            final long expressionParseTimeNanos = System.nanoTime() - parseEndNanos;
+
+            if (timerLogger.isTraceEnabled()) {
+                timerLogger.trace(
+                        "[THYMELEAF][{}][{}] TEMPLATE \"{}\" WARMED UP: PARSED IN {} nanoseconds, {} EXPRESSIONS PARSED IN {} nanoseconds",
+                        new Object[]{
+                                TemplateEngine.threadIndex(), LoggingUtils.loggifyTemplateName(templateSpec.getTemplate()),
+                                templateSpec, Long.valueOf(parseTimeNanos),
+                                Integer.valueOf(parsedExpressionCount), Long.valueOf(expressionParseTimeNanos)});
+            }
+
+            return new TemplateWarmUpResult(
+                    templateSpec, parseTimeNanos, expressionParseTimeNanos, parsedExpressionCount, null);
+
+        } catch (final RuntimeException e) {
+
+            logger.warn(String.format("[THYMELEAF][%s] Exception warming up template \"%s\": %s", new Object[] {TemplateEngine.threadIndex(), templateSpec, e.getMessage()}), e);
+            if (parseTimeNanos == 0L) {
+                parseTimeNanos = System.nanoTime() - startNanos;
+            }
+            return new TemplateWarmUpResult(templateSpec, parseTimeNanos, 0L, 0, e);
+
+        }
+
+    }
+
+
+
+
+    /*
+     * Used for measuring the output size (in bytes) when a metrics listener has been set.
+     */
+    private static final class ByteCountingOutputStream extends FilterOutputStream {
+
+        private long count = 0L;
+
+        ByteCountingOutputStream(final OutputStream outputStream) {
+            super(outputStream);
+        }
+
+        @Override
+        public void write(final int b) throws IOException {
+            this.out.write(b);
+            this.count++;
+        }
+
+        @Override
+        public void write(final byte[] b, final int off, final int len) throws IOException {
+            // Overridden because the FilterOutputStream implementation would write byte by byte
+            this.out.write(b, off, len);
+            this.count += len;
+        }
+
+    }
+
 
 }
@@ -0,0 +1,112 @@
+/*
+ * =============================================================================
+ *
+ *   Copyright (c) 2011-2016, The THYMELEAF team (http://www.thymeleaf.org)
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ * =============================================================================
+ */
+package org.thymeleaf;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * <p>
+ *   Report on the warm-up of a set of templates, as returned by {@link TemplateEngine#warmUp(java.util.Collection)}
+ *   and {@link TemplateEngine#warmUp(java.util.Collection, java.util.concurrent.Executor)}.
+ * </p>
+ * <p>
+ *   Objects of this class are <strong>thread-safe</strong>.
+ * </p>
+ *
+ * @author Daniel Fern&aacute;ndez
+ *
+ * @since 3.0.3
+ *
+ */
+public final class TemplateWarmUpReport {
+
+    private final List<TemplateWarmUpResult> results;
+    private final List<TemplateWarmUpResult> failures;
+    private final long totalTimeNanos;
+
+
+    TemplateWarmUpReport(final List<TemplateWarmUpResult> results, final long totalTimeNanos) {
+        super();
+        this.results = Collections.unmodifiableList(new ArrayList<TemplateWarmUpResult>(results));
+        final List<TemplateWarmUpResult> failureList = new ArrayList<TemplateWarmUpResult>(2);
+        for (final TemplateWarmUpResult result : results) {
+            if (!result.isSuccessful()) {
+                failureList.add(result);
+            }
+        }
+        this.failures = Collections.unmodifiableList(failureList);
+        this.totalTimeNanos = totalTimeNanos;
+    }
+
+
+    /**
+     * <p>
+     *   Returns the results for every template, in the same order in which templates were specified.
+     * </p>
+     *
+     * @return the list of results.
+     */
+    public List<TemplateWarmUpResult> getResults() {
+        return this.results;
+    }
+
+    /**
+     * <p>
+     *   Returns the results for the templates that could not be warmed up.
+     * </p>
+     *
+     * @return the list of failed results (empty if there were no failures).
+     */
+    public List<TemplateWarmUpResult> getFailures() {
+        return this.failures;
+    }
+
+    /**
+     * <p>
+     *   Returns whether all templates were warmed up without errors.
+     * </p>
+     *
+     * @return true if there were no failures, false if not.
+     */
+    public boolean isSuccessful() {
+        return this.failures.isEmpty();
+    }
+
+    /**
+     * <p>
+     *   Returns the total (wall-clock) time spent warming up all templates, in nanoseconds.
+     * </p>
+     *
+     * @return the total time in nanoseconds.
+     */
+    public long getTotalTimeNanos() {
+        return this.totalTimeNanos;
+    }
+
+
+    @Override
+    public String toString() {
+        return this.results.size() + " templates warmed up in " + this.totalTimeNanos + "ns (" +
+                this.failures.size() + " failures)";
+    }
+
+}
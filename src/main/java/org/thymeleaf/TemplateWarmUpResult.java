@@ -0,0 +1,139 @@
+/*
+ * =============================================================================
+ *
+ *   Copyright (c) 2011-2016, The THYMELEAF team (http://www.thymeleaf.org)
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ * =============================================================================
+ */
+package org.thymeleaf;
+
+/**
+ * <p>
+ *   Result of warming up a single template by means of {@link TemplateEngine#warmUp(java.util.Collection)}
+ *   or {@link TemplateEngine#warmUp(java.util.Collection, java.util.concurrent.Executor)}.
+ * </p>
+ * <p>
+ *   Objects of this class are <strong>thread-safe</strong>.
+ * </p>
+ *
+ * @author Daniel Fern&aacute;ndez
+ *
+ * @since 3.0.3
+ *
+ */
+public final class TemplateWarmUpResult {
+
+    private final TemplateSpec templateSpec;
+    private final long parseTimeNanos;
+    private final long expressionParseTimeNanos;
+    private final int parsedExpressionCount;
+    private final Throwable failure;
+
+
+    TemplateWarmUpResult(
+            final TemplateSpec templateSpec,
+            final long parseTimeNanos, final long expressionParseTimeNanos, final int parsedExpressionCount,
+            final Throwable failure) {
+        super();
+        this.templateSpec = templateSpec;
+        this.parseTimeNanos = parseTimeNanos;
+        this.expressionParseTimeNanos = expressionParseTimeNanos;
+        this.parsedExpressionCount = parsedExpressionCount;
+        this.failure = failure;
+    }
+
+
+    /**
+     * <p>
+     *   Returns the specification of the template that was warmed up.
+     * </p>
+     *
+     * @return the template specification.
+     */
+    public TemplateSpec getTemplateSpec() {
+        return this.templateSpec;
+    }
+
+    /**
+     * <p>
+     *   Returns the time spent resolving and parsing the template (or obtaining it from the template cache,
+     *   if it was already there), in nanoseconds.
+     * </p>
+     *
+     * @return the parse time in nanoseconds.
+     */
+    public long getParseTimeNanos() {
+        return this.parseTimeNanos;
+    }
+
+    /**
+     * <p>
+     *   Returns the time spent parsing the expressions in the attributes of the template, in nanoseconds.
+     * </p>
+     *
+     * @return the expression parse time in nanoseconds.
+     */
+    public long getExpressionParseTimeNanos() {
+        return this.expressionParseTimeNanos;
+    }
+
+    /**
+     * <p>
+     *   Returns the number of attribute values that were parsed as expressions.
+     * </p>
+     *
+     * @return the number of parsed expressions.
+     */
+    public int getParsedExpressionCount() {
+        return this.parsedExpressionCount;
+    }
+
+    /**
+     * <p>
+     *   Returns whether the template was correctly warmed up.
+     * </p>
+     *
+     * @return true if no errors happened, false if not.
+     */
+    public boolean isSuccessful() {
+        return this.failure == null;
+    }
+
+    /**
+     * <p>
+     *   Returns the exception raised while warming up the template, if any.
+     * </p>
+     *
+     * @return the exception raised, or null if warm-up was successful.
+     */
+    public Throwable getFailure() {
+        return this.failure;
+    }
+
+
+    @Override
+    public String toString() {
+        final StringBuilder strBuilder = new StringBuilder();
+        strBuilder.append(this.templateSpec);
+        strBuilder.append(" parsed in ").append(this.parseTimeNanos).append("ns, ");
+        strBuilder.append(this.parsedExpressionCount).append(" expressions parsed in ");
+        strBuilder.append(this.expressionParseTimeNanos).append("ns");
+        if (this.failure != null) {
+            strBuilder.append(", FAILED: ").append(this.failure.getMessage());
+        }
+        return strBuilder.toString();
+    }
+
+}
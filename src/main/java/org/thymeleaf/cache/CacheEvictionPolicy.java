@@ -0,0 +1,51 @@
+/*
+ * =============================================================================
+ *
+ *   Copyright (c) 2011-2016, The THYMELEAF team (http://www.thymeleaf.org)
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ * =============================================================================
+ */
+package org.thymeleaf.cache;
+
+/**
+ * <p>
+ *   Eviction policies that can be selected for the caches created by {@link StandardCacheManager}
+ *   when they are configured with a maximum size.
+ * </p>
+ *
+ * @author Daniel Fern&aacute;ndez
+ *
+ * @since 3.0.3
+ *
+ */
+public enum CacheEvictionPolicy {
+
+    /**
+     * <p>
+     *   Entries are evicted in insertion order (first in, first out). This is the policy applied by
+     *   {@link StandardCache}, and the default one.
+     * </p>
+     */
+    FIFO,
+
+    /**
+     * <p>
+     *   Entries are admitted and evicted depending on their estimated access frequency and recency
+     *   (<i>W-TinyLFU</i>). This is the policy applied by {@link TinyLFUCache}.
+     * </p>
+     */
+    TINY_LFU
+
+}
@@ -0,0 +1,104 @@
+/*
+ * =============================================================================
+ *
+ *   Copyright (c) 2011-2016, The THYMELEAF team (http://www.thymeleaf.org)
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ * =============================================================================
+ */
+package org.thymeleaf.cache;
+
+/**
+ *
+ * @author Daniel Fern&aacute;ndez
+ *
+ * @since 3.0.3
+ *
+ */
+final class CacheStatistics implements ICacheStatistics {
+
+    private final String cacheName;
+    private final int size;
+    private final long putCount;
+    private final long hitCount;
+    private final long missCount;
+    private final long evictionCount;
+    private final long loadCount;
+    private final long totalLoadTimeNanos;
+    private final long weightedSize;
+
+
+    CacheStatistics(
+            final String cacheName, final int size,
+            final long putCount, final long hitCount, final long missCount, final long evictionCount,
+            final long loadCount, final long totalLoadTimeNanos, final long weightedSize) {
+        super();
+        this.cacheName = cacheName;
+        this.size = size;
+        this.putCount = putCount;
+        this.hitCount = hitCount;
+        this.missCount = missCount;
+        this.evictionCount = evictionCount;
+        this.loadCount = loadCount;
+        this.totalLoadTimeNanos = totalLoadTimeNanos;
+        this.weightedSize = weightedSize;
+    }
+
+
+    public String getCacheName() {
+        return this.cacheName;
+    }
+
+    public int getSize() {
+        return this.size;
+    }
+
+    public long getPutCount() {
+        return this.putCount;
+    }
+
+    public long getHitCount() {
+        return this.hitCount;
+    }
+
+    public long getMissCount() {
+        return this.missCount;
+    }
+
+    public long getEvictionCount() {
+        return this.evictionCount;
+    }
+
+    public long getLoadCount() {
+        return this.loadCount;
+    }
+
+    public long getTotalLoadTimeNanos() {
+        return this.totalLoadTimeNanos;
+    }
+
+    public long getWeightedSize() {
+        return this.weightedSize;
+    }
+
+
+    @Override
+    public String toString() {
+        return "[" + this.cacheName + "] size: " + this.size + ", puts: " + this.putCount +
+                ", hits: " + this.hitCount + ", misses: " + this.missCount + ", evictions: " + this.evictionCount +
+                ", loads: " + this.loadCount + ", total load time (ns): " + this.totalLoadTimeNanos +
+                ", weighted size: " + this.weightedSize;
+    }
+
+}
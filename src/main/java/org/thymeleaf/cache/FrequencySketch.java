@@ -0,0 +1,133 @@
+/*
+ * =============================================================================
+ *
+ *   Copyright (c) 2011-2016, The THYMELEAF team (http://www.thymeleaf.org)
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ * =============================================================================
+ */
+package org.thymeleaf.cache;
+
+/*
+ * Probabilistic frequency estimator (a Count-Min sketch of 4-bit counters) used by TinyLFUCache in order to
+ * decide which entries should be admitted into or evicted from the cache based on their access frequency.
+ *
+ * Each long in the table holds sixteen 4-bit counters, and each item is mapped to four of these counters (one
+ * per hash function) in four different longs. The estimated frequency of an item is the minimum of its four
+ * counters. When the number of recorded increments reaches the sample size, all counters are halved so that
+ * the sketch ages old accesses and adapts to changes in the access pattern.
+ *
+ * Not thread-safe: it is only accessed while holding the eviction lock of the cache using it.
+ *
+ * @author Daniel Fernandez
+ * @since 3.0.3
+ *
+ */
+final class FrequencySketch {
+
+    private static final long[] SEEDS = new long[] {
+            0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L };
+    private static final long RESET_MASK = 0x7777777777777777L;
+    private static final long ONE_MASK = 0x1111111111111111L;
+    private static final int MAXIMUM_CAPACITY = 1 << 30;
+
+    private final long[] table;
+    private final int tableMask;
+    private final int sampleSize;
+    private int size;
+
+
+
+    FrequencySketch(final int maximumSize) {
+
+        super();
+
+        final int maximum = Math.min(Math.max(maximumSize, 8), MAXIMUM_CAPACITY);
+
+        int capacity = 1;
+        while (capacity < maximum) {
+            capacity <<= 1;
+        }
+
+        this.table = new long[capacity];
+        this.tableMask = capacity - 1;
+        this.sampleSize = (maximum > Integer.MAX_VALUE / 10 ? Integer.MAX_VALUE : 10 * maximum);
+        this.size = 0;
+
+    }
+
+
+
+
+    int frequency(final Object item) {
+        final int hash = spread(item.hashCode());
+        final int start = (hash & 3) << 2;
+        int frequency = Integer.MAX_VALUE;
+        for (int i = 0; i < 4; i++) {
+            final int index = indexOf(hash, i);
+            final int count = (int) ((this.table[index] >>> ((start + i) << 2)) & 0xfL);
+            frequency = Math.min(frequency, count);
+        }
+        return frequency;
+    }
+
+
+    void increment(final Object item) {
+        final int hash = spread(item.hashCode());
+        final int start = (hash & 3) << 2;
+        boolean added = false;
+        for (int i = 0; i < 4; i++) {
+            added |= incrementAt(indexOf(hash, i), start + i);
+        }
+        if (added && ++this.size == this.sampleSize) {
+            reset();
+        }
+    }
+
+
+    private boolean incrementAt(final int index, final int counter) {
+        final int offset = counter << 2;
+        final long mask = (0xfL << offset);
+        if ((this.table[index] & mask) != mask) {
+            this.table[index] += (1L << offset);
+            return true;
+        }
+        return false;
+    }
+
+
+    private void reset() {
+        int oddCount = 0;
+        for (int i = 0; i < this.table.length; i++) {
+            oddCount += Long.bitCount(this.table[i] & ONE_MASK);
+            this.table[i] = (this.table[i] >>> 1) & RESET_MASK;
+        }
+        this.size = (this.size >>> 1) - (oddCount >>> 2);
+    }
+
+
+    private int indexOf(final int item, final int i) {
+        long hash = (item + SEEDS[i]) * SEEDS[i];
+        hash += (hash >>> 32);
+        return ((int) hash) & this.tableMask;
+    }
+
+
+    private static int spread(final int x) {
+        int h = ((x >>> 16) ^ x) * 0x45d9f3b;
+        h = ((h >>> 16) ^ h) * 0x45d9f3b;
+        return (h >>> 16) ^ h;
+    }
+
+}
@@ -0,0 +1,54 @@
+/*
+ * =============================================================================
+ *
+ *   Copyright (c) 2011-2016, The THYMELEAF team (http://www.thymeleaf.org)
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ * =============================================================================
+ */
+package org.thymeleaf.cache;
+
+/**
+ * <p>
+ *   Computes the <i>weight</i> of the entries living in an {@link ICache} object, so that caches can
+ *   be bounded by the total weight of their entries (normally an approximation of their retained heap size
+ *   in bytes) instead of (or besides) their number of entries.
+ * </p>
+ * <p>
+ *   Weights are computed only once, when entries are put into the cache, so implementations should not
+ *   depend on any mutable state of the cached values.
+ * </p>
+ *
+ * @author Daniel Fern&aacute;ndez
+ *
+ * @since 3.0.3
+ *
+ * @param <K> The type of the cache map keys
+ * @param <V> The type of the cache map values
+ */
+public interface ICacheEntryWeigher<K,V> {
+
+    /**
+     * <p>
+     *   Returns the weight of a cache entry. Weights cannot be negative, and a weight of zero means
+     *   the entry will never be evicted because of the weight limits of the cache.
+     * </p>
+     *
+     * @param key the key of the entry.
+     * @param value the value of the entry.
+     * @return the weight of the entry, which must be &gt;= 0.
+     */
+    public int weigh(final K key, final V value);
+
+}
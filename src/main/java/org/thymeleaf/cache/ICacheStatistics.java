@@ -0,0 +1,124 @@
+/*
+ * =============================================================================
+ *
+ *   Copyright (c) 2011-2016, The THYMELEAF team (http://www.thymeleaf.org)
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ * =============================================================================
+ */
+package org.thymeleaf.cache;
+
+/**
+ * <p>
+ *   Statistics of a cache object, as reported by caches implementing {@link IMonitoredCache}.
+ * </p>
+ * <p>
+ *   Objects implementing this interface are normally <i>snapshots</i> of the state of a cache at a specific
+ *   moment, so their values will not change after being obtained from the cache.
+ * </p>
+ *
+ * @author Daniel Fern&aacute;ndez
+ *
+ * @since 3.0.3
+ *
+ */
+public interface ICacheStatistics {
+
+    /**
+     * <p>
+     *   Returns the name of the cache these statistics refer to.
+     * </p>
+     *
+     * @return the name of the cache.
+     */
+    public String getCacheName();
+
+    /**
+     * <p>
+     *   Returns the number of entries in the cache.
+     * </p>
+     *
+     * @return the number of entries.
+     */
+    public int getSize();
+
+    /**
+     * <p>
+     *   Returns the number of times a value was inserted into the cache.
+     * </p>
+     *
+     * @return the number of puts.
+     */
+    public long getPutCount();
+
+    /**
+     * <p>
+     *   Returns the number of times a valid value was found in the cache for a requested key.
+     * </p>
+     *
+     * @return the number of hits.
+     */
+    public long getHitCount();
+
+    /**
+     * <p>
+     *   Returns the number of times no (valid) value was found in the cache for a requested key.
+     * </p>
+     *
+     * @return the number of misses.
+     */
+    public long getMissCount();
+
+    /**
+     * <p>
+     *   Returns the number of entries that were removed from the cache by its eviction policy in order
+     *   to keep it within its configured size limits. Entries explicitly removed or found to be invalid
+     *   are not considered evictions.
+     * </p>
+     *
+     * @return the number of evictions.
+     */
+    public long getEvictionCount();
+
+    /**
+     * <p>
+     *   Returns the number of load operations (i.e. computations of values that were not found in the
+     *   cache) reported to the cache.
+     * </p>
+     *
+     * @return the number of loads.
+     */
+    public long getLoadCount();
+
+    /**
+     * <p>
+     *   Returns the total time spent (in nanoseconds) in the load operations reported to the cache.
+     * </p>
+     *
+     * @return the total load time in nanoseconds.
+     */
+    public long getTotalLoadTimeNanos();
+
+    /**
+     * <p>
+     *   Returns the current total weight of the entries in the cache, as computed by its
+     *   {@link ICacheEntryWeigher} (normally, their estimated retained heap size in bytes). Will be zero
+     *   if the cache has no weigher.
+     * </p>
+     *
+     * @return the total weight of the cache entries.
+     */
+    public long getWeightedSize();
+
+}
@@ -0,0 +1,59 @@
+/*
+ * =============================================================================
+ *
+ *   Copyright (c) 2011-2016, The THYMELEAF team (http://www.thymeleaf.org)
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ * =============================================================================
+ */
+package org.thymeleaf.cache;
+
+/**
+ * <p>
+ *   Interface to be implemented by {@link ICache} objects able to report statistics about their
+ *   usage (hits, misses, evictions, load times...).
+ * </p>
+ * <p>
+ *   Code computing the values to be put into a cache (e.g. the template manager when parsing templates)
+ *   can use {@link #recordLoad(long)} in order to report the time spent in such computations.
+ * </p>
+ *
+ * @author Daniel Fern&aacute;ndez
+ *
+ * @since 3.0.3
+ *
+ * @param <K> the type of the cache keys
+ * @param <V> the type of the cache values
+ */
+public interface IMonitoredCache<K, V> extends ICache<K, V> {
+
+    /**
+     * <p>
+     *   Returns a snapshot of the current statistics of this cache.
+     * </p>
+     *
+     * @return the cache statistics.
+     */
+    public ICacheStatistics getStatistics();
+
+    /**
+     * <p>
+     *   Reports a load operation, i.e. the computation of a value that was not found in the cache.
+     * </p>
+     *
+     * @param loadTimeNanos the time spent in the load operation, in nanoseconds.
+     */
+    public void recordLoad(final long loadTimeNanos);
+
+}
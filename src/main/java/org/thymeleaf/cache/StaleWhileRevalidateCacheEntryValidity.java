@@ -0,0 +1,199 @@
+/*
+ * =============================================================================
+ *
+ *   Copyright (c) 2011-2016, The THYMELEAF team (http://www.thymeleaf.org)
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ * =============================================================================
+ */
+package org.thymeleaf.cache;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * <p>
+ *   Implementation of {@link ICacheEntryValidity} that uses a TTL (time-to-live) expressed in
+ *   milliseconds, but which (unlike {@link TTLCacheEntryValidity}) does not make cache entries invalid
+ *   once their TTL expires. Instead, expired entries keep being served from cache while they are
+ *   <em>revalidated</em> in the background.
+ * </p>
+ * <p>
+ *   Revalidation is performed by the {@link org.thymeleaf.engine.TemplateManager}, which only lets one
+ *   revalidation start per entry (see {@link #startRevalidation()}). It re-resolves the template and skips
+ *   re-parsing it if its resource has not changed since it was parsed (see
+ *   {@link #getResourceFingerprint()}), in which case it simply renews this validity. Otherwise, the newly
+ *   parsed template replaces the expired one in cache.
+ * </p>
+ * <p>
+ *   Objects of this class are mutable and thread-safe.
+ * </p>
+ *
+ * @author Daniel Fern&aacute;ndez
+ *
+ * @since 3.0.3
+ *
+ */
+public class StaleWhileRevalidateCacheEntryValidity
+        implements ICacheEntryValidity {
+
+    private final long cacheTTLMs;
+    private volatile long validationTimeInMillis;
+    private volatile boolean invalidated = false;
+    private final AtomicBoolean revalidating = new AtomicBoolean(false);
+
+    private volatile boolean resourceFingerprintKnown = false;
+    private volatile long resourceFingerprint = 0L;
+
+
+    /**
+     * <p>
+     *   Creates a new instance of this validity implementation.
+     * </p>
+     *
+     * @param cacheTTLMs the TTL after which the entry will be revalidated.
+     */
+    public StaleWhileRevalidateCacheEntryValidity(final long cacheTTLMs) {
+        super();
+        this.cacheTTLMs = cacheTTLMs;
+        this.validationTimeInMillis = System.currentTimeMillis();
+    }
+
+
+    /**
+     * <p>
+     *   Returns the TTL in milliseconds after which entries will be revalidated.
+     * </p>
+     *
+     * @return the TTL in milliseconds
+     */
+    public long getCacheTTLMs() {
+        return this.cacheTTLMs;
+    }
+
+
+    /**
+     * <p>
+     *   Returns true. Templates are always considered cacheable using this
+     *   validity implementation.
+     * </p>
+     *
+     * @return true
+     */
+    public boolean isCacheable() {
+        return true;
+    }
+
+
+    /**
+     * <p>
+     *   Returns whether the cache entry can still be used. Entries are considered valid (even if
+     *   their TTL has expired) unless revalidation has determined they cannot be used anymore
+     *   (see {@link #invalidate()}).
+     * </p>
+     *
+     * @return whether the entry is still valid.
+     */
+    public boolean isCacheStillValid() {
+        return !this.invalidated;
+    }
+
+
+    /**
+     * <p>
+     *   Returns whether the TTL has expired since the entry was last (re)validated, and therefore
+     *   the entry should be revalidated.
+     * </p>
+     *
+     * @return whether revalidation is needed.
+     */
+    public boolean isRevalidationNeeded() {
+        return !this.invalidated &&
+                (System.currentTimeMillis() - this.validationTimeInMillis) > this.cacheTTLMs;
+    }
+
+
+    /**
+     * <p>
+     *   Tries to start revalidation of the entry. Only one revalidation can be in progress at a time.
+     * </p>
+     *
+     * @return true if the caller should revalidate the entry, false if a revalidation is already in progress.
+     */
+    public boolean startRevalidation() {
+        return this.revalidating.compareAndSet(false, true);
+    }
+
+
+    /**
+     * <p>
+     *   Signals that revalidation found the entry to be still valid, which renews its TTL.
+     * </p>
+     */
+    public void revalidated() {
+        this.validationTimeInMillis = System.currentTimeMillis();
+        this.revalidating.set(false);
+    }
+
+
+    /**
+     * <p>
+     *   Makes the entry invalid, so that it is removed from cache on its next retrieval. This is used
+     *   when revalidation fails (e.g. the template does not exist anymore), so that errors are reported
+     *   when the template is resolved again.
+     * </p>
+     */
+    public void invalidate() {
+        this.invalidated = true;
+        this.revalidating.set(false);
+    }
+
+
+    /**
+     * <p>
+     *   Returns whether a fingerprint of the template resource was recorded when the entry was parsed.
+     * </p>
+     *
+     * @return whether the resource fingerprint is known.
+     */
+    public boolean hasResourceFingerprint() {
+        return this.resourceFingerprintKnown;
+    }
+
+
+    /**
+     * <p>
+     *   Returns the fingerprint of the template resource (computed from its last modification date and length
+     *   or, if these are not available, from its contents) recorded when the entry was parsed.
+     * </p>
+     *
+     * @return the resource fingerprint.
+     */
+    public long getResourceFingerprint() {
+        return this.resourceFingerprint;
+    }
+
+
+    /**
+     * <p>
+     *   Records the fingerprint of the template resource. Called by the engine when parsing the template.
+     * </p>
+     *
+     * @param resourceFingerprint the resource fingerprint.
+     */
+    public void setResourceFingerprint(final long resourceFingerprint) {
+        this.resourceFingerprint = resourceFingerprint;
+        this.resourceFingerprintKnown = true;
+    }
+
+}
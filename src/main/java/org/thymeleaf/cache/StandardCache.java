@@ -20,10 +20,13 @@
 package org.thymeleaf.cache;
 
 import java.lang.ref.SoftReference;
-import java.util.Arrays;
+import java.util.Iterator;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 
 import org.slf4j.Logger;
@@ -47,14 +50,16 @@
     
     private static final long REPORT_INTERVAL = 300000L; // 5 minutes
     private static final String REPORT_FORMAT = 
-            "[THYMELEAF][*][*][*][CACHE_REPORT] %8s elements | %12s puts | %12s gets | %12s hits | %12s misses - [%s]";
+            "[THYMELEAF][*][*][*][CACHE_REPORT] %8s elements | %12s weight | %12s puts | %12s gets | %12s hits | %12s misses - [%s]";
     private volatile long lastExecution = System.currentTimeMillis();
     
     private final String name;
     private final boolean useSoftReferences;
     private final int maxSize;
+    private final long maxWeight;
     private final CacheDataContainer<K,V> dataContainer;
     private final ICacheEntryValidityChecker<? super K, ? super V> entryValidityChecker;
+    private final ICacheEntryWeigher<? super K, ? super V> weigher;
 
     private final boolean traceExecution;
     private final Logger logger;
@@ -90,23 +95,56 @@ public StandardCache(final String name, final boolean useSoftReferences,
     public StandardCache(final String name, final boolean useSoftReferences, 
             final int initialCapacity, final int maxSize, final ICacheEntryValidityChecker<? super K, ? super V> entryValidityChecker, 
             final Logger logger) {
+        this(name, useSoftReferences, initialCapacity, maxSize, -1L, null, entryValidityChecker, logger);
+    }
+
+    /**
+     * <p>
+     *   Creates a cache that can be bounded by the total weight of its entries (as computed by the specified
+     *   <tt>weigher</tt>) besides (or instead of) by their number. When both limits are established, entries
+     *   are evicted (in insertion order) until both are honoured.
+     * </p>
+     * <p>
+     *   A weigher can be specified without establishing a maximum weight, in which case weights are only
+     *   computed for reporting (see {@link #getWeightedSize()}).
+     * </p>
+     *
+     * @param name the name of the cache.
+     * @param useSoftReferences whether cache values should be referenced by means of soft references.
+     * @param initialCapacity the initial capacity of the cache.
+     * @param maxSize the maximum number of entries, or -1 for no limit.
+     * @param maxWeight the maximum total weight of the entries, or -1 for no limit.
+     * @param weigher the weigher for the cache entries (required if a maximum weight is established).
+     * @param entryValidityChecker the validity checker for cache entries (might be null).
+     * @param logger the logger to be used (might be null).
+     * @since 3.0.3
+     */
+    public StandardCache(final String name, final boolean useSoftReferences,
+            final int initialCapacity, final int maxSize,
+            final long maxWeight, final ICacheEntryWeigher<? super K, ? super V> weigher,
+            final ICacheEntryValidityChecker<? super K, ? super V> entryValidityChecker,
+            final Logger logger) {
         
         super();
 
         Validate.notEmpty(name, "Name cannot be null or empty");
         Validate.isTrue(initialCapacity > 0, "Initial capacity must be > 0");
         Validate.isTrue(maxSize != 0, "Cache max size must be either -1 (no limit) or > 0");
+        Validate.isTrue(maxWeight != 0L, "Cache max weight must be either -1 (no limit) or > 0");
+        Validate.isTrue(maxWeight < 0L || weigher != null, "A weigher must be specified if cache max weight is set");
         
         this.name = name;
         this.useSoftReferences = useSoftReferences;
         this.maxSize = maxSize;
+        this.maxWeight = maxWeight;
         this.entryValidityChecker = entryValidityChecker;
+        this.weigher = weigher;
         
         this.logger = logger;
         this.traceExecution = (logger != null && logger.isTraceEnabled());
         
         this.dataContainer = 
-                new CacheDataContainer<K,V>(this.name, initialCapacity, maxSize, this.traceExecution, this.logger);
+                new CacheDataContainer<K,V>(this.name, initialCapacity, maxSize, maxWeight, this.traceExecution, this.logger);
         
         this.getCount = new AtomicLong(0);
         this.putCount = new AtomicLong(0);
@@ -114,12 +152,12 @@ public StandardCache(final String name, final boolean useSoftReferences,
         this.missCount = new AtomicLong(0);
 
         if (this.logger != null) {
-            if (this.maxSize < 0) {
+            if (this.maxSize < 0 && this.maxWeight < 0L) {
                 this.logger.trace("[THYMELEAF][CACHE_INITIALIZE] Initializing cache {}. Soft references {}.",
                         this.name, (this.useSoftReferences? "are used" : "not used"));
             } else {
-                this.logger.trace("[THYMELEAF][CACHE_INITIALIZE] Initializing cache {}. Max size: {}. Soft references {}.",
-                        new Object[] {this.name, Integer.valueOf(this.maxSize), (this.useSoftReferences? "are used" : "not used")});
+                this.logger.trace("[THYMELEAF][CACHE_INITIALIZE] Initializing cache {}. Max size: {}. Max weight: {}. Soft references {}.",
+                        new Object[] {this.name, Integer.valueOf(this.maxSize), Long.valueOf(this.maxWeight), (this.useSoftReferences? "are used" : "not used")});
             }
         }
         
@@ -134,7 +172,10 @@ public StandardCache(final String name, final boolean useSoftReferences,
     
     public void put(final K key, final V value) {
 
-        final CacheEntry<V> entry = new CacheEntry<V>(value, this.useSoftReferences);
+        final int weight = (this.weigher == null? 0 : this.weigher.weigh(key, value));
+        Validate.isTrue(weight >= 0, "Cache entry weight cannot be negative");
+
+        final CacheEntry<V> entry = new CacheEntry<V>(value, this.useSoftReferences, weight);
         
         // newSize will be -1 if traceExecution is false
         final int newSize = this.dataContainer.put(key, entry);
@@ -266,6 +307,30 @@ public int getMaxSize() {
         return this.maxSize;
     }
 
+    /**
+     * <p>
+     *   Returns whether this cache is bounded by the total weight of its entries.
+     * </p>
+     *
+     * @return whether there is a maximum weight.
+     * @since 3.0.3
+     */
+    public boolean hasMaxWeight() {
+        return (this.maxWeight > 0L);
+    }
+
+    /**
+     * <p>
+     *   Returns the maximum total weight of the entries in this cache, or -1 if there is no limit.
+     * </p>
+     *
+     * @return the maximum weight.
+     * @since 3.0.3
+     */
+    public long getMaxWeight() {
+        return this.maxWeight;
+    }
+
     public boolean getUseSoftReferences() {
         return this.useSoftReferences;
     }
@@ -274,6 +339,19 @@ public int size() {
         return this.dataContainer.size();
     }
 
+    /**
+     * <p>
+     *   Returns the current total weight of the entries in this cache, as computed by its weigher
+     *   (always zero if no weigher was specified).
+     * </p>
+     *
+     * @return the total weight of the cache entries.
+     * @since 3.0.3
+     */
+    public long getWeightedSize() {
+        return this.dataContainer.getTotalWeight();
+    }
+
     
     
     // -----
@@ -293,6 +371,7 @@ private void outputReportIfNeeded() {
                     this.logger.trace(
                             String.format(REPORT_FORMAT,
                                     Integer.valueOf(size()),
+                                    Long.valueOf(getWeightedSize()),
                                     Long.valueOf(this.putCount.get()),
                                     Long.valueOf(this.getCount.get()),
                                     Long.valueOf(this.hitCount.get()),
@@ -310,38 +389,71 @@ private void outputReportIfNeeded() {
 
 
 
+    /*
+     * When a maximum size is established, entries are tracked in insertion order at a lock-free FIFO queue, and
+     * the size of the cache is kept at an atomic counter. Writers exceeding the maximum size first claim an
+     * eviction on the counter and then remove the oldest live entry, so no global lock is needed.
+     *
+     * When a maximum weight is established, the total weight of the entries is kept at an atomic counter, and
+     * writers exceeding it remove the oldest live entries until it is honoured again. Note that, unlike eviction
+     * by size, eviction by weight is not claimed beforehand, so concurrent writers might evict slightly more
+     * than needed.
+     *
+     * Removals (explicit or due to invalid entries) do not scan the FIFO queue: the queued node for the removed
+     * entry simply becomes 'dead' (the container no longer maps its key to its entry) and is skipped when reached
+     * by eviction. If too many dead nodes accumulate, they are purged from the queue in a single amortized pass.
+     */
     static final class CacheDataContainer<K,V> {
-        
+
+        private static final int MIN_DEAD_NODES_PURGE_THRESHOLD = 64;
+
         private final String name;
         private final boolean sizeLimit;
         private final int maxSize;
+        private final boolean weightLimit;
+        private final long maxWeight;
+        private final boolean fifoTracking;
         private final boolean traceExecution;
         private final Logger logger;
-        
+
         private final ConcurrentHashMap<K,CacheEntry<V>> container;
-        private final Object[] fifo;
-        private int fifoPointer;
+        private final ConcurrentLinkedQueue<FifoNode<K,V>> fifo;
+        private final AtomicInteger fifoSize;
+        private final AtomicInteger deadNodes;
+        private final AtomicBoolean purging;
+        private final int deadNodesPurgeThreshold;
+        private final AtomicLong totalWeight;
 
 
         CacheDataContainer(final String name, final int initialCapacity,
-                final int maxSize, final boolean traceExecution, final Logger logger) {
-            
+                final int maxSize, final long maxWeight, final boolean traceExecution, final Logger logger) {
+
             super();
 
             this.name = name;
             this.container = new ConcurrentHashMap<K,CacheEntry<V>>(initialCapacity, 0.9f, 2);
             this.maxSize = maxSize;
             this.sizeLimit = (maxSize >= 0);
-            if (this.sizeLimit) {
-                this.fifo = new Object[this.maxSize];
-                Arrays.fill(this.fifo, null);
+            this.maxWeight = maxWeight;
+            this.weightLimit = (maxWeight > 0L);
+            this.fifoTracking = (this.sizeLimit || this.weightLimit);
+            this.totalWeight = new AtomicLong(0L);
+            if (this.fifoTracking) {
+                this.fifo = new ConcurrentLinkedQueue<FifoNode<K,V>>();
+                this.fifoSize = new AtomicInteger(0);
+                this.deadNodes = new AtomicInteger(0);
+                this.purging = new AtomicBoolean(false);
+                this.deadNodesPurgeThreshold = Math.max(this.maxSize, MIN_DEAD_NODES_PURGE_THRESHOLD);
             } else {
                 this.fifo = null;
+                this.fifoSize = null;
+                this.deadNodes = null;
+                this.purging = null;
+                this.deadNodesPurgeThreshold = -1;
             }
-            this.fifoPointer = 0;
             this.traceExecution = traceExecution;
             this.logger = logger;
-            
+
         }
 
 
@@ -363,116 +475,216 @@ public Set<K> keySet() {
 
 
         public int put(final K key, final CacheEntry<V> value) {
-            if (this.traceExecution) {
-                return putWithTracing(key, value); 
-            }
-            return putWithoutTracing(key, value);
-        }
 
-        
-        private int putWithoutTracing(final K key, final CacheEntry<V> value) {
-            // If we are not tracing, it's better to avoid the size() operation which has
-            // some performance implications in ConcurrentHashMap (iteration and counting these maps
-            // is slow if they are big)
-            
             final CacheEntry<V> existing = this.container.putIfAbsent(key, value);
-            if (existing != null) {
-                // When not in 'trace' mode, will always return -1
-                return -1;
-            }
-                    
-            if (this.sizeLimit) {
-                synchronized (this.fifo) {
-                    final Object removedKey = this.fifo[this.fifoPointer]; 
-                    if (removedKey != null) {
-                        this.container.remove(removedKey);
+
+            if (existing == null) {
+                if (value.weight != 0) {
+                    this.totalWeight.addAndGet(value.weight);
+                }
+                if (this.fifoTracking) {
+                    this.fifoSize.incrementAndGet();
+                    this.fifo.offer(new FifoNode<K,V>(key, value));
+                    if (this.sizeLimit) {
+                        evictIfNeeded();
+                    }
+                    if (this.weightLimit) {
+                        evictByWeightIfNeeded();
                     }
-                    this.fifo[this.fifoPointer] = key;
-                    this.fifoPointer = (this.fifoPointer + 1) % this.maxSize;
                 }
             }
-            
-            return -1;
-            
+
+            // If we are not tracing, it's better to avoid the size() operation which has
+            // some performance implications in ConcurrentHashMap (iteration and counting these maps
+            // is slow if they are big). When not in 'trace' mode, will always return -1
+            return (this.traceExecution? this.container.size() : -1);
+
         }
 
-        private synchronized int putWithTracing(final K key, final CacheEntry<V> value) {
 
-            final CacheEntry<V> existing = this.container.putIfAbsent(key, value);
-            if (existing == null) {
-                if (this.sizeLimit) {
-                    final Object removedKey = this.fifo[this.fifoPointer]; 
-                    if (removedKey != null) {
-                        final CacheEntry<V> removed = this.container.remove(removedKey);
-                        if (removed != null) {
+        private void evictIfNeeded() {
+
+            int currentSize;
+            while ((currentSize = this.fifoSize.get()) > this.maxSize) {
+
+                // Claim one eviction before performing it, so that concurrent writers never evict more
+                // entries than needed
+                if (!this.fifoSize.compareAndSet(currentSize, currentSize - 1)) {
+                    continue;
+                }
+
+                boolean evicted = false;
+                while (!evicted) {
+
+                    final FifoNode<K,V> node = this.fifo.poll();
+                    if (node == null) {
+                        // Nothing left to evict (entries might have been concurrently removed)
+                        this.fifoSize.incrementAndGet();
+                        return;
+                    }
+
+                    if (this.container.remove(node.key, node.entry)) {
+                        evicted = true;
+                        subtractWeight(node.entry);
+                        if (this.traceExecution) {
                             final Integer newSize = Integer.valueOf(this.container.size());
                             this.logger.trace(
-                                    "[THYMELEAF][{}][{}][CACHE_REMOVE][{}] Max size exceeded for cache \"{}\". Removing entry for key \"{}\". New size is {}.", 
-                                    new Object[] {TemplateEngine.threadIndex(), this.name, newSize, this.name, removedKey, newSize});
+                                    "[THYMELEAF][{}][{}][CACHE_REMOVE][{}] Max size exceeded for cache \"{}\". Removing entry for key \"{}\". New size is {}.",
+                                    new Object[] {TemplateEngine.threadIndex(), this.name, newSize, this.name, node.key, newSize});
                         }
+                    } else {
+                        // Dead node: its entry had already been removed
+                        decrementDeadNodes(1);
                     }
-                    this.fifo[this.fifoPointer] = key;
-                    this.fifoPointer = (this.fifoPointer + 1) % this.maxSize;
+
                 }
-            }
-            return this.container.size();
-            
-        }
 
-        
-        public int remove(final K key) {
-            if (this.traceExecution) {
-                return removeWithTracing(key); 
             }
-            return removeWithoutTracing(key);
+
         }
 
-        
-        private int removeWithoutTracing(final K key) {
-            // FIFO is also updated to avoid 'removed' keys remaining at FIFO (which could end up reducing cache size to 1)
-            final CacheEntry<V> removed = this.container.remove(key);
-            if (removed != null) {
-                if (this.sizeLimit && key != null) {
-                    for (int i = 0; i < this.maxSize; i++) {
-                        if (key.equals(this.fifo[i])) {
-                            this.fifo[i] = null;
-                            break;
-                        }
+
+        private void evictByWeightIfNeeded() {
+
+            while (this.totalWeight.get() > this.maxWeight) {
+
+                final FifoNode<K,V> node = this.fifo.poll();
+                if (node == null) {
+                    // Nothing left to evict (entries might have been concurrently removed)
+                    return;
+                }
+
+                if (this.container.remove(node.key, node.entry)) {
+                    this.fifoSize.decrementAndGet();
+                    subtractWeight(node.entry);
+                    if (this.traceExecution) {
+                        final Integer newSize = Integer.valueOf(this.container.size());
+                        this.logger.trace(
+                                "[THYMELEAF][{}][{}][CACHE_REMOVE][{}] Max weight exceeded for cache \"{}\". Removing entry for key \"{}\". New size is {}.",
+                                new Object[] {TemplateEngine.threadIndex(), this.name, newSize, this.name, node.key, newSize});
                     }
+                } else {
+                    // Dead node: its entry had already been removed
+                    decrementDeadNodes(1);
                 }
+
+            }
+
+        }
+
+
+        private void subtractWeight(final CacheEntry<V> entry) {
+            if (entry.weight != 0) {
+                this.totalWeight.addAndGet(-entry.weight);
             }
-            return -1;
         }
 
-        
-        private synchronized int removeWithTracing(final K key) {
-            // FIFO is also updated to avoid 'removed' keys remaining at FIFO (which could end up reducing cache size to 1)
+
+        public int remove(final K key) {
+
             final CacheEntry<V> removed = this.container.remove(key);
+
             if (removed == null) {
                 // When tracing is active, this means nothing was removed
                 return -1;
             }
-            if (this.sizeLimit && key != null) {
-                for (int i = 0; i < this.maxSize; i++) {
-                    if (key.equals(this.fifo[i])) {
-                        this.fifo[i] = null;
-                        break;
+
+            subtractWeight(removed);
+
+            if (this.fifoTracking) {
+                // The FIFO node for this entry is now dead: no need to scan the FIFO for it
+                this.fifoSize.decrementAndGet();
+                if (this.deadNodes.incrementAndGet() > this.deadNodesPurgeThreshold) {
+                    purgeDeadNodes();
+                }
+            }
+
+            return (this.traceExecution? this.container.size() : -1);
+
+        }
+
+
+        private void purgeDeadNodes() {
+            // Only one thread purges at a time, the rest simply go on
+            if (!this.purging.compareAndSet(false, true)) {
+                return;
+            }
+            try {
+                int purged = 0;
+                final Iterator<FifoNode<K,V>> fifoIterator = this.fifo.iterator();
+                while (fifoIterator.hasNext()) {
+                    final FifoNode<K,V> node = fifoIterator.next();
+                    if (this.container.get(node.key) != node.entry) {
+                        fifoIterator.remove();
+                        purged++;
                     }
                 }
+                decrementDeadNodes(purged);
+            } finally {
+                this.purging.set(false);
             }
-            return this.container.size();
+        }
+
+
+        private void decrementDeadNodes(final int count) {
+            // Dead node count is only an approximation used for triggering purges, so it is never let go below zero
+            int current;
+            do {
+                current = this.deadNodes.get();
+            } while (!this.deadNodes.compareAndSet(current, Math.max(0, current - count)));
         }
 
 
         public void clear() {
-            this.container.clear();
+            if (this.fifoTracking) {
+                // Entries are removed through the FIFO so that the size and weight counters stay consistent
+                // with any concurrent puts
+                FifoNode<K,V> node;
+                while ((node = this.fifo.poll()) != null) {
+                    if (this.container.remove(node.key, node.entry)) {
+                        this.fifoSize.decrementAndGet();
+                        subtractWeight(node.entry);
+                    }
+                }
+                this.deadNodes.set(0);
+            } else if (this.totalWeight.get() != 0L) {
+                // Entries are weighed, so they are removed one by one in order to keep the weight counter consistent
+                for (final Map.Entry<K,CacheEntry<V>> entry : this.container.entrySet()) {
+                    if (this.container.remove(entry.getKey(), entry.getValue())) {
+                        subtractWeight(entry.getValue());
+                    }
+                }
+            } else {
+                this.container.clear();
+            }
         }
-        
-        
+
+
         public int size() {
             return this.container.size();
         }
-        
+
+
+        public long getTotalWeight() {
+            return this.totalWeight.get();
+        }
+
+    }
+
+
+
+
+    static final class FifoNode<K,V> {
+
+        final K key;
+        final CacheEntry<V> entry;
+
+        FifoNode(final K key, final CacheEntry<V> entry) {
+            super();
+            this.key = key;
+            this.entry = entry;
+        }
+
     }
 
 
@@ -482,6 +694,7 @@ public int size() {
 
         private final SoftReference<V> cachedValueReference;
         private final long creationTimeInMillis;
+        final int weight;
         
         // Although we will use the reference for normal operation for cleaner code, this
         // variable will act as an "anchor" to avoid the value to be cleaned if we don't
@@ -491,12 +704,17 @@ public int size() {
         
 
         CacheEntry(final V cachedValue, final boolean useSoftReferences) {
+            this(cachedValue, useSoftReferences, 0);
+        }
+
+        CacheEntry(final V cachedValue, final boolean useSoftReferences, final int weight) {
 
             super();
 
             this.cachedValueReference = new SoftReference<V>(cachedValue);
             this.cachedValueAnchor = (!useSoftReferences? cachedValue : null);
             this.creationTimeInMillis = System.currentTimeMillis();
+            this.weight = weight;
 
         }
 
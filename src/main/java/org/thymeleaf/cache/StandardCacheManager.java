@@ -23,6 +23,7 @@
 import org.slf4j.LoggerFactory;
 import org.thymeleaf.TemplateEngine;
 import org.thymeleaf.engine.TemplateModel;
+import org.thymeleaf.util.Validate;
 
 
 /**
@@ -57,6 +58,19 @@
  *   <li>An (optional) <i>validity checker</i> implementing {@link ICacheEntryValidityChecker},
  *       which will be applied on each entry upon retrieval from cache in order to ensure
  *       it is still valid and can be used.
+ *   <li>Its <i>eviction policy</i> (see {@link CacheEvictionPolicy}), which determines the
+ *       implementation to be used: {@link StandardCache} for <tt>FIFO</tt> (the default) or
+ *       {@link TinyLFUCache} for <tt>TINY_LFU</tt>.</li>
+ *   <li>An (optional) <i>weigher</i> implementing {@link ICacheEntryWeigher}, which computes the
+ *       weight of each entry when it is put into the cache. The template cache uses by default a
+ *       {@link StandardTemplateModelWeigher}, which weighs templates by their estimated retained
+ *       heap size in bytes (as this estimation is not free, the default weigher is only used when a
+ *       maximum weight is set).</li>
+ *   <li>Its <i>maximum weight</i>: the maximum total weight of the entries in the cache (requires a
+ *       weigher). <tt>-1</tt> (the default) means no limit in weight. When a maximum weight is set, a huge
+ *       template no longer counts the same as a tiny fragment, and the cache can be configured not to use
+ *       soft references so that its memory usage is bounded without entries being sacrificed by the garbage
+ *       collector all at once.</li>
  * </ul>
  * <p>
  *   Note a class with this name existed since 2.0.0, but it was completely reimplemented
@@ -101,6 +115,22 @@ public class StandardCacheManager extends AbstractCacheManager {
      */
     public static final ICacheEntryValidityChecker<TemplateCacheKey,TemplateModel> DEFAULT_TEMPLATE_CACHE_VALIDITY_CHECKER = new StandardParsedTemplateEntryValidator();
 
+    /**
+     * Default template cache eviction policy: FIFO
+     */
+    public static final CacheEvictionPolicy DEFAULT_TEMPLATE_CACHE_EVICTION_POLICY = CacheEvictionPolicy.FIFO;
+
+    /**
+     * Default template cache maximum weight: -1 (no limit)
+     */
+    public static final long DEFAULT_TEMPLATE_CACHE_MAX_WEIGHT = -1L;
+
+    /**
+     * Default template cache weigher: an instance of {@link StandardTemplateModelWeigher} (only used if a
+     * maximum weight is set).
+     */
+    public static final ICacheEntryWeigher<TemplateCacheKey,TemplateModel> DEFAULT_TEMPLATE_CACHE_WEIGHER = new StandardTemplateModelWeigher();
+
     
     /**
      * Default expression cache name: "EXPRESSION_CACHE"
@@ -132,6 +162,21 @@ public class StandardCacheManager extends AbstractCacheManager {
      */
     public static final ICacheEntryValidityChecker<ExpressionCacheKey,Object> DEFAULT_EXPRESSION_CACHE_VALIDITY_CHECKER = null;
 
+    /**
+     * Default expression cache eviction policy: FIFO
+     */
+    public static final CacheEvictionPolicy DEFAULT_EXPRESSION_CACHE_EVICTION_POLICY = CacheEvictionPolicy.FIFO;
+
+    /**
+     * Default expression cache maximum weight: -1 (no limit)
+     */
+    public static final long DEFAULT_EXPRESSION_CACHE_MAX_WEIGHT = -1L;
+
+    /**
+     * Default expression cache weigher: null
+     */
+    public static final ICacheEntryWeigher<ExpressionCacheKey,Object> DEFAULT_EXPRESSION_CACHE_WEIGHER = null;
+
     
     
     
@@ -141,6 +186,9 @@ public class StandardCacheManager extends AbstractCacheManager {
     private boolean templateCacheUseSoftReferences = DEFAULT_TEMPLATE_CACHE_USE_SOFT_REFERENCES;
     private String templateCacheLoggerName = DEFAULT_TEMPLATE_CACHE_LOGGER_NAME;
     private ICacheEntryValidityChecker<TemplateCacheKey,TemplateModel> templateCacheValidityChecker = DEFAULT_TEMPLATE_CACHE_VALIDITY_CHECKER;
+    private CacheEvictionPolicy templateCacheEvictionPolicy = DEFAULT_TEMPLATE_CACHE_EVICTION_POLICY;
+    private long templateCacheMaxWeight = DEFAULT_TEMPLATE_CACHE_MAX_WEIGHT;
+    private ICacheEntryWeigher<TemplateCacheKey,TemplateModel> templateCacheWeigher = DEFAULT_TEMPLATE_CACHE_WEIGHER;
 
     private String expressionCacheName = DEFAULT_EXPRESSION_CACHE_NAME;
     private int expressionCacheInitialSize = DEFAULT_EXPRESSION_CACHE_INITIAL_SIZE;
@@ -148,6 +196,9 @@ public class StandardCacheManager extends AbstractCacheManager {
     private boolean expressionCacheUseSoftReferences = DEFAULT_EXPRESSION_CACHE_USE_SOFT_REFERENCES;
     private String expressionCacheLoggerName = DEFAULT_EXPRESSION_CACHE_LOGGER_NAME;
     private ICacheEntryValidityChecker<ExpressionCacheKey,Object> expressionCacheValidityChecker = DEFAULT_EXPRESSION_CACHE_VALIDITY_CHECKER;
+    private CacheEvictionPolicy expressionCacheEvictionPolicy = DEFAULT_EXPRESSION_CACHE_EVICTION_POLICY;
+    private long expressionCacheMaxWeight = DEFAULT_EXPRESSION_CACHE_MAX_WEIGHT;
+    private ICacheEntryWeigher<ExpressionCacheKey,Object> expressionCacheWeigher = DEFAULT_EXPRESSION_CACHE_WEIGHER;
     
     
     
@@ -163,12 +214,30 @@ protected final ICache<TemplateCacheKey, TemplateModel> initializeTemplateCache(
         if (maxSize == 0) {
             return null;
         }
+        if (getTemplateCacheEvictionPolicy() == CacheEvictionPolicy.TINY_LFU) {
+            return new TinyLFUCache<TemplateCacheKey, TemplateModel>(
+                    getTemplateCacheName(), getTemplateCacheUseSoftReferences(),
+                    getTemplateCacheInitialSize(), maxSize,
+                    getTemplateCacheMaxWeight(), computeTemplateCacheWeigher(),
+                    getTemplateCacheValidityChecker(), getTemplateCacheLogger());
+        }
         return new StandardCache<TemplateCacheKey, TemplateModel>(
                 getTemplateCacheName(), getTemplateCacheUseSoftReferences(), 
                 getTemplateCacheInitialSize(), maxSize, 
+                getTemplateCacheMaxWeight(), computeTemplateCacheWeigher(),
                 getTemplateCacheValidityChecker(), getTemplateCacheLogger());
     }
 
+
+    private ICacheEntryWeigher<TemplateCacheKey, TemplateModel> computeTemplateCacheWeigher() {
+        final ICacheEntryWeigher<TemplateCacheKey, TemplateModel> weigher = getTemplateCacheWeigher();
+        if (weigher == DEFAULT_TEMPLATE_CACHE_WEIGHER && getTemplateCacheMaxWeight() < 0L) {
+            // Estimating the size of every template put into the cache is not worth it if weight is not bounded
+            return null;
+        }
+        return weigher;
+    }
+
     
     @Override
     protected final ICache<ExpressionCacheKey, Object> initializeExpressionCache() {
@@ -176,9 +245,17 @@ protected final ICache<ExpressionCacheKey, Object> initializeExpressionCache() {
         if (maxSize == 0) {
             return null;
         }
+        if (getExpressionCacheEvictionPolicy() == CacheEvictionPolicy.TINY_LFU) {
+            return new TinyLFUCache<ExpressionCacheKey, Object>(
+                    getExpressionCacheName(), getExpressionCacheUseSoftReferences(),
+                    getExpressionCacheInitialSize(), maxSize,
+                    getExpressionCacheMaxWeight(), getExpressionCacheWeigher(),
+                    getExpressionCacheValidityChecker(), getExpressionCacheLogger());
+        }
         return new StandardCache<ExpressionCacheKey, Object>(
                 getExpressionCacheName(), getExpressionCacheUseSoftReferences(), 
                 getExpressionCacheInitialSize(), maxSize, 
+                getExpressionCacheMaxWeight(), getExpressionCacheWeigher(),
                 getExpressionCacheValidityChecker(), getExpressionCacheLogger());
     }
     
@@ -208,6 +285,18 @@ public String getTemplateCacheLoggerName() {
     public ICacheEntryValidityChecker<TemplateCacheKey,TemplateModel> getTemplateCacheValidityChecker() {
         return this.templateCacheValidityChecker;
     }
+
+    public CacheEvictionPolicy getTemplateCacheEvictionPolicy() {
+        return this.templateCacheEvictionPolicy;
+    }
+
+    public long getTemplateCacheMaxWeight() {
+        return this.templateCacheMaxWeight;
+    }
+
+    public ICacheEntryWeigher<TemplateCacheKey,TemplateModel> getTemplateCacheWeigher() {
+        return this.templateCacheWeigher;
+    }
     
     public final Logger getTemplateCacheLogger() {
         final String loggerName = getTemplateCacheLoggerName();
@@ -244,6 +333,18 @@ public ICacheEntryValidityChecker<ExpressionCacheKey,Object> getExpressionCacheV
         return this.expressionCacheValidityChecker;
     }
 
+    public CacheEvictionPolicy getExpressionCacheEvictionPolicy() {
+        return this.expressionCacheEvictionPolicy;
+    }
+
+    public long getExpressionCacheMaxWeight() {
+        return this.expressionCacheMaxWeight;
+    }
+
+    public ICacheEntryWeigher<ExpressionCacheKey,Object> getExpressionCacheWeigher() {
+        return this.expressionCacheWeigher;
+    }
+
     public final Logger getExpressionCacheLogger() {
         final String loggerName = getExpressionCacheLoggerName();
         if (loggerName != null) {
@@ -280,6 +381,20 @@ public void setTemplateCacheValidityChecker(final ICacheEntryValidityChecker<Tem
         this.templateCacheValidityChecker = templateCacheValidityChecker;
     }
 
+    public void setTemplateCacheEvictionPolicy(final CacheEvictionPolicy templateCacheEvictionPolicy) {
+        Validate.notNull(templateCacheEvictionPolicy, "Eviction policy cannot be null");
+        this.templateCacheEvictionPolicy = templateCacheEvictionPolicy;
+    }
+
+    public void setTemplateCacheMaxWeight(final long templateCacheMaxWeight) {
+        Validate.isTrue(templateCacheMaxWeight != 0L, "Cache max weight must be either -1 (no limit) or > 0");
+        this.templateCacheMaxWeight = templateCacheMaxWeight;
+    }
+
+    public void setTemplateCacheWeigher(final ICacheEntryWeigher<TemplateCacheKey, TemplateModel> templateCacheWeigher) {
+        this.templateCacheWeigher = templateCacheWeigher;
+    }
+
     
     
     public void setExpressionCacheName(final String expressionCacheName) {
@@ -306,6 +421,20 @@ public void setExpressionCacheValidityChecker(final ICacheEntryValidityChecker<E
         this.expressionCacheValidityChecker = expressionCacheValidityChecker;
     }
 
+    public void setExpressionCacheEvictionPolicy(final CacheEvictionPolicy expressionCacheEvictionPolicy) {
+        Validate.notNull(expressionCacheEvictionPolicy, "Eviction policy cannot be null");
+        this.expressionCacheEvictionPolicy = expressionCacheEvictionPolicy;
+    }
+
+    public void setExpressionCacheMaxWeight(final long expressionCacheMaxWeight) {
+        Validate.isTrue(expressionCacheMaxWeight != 0L, "Cache max weight must be either -1 (no limit) or > 0");
+        this.expressionCacheMaxWeight = expressionCacheMaxWeight;
+    }
+
+    public void setExpressionCacheWeigher(final ICacheEntryWeigher<ExpressionCacheKey, Object> expressionCacheWeigher) {
+        this.expressionCacheWeigher = expressionCacheWeigher;
+    }
+
     
     
     
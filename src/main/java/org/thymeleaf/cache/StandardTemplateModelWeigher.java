@@ -0,0 +1,49 @@
+/*
+ * =============================================================================
+ *
+ *   Copyright (c) 2011-2016, The THYMELEAF team (http://www.thymeleaf.org)
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ * =============================================================================
+ */
+package org.thymeleaf.cache;
+
+
+import org.thymeleaf.engine.TemplateModel;
+
+/**
+ * <p>
+ *   Standard implementation of {@link ICacheEntryWeigher} for the template cache, which weighs each
+ *   parsed template by its estimated retained heap size in bytes
+ *   (see {@link TemplateModel#getEstimatedRetainedSize()}).
+ * </p>
+ *
+ * @author Daniel Fern&aacute;ndez
+ *
+ * @since 3.0.3
+ *
+ */
+public final class StandardTemplateModelWeigher
+        implements ICacheEntryWeigher<TemplateCacheKey,TemplateModel> {
+
+    public StandardTemplateModelWeigher() {
+        super();
+    }
+
+    public int weigh(final TemplateCacheKey key, final TemplateModel value) {
+        final long size = value.getEstimatedRetainedSize();
+        return (size > Integer.MAX_VALUE? Integer.MAX_VALUE : (int) size);
+    }
+
+}
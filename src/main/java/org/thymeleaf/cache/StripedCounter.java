@@ -0,0 +1,83 @@
+/*
+ * =============================================================================
+ *
+ *   Copyright (c) 2011-2016, The THYMELEAF team (http://www.thymeleaf.org)
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ * =============================================================================
+ */
+package org.thymeleaf.cache;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/*
+ * Counter striped across several padded cells (selected by thread id) so that frequently updated counters
+ * (like cache hits) do not make all threads contend on the same memory location.
+ *
+ * @author Daniel Fernandez
+ * @since 3.0.3
+ *
+ */
+final class StripedCounter {
+
+    // Each cell is padded to its own cache line (8 longs = 64 bytes)
+    private static final int PADDING = 8;
+    private static final int STRIPES = computeStripes();
+
+    private final AtomicLongArray cells;
+
+
+
+    StripedCounter() {
+        super();
+        this.cells = new AtomicLongArray(STRIPES * PADDING);
+    }
+
+
+    void increment() {
+        this.cells.incrementAndGet(cellIndex());
+    }
+
+
+    void add(final long value) {
+        this.cells.addAndGet(cellIndex(), value);
+    }
+
+
+    long sum() {
+        long sum = 0L;
+        for (int i = 0; i < STRIPES; i++) {
+            sum += this.cells.get(i * PADDING);
+        }
+        return sum;
+    }
+
+
+    private static int cellIndex() {
+        final long id = Thread.currentThread().getId();
+        final int h = (int)(id ^ (id >>> 32));
+        return (h & (STRIPES - 1)) * PADDING;
+    }
+
+
+    private static int computeStripes() {
+        final int target = Math.min(64, 2 * Runtime.getRuntime().availableProcessors());
+        int stripes = 1;
+        while (stripes < target) {
+            stripes <<= 1;
+        }
+        return stripes;
+    }
+
+}
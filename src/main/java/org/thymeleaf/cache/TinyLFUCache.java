@@ -0,0 +1,906 @@
+/*
+ * =============================================================================
+ *
+ *   Copyright (c) 2011-2016, The THYMELEAF team (http://www.thymeleaf.org)
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ * =============================================================================
+ */
+package org.thymeleaf.cache;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.slf4j.Logger;
+import org.thymeleaf.TemplateEngine;
+import org.thymeleaf.util.Validate;
+
+
+/**
+ * <p>
+ *   Implementation of {@link ICache} that uses a frequency-aware eviction policy (<i>W-TinyLFU</i>) when
+ *   a maximum size is established, instead of the insertion-order (FIFO) eviction applied by {@link StandardCache}.
+ * </p>
+ * <p>
+ *   New entries are first inserted into a small <i>admission window</i> (1% of the maximum size) ordered by
+ *   access (LRU). When this window overflows, its least recently used entry becomes a <i>candidate</i> for
+ *   entering the <i>main space</i>, which is a segmented LRU divided into <i>probation</i> and <i>protected</i>
+ *   (80% of the main space) segments. If the main space is full, the candidate is only admitted if its
+ *   estimated access frequency (computed by means of a compact probabilistic sketch) is higher than that of
+ *   the entry that would be evicted in its place. This way entries that are frequently used (like the templates
+ *   and expressions of the most visited pages) are not displaced by entries that are used only once.
+ * </p>
+ * <p>
+ *   Reads are lock-free: entries are stored at a <tt>ConcurrentHashMap</tt>, and accesses are simply recorded
+ *   into striped, lossy ring buffers. Writes are recorded into a concurrent queue. Both buffers are applied to
+ *   the eviction policy in batches by whichever thread manages to acquire the eviction lock (without blocking
+ *   any other threads, which never wait for this lock).
+ * </p>
+ * <p>
+ *   Unlike {@link StandardCache}, calling {@link #put(Object, Object)} for a key that already exists in the
+ *   cache will replace its value.
+ * </p>
+ * <p>
+ *   Besides by its number of entries, this cache can be bounded by the total weight of its entries (as computed
+ *   by an {@link ICacheEntryWeigher}). Entries are then evicted from the probation, protected and window segments
+ *   (in this order, least recently used first) until the total weight is back under its maximum. If only a maximum
+ *   weight is established, all entries stay at the admission window, so eviction simply follows LRU order.
+ * </p>
+ * <p>
+ *   This cache implements {@link IMonitoredCache}, and therefore reports hit, miss, eviction and load
+ *   statistics, as well as the total weight of its entries.
+ * </p>
+ *
+ * @author Daniel Fern&aacute;ndez
+ *
+ * @since 3.0.3
+ *
+ * @param <K> The type of the cache keys
+ * @param <V> The type of the cache values
+ */
+public final class TinyLFUCache<K, V> implements IMonitoredCache<K,V> {
+
+
+    private static final int WINDOW_PERCENTAGE = 1;
+    private static final int PROTECTED_PERCENTAGE = 80;
+
+    private static final int READ_BUFFER_STRIPES = computeReadBufferStripes();
+    private static final int READ_BUFFER_DRAIN_THRESHOLD = ReadBuffer.SIZE / 2;
+
+    private static final int QUEUE_NONE = 0;
+    private static final int QUEUE_WINDOW = 1;
+    private static final int QUEUE_PROBATION = 2;
+    private static final int QUEUE_PROTECTED = 3;
+
+
+    private final String name;
+    private final boolean useSoftReferences;
+    private final int maxSize;
+    private final long maxWeight;
+    private final boolean bounded;
+    private final ICacheEntryValidityChecker<? super K, ? super V> entryValidityChecker;
+    private final ICacheEntryWeigher<? super K, ? super V> weigher;
+
+    private final boolean traceExecution;
+    private final Logger logger;
+
+    private final ConcurrentHashMap<K,Node<K,V>> data;
+
+    // Everything below is only needed (and initialized) if there is a maximum size or weight
+    private final ReadBuffer<K,V>[] readBuffers;
+    private final ConcurrentLinkedQueue<Runnable> writeBuffer;
+    private final ReentrantLock evictionLock;
+    private final FrequencySketch sketch;
+    private final AccessOrderDeque<K,V> window;
+    private final AccessOrderDeque<K,V> probation;
+    private final AccessOrderDeque<K,V> protectedSegment;
+    private final int windowMaxSize;
+    private final int mainMaxSize;
+    private final int protectedMaxSize;
+    private int windowSize = 0;      // guarded by evictionLock
+    private int protectedSize = 0;   // guarded by evictionLock
+    private int policySize = 0;      // guarded by evictionLock
+
+    private final AtomicLong putCount;
+    private final StripedCounter hitCount;
+    private final StripedCounter missCount;
+    private volatile long evictionCount = 0L; // only written while holding evictionLock
+    private final AtomicLong loadCount;
+    private final AtomicLong totalLoadTimeNanos;
+    private final AtomicLong totalWeight;
+
+
+
+
+    public TinyLFUCache(final String name, final boolean useSoftReferences,
+            final int initialCapacity, final int maxSize, final Logger logger) {
+        this(name, useSoftReferences, initialCapacity, maxSize, null, logger);
+    }
+
+
+    public TinyLFUCache(final String name, final boolean useSoftReferences,
+            final int initialCapacity, final int maxSize, final ICacheEntryValidityChecker<? super K, ? super V> entryValidityChecker,
+            final Logger logger) {
+        this(name, useSoftReferences, initialCapacity, maxSize, -1L, null, entryValidityChecker, logger);
+    }
+
+
+    /**
+     * <p>
+     *   Creates a cache that can be bounded by the total weight of its entries (as computed by the specified
+     *   <tt>weigher</tt>) besides (or instead of) by their number.
+     * </p>
+     * <p>
+     *   A weigher can be specified without establishing a maximum weight, in which case weights are only
+     *   computed for reporting (see {@link ICacheStatistics#getWeightedSize()}).
+     * </p>
+     *
+     * @param name the name of the cache.
+     * @param useSoftReferences whether cache values should be referenced by means of soft references.
+     * @param initialCapacity the initial capacity of the cache.
+     * @param maxSize the maximum number of entries, or -1 for no limit.
+     * @param maxWeight the maximum total weight of the entries, or -1 for no limit.
+     * @param weigher the weigher for the cache entries (required if a maximum weight is established).
+     * @param entryValidityChecker the validity checker for cache entries (might be null).
+     * @param logger the logger to be used (might be null).
+     */
+    public TinyLFUCache(final String name, final boolean useSoftReferences,
+            final int initialCapacity, final int maxSize,
+            final long maxWeight, final ICacheEntryWeigher<? super K, ? super V> weigher,
+            final ICacheEntryValidityChecker<? super K, ? super V> entryValidityChecker,
+            final Logger logger) {
+
+        super();
+
+        Validate.notEmpty(name, "Name cannot be null or empty");
+        Validate.isTrue(initialCapacity > 0, "Initial capacity must be > 0");
+        Validate.isTrue(maxSize != 0, "Cache max size must be either -1 (no limit) or > 0");
+        Validate.isTrue(maxWeight != 0L, "Cache max weight must be either -1 (no limit) or > 0");
+        Validate.isTrue(maxWeight < 0L || weigher != null, "A weigher must be specified if cache max weight is set");
+
+        this.name = name;
+        this.useSoftReferences = useSoftReferences;
+        this.maxSize = maxSize;
+        this.maxWeight = maxWeight;
+        this.bounded = (maxSize > 0 || maxWeight > 0L);
+        this.entryValidityChecker = entryValidityChecker;
+        this.weigher = weigher;
+
+        this.logger = logger;
+        this.traceExecution = (logger != null && logger.isTraceEnabled());
+
+        this.data = new ConcurrentHashMap<K,Node<K,V>>(initialCapacity, 0.75f, 16);
+
+        if (this.bounded) {
+            // If there is no maximum size, the whole cache is considered to be the admission window
+            final long policyMaxSize = (this.maxSize > 0? this.maxSize : Integer.MAX_VALUE);
+            this.readBuffers = newReadBuffers(READ_BUFFER_STRIPES);
+            for (int i = 0; i < this.readBuffers.length; i++) {
+                this.readBuffers[i] = new ReadBuffer<K,V>();
+            }
+            this.writeBuffer = new ConcurrentLinkedQueue<Runnable>();
+            this.evictionLock = new ReentrantLock();
+            this.sketch = new FrequencySketch(this.maxSize > 0? this.maxSize : initialCapacity);
+            this.window = new AccessOrderDeque<K,V>();
+            this.probation = new AccessOrderDeque<K,V>();
+            this.protectedSegment = new AccessOrderDeque<K,V>();
+            this.windowMaxSize =
+                    (this.maxSize > 0? (int) Math.max(1L, (policyMaxSize * WINDOW_PERCENTAGE) / 100L) : Integer.MAX_VALUE);
+            this.mainMaxSize = (int) (policyMaxSize - this.windowMaxSize);
+            this.protectedMaxSize = (int) (((long) this.mainMaxSize * PROTECTED_PERCENTAGE) / 100L);
+        } else {
+            this.readBuffers = null;
+            this.writeBuffer = null;
+            this.evictionLock = null;
+            this.sketch = null;
+            this.window = null;
+            this.probation = null;
+            this.protectedSegment = null;
+            this.windowMaxSize = -1;
+            this.mainMaxSize = -1;
+            this.protectedMaxSize = -1;
+        }
+
+        this.putCount = new AtomicLong(0L);
+        this.hitCount = new StripedCounter();
+        this.missCount = new StripedCounter();
+        this.loadCount = new AtomicLong(0L);
+        this.totalLoadTimeNanos = new AtomicLong(0L);
+        this.totalWeight = new AtomicLong(0L);
+
+        if (this.logger != null) {
+            if (!this.bounded) {
+                this.logger.trace("[THYMELEAF][CACHE_INITIALIZE] Initializing TinyLFU cache {}. Soft references {}.",
+                        this.name, (this.useSoftReferences? "are used" : "not used"));
+            } else {
+                this.logger.trace("[THYMELEAF][CACHE_INITIALIZE] Initializing TinyLFU cache {}. Max size: {}. Max weight: {}. Soft references {}.",
+                        new Object[] {this.name, Integer.valueOf(this.maxSize), Long.valueOf(this.maxWeight), (this.useSoftReferences? "are used" : "not used")});
+            }
+        }
+
+    }
+
+
+
+
+    // -----
+
+
+
+    public void put(final K key, final V value) {
+
+        final int weight = (this.weigher == null? 0 : this.weigher.weigh(key, value));
+        Validate.isTrue(weight >= 0, "Cache entry weight cannot be negative");
+
+        final Node<K,V> node = new Node<K,V>(key, new StandardCache.CacheEntry<V>(value, this.useSoftReferences, weight));
+        final Node<K,V> existing = this.data.put(key, node);
+
+        this.putCount.incrementAndGet();
+        addWeight(node, existing);
+
+        if (this.bounded) {
+            this.writeBuffer.add(new AddTask(node));
+            if (existing != null) {
+                this.writeBuffer.add(new RemoveTask(existing));
+            }
+            drainBuffers();
+        }
+
+        if (this.traceExecution) {
+            final Integer newSize = Integer.valueOf(this.data.size());
+            this.logger.trace(
+                    "[THYMELEAF][{}][{}][CACHE_ADD][{}] Adding cache entry in cache \"{}\" for key \"{}\". New size is {}.",
+                    new Object[] {TemplateEngine.threadIndex(), this.name, newSize, this.name, key, newSize});
+        }
+
+    }
+
+
+
+    public V get(final K key) {
+        return get(key, this.entryValidityChecker);
+    }
+
+
+
+    public V get(final K key, final ICacheEntryValidityChecker<? super K, ? super V> validityChecker) {
+
+        final Node<K,V> node = this.data.get(key);
+
+        if (node == null) {
+            this.missCount.increment();
+            if (this.traceExecution) {
+                this.logger.trace(
+                        "[THYMELEAF][{}][{}][CACHE_MISS] Cache miss in cache \"{}\" for key \"{}\".",
+                        new Object[] {TemplateEngine.threadIndex(), this.name, this.name, key});
+            }
+            return null;
+        }
+
+        final V resultValue =
+                node.entry.getValueIfStillValid(this.name, key, validityChecker, this.traceExecution, this.logger);
+
+        if (resultValue == null) {
+            // Only remove the node if it has not been replaced in the meantime
+            if (this.data.remove(key, node)) {
+                addWeight(null, node);
+                if (this.bounded) {
+                    this.writeBuffer.add(new RemoveTask(node));
+                    drainBuffers();
+                }
+            }
+            this.missCount.increment();
+            if (this.traceExecution) {
+                final Integer newSize = Integer.valueOf(this.data.size());
+                this.logger.trace(
+                        "[THYMELEAF][{}][{}][CACHE_REMOVE][{}] Removing cache entry in cache \"{}\" (Entry \"{}\" is not valid anymore). New size is {}.",
+                        new Object[] {TemplateEngine.threadIndex(), this.name, newSize, this.name, key, newSize});
+                this.logger.trace(
+                        "[THYMELEAF][{}][{}][CACHE_MISS] Cache miss in cache \"{}\" for key \"{}\".",
+                        new Object[] {TemplateEngine.threadIndex(), this.name, this.name, key});
+            }
+            return null;
+        }
+
+        if (this.bounded) {
+            recordRead(node);
+        }
+
+        this.hitCount.increment();
+        if (this.traceExecution) {
+            this.logger.trace(
+                    "[THYMELEAF][{}][{}][CACHE_HIT] Cache hit in cache \"{}\" for key \"{}\".",
+                    new Object[] {TemplateEngine.threadIndex(), this.name, this.name, key});
+        }
+
+        return resultValue;
+
+    }
+
+
+
+    public Set<K> keySet() {
+        // Cast needed for Java 6/7 compatibility when compiling with Java 8 (see StandardCache#keySet())
+        return ((Map<K,Node<K,V>>)this.data).keySet();
+    }
+
+
+
+    public void clear() {
+
+        if (this.bounded) {
+            this.evictionLock.lock();
+            try {
+                // Pending buffered operations are applied first so that they don't refer to cleared nodes afterwards
+                drainBuffersUnderLock();
+                removeAllData();
+                clearDeque(this.window);
+                clearDeque(this.probation);
+                clearDeque(this.protectedSegment);
+                this.windowSize = 0;
+                this.protectedSize = 0;
+                this.policySize = 0;
+            } finally {
+                this.evictionLock.unlock();
+            }
+        } else {
+            removeAllData();
+        }
+
+        if (this.traceExecution) {
+            this.logger.trace(
+                    "[THYMELEAF][{}][*][{}][CACHE_REMOVE][0] Removing ALL cache entries in cache \"{}\". New size is 0.",
+                    new Object[] {TemplateEngine.threadIndex(), this.name, this.name});
+        }
+
+    }
+
+
+
+    public void clearKey(final K key) {
+
+        final Node<K,V> removed = this.data.remove(key);
+        if (removed == null) {
+            return;
+        }
+
+        addWeight(null, removed);
+
+        if (this.bounded) {
+            this.writeBuffer.add(new RemoveTask(removed));
+            drainBuffers();
+        }
+
+        if (this.traceExecution) {
+            final Integer newSize = Integer.valueOf(this.data.size());
+            this.logger.trace(
+                    "[THYMELEAF][{}][*][{}][CACHE_REMOVE][{}] Removed cache entry in cache \"{}\" for key \"{}\". New size is {}.",
+                    new Object[] {TemplateEngine.threadIndex(), this.name, newSize, this.name, key, newSize});
+        }
+
+    }
+
+
+
+    public ICacheStatistics getStatistics() {
+        return new CacheStatistics(
+                this.name, this.data.size(),
+                this.putCount.get(), this.hitCount.sum(), this.missCount.sum(), this.evictionCount,
+                this.loadCount.get(), this.totalLoadTimeNanos.get(), this.totalWeight.get());
+    }
+
+
+    public void recordLoad(final long loadTimeNanos) {
+        this.loadCount.incrementAndGet();
+        this.totalLoadTimeNanos.addAndGet(loadTimeNanos);
+    }
+
+
+
+    // -----
+
+
+
+    public String getName() {
+        return this.name;
+    }
+
+    public boolean hasMaxSize() {
+        return (this.maxSize > 0);
+    }
+
+    public int getMaxSize() {
+        return this.maxSize;
+    }
+
+    public boolean hasMaxWeight() {
+        return (this.maxWeight > 0L);
+    }
+
+    public long getMaxWeight() {
+        return this.maxWeight;
+    }
+
+    public boolean getUseSoftReferences() {
+        return this.useSoftReferences;
+    }
+
+    public int size() {
+        return this.data.size();
+    }
+
+    public long getWeightedSize() {
+        return this.totalWeight.get();
+    }
+
+
+
+    // -----
+
+
+
+    /*
+     * Accounts for the weight of an added node and/or a removed one (any of them might be null)
+     */
+    private void addWeight(final Node<K,V> added, final Node<K,V> removed) {
+        final int delta =
+                (added == null? 0 : added.entry.weight) - (removed == null? 0 : removed.entry.weight);
+        if (delta != 0) {
+            this.totalWeight.addAndGet(delta);
+        }
+    }
+
+
+    private void removeAllData() {
+        if (this.totalWeight.get() == 0L) {
+            this.data.clear();
+            return;
+        }
+        // Entries are weighed, so they are removed one by one in order to keep the weight counter consistent
+        for (final Map.Entry<K,Node<K,V>> entry : this.data.entrySet()) {
+            if (this.data.remove(entry.getKey(), entry.getValue())) {
+                addWeight(null, entry.getValue());
+            }
+        }
+    }
+
+
+
+    private void recordRead(final Node<K,V> node) {
+        final int stripe = (int) (Thread.currentThread().getId() & (READ_BUFFER_STRIPES - 1));
+        final int pending = this.readBuffers[stripe].offer(node);
+        if (pending >= READ_BUFFER_DRAIN_THRESHOLD) {
+            // No need to loop here: reads are lossy, and whoever holds the lock will drain the buffers anyway
+            if (this.evictionLock.tryLock()) {
+                try {
+                    drainBuffersUnderLock();
+                } finally {
+                    this.evictionLock.unlock();
+                }
+            }
+        }
+    }
+
+
+    private void drainBuffers() {
+        // Threads never block waiting for the eviction lock: if it is already held, its owner will apply our
+        // writes. The loop makes sure no writes are left pending after the owner checks the write buffer.
+        do {
+            if (!this.evictionLock.tryLock()) {
+                return;
+            }
+            try {
+                drainBuffersUnderLock();
+            } finally {
+                this.evictionLock.unlock();
+            }
+        } while (!this.writeBuffer.isEmpty());
+    }
+
+
+    private void drainBuffersUnderLock() {
+        for (int i = 0; i < this.readBuffers.length; i++) {
+            this.readBuffers[i].drainTo(this);
+        }
+        Runnable task;
+        while ((task = this.writeBuffer.poll()) != null) {
+            task.run();
+        }
+    }
+
+
+
+
+    /*
+     * ------------------------------------------------------------------
+     * EVICTION POLICY: all methods below require holding the eviction lock
+     * ------------------------------------------------------------------
+     */
+
+
+    private void onAccess(final Node<K,V> node) {
+
+        this.sketch.increment(node.key);
+
+        switch (node.queue) {
+            case QUEUE_WINDOW:
+                this.window.moveToLast(node);
+                break;
+            case QUEUE_PROBATION:
+                // Accessed while in probation: promote to the protected segment
+                this.probation.remove(node);
+                this.protectedSegment.addLast(node);
+                node.queue = QUEUE_PROTECTED;
+                this.protectedSize++;
+                demoteFromProtectedIfNeeded();
+                break;
+            case QUEUE_PROTECTED:
+                this.protectedSegment.moveToLast(node);
+                break;
+            default:
+                // Node has already been removed (or its addition is still pending at the write buffer)
+                break;
+        }
+
+    }
+
+
+    private void onAdd(final Node<K,V> node) {
+
+        if (node.retired || this.data.get(node.key) != node) {
+            // Removed or replaced even before its addition was applied to the policy
+            node.retired = true;
+            return;
+        }
+
+        this.sketch.increment(node.key);
+
+        this.window.addLast(node);
+        node.queue = QUEUE_WINDOW;
+        this.windowSize++;
+        this.policySize++;
+
+        evictIfNeeded();
+        if (this.maxWeight > 0L) {
+            evictByWeightIfNeeded();
+        }
+
+    }
+
+
+    private void onRemove(final Node<K,V> node) {
+        unlink(node);
+        node.retired = true;
+    }
+
+
+    private void evictIfNeeded() {
+
+        while (this.windowSize > this.windowMaxSize) {
+
+            final Node<K,V> candidate = this.window.pollFirst();
+            candidate.queue = QUEUE_NONE;
+            this.windowSize--;
+
+            if (this.policySize - this.windowSize <= this.mainMaxSize) {
+                // There is still room in the main space
+                this.probation.addLast(candidate);
+                candidate.queue = QUEUE_PROBATION;
+                continue;
+            }
+
+            Node<K,V> victim = this.probation.peekFirst();
+            if (victim == null) {
+                victim = this.protectedSegment.peekFirst();
+            }
+
+            if (victim != null && this.sketch.frequency(candidate.key) > this.sketch.frequency(victim.key)) {
+                // The candidate is more popular than the victim: admit the candidate, evict the victim
+                evict(victim);
+                this.probation.addLast(candidate);
+                candidate.queue = QUEUE_PROBATION;
+            } else {
+                // Candidate was not admitted into the main space
+                this.policySize--;
+                evictUnlinked(candidate);
+            }
+
+        }
+
+    }
+
+
+    private void evictByWeightIfNeeded() {
+
+        while (this.totalWeight.get() > this.maxWeight) {
+
+            Node<K,V> victim = this.probation.peekFirst();
+            if (victim == null) {
+                victim = this.protectedSegment.peekFirst();
+            }
+            if (victim == null) {
+                victim = this.window.peekFirst();
+            }
+            if (victim == null) {
+                // Remaining weight belongs to entries whose addition has not been applied to the policy yet
+                return;
+            }
+
+            evict(victim);
+
+        }
+
+    }
+
+
+    private void demoteFromProtectedIfNeeded() {
+        while (this.protectedSize > this.protectedMaxSize) {
+            final Node<K,V> demoted = this.protectedSegment.pollFirst();
+            this.protectedSize--;
+            this.probation.addLast(demoted);
+            demoted.queue = QUEUE_PROBATION;
+        }
+    }
+
+
+    private void evict(final Node<K,V> node) {
+        unlink(node);
+        evictUnlinked(node);
+    }
+
+
+    private void evictUnlinked(final Node<K,V> node) {
+
+        node.retired = true;
+        final boolean removed = this.data.remove(node.key, node);
+        if (!removed) {
+            return;
+        }
+
+        addWeight(null, node);
+        this.evictionCount++;
+
+        if (this.traceExecution) {
+            final Integer newSize = Integer.valueOf(this.data.size());
+            this.logger.trace(
+                    "[THYMELEAF][{}][{}][CACHE_REMOVE][{}] Max size exceeded for cache \"{}\". Removing entry for key \"{}\". New size is {}.",
+                    new Object[] {TemplateEngine.threadIndex(), this.name, newSize, this.name, node.key, newSize});
+        }
+
+    }
+
+
+    private void unlink(final Node<K,V> node) {
+        switch (node.queue) {
+            case QUEUE_WINDOW:
+                this.window.remove(node);
+                this.windowSize--;
+                this.policySize--;
+                break;
+            case QUEUE_PROBATION:
+                this.probation.remove(node);
+                this.policySize--;
+                break;
+            case QUEUE_PROTECTED:
+                this.protectedSegment.remove(node);
+                this.protectedSize--;
+                this.policySize--;
+                break;
+            default:
+                break;
+        }
+        node.queue = QUEUE_NONE;
+    }
+
+
+    private static <K,V> void clearDeque(final AccessOrderDeque<K,V> deque) {
+        Node<K,V> node;
+        while ((node = deque.pollFirst()) != null) {
+            node.queue = QUEUE_NONE;
+            node.retired = true;
+        }
+    }
+
+
+    private static int computeReadBufferStripes() {
+        final int target = Math.min(64, Runtime.getRuntime().availableProcessors());
+        int stripes = 1;
+        while (stripes < target) {
+            stripes <<= 1;
+        }
+        return stripes;
+    }
+
+
+    @SuppressWarnings("unchecked")
+    private static <K,V> ReadBuffer<K,V>[] newReadBuffers(final int stripes) {
+        // Generic arrays cannot be created directly, but this one will only ever contain ReadBuffer<K,V> objects
+        return (ReadBuffer<K,V>[]) new ReadBuffer<?,?>[stripes];
+    }
+
+
+
+
+    private final class AddTask implements Runnable {
+
+        private final Node<K,V> node;
+
+        AddTask(final Node<K,V> node) {
+            super();
+            this.node = node;
+        }
+
+        public void run() {
+            onAdd(this.node);
+        }
+
+    }
+
+
+    private final class RemoveTask implements Runnable {
+
+        private final Node<K,V> node;
+
+        RemoveTask(final Node<K,V> node) {
+            super();
+            this.node = node;
+        }
+
+        public void run() {
+            onRemove(this.node);
+        }
+
+    }
+
+
+
+
+    static final class Node<K,V> {
+
+        final K key;
+        final StandardCache.CacheEntry<V> entry;
+
+        // All fields below are guarded by the eviction lock
+        Node<K,V> prev = null;
+        Node<K,V> next = null;
+        int queue = QUEUE_NONE;
+        boolean retired = false;
+
+        Node(final K key, final StandardCache.CacheEntry<V> entry) {
+            super();
+            this.key = key;
+            this.entry = entry;
+        }
+
+    }
+
+
+
+
+    /*
+     * Doubly-linked list of nodes in access order (least recently used first). Links are stored at the nodes
+     * themselves so that no additional objects need to be created when moving nodes around.
+     */
+    static final class AccessOrderDeque<K,V> {
+
+        private Node<K,V> first = null;
+        private Node<K,V> last = null;
+
+        Node<K,V> peekFirst() {
+            return this.first;
+        }
+
+        Node<K,V> pollFirst() {
+            final Node<K,V> node = this.first;
+            if (node != null) {
+                remove(node);
+            }
+            return node;
+        }
+
+        void addLast(final Node<K,V> node) {
+            node.prev = this.last;
+            node.next = null;
+            if (this.last == null) {
+                this.first = node;
+            } else {
+                this.last.next = node;
+            }
+            this.last = node;
+        }
+
+        void remove(final Node<K,V> node) {
+            if (node.prev == null) {
+                this.first = node.next;
+            } else {
+                node.prev.next = node.next;
+            }
+            if (node.next == null) {
+                this.last = node.prev;
+            } else {
+                node.next.prev = node.prev;
+            }
+            node.prev = null;
+            node.next = null;
+        }
+
+        void moveToLast(final Node<K,V> node) {
+            if (this.last != node) {
+                remove(node);
+                addLast(node);
+            }
+        }
+
+    }
+
+
+
+
+    /*
+     * Lossy ring buffer recording read accesses. Many threads can offer nodes to it concurrently, but only
+     * the thread holding the eviction lock drains it. When full (or under contention), accesses are simply
+     * dropped: this only affects the precision of the eviction policy, never the correctness of the cache.
+     */
+    static final class ReadBuffer<K,V> {
+
+        static final int SIZE = 16;
+        private static final int MASK = SIZE - 1;
+
+        private final AtomicLong writeCounter = new AtomicLong(0L);
+        private volatile long readCounter = 0L; // only written while holding the eviction lock
+        private final AtomicReferenceArray<Node<K,V>> slots = new AtomicReferenceArray<Node<K,V>>(SIZE);
+
+        /*
+         * Returns the number of pending (not drained) reads at the buffer
+         */
+        int offer(final Node<K,V> node) {
+            final long head = this.readCounter;
+            final long tail = this.writeCounter.get();
+            final long size = tail - head;
+            if (size >= SIZE) {
+                return SIZE;
+            }
+            if (this.writeCounter.compareAndSet(tail, tail + 1)) {
+                this.slots.lazySet((int) (tail & MASK), node);
+                return (int) (size + 1);
+            }
+            return (int) size;
+        }
+
+        void drainTo(final TinyLFUCache<K,V> cache) {
+            long head = this.readCounter;
+            final long tail = this.writeCounter.get();
+            while (head < tail) {
+                final int index = (int) (head & MASK);
+                final Node<K,V> node = this.slots.get(index);
+                if (node == null) {
+                    // Slot reserved but not published yet: will be drained next time
+                    break;
+                }
+                this.slots.lazySet(index, null);
+                cache.onAccess(node);
+                head++;
+            }
+            this.readCounter = head;
+        }
+
+    }
+
+
+}
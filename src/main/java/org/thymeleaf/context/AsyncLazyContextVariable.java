@@ -0,0 +1,127 @@
+/*
+ * =============================================================================
+ *
+ *   Copyright (c) 2011-2016, The THYMELEAF team (http://www.thymeleaf.org)
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ * =============================================================================
+ */
+package org.thymeleaf.context;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.thymeleaf.exceptions.TemplateProcessingException;
+import org.thymeleaf.util.Validate;
+
+/**
+ * <p>
+ *   Basic abstract implementation for the {@link IAsyncLazyContextVariable} interface.
+ * </p>
+ * <p>
+ *   Objects of this class load their value (by calling the abstract {@link #loadValue()} method, which
+ *   implementation has to be provided by the user) only once, on the {@link Executor} specified at construction,
+ *   as soon as template processing starts. Accessing the value from the template will only block if it is
+ *   still being loaded. If loading has not actually started when the value is first accessed (e.g. if the
+ *   variable was not a first-level context variable, or if the load is still queued in the executor), the value
+ *   will be loaded synchronously by the thread accessing it, just like a {@link LazyContextVariable}. If the
+ *   executor rejects the load, it is performed synchronously by the thread starting it.
+ * </p>
+ * <p>
+ *   An example:
+ * </p>
+ * <pre><code>
+ * context.setVariable(
+ *     "users",
+ *     new AsyncLazyContextVariable&lt;List&lt;User&gt;&gt;(executor) {
+ *         &#64;Override
+ *         protected List&lt;User&gt; loadValue() {
+ *             return databaseRepository.findAllUsers();
+ *         }
+ *     });
+ * </code></pre>
+ * <p>
+ *   Any exceptions thrown by {@link #loadValue()} will be re-thrown when the value is accessed.
+ * </p>
+ *
+ * @param <T> the type of the value being returned by this variable
+ *
+ * @author Daniel Fern&aacute;ndez
+ *
+ * @since 3.0.3
+ *
+ */
+public abstract class AsyncLazyContextVariable<T> implements IAsyncLazyContextVariable<T> {
+
+
+    private final Executor executor;
+    private final FutureTask<T> load;
+    private final AtomicBoolean started = new AtomicBoolean(false);
+
+
+    protected AsyncLazyContextVariable(final Executor executor) {
+        super();
+        Validate.notNull(executor, "Executor cannot be null");
+        this.executor = executor;
+        this.load = new FutureTask<T>(new Callable<T>() {
+            public T call() {
+                return loadValue();
+            }
+        });
+    }
+
+
+    public final void startLoading() {
+        if (!this.started.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            this.executor.execute(this.load);
+        } catch (final RejectedExecutionException e) {
+            this.load.run();
+        }
+    }
+
+
+    public final T getValue() {
+        if (!this.load.isDone()) {
+            // No-op if the load has already been started by the executor (we will then wait for it). Else we avoid
+            // waiting for it to get out of the executor's queue, and also avoid any later loads by the executor.
+            this.load.run();
+        }
+        try {
+            return this.load.get();
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new TemplateProcessingException("Interrupted while waiting for the value of a lazy variable", e);
+        } catch (final ExecutionException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new TemplateProcessingException("Error loading the value of a lazy variable", cause);
+        }
+    }
+
+
+    protected abstract T loadValue();
+
+}
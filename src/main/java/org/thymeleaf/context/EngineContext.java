@@ -22,13 +22,13 @@
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
+import java.util.TreeMap;
 
 import org.thymeleaf.IEngineConfiguration;
 import org.thymeleaf.engine.TemplateData;
@@ -63,17 +63,41 @@ public class EngineContext extends AbstractEngineContext implements IEngineConte
      * This class is in charge of managing the map of variables in place at each moment in the template processing,
      * by taking care of the different model levels the process is traversing and storing local variables only
      * for the levels they correspond to.
+     *
+     * Variables are not stored in a separate map per level. Instead, there is one single flattened store containing
+     * the value currently visible for each variable name (a dense set of entry arrays indexed by an open-addressed
+     * hash table) plus the level at which such value was set. Every time a variable is set at a level different
+     * from the one its current value belongs to, the value being shadowed is pushed into an undo log, and then
+     * decreaseLevel() simply rolls back the undo log down to the mark recorded when the level was opened.
+     *
+     * This way, lookups are O(1) no matter how deep in the model hierarchy we are, and opening/closing levels
+     * (which happens for every th:each iteration or th:with) does not need to allocate any maps. Entries are never
+     * removed from the store (they are just marked as absent), so the set of entries stays stable during the
+     * whole template processing and can be iterated without creating any iterators or map entries.
      */
 
     private static final int DEFAULT_ELEMENT_HIERARCHY_SIZE = 20;
     private static final int DEFAULT_LEVELS_SIZE = 10;
-    private static final int DEFAULT_MAP_SIZE = 5;
+    private static final int DEFAULT_VARIABLES_SIZE = 16; // Must be a power of 2 (size of the hash table)
+    private static final int DEFAULT_UNDO_LOG_SIZE = 32;
 
 
     private int level = 0;
     private int index = 0;
     private int[] levels;
-    private HashMap<String,Object>[] maps;
+    private int[] undoMarks;
+
+    private String[] variableNames;
+    private Object[] variableValues;    // null means "absent"
+    private int[] variableLevels;       // level at which the current value was set, -1 if absent
+    private int variableCount = 0;
+    private int[] variableTable;        // open-addressed, contains (entry + 1), 0 meaning "empty"
+
+    private int[] undoEntries;
+    private Object[] undoValues;
+    private int[] undoLevels;
+    private int undoSize = 0;
+
     private SelectionTarget[] selectionTargets;
     private IInliner[] inliners;
     private TemplateData[] templateDatas;
@@ -130,7 +154,7 @@ public EngineContext(
         super(configuration, templateResolutionAttributes, locale);
 
         this.levels = new int[DEFAULT_LEVELS_SIZE];
-        this.maps = (HashMap<String, Object>[]) new HashMap<?,?>[DEFAULT_LEVELS_SIZE];
+        this.undoMarks = new int[DEFAULT_LEVELS_SIZE];
         this.selectionTargets = new SelectionTarget[DEFAULT_LEVELS_SIZE];
         this.inliners = new IInliner[DEFAULT_LEVELS_SIZE];
         this.templateDatas = new TemplateData[DEFAULT_LEVELS_SIZE];
@@ -138,7 +162,6 @@ public EngineContext(
         this.elementTags = new IProcessableElementTag[DEFAULT_ELEMENT_HIERARCHY_SIZE];
 
         Arrays.fill(this.levels, Integer.MAX_VALUE);
-        Arrays.fill(this.maps, null);
         Arrays.fill(this.selectionTargets, null);
         Arrays.fill(this.inliners, null);
         Arrays.fill(this.templateDatas, null);
@@ -152,6 +175,19 @@ public EngineContext(
         this.templateStack = new ArrayList<TemplateData>(DEFAULT_LEVELS_SIZE);
         this.templateStack.add(templateData);
 
+        int variablesSize = DEFAULT_VARIABLES_SIZE;
+        while (variables != null && variablesSize < (variables.size() + 2) * 2) {
+            variablesSize <<= 1;
+        }
+        this.variableNames = new String[variablesSize / 2];
+        this.variableValues = new Object[variablesSize / 2];
+        this.variableLevels = new int[variablesSize / 2];
+        this.variableTable = new int[variablesSize];
+
+        this.undoEntries = new int[DEFAULT_UNDO_LOG_SIZE];
+        this.undoValues = new Object[DEFAULT_UNDO_LOG_SIZE];
+        this.undoLevels = new int[DEFAULT_UNDO_LOG_SIZE];
+
         if (variables != null) {
             setVariables(variables);
         }
@@ -160,79 +196,103 @@ public EngineContext(
 
 
     public boolean containsVariable(final String name) {
-        int n = this.index + 1;
-        Object value;
-        HashMap map;
-        while (n-- != 0) {
-            map = this.maps[n];
-            if (map != null && map.size() > 0) {
-                // Even if the value is null, we will have a value (null is inserted as the NULL constant)
-                value = map.get(name);
-                if (value != null) {
-                    // The most modern entry we find for this key could be a removal --> false
-                    return value != NON_EXISTING;
-                }
-            }
+        final int entry = findVariable(name);
+        if (entry < 0) {
+            return false;
         }
-        return false;
+        // Even if the value is null, we will have a value (null is inserted as the NULL constant)
+        final Object value = this.variableValues[entry];
+        return value != null && value != NON_EXISTING;
     }
 
 
     public Object getVariable(final String key) {
-        int n = this.index + 1;
+        final int entry = findVariable(key);
+        if (entry < 0) {
+            return null;
+        }
+        final Object value = this.variableValues[entry];
+        if (value == null || value == NON_EXISTING || value == NULL) {
+            return null;
+        }
+        return resolveLazy(value);
+    }
+
+
+    public Set<String> getVariableNames() {
+
+        final Set<String> variableNames = new HashSet<String>(this.variableCount + 1, 1.0f);
         Object value;
-        HashMap map;
-        while (n-- != 0) {
-            map = this.maps[n];
-            if (map != null && map.size() > 0) {
-                // Even if the value is null, we will have a value (null is inserted as the NULL constant)
-                value = map.get(key);
-                if (value != null) {
-                    if (value == NON_EXISTING || value == NULL) {
-                        return null;
-                    }
-                    return resolveLazy(value);
-                }
+        for (int i = 0; i < this.variableCount; i++) {
+            value = this.variableValues[i];
+            if (value != null && value != NON_EXISTING) {
+                variableNames.add(this.variableNames[i]);
             }
         }
-        return null;
+        return variableNames;
+
     }
 
 
-    public Set<String> getVariableNames() {
+    /**
+     * <p>
+     *   Creates a new, independent context containing the variables and selection target currently visible at
+     *   this context, so that (parts of) the template can be processed by a different thread while this context
+     *   keeps being modified by the thread processing the template.
+     * </p>
+     * <p>
+     *   Lazy variables extending {@link LazyContextVariable} or implementing {@link IAsyncLazyContextVariable}
+     *   are copied without being resolved, so that they are only resolved (if needed) by the thread using the
+     *   snapshot. These variables might therefore be resolved concurrently by both threads, which is safe as
+     *   both implementations are thread-safe. Any other lazy variables (implementing {@link ILazyContextVariable}
+     *   directly) cannot be assumed to be thread-safe, and are resolved before being copied. Note variable
+     *   values themselves are not copied.
+     * </p>
+     *
+     * @param templateData the template data for the template to be processed using the snapshot.
+     * @return the new context.
+     * @since 3.0.3
+     */
+    public EngineContext createSnapshot(final TemplateData templateData) {
 
-        final Set<String> variableNames = new HashSet<String>();
-        int n = this.index + 1;
-        int i = 0;
-        while (n-- != 0) {
-            if (this.maps[i] != null) {
-                for (final Map.Entry<String,Object> mapEntry : this.maps[i].entrySet()) {
-                    if (mapEntry.getValue() == NON_EXISTING) {
-                        variableNames.remove(mapEntry.getKey());
-                        continue;
-                    }
-                    variableNames.add(mapEntry.getKey());
+        final Map<String,Object> variables = new LinkedHashMap<String, Object>(this.variableCount + 1, 1.0f);
+        Object value;
+        for (int i = 0; i < this.variableCount; i++) {
+            value = this.variableValues[i];
+            if (value != null && value != NON_EXISTING) {
+                if (value instanceof ILazyContextVariable &&
+                        !(value instanceof LazyContextVariable) && !(value instanceof IAsyncLazyContextVariable)) {
+                    value = ((ILazyContextVariable<?>) value).getValue();
                 }
+                variables.put(this.variableNames[i], (value == NULL? null : value));
             }
-            i++;
         }
-        return variableNames;
+
+        final EngineContext snapshot =
+                new EngineContext(
+                        getConfiguration(), templateData, getTemplateResolutionAttributes(), getLocale(), variables);
+        if (hasSelectionTarget()) {
+            snapshot.setSelectionTarget(getSelectionTarget());
+        }
+
+        return snapshot;
 
     }
 
 
     public void setVariable(final String name, final Object value) {
 
-        ensureLevelInitialized(DEFAULT_MAP_SIZE);
+        ensureLevelInitialized();
 
         if (value == NON_EXISTING && this.level == 0) {
-            this.maps[this.index].remove(name);
-        } else {
-            if (value == null) {
-                this.maps[this.index].put(name, NULL);
-            } else {
-                this.maps[this.index].put(name, value);
+            // Nothing to undo at level 0, so the entry is simply marked as absent
+            final int entry = findVariable(name);
+            if (entry >= 0) {
+                this.variableValues[entry] = null;
+                this.variableLevels[entry] = -1;
             }
+        } else {
+            putVariable(name, (value == null? NULL : value));
         }
 
     }
@@ -244,15 +304,11 @@ public void setVariables(final Map<String, Object> variables) {
             return;
         }
 
-        ensureLevelInitialized(Math.max(DEFAULT_MAP_SIZE, variables.size() + 2));
+        ensureLevelInitialized();
 
         for (final Map.Entry<String, Object> entry : variables.entrySet()) {
             final Object value = entry.getValue();
-            if (value == null) {
-                this.maps[this.index].put(entry.getKey(), NULL);
-            } else {
-                this.maps[this.index].put(entry.getKey(), value);
-            }
+            putVariable(entry.getKey(), (value == null? NULL : value));
         }
 
     }
@@ -270,17 +326,108 @@ public void removeVariable(final String name) {
 
 
     public boolean isVariableLocal(final String name) {
-        int n = this.index + 1;
-        while (n-- > 1) { // variables at n == 0 are not local!
-            if (this.maps[n] != null && this.maps[n].containsKey(name)) {
-                final Object result = this.maps[n].get(name);
-                if (result == NON_EXISTING) {
-                    return false; // We return false for "non existing"
-                }
-                return true;
+        final int entry = findVariable(name);
+        if (entry < 0) {
+            return false;
+        }
+        final Object value = this.variableValues[entry];
+        // variables at level 0 are not local! And we return false for "non existing"
+        return value != null && value != NON_EXISTING && this.variableLevels[entry] > 0;
+    }
+
+
+
+
+    private int findVariable(final String name) {
+        final int mask = this.variableTable.length - 1;
+        int pos = hash(name) & mask;
+        int slot;
+        String entryName;
+        while ((slot = this.variableTable[pos]) != 0) {
+            entryName = this.variableNames[slot - 1];
+            if (entryName == name || (name != null && name.equals(entryName))) {
+                return slot - 1;
+            }
+            pos = (pos + 1) & mask;
+        }
+        return -1;
+    }
+
+
+    private void putVariable(final String name, final Object value) {
+
+        int entry = findVariable(name);
+        if (entry < 0) {
+            entry = addVariable(name);
+        }
+
+        // Values set at level 0 are never rolled back, and values already set at the current level have
+        // already had their previous (shadowed) value logged when they were first set at this level.
+        if (this.level > 0 && this.variableLevels[entry] != this.level) {
+            if (this.undoSize == this.undoEntries.length) {
+                final int newSize = this.undoEntries.length * 2;
+                this.undoEntries = Arrays.copyOf(this.undoEntries, newSize);
+                this.undoValues = Arrays.copyOf(this.undoValues, newSize);
+                this.undoLevels = Arrays.copyOf(this.undoLevels, newSize);
+            }
+            this.undoEntries[this.undoSize] = entry;
+            this.undoValues[this.undoSize] = this.variableValues[entry];
+            this.undoLevels[this.undoSize] = this.variableLevels[entry];
+            this.undoSize++;
+        }
+
+        this.variableValues[entry] = value;
+        this.variableLevels[entry] = this.level;
+
+    }
+
+
+    private int addVariable(final String name) {
+
+        if (this.variableCount == this.variableNames.length) {
+            final int newSize = this.variableNames.length * 2;
+            this.variableNames = Arrays.copyOf(this.variableNames, newSize);
+            this.variableValues = Arrays.copyOf(this.variableValues, newSize);
+            this.variableLevels = Arrays.copyOf(this.variableLevels, newSize);
+        }
+
+        final int entry = this.variableCount++;
+        this.variableNames[entry] = name;
+        this.variableValues[entry] = null;
+        this.variableLevels[entry] = -1;
+
+        // The hash table is kept at most half full, so that probe sequences stay short
+        if (this.variableCount * 2 > this.variableTable.length) {
+            this.variableTable = new int[this.variableTable.length * 2];
+            for (int i = 0; i < this.variableCount; i++) {
+                insertIntoTable(i);
             }
+        } else {
+            insertIntoTable(entry);
         }
-        return false; // We return false for "non existing"
+
+        return entry;
+
+    }
+
+
+    private void insertIntoTable(final int entry) {
+        final int mask = this.variableTable.length - 1;
+        int pos = hash(this.variableNames[entry]) & mask;
+        while (this.variableTable[pos] != 0) {
+            pos = (pos + 1) & mask;
+        }
+        this.variableTable[pos] = entry + 1;
+    }
+
+
+    private static int hash(final String name) {
+        if (name == null) {
+            return 0;
+        }
+        // Spread the higher bits, as the table is indexed by the lower ones
+        final int h = name.hashCode();
+        return h ^ (h >>> 16);
     }
 
 
@@ -316,7 +463,7 @@ public Object getSelectionTarget() {
 
 
     public void setSelectionTarget(final Object selectionTarget) {
-        ensureLevelInitialized(-1);
+        ensureLevelInitialized();
         this.lastSelectionTarget = new SelectionTarget(selectionTarget);
         this.selectionTargets[this.index] = this.lastSelectionTarget;
     }
@@ -346,7 +493,7 @@ public IInliner getInliner() {
 
 
     public void setInliner(final IInliner inliner) {
-        ensureLevelInitialized(-1);
+        ensureLevelInitialized();
         // We use NoOpInliner.INSTANCE in order to signal when inlining has actually been disabled
         this.lastInliner = (inliner == null? NoOpInliner.INSTANCE : inliner);
         this.inliners[this.index] = this.lastInliner;
@@ -372,7 +519,7 @@ public TemplateData getTemplateData() {
 
     public void setTemplateData(final TemplateData templateData) {
         Validate.notNull(templateData, "Template Data cannot be null");
-        ensureLevelInitialized(-1);
+        ensureLevelInitialized();
         this.lastTemplateData = templateData;
         this.templateDatas[this.index] = this.lastTemplateData;
         this.templateStack.clear();
@@ -434,7 +581,7 @@ public List<IProcessableElementTag> getElementStackAbove(final int contextLevel)
 
 
 
-    private void ensureLevelInitialized(final int requiredSize) {
+    private void ensureLevelInitialized() {
 
         // First, check if the current index already signals the current level (in which case, everything is OK)
         if (this.levels[this.index] != this.level) {
@@ -446,21 +593,17 @@ private void ensureLevelInitialized(final int requiredSize) {
             if (this.levels.length == this.index) {
                 this.levels = Arrays.copyOf(this.levels, this.levels.length + DEFAULT_LEVELS_SIZE);
                 Arrays.fill(this.levels, this.index, this.levels.length, Integer.MAX_VALUE); // We fill the new places with MAX_VALUE
-                this.maps = Arrays.copyOf(this.maps, this.maps.length + DEFAULT_LEVELS_SIZE);
+                this.undoMarks = Arrays.copyOf(this.undoMarks, this.undoMarks.length + DEFAULT_LEVELS_SIZE);
                 this.selectionTargets = Arrays.copyOf(this.selectionTargets, this.selectionTargets.length + DEFAULT_LEVELS_SIZE);
                 this.inliners = Arrays.copyOf(this.inliners, this.inliners.length + DEFAULT_LEVELS_SIZE);
                 this.templateDatas = Arrays.copyOf(this.templateDatas, this.templateDatas.length + DEFAULT_LEVELS_SIZE);
             }
 
             this.levels[this.index] = this.level;
+            this.undoMarks[this.index] = this.undoSize; // Changes to variables from here on belong to this level
 
         }
 
-        if (requiredSize >= 0 && this.maps[this.index] == null) {
-            // The map for this level has not yet been created
-            this.maps[this.index] = new HashMap<String,Object>(requiredSize, 1.0f);
-        }
-
     }
 
 
@@ -481,9 +624,18 @@ public void decreaseLevel() {
         if (this.levels[this.index] == this.level) {
 
             this.levels[this.index] = Integer.MAX_VALUE;
-            if (this.maps[this.index] != null) {
-                this.maps[this.index].clear();
+
+            // Roll back every change performed on variables at this level, restoring the shadowed values
+            final int undoMark = this.undoMarks[this.index];
+            int entry;
+            while (this.undoSize > undoMark) {
+                this.undoSize--;
+                entry = this.undoEntries[this.undoSize];
+                this.variableValues[entry] = this.undoValues[this.undoSize];
+                this.variableLevels[entry] = this.undoLevels[this.undoSize];
+                this.undoValues[this.undoSize] = null;
             }
+
             this.selectionTargets[this.index] = null;
             this.inliners[this.index] = null;
             this.templateDatas[this.index] = null;
@@ -508,31 +660,30 @@ public void decreaseLevel() {
 
     public String getStringRepresentationByLevel() {
 
+        final Map<String,Object>[] maps = computeVariablesByIndex();
+
         final StringBuilder strBuilder = new StringBuilder();
         strBuilder.append('{');
         int n = this.index + 1;
         while (n-- != 0) {
             final Map<String,Object> levelVars = new LinkedHashMap<String, Object>();
-            if (this.maps[n] != null) {
-                final List<String> entryNames = new ArrayList<String>(this.maps[n].keySet());
-                Collections.sort(entryNames);
-                for (final String name : entryNames) {
-                    final Object value = this.maps[n].get(name);
-                    if (value == NON_EXISTING) {
-                        // We only have to add this if it is really removing anything
-                        int n2 = n;
-                        while (n2-- != 0) {
-                            if (this.maps[n2] != null && this.maps[n2].containsKey(name)) {
-                                if (this.maps[n2].get(name) != NON_EXISTING) {
-                                    levelVars.put(name, value);
-                                }
-                                break;
+            for (final Map.Entry<String,Object> mapEntry : maps[n].entrySet()) {
+                final String name = mapEntry.getKey();
+                final Object value = mapEntry.getValue();
+                if (value == NON_EXISTING) {
+                    // We only have to add this if it is really removing anything
+                    int n2 = n;
+                    while (n2-- != 0) {
+                        if (maps[n2].containsKey(name)) {
+                            if (maps[n2].get(name) != NON_EXISTING) {
+                                levelVars.put(name, value);
                             }
+                            break;
                         }
-                        continue;
                     }
-                    levelVars.put(name, value);
+                    continue;
                 }
+                levelVars.put(name, value);
             }
             if (n == 0 || !levelVars.isEmpty() || this.selectionTargets[n] != null || this.inliners[n] != null || this.templateDatas[n] != null) {
                 if (strBuilder.length() > 1) {
@@ -566,21 +717,18 @@ public String getStringRepresentationByLevel() {
     @Override
     public String toString() {
 
+        final Map<String,Object>[] maps = computeVariablesByIndex();
+
         final Map<String,Object> equivalentMap = new LinkedHashMap<String, Object>();
         int n = this.index + 1;
         int i = 0;
         while (n-- != 0) {
-            if (this.maps[i] != null) {
-                final List<String> entryNames = new ArrayList<String>(this.maps[i].keySet());
-                Collections.sort(entryNames);
-                for (final String name : entryNames) {
-                    final Object value = this.maps[i].get(name);
-                    if (value == NON_EXISTING) {
-                        equivalentMap.remove(name);
-                        continue;
-                    }
-                    equivalentMap.put(name, value);
+            for (final Map.Entry<String,Object> mapEntry : maps[i].entrySet()) {
+                if (mapEntry.getValue() == NON_EXISTING) {
+                    equivalentMap.remove(mapEntry.getKey());
+                    continue;
                 }
+                equivalentMap.put(mapEntry.getKey(), mapEntry.getValue());
             }
             i++;
         }
@@ -593,6 +741,38 @@ public String toString() {
 
 
 
+    /*
+     * Rebuilds the variables set at each of the currently initialized levels (sorted by name), by replaying
+     * the undo log backwards on a copy of the variable store. Only meant for computing String representations.
+     */
+    private Map<String,Object>[] computeVariablesByIndex() {
+
+        final Object[] values = Arrays.copyOf(this.variableValues, this.variableCount);
+        final int[] valueLevels = Arrays.copyOf(this.variableLevels, this.variableCount);
+
+        final Map<String,Object>[] maps = (Map<String,Object>[]) new Map<?,?>[this.index + 1];
+        int undo = this.undoSize;
+        int n = this.index + 1;
+        while (n-- != 0) {
+            maps[n] = new TreeMap<String, Object>();
+            for (int i = 0; i < this.variableCount; i++) {
+                if (values[i] != null && valueLevels[i] == this.levels[n]) {
+                    maps[n].put(this.variableNames[i], values[i]);
+                }
+            }
+            while (undo > this.undoMarks[n]) {
+                undo--;
+                values[this.undoEntries[undo]] = this.undoValues[undo];
+                valueLevels[this.undoEntries[undo]] = this.undoLevels[undo];
+            }
+        }
+        return maps;
+
+    }
+
+
+
+
     private static Object resolveLazy(final Object variable) {
         /*
          * Check the possibility that this variable is a lazy one, in which case we should not return it directly
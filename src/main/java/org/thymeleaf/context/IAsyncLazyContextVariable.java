@@ -0,0 +1,57 @@
+/*
+ * =============================================================================
+ *
+ *   Copyright (c) 2011-2016, The THYMELEAF team (http://www.thymeleaf.org)
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ * =============================================================================
+ */
+package org.thymeleaf.context;
+
+/**
+ * <p>
+ *   Interface to be implemented by lazy context variables ({@link ILazyContextVariable}) whose value can be
+ *   loaded asynchronously, so that the engine can start loading them as soon as template processing starts instead
+ *   of waiting until they are first used.
+ * </p>
+ * <p>
+ *   The {@link StandardEngineContextFactory} calls {@link #startLoading()} on every variable of this type found
+ *   among the first-level variables of the context being used for processing a template, before processing starts.
+ *   This allows several independent slow lookups (e.g. calls to different backend services) to be performed at the
+ *   same time, and also at the same time as the parts of the template not needing them are being rendered.
+ *   {@link #getValue()} will then only block if the value has not been loaded yet.
+ * </p>
+ * <p>
+ *   The {@link AsyncLazyContextVariable} abstract class contains a sensible implementation of this interface, best
+ *   suited to be used for extension than the bare interface, in most cases.
+ * </p>
+ *
+ * @param <T> the type of the value being returned by this variable
+ *
+ * @author Daniel Fern&aacute;ndez
+ *
+ * @since 3.0.3
+ *
+ */
+public interface IAsyncLazyContextVariable<T> extends ILazyContextVariable<T> {
+
+    /**
+     * <p>
+     *   Starts loading the value of this variable asynchronously, if it has not been started yet. This method
+     *   should return immediately.
+     * </p>
+     */
+    public void startLoading();
+
+}
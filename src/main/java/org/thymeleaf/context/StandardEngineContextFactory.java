@@ -39,6 +39,10 @@
  *   instance as a result.
  * </p>
  * <p>
+ *   Variables implementing {@link IAsyncLazyContextVariable} will be told to start loading their values
+ *   when the engine context is created, i.e. before template processing starts.
+ * </p>
+ * <p>
  *   This is the default factory implementation used by {@link org.thymeleaf.TemplateEngine}.
  * </p>
  *
@@ -86,7 +90,12 @@ public IEngineContext createEngineContext(
 
         final Map<String,Object> variables = new LinkedHashMap<String, Object>(variableNames.size() + 1, 1.0f);
         for (final String variableName : variableNames) {
-            variables.put(variableName, context.getVariable(variableName));
+            final Object variableValue = context.getVariable(variableName);
+            if (variableValue instanceof IAsyncLazyContextVariable) {
+                // Asynchronous lazy variables start loading now, so that they are hopefully ready when needed
+                ((IAsyncLazyContextVariable<?>) variableValue).startLoading();
+            }
+            variables.put(variableName, variableValue);
         }
         if (context instanceof IWebContext) {
             final IWebContext webContext = (IWebContext)context;
@@ -0,0 +1,105 @@
+/*
+ * =============================================================================
+ *
+ *   Copyright (c) 2011-2016, The THYMELEAF team (http://www.thymeleaf.org)
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ * =============================================================================
+ */
+package org.thymeleaf.engine;
+
+/*
+ * Pool of the Strings used for attribute names and values during the parsing of a template, so that the
+ * attributes in the (often cached) resulting template model share String instances instead of each one of them
+ * keeping its own copies.
+ *
+ * Attribute names are taken, if possible, from the complete names of their AttributeName, which are already shared by
+ * all templates. Values (only short ones) are kept in a direct-mapped table, which means no Strings at all need to be
+ * created for repeated values (e.g. 'class' values in component-heavy markup) and the pool has a fixed size.
+ *
+ * Instances are meant to be used by a single parsing operation, and are therefore not thread-safe.
+ *
+ * @author Daniel Fernandez
+ * @since 3.0.3
+ *
+ */
+final class AttributeStringPool {
+
+    private static final int TABLE_SIZE = 256; // Must be a power of 2
+    private static final int MAX_POOLED_LENGTH = 64;
+
+    private final String[] table;
+
+
+
+    AttributeStringPool() {
+        super();
+        this.table = new String[TABLE_SIZE];
+    }
+
+
+
+
+    String getCompleteName(
+            final AttributeDefinition attributeDefinition, final char[] buffer, final int offset, final int len) {
+        final String[] completeAttributeNames = attributeDefinition.attributeName.completeAttributeNames;
+        for (int i = 0; i < completeAttributeNames.length; i++) {
+            if (matches(completeAttributeNames[i], buffer, offset, len)) {
+                return completeAttributeNames[i];
+            }
+        }
+        // Names not matching exactly (e.g. different case in HTML) are pooled as any other strings
+        return get(buffer, offset, len);
+    }
+
+
+    String get(final char[] buffer, final int offset, final int len) {
+
+        if (len > MAX_POOLED_LENGTH) {
+            return new String(buffer, offset, len);
+        }
+
+        int h = 0;
+        for (int i = offset, max = offset + len; i < max; i++) {
+            h = 31 * h + buffer[i];
+        }
+        final int slot = (h ^ (h >>> 16)) & (TABLE_SIZE - 1);
+
+        final String pooled = this.table[slot];
+        if (pooled != null && matches(pooled, buffer, offset, len)) {
+            return pooled;
+        }
+
+        // Not found (or a different String is occupying the slot, which we will simply replace)
+        final String str = new String(buffer, offset, len);
+        this.table[slot] = str;
+        return str;
+
+    }
+
+
+    private static boolean matches(final String str, final char[] buffer, final int offset, final int len) {
+        if (str.length() != len) {
+            return false;
+        }
+        for (int i = 0; i < len; i++) {
+            if (str.charAt(i) != buffer[offset + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+
+}
@@ -46,10 +46,15 @@ final class Attributes {
     static final Attribute[] EMPTY_ATTRIBUTE_ARRAY = new Attribute[0];
 
 
+    // Elements with many attributes will have their attributes indexed by name (lazily) for faster search
+    private static final int INDEXED_SEARCH_MIN_ATTRIBUTES = 8;
+
+
     final Attribute[] attributes; // might be null if there are no attributes
     final String[] innerWhiteSpaces; // might be null if there are no attributes and no whitespaces
 
     private volatile int associatedProcessorCount = -1;
+    private volatile short[] attributeNameIndex = null; // open-addressed, contains (position + 1), 0 meaning "empty"
 
 
 
@@ -122,6 +127,9 @@ private int searchAttribute(final AttributeName attributeName) {
         if (this.attributes == null || this.attributes.length == 0) {
             return -1;
         }
+        if (this.attributes.length >= INDEXED_SEARCH_MIN_ATTRIBUTES && this.attributes.length < Short.MAX_VALUE) {
+            return searchIndexedAttribute(attributeName);
+        }
         int n = this.attributes.length;
         while (n-- != 0) {
             // AttributeName objects are registered in a repository and are singletons, so == is fine
@@ -135,6 +143,55 @@ private int searchAttribute(final AttributeName attributeName) {
 
 
 
+    private int searchIndexedAttribute(final AttributeName attributeName) {
+        short[] index = this.attributeNameIndex;
+        if (index == null) {
+            // Benign race: several threads might compute the index at the same time, but results will be the same
+            this.attributeNameIndex = index = buildAttributeNameIndex(this.attributes);
+        }
+        final int mask = index.length - 1;
+        int slot = indexSlot(attributeName, mask);
+        int entry;
+        while ((entry = index[slot]) != 0) {
+            // AttributeName objects are registered in a repository and are singletons, so == is fine
+            if (this.attributes[entry - 1].definition.attributeName == attributeName) {
+                return entry - 1;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+
+    private static short[] buildAttributeNameIndex(final Attribute[] attributes) {
+        int size = 16;
+        while (size < attributes.length * 2) {
+            size <<= 1;
+        }
+        final short[] index = new short[size];
+        final int mask = size - 1;
+        for (int i = 0; i < attributes.length; i++) {
+            final AttributeName attributeName = attributes[i].definition.attributeName;
+            int slot = indexSlot(attributeName, mask);
+            int entry;
+            while ((entry = index[slot]) != 0 && attributes[entry - 1].definition.attributeName != attributeName) {
+                slot = (slot + 1) & mask;
+            }
+            // If the same attribute appears more than once, the last one wins (same as in non-indexed search)
+            index[slot] = (short) (i + 1);
+        }
+        return index;
+    }
+
+
+    private static int indexSlot(final AttributeName attributeName, final int mask) {
+        final int h = attributeName.hashCode();
+        return (h ^ (h >>> 16)) & mask;
+    }
+
+
+
+
     boolean hasAttribute(final TemplateMode templateMode, final String completeName) {
         return searchAttribute(templateMode, completeName) >= 0;
     }
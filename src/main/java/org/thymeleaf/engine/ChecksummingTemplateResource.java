@@ -0,0 +1,136 @@
+/*
+ * =============================================================================
+ *
+ *   Copyright (c) 2011-2016, The THYMELEAF team (http://www.thymeleaf.org)
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ * =============================================================================
+ */
+package org.thymeleaf.engine;
+
+import java.io.IOException;
+import java.io.Reader;
+
+import org.thymeleaf.templateresource.ITemplateResource;
+
+/*
+ * Template resource wrapper that computes the checksum used by TemplateModelSnapshotStore (64-bit FNV-1a hash
+ * on the characters of the resource) on the characters read by the parser, so that templates being added to a
+ * snapshot store do not need to be read a second time just for computing it.
+ *
+ * The checksum is only available once a reader obtained from this resource has been fully consumed.
+ *
+ * @author Daniel Fernandez
+ * @since 3.0.3
+ *
+ */
+final class ChecksummingTemplateResource implements ITemplateResource {
+
+    static final long CHECKSUM_OFFSET_BASIS = 0xcbf29ce484222325L;
+    static final long CHECKSUM_PRIME = 0x100000001b3L;
+
+    private final ITemplateResource resource;
+    private volatile ChecksummingReader lastReader = null;
+
+
+
+    ChecksummingTemplateResource(final ITemplateResource resource) {
+        super();
+        this.resource = resource;
+    }
+
+
+    static long updateChecksum(final long checksum, final char[] buffer, final int off, final int len) {
+        long hash = checksum;
+        final int max = off + len;
+        for (int i = off; i < max; i++) {
+            hash ^= buffer[i];
+            hash *= CHECKSUM_PRIME;
+        }
+        return hash;
+    }
+
+
+    /*
+     * Returns true if the last reader obtained from this resource was fully consumed, and therefore
+     * getChecksum() can be called.
+     */
+    boolean isChecksumAvailable() {
+        final ChecksummingReader reader = this.lastReader;
+        return (reader != null && reader.complete);
+    }
+
+
+    long getChecksum() {
+        return this.lastReader.checksum;
+    }
+
+
+
+
+    public String getDescription() {
+        return this.resource.getDescription();
+    }
+
+    public String getBaseName() {
+        return this.resource.getBaseName();
+    }
+
+    public boolean exists() {
+        return this.resource.exists();
+    }
+
+    public Reader reader() throws IOException {
+        final ChecksummingReader reader = new ChecksummingReader(this.resource.reader());
+        this.lastReader = reader;
+        return reader;
+    }
+
+    public ITemplateResource relative(final String relativeLocation) {
+        return this.resource.relative(relativeLocation);
+    }
+
+
+
+
+    private static final class ChecksummingReader extends Reader {
+
+        private final Reader reader;
+        private long checksum = CHECKSUM_OFFSET_BASIS;
+        private volatile boolean complete = false;
+
+        ChecksummingReader(final Reader reader) {
+            super();
+            this.reader = reader;
+        }
+
+        @Override
+        public int read(final char[] cbuf, final int off, final int len) throws IOException {
+            final int read = this.reader.read(cbuf, off, len);
+            if (read > 0) {
+                this.checksum = updateChecksum(this.checksum, cbuf, off, read);
+            } else if (read < 0) {
+                this.complete = true;
+            }
+            return read;
+        }
+
+        @Override
+        public void close() throws IOException {
+            this.reader.close();
+        }
+
+    }
+
+}
@@ -37,8 +37,16 @@ final class ElementProcessorIterator {
      * This class will take care of iterating the processors in the most optimal way possible. It allows the attributes
      * in the tag to be modified durint iteration, taking new processors into account as soon as they appear, even if
      * they have higher precedence than the last executed processor for the same tag.
+     *
+     * As long as the attributes of the tag are not modified, the iterator directly walks the precedence-ordered
+     * processor array frozen at the tag (computed when the template model was built), keeping track of the visited
+     * processors in a bit mask. Only when attributes change (and therefore processors need recomputing) does
+     * it switch to its own copies of the processor and visited arrays. These copies are kept (and reused) after
+     * the iterator is reset, but every new tag starts again by walking its frozen array.
      */
 
+    private static final int MAX_SHARED_SIZE = 64; // bits in visitedMask
+
 
     private int last = -1;
 
@@ -48,6 +56,15 @@ final class ElementProcessorIterator {
     private boolean[] visited = null;
     private int size = 0;
 
+    // Whether the 'processors' array is the one frozen at the tag (which must never be modified), in which case
+    // visited processors are tracked in the mask instead of in the 'visited' array
+    private boolean shared = false;
+    private long visitedMask = 0L;
+
+    // The processors array owned by this iterator (the one 'visited' was allocated with), kept separately so that
+    // it can be reused after sharing a tag's frozen array
+    private IElementProcessor[] ownProcessors = null;
+
     // These structures are used when we need to recompute already-existing structures, in order to reduce
     // the total amount of processor arrays created during normal operation (attributes might change a lot).
     private IElementProcessor[] auxProcessors = null;
@@ -70,6 +87,8 @@ final class ElementProcessorIterator {
 
 
     void reset() {
+        this.processors = null;
+        this.shared = false;
         this.size = 0;
         this.last = -1;
         this.currentTag = null;
@@ -104,6 +123,20 @@ IElementProcessor next(final AbstractProcessableElementTag tag) {
         // We use 'last' as a starting index in order save some iterations (except after recomputes)
         int i = this.last + 1;
         int n = this.size - i;
+        if (this.shared) {
+            long bit;
+            while (n-- != 0) {
+                bit = 1L << i;
+                if ((this.visitedMask & bit) == 0L) {
+                    this.visitedMask |= bit;
+                    this.last = i;
+                    return this.processors[i];
+                }
+                i++;
+            }
+            this.last = this.size;
+            return null;
+        }
         while (n-- != 0) {
             if (!this.visited[i]) {
                 this.visited[i] = true;
@@ -160,24 +193,44 @@ private void recompute(final AbstractProcessableElementTag tag) {
         final IElementProcessor[] associatedProcessors = tag.getAssociatedProcessors();
 
         if (associatedProcessors.length == 0) {
-            // After recompute, it seems we have no processors to be applied (we might have had before)
+            // After recompute, it seems we have no processors to be applied (we might have had before). We don't
+            // mind what we had in the arrays (our own ones will be reused if needed), and next time we will be able
+            // to simply walk the array frozen at the tag again
 
-            if (this.processors != null) {
-                // We don't mind what we had in the arrays - setting size to 0 will invalidate them
-                this.size = 0;
-            } // else there's nothing to do -- we had nothing precomputed, and will still have the same nothing
+            this.processors = null;
+            this.shared = false;
+            this.size = 0;
 
             return;
 
         }
 
 
+        if (this.processors == null && associatedProcessors.length <= MAX_SHARED_SIZE) {
+            // We had nothing precomputed, so we can simply walk the array frozen at the tag
+
+            this.size = associatedProcessors.length;
+            this.processors = associatedProcessors;
+            this.shared = true;
+            this.visitedMask = 0L;
+
+            return;
+
+        }
+
+
+        if (this.shared) {
+            // Processors have changed, so we need our own (modifiable) copies of the shared structures first
+            unshare();
+        }
+
+
         if (this.processors == null) {
             // We had nothing precomputed, but there are associated processors now!
 
             this.size = associatedProcessors.length;
-            this.processors = new IElementProcessor[Math.max(this.size, 4)]; // minimum size = 4
-            this.visited = new boolean[Math.max(this.size, 4)]; // minimum size = 4
+            ensureOwnCapacity(this.size);
+            this.processors = this.ownProcessors;
 
             System.arraycopy(associatedProcessors, 0, this.processors, 0, this.size);
             Arrays.fill(this.visited, false);
@@ -257,25 +310,64 @@ private void recompute(final AbstractProcessableElementTag tag) {
         this.auxVisited = this.visited;
         this.processors = swapProcessors;
         this.visited = swapVisited;
+        this.ownProcessors = swapProcessors;
         this.size = this.auxSize;
 
     }
 
 
 
+    private void unshare() {
+
+        final IElementProcessor[] sharedProcessors = this.processors;
+        final long sharedVisitedMask = this.visitedMask;
+
+        this.shared = false;
+        this.visitedMask = 0L;
+
+        ensureOwnCapacity(this.size);
+        this.processors = this.ownProcessors;
+
+        System.arraycopy(sharedProcessors, 0, this.processors, 0, this.size);
+        for (int i = 0; i < this.size; i++) {
+            this.visited[i] = ((sharedVisitedMask & (1L << i)) != 0L);
+        }
+
+    }
+
+
+
+    private void ensureOwnCapacity(final int capacity) {
+        if (this.ownProcessors == null || this.ownProcessors.length < capacity) {
+            this.ownProcessors = new IElementProcessor[Math.max(capacity, 4)]; // minimum size = 4
+            this.visited = new boolean[Math.max(capacity, 4)]; // minimum size = 4
+        }
+    }
+
+
+
     void resetAsCloneOf(final ElementProcessorIterator original) {
 
+        // Never write into a shared array
+        this.processors = null;
+        this.shared = false;
+
         this.size = original.size;
         this.last = original.last;
         this.currentTag = original.currentTag;
         this.lastToBeRepeated = original.lastToBeRepeated;
         this.lastWasRepeated = original.lastWasRepeated;
 
-        if (this.size > 0 && original.processors != null) { // original.visited will also be != null
-            if (this.processors == null || this.processors.length < this.size) {
-                this.processors = new IElementProcessor[this.size];
-                this.visited = new boolean[this.size];
-            }
+        if (original.shared) {
+            this.processors = original.processors;
+            this.shared = true;
+            this.visitedMask = original.visitedMask;
+            return;
+        }
+
+        if (original.processors != null) { // original.visited will also be != null
+            ensureOwnCapacity(this.size);
+            this.processors = this.ownProcessors;
             System.arraycopy(original.processors, 0, this.processors, 0, this.size);
             System.arraycopy(original.visited, 0, this.visited, 0, this.size);
         }
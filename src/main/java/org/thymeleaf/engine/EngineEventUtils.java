@@ -19,6 +19,7 @@
  */
 package org.thymeleaf.engine;
 
+import org.thymeleaf.context.IExpressionContext;
 import org.thymeleaf.context.ITemplateContext;
 import org.thymeleaf.model.ICDATASection;
 import org.thymeleaf.model.IComment;
@@ -199,6 +200,14 @@ public static IStandardExpression computeAttributeExpression(
         final AbstractProcessableElementTag processableElementTag = (AbstractProcessableElementTag)tag;
         final Attribute attribute = (Attribute) processableElementTag.getAttribute(attributeName);
 
+        return computeAttributeExpression(context, attribute, attributeValue);
+
+    }
+
+
+    static IStandardExpression computeAttributeExpression(
+            final IExpressionContext context, final Attribute attribute, final String attributeValue) {
+
         IStandardExpression expression = attribute.getCachedStandardExpression();
         if (expression != null) {
             return expression;
@@ -215,7 +224,7 @@ public static IStandardExpression computeAttributeExpression(
     }
 
 
-    private static IStandardExpression parseAttributeExpression(final ITemplateContext context, final String attributeValue) {
+    private static IStandardExpression parseAttributeExpression(final IExpressionContext context, final String attributeValue) {
         final IStandardExpressionParser expressionParser = StandardExpressions.getExpressionParser(context.getConfiguration());
         return expressionParser.parseExpression(context, attributeValue);
     }
@@ -31,6 +31,7 @@
 import org.thymeleaf.engine.TemplateModelController.SkipBody;
 import org.thymeleaf.model.ITemplateEvent;
 import org.thymeleaf.model.IText;
+import org.thymeleaf.reactive.IPublisher;
 import org.thymeleaf.templatemode.TemplateMode;
 import org.thymeleaf.util.StringUtils;
 
@@ -383,6 +384,9 @@ private static Integer computeIteratedObjectSize(final Object iteratedObject) {
         if (iteratedObject instanceof Iterator<?>) {
             return null; // Cannot determine before actually iterating
         }
+        if (iteratedObject instanceof IPublisher<?>) {
+            return null; // Cannot determine before actually iterating
+        }
         return Integer.valueOf(1); // In this case, we will iterate the object as a collection of size 1
     }
 
@@ -429,6 +433,10 @@ public void remove() {
         if (iteratedObject instanceof Iterator<?>) {
             return (Iterator<?>)iteratedObject;
         }
+        if (iteratedObject instanceof IPublisher<?>) {
+            // Data will be requested on demand, and iterations will be processed as soon as it arrives
+            return new PublisherTemplateIterator((IPublisher<?>)iteratedObject);
+        }
         if (iteratedObject instanceof Enumeration<?>) {
             return new Iterator<Object>() {
 
@@ -661,6 +669,7 @@ private static final class ThrottledIteration {
 
         private final TemplateFlowController flowController;
         private final DataDrivenTemplateIterator throttledIterator;
+        private final PublisherTemplateIterator publisherIterator;
 
         ThrottledIteration(final TemplateFlowController flowController, final Iterator<?> iterator) {
             super();
@@ -670,28 +679,58 @@ private static final class ThrottledIteration {
             } else {
                 this.throttledIterator = null;
             }
+            if (iterator != null && iterator instanceof PublisherTemplateIterator) {
+                this.publisherIterator = (PublisherTemplateIterator) iterator;
+                if (flowController != null) {
+                    this.publisherIterator.setDataAvailableListener(flowController.dataAvailableListener);
+                }
+            } else {
+                this.publisherIterator = null;
+            }
         }
 
 
         IterationType computeIterationType() {
+            final IterationType iterationType;
             if (this.throttledIterator != null) {
-                final IterationType iterationType = this.throttledIterator.getIterationType();
-                if (iterationType == null) {
-                    this.flowController.stopProcessing = true;
+                iterationType = this.throttledIterator.getIterationType();
+            } else if (this.publisherIterator != null) {
+                iterationType = this.publisherIterator.getIterationType();
+            } else {
+                return null;
+            }
+            if (iterationType == null) {
+                if (this.flowController == null && this.publisherIterator != null) {
+                    // Non-throttled processing: there is no way to stop processing, so we block until data arrives
+                    this.publisherIterator.awaitData();
+                    return this.publisherIterator.getIterationType();
                 }
-                return iterationType;
+                waitForData();
             }
-            return null;
+            return iterationType;
         }
 
         void checkStatus() {
             if (this.throttledIterator != null) {
                 if (this.throttledIterator.isPaused()) {
-                    this.flowController.stopProcessing = true;
+                    waitForData();
+                }
+            } else if (this.publisherIterator != null) {
+                if (this.publisherIterator.isPaused()) {
+                    if (this.flowController == null) {
+                        this.publisherIterator.awaitData();
+                    } else {
+                        waitForData();
+                    }
                 }
             }
         }
 
+        private void waitForData() {
+            this.flowController.stopProcessing = true;
+            this.flowController.waitingForData = true;
+        }
+
     }
 
 
@@ -63,7 +63,16 @@ public ModelBuilderTemplateHandler(final IEngineConfiguration configuration, fin
 
 
     public TemplateModel getModel() {
-        return new TemplateModel(this.configuration, this.templateData, this.events.toArray(new IEngineTemplateEvent[this.events.size()]));
+        final IEngineTemplateEvent[] queue = this.events.toArray(new IEngineTemplateEvent[this.events.size()]);
+        // Resolve (and freeze) the precedence-ordered processors for each tag now, so that this is done only once
+        // for the model instead of on the first execution of each tag (which might happen concurrently if cached).
+        // Once computed, tags with no processors are simply sent to output by the ProcessorTemplateHandler.
+        for (int i = 0; i < queue.length; i++) {
+            if (queue[i] instanceof AbstractProcessableElementTag) {
+                ((AbstractProcessableElementTag) queue[i]).getAssociatedProcessors();
+            }
+        }
+        return new TemplateModel(this.configuration, this.templateData, queue);
     }
 
 
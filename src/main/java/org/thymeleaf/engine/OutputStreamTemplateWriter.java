@@ -0,0 +1,153 @@
+/*
+ * =============================================================================
+ *
+ *   Copyright (c) 2011-2016, The THYMELEAF team (http://www.thymeleaf.org)
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ * =============================================================================
+ */
+package org.thymeleaf.engine;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
+
+import org.thymeleaf.util.Validate;
+
+/**
+ * <p>
+ *   {@link Writer} implementation that encodes template output into an {@link OutputStream}, in the same way
+ *   as an {@link java.io.OutputStreamWriter} would do, but which is also able to copy the static parts of cached
+ *   templates to the output stream in their pre-encoded form, so that only dynamic text needs to be
+ *   encoded at each execution.
+ * </p>
+ * <p>
+ *   This is the writer used by
+ *   {@link org.thymeleaf.TemplateEngine#process(org.thymeleaf.TemplateSpec, org.thymeleaf.context.IContext, OutputStream, Charset)},
+ *   but it can also be directly used for processing templates with any of the <tt>Writer</tt>-based
+ *   <tt>process(...)</tt> methods of the template engine.
+ * </p>
+ * <p>
+ *   Objects of this class are not thread-safe.
+ * </p>
+ *
+ * @author Daniel Fern&aacute;ndez
+ * @since 3.0.3
+ *
+ */
+public final class OutputStreamTemplateWriter extends Writer {
+
+    public static final int DEFAULT_BUFFER_SIZE_IN_BYTES = 8192;
+
+    private final OutputStream outputStream;
+    private final Charset charset;
+    private final Writer writer;
+
+
+
+    public OutputStreamTemplateWriter(final OutputStream outputStream, final Charset charset) {
+        this(outputStream, charset, DEFAULT_BUFFER_SIZE_IN_BYTES);
+    }
+
+
+    public OutputStreamTemplateWriter(final OutputStream outputStream, final Charset charset, final int bufferSizeInBytes) {
+        super();
+        Validate.notNull(outputStream, "Output Stream cannot be null");
+        Validate.notNull(charset, "Charset cannot be null");
+        Validate.isTrue(bufferSizeInBytes > 0, "Buffer size must be greater than zero");
+        this.outputStream = outputStream;
+        this.charset = charset;
+        // Malformed input and unmappable chars are replaced, as an OutputStreamWriter would do
+        final CharsetEncoder charsetEncoder =
+                charset.newEncoder()
+                        .onMalformedInput(CodingErrorAction.REPLACE)
+                        .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        this.writer = Channels.newWriter(Channels.newChannel(outputStream), charsetEncoder, bufferSizeInBytes);
+    }
+
+
+
+
+    public Charset getCharset() {
+        return this.charset;
+    }
+
+
+
+
+    /*
+     * Static regions are copied to the output stream already encoded, after flushing any chars pending at the
+     * encoder so that order is kept. Only flushing the encoder does not flush the output stream itself.
+     */
+    boolean writeEncoded(final StaticRegion staticRegion) throws IOException {
+        final byte[] bytes = staticRegion.getEncoded(this.charset);
+        if (bytes == null) {
+            return false;
+        }
+        this.writer.flush();
+        this.outputStream.write(bytes);
+        return true;
+    }
+
+
+
+
+    @Override
+    public void write(final int c) throws IOException {
+        this.writer.write(c);
+    }
+
+
+    @Override
+    public void write(final String str) throws IOException {
+        this.writer.write(str);
+    }
+
+
+    @Override
+    public void write(final String str, final int off, final int len) throws IOException {
+        this.writer.write(str, off, len);
+    }
+
+
+    @Override
+    public void write(final char[] cbuf) throws IOException {
+        this.writer.write(cbuf);
+    }
+
+
+    @Override
+    public void write(final char[] cbuf, final int off, final int len) throws IOException {
+        this.writer.write(cbuf, off, len);
+    }
+
+
+    @Override
+    public void flush() throws IOException {
+        this.writer.flush();
+        this.outputStream.flush();
+    }
+
+
+    @Override
+    public void close() throws IOException {
+        this.writer.close();
+    }
+
+
+}
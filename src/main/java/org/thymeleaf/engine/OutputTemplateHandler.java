@@ -19,6 +19,7 @@
  */
 package org.thymeleaf.engine;
 
+import java.io.IOException;
 import java.io.Writer;
 
 import org.thymeleaf.exceptions.TemplateOutputException;
@@ -31,6 +32,7 @@
 import org.thymeleaf.model.IStandaloneElementTag;
 import org.thymeleaf.model.IText;
 import org.thymeleaf.model.IXMLDeclaration;
+import org.thymeleaf.util.FragmentStitchingWriter;
 
 
 /**
@@ -82,6 +84,47 @@ public void handleText(final IText text) {
 
 
 
+    /*
+     * Static regions are sent here directly (instead of as texts) by the ProcessorTemplateHandler, so that
+     * byte-based writers can copy their pre-encoded form to output instead of encoding them again.
+     */
+    void handleStaticRegion(final StaticRegion staticRegion) {
+
+        final Text text = staticRegion.text;
+
+        try {
+            if (!writeEncoded(staticRegion)) {
+                text.write(this.writer);
+            }
+        } catch (final Exception e) {
+            throw new TemplateOutputException(
+                    "An error happened during template rendering",
+                    text.getTemplateName(), text.getLine(), text.getCol(), e);
+        }
+
+        // Just in case someone set us a 'next'
+        super.handleText(text);
+
+    }
+
+
+    private boolean writeEncoded(final StaticRegion staticRegion) throws IOException {
+        Writer target = this.writer;
+        if (target instanceof FragmentStitchingWriter) {
+            // Pre-encoded output can only skip the stitching writer if no concurrent fragments are pending
+            target = ((FragmentStitchingWriter) target).getDirectWriter();
+        }
+        if (target instanceof OutputStreamTemplateWriter) {
+            return ((OutputStreamTemplateWriter) target).writeEncoded(staticRegion);
+        }
+        if (target instanceof ThrottledTemplateWriter) {
+            return ((ThrottledTemplateWriter) target).writeEncoded(staticRegion);
+        }
+        return false;
+    }
+
+
+
     @Override
     public void handleComment(final IComment comment) {
         
@@ -42,6 +42,18 @@ final class ProcessorExecutionVars {
     }
 
 
+    // Leaves these vars as if they had just been created, so that they can be reused for a different element
+    void reset() {
+        this.processorIterator.reset();
+        this.modelBefore = null;
+        this.modelAfter = null;
+        this.modelAfterProcessable = false;
+        this.discardEvent = false;
+        this.skipBody = TemplateModelController.SkipBody.PROCESS;
+        this.skipCloseTag = false;
+    }
+
+
     ProcessorExecutionVars cloneVars() {
         final ProcessorExecutionVars clone = new ProcessorExecutionVars();
         clone.processorIterator.resetAsCloneOf(this.processorIterator);
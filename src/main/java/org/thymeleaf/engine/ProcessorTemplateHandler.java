@@ -30,6 +30,11 @@
 import org.thymeleaf.context.ITemplateContext;
 import org.thymeleaf.engine.TemplateModelController.SkipBody;
 import org.thymeleaf.exceptions.TemplateProcessingException;
+import org.thymeleaf.inline.IInliner;
+import org.thymeleaf.inline.NoOpInliner;
+import org.thymeleaf.metrics.IEngineMetricsListener;
+import org.thymeleaf.metrics.IEngineProfilingListener;
+import org.thymeleaf.metrics.ProfileFrameType;
 import org.thymeleaf.model.ICDATASection;
 import org.thymeleaf.model.ICloseElementTag;
 import org.thymeleaf.model.IComment;
@@ -43,6 +48,7 @@
 import org.thymeleaf.model.ITemplateStart;
 import org.thymeleaf.model.IText;
 import org.thymeleaf.model.IXMLDeclaration;
+import org.thymeleaf.processor.IProcessor;
 import org.thymeleaf.processor.cdatasection.ICDATASectionProcessor;
 import org.thymeleaf.processor.comment.ICommentProcessor;
 import org.thymeleaf.processor.doctype.IDocTypeProcessor;
@@ -53,7 +59,11 @@
 import org.thymeleaf.processor.templateboundaries.ITemplateBoundariesProcessor;
 import org.thymeleaf.processor.text.ITextProcessor;
 import org.thymeleaf.processor.xmldeclaration.IXMLDeclarationProcessor;
+import org.thymeleaf.standard.inline.StandardHTMLInliner;
+import org.thymeleaf.standard.inline.StandardXMLInliner;
 import org.thymeleaf.templatemode.TemplateMode;
+import org.thymeleaf.util.EngineConfigurationUtils;
+import org.thymeleaf.util.ProcessorConfigurationUtils;
 import org.thymeleaf.util.Validate;
 
 /**
@@ -87,6 +97,8 @@ public final class ProcessorTemplateHandler implements ITemplateHandler {
     private static final ITextProcessor[] EMPTY_TEXT_PROCESSORS = new ITextProcessor[0];
     private static final IXMLDeclarationProcessor[] EMPTY_XML_DECLARATION_PROCESSORS = new IXMLDeclarationProcessor[0];
 
+    private static final int DEFAULT_EXECUTION_VARS_DEPTH = 10;
+
 
     // Structure handlers are reusable objects that will be used by processors in order to instruct the engine to
     // do things with the processed structures themselves (things that cannot be directly done from the processors like
@@ -115,6 +127,11 @@ public final class ProcessorTemplateHandler implements ITemplateHandler {
     private IEngineContext engineContext = null;
     private TemplateFlowController flowController = null; // optional, only if the template should be throttled
 
+    // Will be null unless a metrics listener has been configured, in which case processor executions will be timed
+    private IEngineMetricsListener metricsListener = null;
+    // Will be null unless the metrics listener is also a profiling listener, which will be told about element frames
+    private IEngineProfilingListener profilingListener = null;
+
 
     // These arrays will be initialized with all the registered processors for the different kind of non-element
     // processors. This is done so because non-element processors will not change during the execution of the engine
@@ -162,6 +179,12 @@ public final class ProcessorTemplateHandler implements ITemplateHandler {
     // so we can just create one and use it everytime it is needed.
     private DecreaseContextLevelProcessable decreaseContextLevelProcessable = null;
 
+    // When not throttling, the vars used for executing the processors of an element are only needed until the
+    // handling of the element finishes (gathering models clone them), so they are kept in a stack indexed by the
+    // nesting depth of element handling and reused for subsequent elements.
+    private ProcessorExecutionVars[] executionVars = new ProcessorExecutionVars[DEFAULT_EXECUTION_VARS_DEPTH];
+    private int executionVarsDepth = 0;
+
 
 
     /**
@@ -200,6 +223,9 @@ public void setNext(final ITemplateHandler next) {
     @Override
     public void setContext(final ITemplateContext context) {
 
+        final IEngineConfiguration previousConfiguration = this.configuration;
+        final TemplateMode previousTemplateMode = this.templateMode;
+
         this.context = context;
         Validate.notNull(this.context, "Context cannot be null");
         Validate.notNull(this.context.getTemplateMode(), "Template Mode returned by context cannot be null");
@@ -210,6 +236,9 @@ public void setContext(final ITemplateContext context) {
         Validate.notNull(this.configuration.getAttributeDefinitions(), "Attribute Definitions returned by the Engine Configuration cannot be null");
 
         this.attributeDefinitions = this.configuration.getAttributeDefinitions();
+        this.metricsListener = EngineConfigurationUtils.getMetricsListener(this.configuration);
+        this.profilingListener =
+                (this.metricsListener instanceof IEngineProfilingListener? (IEngineProfilingListener) this.metricsListener : null);
 
         this.templateMode = this.context.getTemplateMode(); // Just a way to avoid doing the call each time
 
@@ -238,6 +267,12 @@ public void setContext(final ITemplateContext context) {
         final Set<ITextProcessor> textProcessorSet = this.configuration.getTextProcessors(this.templateMode);
         final Set<IXMLDeclarationProcessor> xmlDeclarationProcessorSet = this.configuration.getXMLDeclarationProcessors(this.templateMode);
 
+        // A handler being reused (see reset()) for the same configuration and template mode can keep its arrays
+        if (this.configuration == previousConfiguration && this.templateMode == previousTemplateMode &&
+                this.templateBoundariesProcessors != null) {
+            return;
+        }
+
         // Initialize arrays containing the processors for all the non-element structures (these do not change during execution)
         this.templateBoundariesProcessors =
                 templateBoundariesProcessorSet.size() == 0? EMPTY_TEMPLATE_BOUNDARIES_PROCESSORS : templateBoundariesProcessorSet.toArray(new ITemplateBoundariesProcessor[templateBoundariesProcessorSet.size()]);
@@ -272,6 +307,41 @@ public void setFlowController(final TemplateFlowController flowController) {
 
 
 
+    /*
+     * Leaves this handler ready to be used again (see TemplateManager), releasing all references to the objects
+     * of the last execution. Only the objects that depend on the engine configuration and template mode are kept.
+     */
+    void reset() {
+        this.next = null;
+        this.context = null;
+        this.engineContext = null;
+        this.flowController = null;
+        this.throttleEngine = false;
+        this.modelController = null;
+        this.decreaseContextLevelProcessable = null;
+        this.initialContextLevel = null;
+        this.currentGatheringModel = null;
+        if (this.pendingProcessings != null) {
+            Arrays.fill(this.pendingProcessings, null);
+        }
+        this.pendingProcessingsSize = 0;
+        for (int i = 0; i < this.executionVars.length && this.executionVars[i] != null; i++) {
+            this.executionVars[i].reset();
+        }
+        this.executionVarsDepth = 0;
+        this.elementTagStructureHandler.reset();
+        this.elementModelStructureHandler.reset();
+        this.templateBoundariesStructureHandler.reset();
+        this.cdataSectionStructureHandler.reset();
+        this.commentStructureHandler.reset();
+        this.docTypeStructureHandler.reset();
+        this.processingInstructionStructureHandler.reset();
+        this.textStructureHandler.reset();
+        this.xmlDeclarationStructureHandler.reset();
+    }
+
+
+
 
 
 
@@ -325,7 +395,9 @@ public void handleTemplateStart(final ITemplateStart itemplateStart) {
 
             structureHandler.reset();
 
+            final long processorStartNanos = startProcessorExecution(this.templateBoundariesProcessors[i]);
             this.templateBoundariesProcessors[i].processTemplateStart(this.context, itemplateStart, structureHandler);
+            recordProcessorExecution(this.templateBoundariesProcessors[i], processorStartNanos);
 
             if (this.engineContext != null) {
                 structureHandler.applyContextModifications(this.engineContext);
@@ -412,7 +484,9 @@ public void handleTemplateEnd(final ITemplateEnd itemplateEnd) {
 
             structureHandler.reset();
 
+            final long processorStartNanos = startProcessorExecution(this.templateBoundariesProcessors[i]);
             this.templateBoundariesProcessors[i].processTemplateEnd(this.context, itemplateEnd, structureHandler);
+            recordProcessorExecution(this.templateBoundariesProcessors[i], processorStartNanos);
 
             if (this.engineContext != null) {
                 structureHandler.applyContextModifications(this.engineContext);
@@ -557,7 +631,9 @@ public void handleText(final IText itext) {
 
             structureHandler.reset();
 
+            final long processorStartNanos = startProcessorExecution(this.textProcessors[i]);
             this.textProcessors[i].process(this.context, text, structureHandler);
+            recordProcessorExecution(this.textProcessors[i], processorStartNanos);
 
             if (structureHandler.setText) {
 
@@ -609,6 +685,53 @@ public void handleText(final IText itext) {
 
 
 
+    /*
+     * Static regions are coalesced runs of events that no processor can modify (see StaticRegion). If nothing
+     * would have been done with any of them, their pre-serialized output is sent down the chain as a single text
+     * (or directly to the output handler, which might be able to use its pre-encoded form).
+     *
+     * This also applies to throttled processing, as long as processing has not been stopped: a region is output
+     * as a whole even if that exceeds the current output limit, as it is a single event. Once processing has been
+     * stopped, the region is replayed so that its events are queued one by one.
+     */
+    void handleStaticRegion(final StaticRegion staticRegion) {
+
+        // If processing is stopped, replaying will queue each of the events for later handling
+        if ((!this.throttleEngine || !this.flowController.stopProcessing) &&
+                staticRegion.templateMode == this.templateMode &&
+                isStaticRegionInliningSafe() &&
+                this.modelController.shouldOutputStaticRegion(staticRegion)) {
+            if (this.next instanceof OutputTemplateHandler) {
+                ((OutputTemplateHandler) this.next).handleStaticRegion(staticRegion);
+            } else {
+                this.next.handleText(staticRegion.text);
+            }
+            return;
+        }
+
+        staticRegion.replay(this);
+
+    }
+
+
+    private boolean isStaticRegionInliningSafe() {
+        if (this.textProcessors.length == 0) {
+            return true;
+        }
+        // Only the standard inliners are known to ignore texts without inlined expressions (when in their mode)
+        final IInliner inliner = this.context.getInliner();
+        return (inliner == null || inliner == NoOpInliner.INSTANCE ||
+                (this.templateMode == TemplateMode.HTML && inliner instanceof StandardHTMLInliner) ||
+                (this.templateMode == TemplateMode.XML && inliner instanceof StandardXMLInliner));
+    }
+
+
+
+
+
+
+
+
     @Override
     public void handleComment(final IComment icomment) {
 
@@ -662,7 +785,9 @@ public void handleComment(final IComment icomment) {
 
             structureHandler.reset();
 
+            final long processorStartNanos = startProcessorExecution(this.commentProcessors[i]);
             this.commentProcessors[i].process(this.context, comment, structureHandler);
+            recordProcessorExecution(this.commentProcessors[i], processorStartNanos);
 
             if (structureHandler.setContent) {
 
@@ -767,7 +892,9 @@ public void handleCDATASection(final ICDATASection icdataSection) {
 
             structureHandler.reset();
 
+            final long processorStartNanos = startProcessorExecution(this.cdataSectionProcessors[i]);
             this.cdataSectionProcessors[i].process(this.context, cdataSection, structureHandler);
+            recordProcessorExecution(this.cdataSectionProcessors[i], processorStartNanos);
 
             if (structureHandler.setContent) {
 
@@ -822,6 +949,23 @@ public void handleCDATASection(final ICDATASection icdataSection) {
     @Override
     public void handleStandaloneElement(final IStandaloneElementTag istandaloneElementTag) {
 
+        if (this.profilingListener == null || !isProfilableElement(istandaloneElementTag)) {
+            doHandleStandaloneElement(istandaloneElementTag);
+            return;
+        }
+
+        this.profilingListener.enterElement(istandaloneElementTag.getTemplateName(), istandaloneElementTag.getElementCompleteName());
+        try {
+            doHandleStandaloneElement(istandaloneElementTag);
+        } finally {
+            this.profilingListener.exit(ProfileFrameType.ELEMENT);
+        }
+
+    }
+
+
+    private void doHandleStandaloneElement(final IStandaloneElementTag istandaloneElementTag) {
+
         /*
          * If processing is stopped, we should queue this for later handling
          * In theory, given the origin of events (parser or cache) should get stopped immediately, this should
@@ -893,7 +1037,7 @@ public void handleStandaloneElement(final IStandaloneElementTag istandaloneEleme
          * model, we will just re-initialize to the original variables, the ones we had before suspending.
          */
         final ProcessorExecutionVars vars =
-                (currentGatheringModel == null? new ProcessorExecutionVars() : currentGatheringModel.initializeProcessorExecutionVars());
+                (currentGatheringModel == null? acquireExecutionVars() : currentGatheringModel.initializeProcessorExecutionVars());
 
 
         /*
@@ -915,7 +1059,9 @@ public void handleStandaloneElement(final IStandaloneElementTag istandaloneEleme
             if (processor instanceof IElementTagProcessor) {
 
                 final IElementTagProcessor elementProcessor = ((IElementTagProcessor)processor);
+                final long processorStartNanos = startProcessorExecution(elementProcessor);
                 elementProcessor.process(this.context, standaloneElementTag, tagStructureHandler);
+                recordProcessorExecution(elementProcessor, processorStartNanos);
 
                 // Apply any context modifications made by the processor (local vars, inlining, etc.)
                 tagStructureHandler.applyContextModifications(this.engineContext);
@@ -945,6 +1091,7 @@ public void handleStandaloneElement(final IStandaloneElementTag istandaloneEleme
                     }
 
                     // Complete exit of the handler method: no more processing to do from here
+                    releaseExecutionVars(vars);
                     return;
 
                 } else if (tagStructureHandler.setBodyText) {
@@ -971,6 +1118,7 @@ public void handleStandaloneElement(final IStandaloneElementTag istandaloneEleme
                     }
 
                     // Complete exit of the handler method: no more processing to do from here
+                    releaseExecutionVars(vars);
                     return;
 
                 } else if (tagStructureHandler.setBodyModel) {
@@ -996,6 +1144,7 @@ public void handleStandaloneElement(final IStandaloneElementTag istandaloneEleme
                     }
 
                     // Complete exit of the handler method: no more processing to do from here
+                    releaseExecutionVars(vars);
                     return;
 
                 } else if (tagStructureHandler.insertBeforeModel) {
@@ -1114,6 +1263,7 @@ public void handleStandaloneElement(final IStandaloneElementTag istandaloneEleme
                     }
 
                     // Nothing else to be done by this handler... let's just queue the rest of the events in this element
+                    releaseExecutionVars(vars);
                     return;
 
                 }
@@ -1128,7 +1278,9 @@ public void handleStandaloneElement(final IStandaloneElementTag istandaloneEleme
                 final Model processedModel = new Model(gatheredModel);
 
                 // Execute the processor on the just-created Model
+                final long processorStartNanos = startProcessorExecution(processor);
                 ((IElementModelProcessor) processor).process(this.context, processedModel, modelStructureHandler);
+                recordProcessorExecution(processor, processorStartNanos);
 
                 // Apply any context modifications made by the processor (local vars, inlining, etc.)
                 modelStructureHandler.applyContextModifications(this.engineContext);
@@ -1217,6 +1369,8 @@ public void handleStandaloneElement(final IStandaloneElementTag istandaloneEleme
             queueProcessable(this.decreaseContextLevelProcessable);
         }
 
+        releaseExecutionVars(vars);
+
     }
 
 
@@ -1229,6 +1383,23 @@ public void handleStandaloneElement(final IStandaloneElementTag istandaloneEleme
     @Override
     public void handleOpenElement(final IOpenElementTag iopenElementTag) {
 
+        if (this.profilingListener == null || !isProfilableElement(iopenElementTag)) {
+            doHandleOpenElement(iopenElementTag);
+            return;
+        }
+
+        this.profilingListener.enterElement(iopenElementTag.getTemplateName(), iopenElementTag.getElementCompleteName());
+        try {
+            doHandleOpenElement(iopenElementTag);
+        } finally {
+            this.profilingListener.exit(ProfileFrameType.ELEMENT);
+        }
+
+    }
+
+
+    private void doHandleOpenElement(final IOpenElementTag iopenElementTag) {
+
         /*
          * If processing is stopped, we should queue this for later handling
          * In theory, given the origin of events (parser or cache) should get stopped immediately, this should
@@ -1289,7 +1460,7 @@ public void handleOpenElement(final IOpenElementTag iopenElementTag) {
          * model, we will just re-initialize to the original variables, the ones we had before suspending.
          */
         final ProcessorExecutionVars vars =
-                (currentGatheringModel == null? new ProcessorExecutionVars() : currentGatheringModel.initializeProcessorExecutionVars());
+                (currentGatheringModel == null? acquireExecutionVars() : currentGatheringModel.initializeProcessorExecutionVars());
 
 
         /*
@@ -1311,7 +1482,9 @@ public void handleOpenElement(final IOpenElementTag iopenElementTag) {
             if (processor instanceof IElementTagProcessor) {
 
                 final IElementTagProcessor elementProcessor = ((IElementTagProcessor)processor);
+                final long processorStartNanos = startProcessorExecution(elementProcessor);
                 elementProcessor.process(this.context, openElementTag, tagStructureHandler);
+                recordProcessorExecution(elementProcessor, processorStartNanos);
 
                 // Apply any context modifications made by the processor (local vars, inlining, etc.)
                 tagStructureHandler.applyContextModifications(this.engineContext);
@@ -1330,6 +1503,7 @@ public void handleOpenElement(final IOpenElementTag iopenElementTag) {
                             tagStructureHandler.iteratedObject);
 
                     // Nothing else to be done by this handler... let's just queue the rest of the events to be iterated
+                    releaseExecutionVars(vars);
                     return;
 
                 } else if (tagStructureHandler.setBodyText) {
@@ -1493,6 +1667,7 @@ public void handleOpenElement(final IOpenElementTag iopenElementTag) {
                     this.modelController.startGatheringDelayedModel(openElementTag, vars);
 
                     // Nothing else to be done by this handler... let's just queue the rest of the events in this element
+                    releaseExecutionVars(vars);
                     return;
 
                 }
@@ -1507,7 +1682,9 @@ public void handleOpenElement(final IOpenElementTag iopenElementTag) {
                 final Model processedModel = new Model(gatheredModel);
 
                 // Execute the processor on the just-created Model
+                final long processorStartNanos = startProcessorExecution(processor);
                 ((IElementModelProcessor) processor).process(this.context, processedModel, modelStructureHandler);
+                recordProcessorExecution(processor, processorStartNanos);
 
                 // Apply any context modifications made by the processor (local vars, inlining, etc.)
                 modelStructureHandler.applyContextModifications(this.engineContext);
@@ -1593,6 +1770,8 @@ public void handleOpenElement(final IOpenElementTag iopenElementTag) {
          */
         this.modelController.skip(vars.skipBody, vars.skipCloseTag);
 
+        releaseExecutionVars(vars);
+
     }
 
 
@@ -1755,7 +1934,9 @@ public void handleDocType(final IDocType idocType) {
 
             structureHandler.reset();
 
+            final long processorStartNanos = startProcessorExecution(this.docTypeProcessors[i]);
             this.docTypeProcessors[i].process(this.context, docType, structureHandler);
+            recordProcessorExecution(this.docTypeProcessors[i], processorStartNanos);
 
             if (structureHandler.setDocType) {
 
@@ -1866,7 +2047,9 @@ public void handleXMLDeclaration(final IXMLDeclaration ixmlDeclaration) {
 
             structureHandler.reset();
 
+            final long processorStartNanos = startProcessorExecution(this.xmlDeclarationProcessors[i]);
             this.xmlDeclarationProcessors[i].process(this.context, xmlDeclaration, structureHandler);
+            recordProcessorExecution(this.xmlDeclarationProcessors[i], processorStartNanos);
 
             if (structureHandler.setXMLDeclaration) {
 
@@ -1976,7 +2159,9 @@ public void handleProcessingInstruction(final IProcessingInstruction iprocessing
 
             structureHandler.reset();
 
+            final long processorStartNanos = startProcessorExecution(this.processingInstructionProcessors[i]);
             this.processingInstructionProcessors[i].process(this.context, processingInstruction, structureHandler);
+            recordProcessorExecution(this.processingInstructionProcessors[i], processorStartNanos);
 
             if (structureHandler.setProcessingInstruction) {
 
@@ -2177,6 +2362,65 @@ void setCurrentGatheringModel(final IGatheringModelProcessable gatheringModel) {
 
 
 
+    private long startProcessorExecution(final IProcessor processor) {
+        if (this.metricsListener == null) {
+            return 0L;
+        }
+        if (this.profilingListener != null) {
+            this.profilingListener.enterProcessor(ProcessorConfigurationUtils.unwrap(processor));
+        }
+        return System.nanoTime();
+    }
+
+
+    private void recordProcessorExecution(final IProcessor processor, final long startNanos) {
+        if (this.metricsListener != null) {
+            final long nanos = System.nanoTime() - startNanos;
+            if (this.profilingListener != null) {
+                this.profilingListener.exit(ProfileFrameType.PROCESSOR);
+            }
+            this.metricsListener.processorExecuted(ProcessorConfigurationUtils.unwrap(processor), nanos);
+        }
+    }
+
+
+    /*
+     * Only elements with associated processors are profiled, as the rest are just passed on to the next handler
+     */
+    private static boolean isProfilableElement(final IProcessableElementTag elementTag) {
+        return (elementTag instanceof AbstractProcessableElementTag &&
+                    ((AbstractProcessableElementTag) elementTag).hasAssociatedProcessors());
+    }
+
+
+    private ProcessorExecutionVars acquireExecutionVars() {
+        if (this.throttleEngine) {
+            // Throttled executions can keep vars in queued processables, so these are never reused
+            return new ProcessorExecutionVars();
+        }
+        if (this.executionVarsDepth == this.executionVars.length) {
+            this.executionVars = Arrays.copyOf(this.executionVars, this.executionVars.length + DEFAULT_EXECUTION_VARS_DEPTH);
+        }
+        ProcessorExecutionVars vars = this.executionVars[this.executionVarsDepth];
+        if (vars == null) {
+            vars = new ProcessorExecutionVars();
+            this.executionVars[this.executionVarsDepth] = vars;
+        } else {
+            vars.reset();
+        }
+        this.executionVarsDepth++;
+        return vars;
+    }
+
+
+    private void releaseExecutionVars(final ProcessorExecutionVars vars) {
+        // Vars not obtained from the stack (e.g. those of a gathering model) are simply ignored
+        if (this.executionVarsDepth > 0 && this.executionVars[this.executionVarsDepth - 1] == vars) {
+            this.executionVarsDepth--;
+        }
+    }
+
+
     private Model resetModel(final Model model, final boolean createIfNull) {
         if (model == null) {
             if (createIfNull) {
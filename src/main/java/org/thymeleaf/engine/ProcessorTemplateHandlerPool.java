@@ -0,0 +1,82 @@
+/*
+ * =============================================================================
+ *
+ *   Copyright (c) 2011-2016, The THYMELEAF team (http://www.thymeleaf.org)
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ * =============================================================================
+ */
+package org.thymeleaf.engine;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/*
+ * Bounded pool of ProcessorTemplateHandler instances, reused between (non-throttled) template executions in order
+ * to avoid allocating a new handler, along with its structure handlers, processor arrays and execution vars, at
+ * each execution.
+ *
+ * Handlers are taken out of the pool for the whole execution of a template, so nested executions (e.g. a processor
+ * calling the template engine) simply take (or create) a different one. Handlers are only returned to the pool
+ * when executions finish normally, as an exception might leave them in an inconsistent state. Throttled
+ * executions never use the pool, because their handlers are kept alive between calls.
+ *
+ * @author Daniel Fernandez
+ * @since 3.0.3
+ */
+final class ProcessorTemplateHandlerPool {
+
+    private final int maxPooledHandlers;
+    private final ConcurrentLinkedQueue<ProcessorTemplateHandler> handlers;
+    private final AtomicInteger pooledCount;
+
+
+
+    ProcessorTemplateHandlerPool(final int maxPooledHandlers) {
+        super();
+        this.maxPooledHandlers = maxPooledHandlers;
+        this.handlers = new ConcurrentLinkedQueue<ProcessorTemplateHandler>();
+        this.pooledCount = new AtomicInteger(0);
+    }
+
+
+
+
+    ProcessorTemplateHandler acquire() {
+        final ProcessorTemplateHandler handler = this.handlers.poll();
+        if (handler == null) {
+            return new ProcessorTemplateHandler();
+        }
+        this.pooledCount.decrementAndGet();
+        return handler;
+    }
+
+
+    void release(final ProcessorTemplateHandler handler) {
+        // Reset before pooling, so that pooled handlers never retain objects from their last execution
+        handler.reset();
+        if (this.pooledCount.incrementAndGet() > this.maxPooledHandlers) {
+            this.pooledCount.decrementAndGet();
+            return;
+        }
+        this.handlers.offer(handler);
+    }
+
+
+    int getPooledCount() {
+        return this.pooledCount.get();
+    }
+
+
+}
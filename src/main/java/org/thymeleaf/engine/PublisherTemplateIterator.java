@@ -0,0 +1,303 @@
+/*
+ * =============================================================================
+ *
+ *   Copyright (c) 2011-2016, The THYMELEAF team (http://www.thymeleaf.org)
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ * =============================================================================
+ */
+package org.thymeleaf.engine;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import org.thymeleaf.engine.IteratedGatheringModelProcessable.IterationType;
+import org.thymeleaf.exceptions.TemplateProcessingException;
+import org.thymeleaf.reactive.IPublisher;
+import org.thymeleaf.reactive.ISubscriber;
+import org.thymeleaf.reactive.ISubscription;
+import org.thymeleaf.util.Validate;
+
+/**
+ * <p>
+ *   Data-driven implementation of {@link Iterator} fed by an {@link IPublisher}, by means of a bounded
+ *   buffer and demand signalled on the publisher as buffered elements are consumed by the engine.
+ * </p>
+ * <p>
+ *   When a <tt>th:each</tt> iterates one of these objects (or a context variable directly containing an
+ *   {@link IPublisher}, which will be wrapped in one of these automatically) during throttled processing,
+ *   each iteration will be processed as soon as its element is available, and processing will stop
+ *   (see {@link org.thymeleaf.IDataDrivenThrottledTemplateProcessor#isWaitingForData()}) when the buffer is
+ *   empty. The publisher will never be requested more elements than fit in the buffer, so that producers are
+ *   subject to back-pressure and iterated data does not need to be completely materialized in memory.
+ * </p>
+ * <p>
+ *   Note that, just like with {@link DataDrivenTemplateIterator}, the last buffered element will not be
+ *   processed until either a subsequent element arrives or the publisher completes, because the engine needs
+ *   to know whether an element is the last one in order to process it.
+ * </p>
+ * <p>
+ *   Subscription to the publisher happens when this object is created. Elements can be received from any
+ *   thread, but the {@link Iterator} methods are only meant to be called from the thread processing the template.
+ * </p>
+ *
+ * @author Daniel Fern&aacute;ndez
+ *
+ * @since 3.0.3
+ *
+ */
+public final class PublisherTemplateIterator implements Iterator<Object> {
+
+    public static final int DEFAULT_BUFFER_SIZE = 32;
+
+    // ConcurrentLinkedQueue does not allow nulls
+    private static final Object NULL = new Object();
+
+    private final int bufferSize;
+    private final int replenishThreshold;
+    private final ConcurrentLinkedQueue<Object> buffer;
+    private final PublisherSubscriber subscriber;
+    private final Object dataLock;
+
+    private volatile ISubscription subscription;
+    private volatile boolean complete;
+    private volatile Throwable error;
+    private volatile Runnable dataAvailableListener;
+    private volatile boolean awaitingData;
+
+    private IterationType iterationType;
+    private int consumedSinceRequest;
+
+
+
+    /**
+     * <p>
+     *   Creates a new iterator using a buffer of {@link #DEFAULT_BUFFER_SIZE} elements, and subscribes it to
+     *   the specified publisher.
+     * </p>
+     *
+     * @param publisher the publisher providing the iterated elements.
+     */
+    public PublisherTemplateIterator(final IPublisher<?> publisher) {
+        this(publisher, DEFAULT_BUFFER_SIZE);
+    }
+
+
+    /**
+     * <p>
+     *   Creates a new iterator and subscribes it to the specified publisher.
+     * </p>
+     *
+     * @param publisher the publisher providing the iterated elements.
+     * @param bufferSize the maximum amount of elements that will be requested to the publisher without
+     *                   having been consumed by the engine (must be at least 2).
+     */
+    public PublisherTemplateIterator(final IPublisher<?> publisher, final int bufferSize) {
+        super();
+        Validate.notNull(publisher, "Publisher cannot be null");
+        Validate.isTrue(bufferSize >= 2, "Buffer size must be at least 2");
+        this.bufferSize = bufferSize;
+        this.replenishThreshold = Math.max(1, bufferSize / 2);
+        this.buffer = new ConcurrentLinkedQueue<Object>();
+        this.subscriber = new PublisherSubscriber();
+        this.subscription = null;
+        this.complete = false;
+        this.error = null;
+        this.dataAvailableListener = null;
+        this.dataLock = new Object();
+        this.awaitingData = false;
+        this.iterationType = null;
+        this.consumedSinceRequest = 0;
+        publisher.subscribe(this.subscriber);
+    }
+
+
+
+
+    public boolean hasNext() {
+        if (getIterationType() == null) {
+            throw new IllegalStateException("hasNext(): Publisher iterator has not yet computed the iteration type");
+        }
+        checkError();
+        return !this.buffer.isEmpty();
+    }
+
+
+    public Object next() {
+
+        if (getIterationType() == null) {
+            throw new IllegalStateException("next(): Publisher iterator has not yet computed the iteration type");
+        }
+        checkError();
+
+        final Object value = this.buffer.poll();
+        if (value == null) {
+            throw new NoSuchElementException();
+        }
+
+        // Replenish demand in batches, so that we don't signal the publisher once per element
+        this.consumedSinceRequest++;
+        final ISubscription currentSubscription = this.subscription;
+        if (this.consumedSinceRequest >= this.replenishThreshold && !this.complete && currentSubscription != null) {
+            final int n = this.consumedSinceRequest;
+            this.consumedSinceRequest = 0;
+            currentSubscription.request(n);
+        }
+
+        return (value == NULL? null : value);
+
+    }
+
+
+    public void remove() {
+        throw new UnsupportedOperationException("remove() is not supported in Publisher Iterator");
+    }
+
+
+    /**
+     * <p>
+     *   Cancels the subscription to the publisher. Elements already buffered will still be iterated.
+     * </p>
+     */
+    public void cancel() {
+        this.complete = true;
+        final ISubscription currentSubscription = this.subscription;
+        if (currentSubscription != null) {
+            currentSubscription.cancel();
+        }
+    }
+
+
+
+
+    IterationType getIterationType() {
+        if (this.iterationType == null) {
+            // Read 'complete' before checking the buffer: all elements are buffered before completion is signalled
+            final boolean feedingComplete = this.complete;
+            final int bufferedCount = countBuffered(2);
+            if (bufferedCount >= 2) {
+                this.iterationType = IterationType.MULTIPLE;
+            } else if (feedingComplete) {
+                this.iterationType = (bufferedCount == 0? IterationType.ZERO : IterationType.ONE);
+            }
+        }
+        return this.iterationType;
+    }
+
+
+    boolean isPaused() {
+        if (getIterationType() != null) {
+            final boolean feedingComplete = this.complete;
+            if (!this.buffer.isEmpty() || feedingComplete) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+
+    void setDataAvailableListener(final Runnable dataAvailableListener) {
+        this.dataAvailableListener = dataAvailableListener;
+    }
+
+
+    /*
+     * Only used when the template is not being processed in throttled mode, in which case there is no way to
+     * stop processing and resume it when data arrives, so the processing thread simply has to wait.
+     */
+    void awaitData() {
+        synchronized (this.dataLock) {
+            this.awaitingData = true;
+            try {
+                while (isPaused()) {
+                    this.dataLock.wait();
+                }
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new TemplateProcessingException("Interrupted while waiting for data-driven iteration data", e);
+            } finally {
+                this.awaitingData = false;
+            }
+        }
+    }
+
+
+
+
+    private int countBuffered(final int max) {
+        // Avoid ConcurrentLinkedQueue#size(), which traverses the whole queue
+        int count = 0;
+        final Iterator<Object> it = this.buffer.iterator();
+        while (count < max && it.hasNext()) {
+            it.next();
+            count++;
+        }
+        return count;
+    }
+
+
+    private void checkError() {
+        final Throwable t = this.error;
+        if (t != null) {
+            throw new TemplateProcessingException("Error received from publisher of data-driven iteration", t);
+        }
+    }
+
+
+    private void notifyDataAvailable() {
+        if (this.awaitingData) {
+            synchronized (this.dataLock) {
+                this.dataLock.notifyAll();
+            }
+        }
+        final Runnable listener = this.dataAvailableListener;
+        if (listener != null) {
+            listener.run();
+        }
+    }
+
+
+
+
+    private final class PublisherSubscriber implements ISubscriber<Object> {
+
+        PublisherSubscriber() {
+            super();
+        }
+
+        public void onSubscribe(final ISubscription subscription) {
+            PublisherTemplateIterator.this.subscription = subscription;
+            subscription.request(PublisherTemplateIterator.this.bufferSize);
+        }
+
+        public void onNext(final Object item) {
+            PublisherTemplateIterator.this.buffer.offer(item == null? NULL : item);
+            notifyDataAvailable();
+        }
+
+        public void onError(final Throwable throwable) {
+            PublisherTemplateIterator.this.error = throwable;
+            PublisherTemplateIterator.this.complete = true;
+            notifyDataAvailable();
+        }
+
+        public void onComplete() {
+            PublisherTemplateIterator.this.complete = true;
+            notifyDataAvailable();
+        }
+
+    }
+
+}
@@ -0,0 +1,326 @@
+/*
+ * =============================================================================
+ *
+ *   Copyright (c) 2011-2016, The THYMELEAF team (http://www.thymeleaf.org)
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ * =============================================================================
+ */
+package org.thymeleaf.engine;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.thymeleaf.IEngineConfiguration;
+import org.thymeleaf.exceptions.TemplateProcessingException;
+import org.thymeleaf.model.IModelVisitor;
+import org.thymeleaf.postprocessor.IPostProcessor;
+import org.thymeleaf.preprocessor.IPreProcessor;
+import org.thymeleaf.processor.text.ITextProcessor;
+import org.thymeleaf.standard.processor.StandardInliningTextProcessor;
+import org.thymeleaf.templatemode.TemplateMode;
+import org.thymeleaf.util.FastStringWriter;
+import org.thymeleaf.util.ProcessorConfigurationUtils;
+
+/*
+ * Engine event grouping a run of consecutive events of a cached TemplateModel that no processor can ever
+ * modify: texts without inlined expressions and balanced elements without associated processors.
+ *
+ * The output of the whole run is serialized once when the model is put into the cache, so that executions of
+ * the model can send it to the output as a single text event instead of handling each of its events separately.
+ * Byte-based outputs can also obtain it already encoded (see getEncoded(Charset)). When that is not possible
+ * (e.g. the region is being gathered for an iteration, or an inliner not known to ignore these texts is active)
+ * the ProcessorTemplateHandler simply replays the original events, which are also the only ones ever seen by
+ * any other kinds of handlers.
+ *
+ * Regions are used by both normal and throttled processing (which replays them only if processing has been
+ * stopped), but never by model cloning or IModel access, which work on the model's original events.
+ *
+ * @author Daniel Fernandez
+ * @since 3.0.3
+ */
+final class StaticRegion implements IEngineTemplateEvent {
+
+    // Shorter runs are not worth the indirection
+    private static final int MIN_REGION_EVENTS = 2;
+
+    // Stateless charsets in which the encoded form of a text does not depend on the output that precedes it
+    private static final Set<String> PRE_ENCODABLE_CHARSETS =
+            new HashSet<String>(Arrays.asList(new String[] { "UTF-8", "ISO-8859-1", "US-ASCII" }));
+
+    final TemplateMode templateMode;
+    final IEngineTemplateEvent[] events;
+    final IEngineTemplateEvent lastEvent;
+    final Text text;
+
+    // Only the last charset used is kept, as a given template engine will normally always use the same one
+    private volatile EncodedText encodedText = null;
+
+
+
+    StaticRegion(final TemplateMode templateMode, final IEngineTemplateEvent[] events) {
+
+        super();
+
+        this.templateMode = templateMode;
+        this.events = events;
+        this.lastEvent = events[events.length - 1];
+
+        final FastStringWriter writer = new FastStringWriter(128);
+        try {
+            for (int i = 0; i < events.length; i++) {
+                events[i].write(writer);
+            }
+        } catch (final IOException e) {
+            // Should never happen, as we are writing to a String
+            throw new TemplateProcessingException("Exception serializing static template region", e);
+        }
+
+        final IEngineTemplateEvent firstEvent = events[0];
+        this.text = new Text(writer.toString(), firstEvent.getTemplateName(), firstEvent.getLine(), firstEvent.getCol());
+
+    }
+
+
+
+
+    public boolean hasLocation() {
+        return this.text.hasLocation();
+    }
+
+    public String getTemplateName() {
+        return this.text.getTemplateName();
+    }
+
+    public int getLine() {
+        return this.text.getLine();
+    }
+
+    public int getCol() {
+        return this.text.getCol();
+    }
+
+
+
+
+    public void accept(final IModelVisitor visitor) {
+        for (int i = 0; i < this.events.length; i++) {
+            this.events[i].accept(visitor);
+        }
+    }
+
+
+    public void write(final Writer writer) throws IOException {
+        this.text.write(writer);
+    }
+
+
+    /*
+     * Returns the serialized output of this region encoded in the specified charset, or null if it cannot be encoded
+     * without replacing malformed or unmappable chars (in which case it should be output as text, so that the
+     * output's own encoder decides what to do with them). Only charsets known to encode each text independently of
+     * the rest of the output are pre-encoded: others might e.g. add byte order marks (UTF-16) or depend on the state
+     * left by previous output (ISO-2022-JP), so for them null is always returned.
+     */
+    byte[] getEncoded(final Charset charset) {
+        if (!PRE_ENCODABLE_CHARSETS.contains(charset.name())) {
+            return null;
+        }
+        EncodedText encoded = this.encodedText;
+        if (encoded == null || !encoded.charset.equals(charset)) {
+            encoded = new EncodedText(charset, encode(this.text.getText(), charset));
+            this.encodedText = encoded;
+        }
+        return encoded.bytes;
+    }
+
+
+    private static byte[] encode(final String text, final Charset charset) {
+        final ByteBuffer byteBuffer;
+        try {
+            // A new encoder reports (instead of replacing) malformed input and unmappable chars
+            byteBuffer = charset.newEncoder().encode(CharBuffer.wrap(text));
+        } catch (final CharacterCodingException e) {
+            return null;
+        }
+        final byte[] bytes = new byte[byteBuffer.remaining()];
+        byteBuffer.get(bytes);
+        return bytes;
+    }
+
+
+    public void beHandled(final ITemplateHandler handler) {
+        if (handler instanceof ProcessorTemplateHandler) {
+            ((ProcessorTemplateHandler) handler).handleStaticRegion(this);
+            return;
+        }
+        replay(handler);
+    }
+
+
+    void replay(final ITemplateHandler handler) {
+        for (int i = 0; i < this.events.length; i++) {
+            this.events[i].beHandled(handler);
+        }
+    }
+
+
+
+
+    /*
+     * Computes the version of the queue of a TemplateModel to be used for processing, in which static regions have
+     * been coalesced. If coalescing is not applicable or nothing could be coalesced, the original queue is returned.
+     */
+    static IEngineTemplateEvent[] coalesce(final IEngineConfiguration configuration, final TemplateModel templateModel) {
+
+        final TemplateMode templateMode = templateModel.getTemplateMode();
+        if (!isCoalescingApplicable(configuration, templateMode)) {
+            return templateModel.queue;
+        }
+
+        final IEngineTemplateEvent[] queue = templateModel.queue;
+        final List<IEngineTemplateEvent> coalesced = new ArrayList<IEngineTemplateEvent>(queue.length);
+
+        // TemplateStart and TemplateEnd (first and last events) always need to be handled on their own
+        coalesced.add(queue[0]);
+        boolean changed = false;
+        int i = 1;
+        while (i < queue.length - 1) {
+            final int end = computeRegionEnd(queue, i, queue.length - 1);
+            if (end - i >= MIN_REGION_EVENTS) {
+                coalesced.add(new StaticRegion(templateMode, Arrays.copyOfRange(queue, i, end)));
+                changed = true;
+                i = end;
+            } else {
+                coalesced.add(queue[i]);
+                i++;
+            }
+        }
+        coalesced.add(queue[queue.length - 1]);
+
+        if (!changed) {
+            return queue;
+        }
+        return coalesced.toArray(new IEngineTemplateEvent[coalesced.size()]);
+
+    }
+
+
+    /*
+     * Coalescing only makes sense for markup modes (text modes apply specific white space handling to the events
+     * of iterated elements) and when we know that nothing executed for the mode apart from element processors can
+     * alter events: no pre/post-processors, and only the standard inlining text processor, which ignores texts
+     * without inlined expressions.
+     */
+    private static boolean isCoalescingApplicable(final IEngineConfiguration configuration, final TemplateMode templateMode) {
+
+        if (templateMode != TemplateMode.HTML && templateMode != TemplateMode.XML) {
+            return false;
+        }
+
+        final Set<IPreProcessor> preProcessors = configuration.getPreProcessors(templateMode);
+        if (preProcessors != null && !preProcessors.isEmpty()) {
+            return false;
+        }
+        final Set<IPostProcessor> postProcessors = configuration.getPostProcessors(templateMode);
+        if (postProcessors != null && !postProcessors.isEmpty()) {
+            return false;
+        }
+
+        final Set<ITextProcessor> textProcessors = configuration.getTextProcessors(templateMode);
+        if (textProcessors != null) {
+            for (final ITextProcessor textProcessor : textProcessors) {
+                if (!(ProcessorConfigurationUtils.unwrap(textProcessor) instanceof StandardInliningTextProcessor)) {
+                    return false;
+                }
+            }
+        }
+
+        return true;
+
+    }
+
+
+    /*
+     * Returns the (exclusive) end of the longest balanced run of static events starting at the specified position,
+     * or the position itself if no such run exists.
+     */
+    private static int computeRegionEnd(final IEngineTemplateEvent[] queue, final int start, final int limit) {
+
+        int depth = 0;
+        int end = start;
+
+        for (int i = start; i < limit; i++) {
+
+            final IEngineTemplateEvent event = queue[i];
+
+            if (event instanceof Text) {
+                if (((Text) event).isInlineable()) {
+                    break;
+                }
+            } else if (event instanceof OpenElementTag) {
+                if (((OpenElementTag) event).hasAssociatedProcessors()) {
+                    break;
+                }
+                depth++;
+            } else if (event instanceof StandaloneElementTag) {
+                if (((StandaloneElementTag) event).hasAssociatedProcessors()) {
+                    break;
+                }
+            } else if (event instanceof CloseElementTag) {
+                if (depth == 0 || ((CloseElementTag) event).isUnmatched()) {
+                    break;
+                }
+                depth--;
+            } else {
+                break;
+            }
+
+            if (depth == 0) {
+                end = i + 1;
+            }
+
+        }
+
+        return end;
+
+    }
+
+
+
+
+    private static final class EncodedText {
+
+        final Charset charset;
+        final byte[] bytes;
+
+        EncodedText(final Charset charset, final byte[] bytes) {
+            super();
+            this.charset = charset;
+            this.bytes = bytes;
+        }
+
+    }
+
+
+}
@@ -30,6 +30,10 @@ final class TemplateFlowController {
 
     boolean stopProcessing = false;
     boolean processorTemplateHandlerPending = false;
+    // Set when processing stops because a data-driven iteration has no buffered data
+    boolean waitingForData = false;
+    // Called (from any thread) when data-driven iterations receive data, see IDataDrivenThrottledTemplateProcessor
+    Runnable dataAvailableListener = null;
 
 
 
@@ -49,6 +49,7 @@ public final class TemplateHandlerAdapterMarkupHandler extends AbstractMarkupHan
     private int currentElementCol = -1;
     private final List<Attribute> currentElementAttributes;
     private final List<String> currentElementInnerWhiteSpaces;
+    private final AttributeStringPool attributeStringPool;
 
 
     
@@ -79,6 +80,7 @@ public TemplateHandlerAdapterMarkupHandler(final String templateName,
         // We will use these for gathering the attributes and/or inner white spaces of elements
         this.currentElementAttributes = new ArrayList<Attribute>(10);
         this.currentElementInnerWhiteSpaces = new ArrayList<String>(10);
+        this.attributeStringPool = new AttributeStringPool();
 
     }
 
@@ -487,9 +489,10 @@ public void handleAttribute(
             final int valueLine, final int valueCol)
             throws ParseException {
 
-        final String attributeName = new String(buffer, nameOffset, nameLen);
+        final AttributeDefinition attributeDefinition =
+                this.attributeDefinitions.forName(this.templateMode, buffer, nameOffset, nameLen);
 
-        final AttributeDefinition attributeDefinition = this.attributeDefinitions.forName(this.templateMode, attributeName);
+        final String attributeName = this.attributeStringPool.getCompleteName(attributeDefinition, buffer, nameOffset, nameLen);
 
         final String attributeOperator =
                 (operatorLen > 0 ?
@@ -499,7 +502,7 @@ public void handleAttribute(
                         null);
 
         final String value =
-                (attributeOperator != null ? new String(buffer, valueContentOffset, valueContentLen) : null);
+                (attributeOperator != null ? this.attributeStringPool.get(buffer, valueContentOffset, valueContentLen) : null);
 
         final AttributeValueQuotes valueQuotes;
         if (value == null) {
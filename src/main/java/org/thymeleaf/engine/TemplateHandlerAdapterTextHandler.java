@@ -57,6 +57,7 @@ public final class TemplateHandlerAdapterTextHandler extends AbstractTextHandler
     private int currentElementLine = -1;
     private int currentElementCol = -1;
     private final List<Attribute> currentElementAttributes;
+    private final AttributeStringPool attributeStringPool;
 
 
     public TemplateHandlerAdapterTextHandler(final String templateName,
@@ -85,6 +86,7 @@ public TemplateHandlerAdapterTextHandler(final String templateName,
 
         // We will use these for gathering the attributes and/or inner white spaces of elements
         this.currentElementAttributes = new ArrayList<Attribute>(10);
+        this.attributeStringPool = new AttributeStringPool();
 
     }
 
@@ -264,9 +266,10 @@ public void handleAttribute(
             final int valueLine, final int valueCol)
             throws TextParseException {
 
-        final String attributeName = new String(buffer, nameOffset, nameLen);
+        final AttributeDefinition attributeDefinition =
+                this.attributeDefinitions.forName(this.templateMode, buffer, nameOffset, nameLen);
 
-        final AttributeDefinition attributeDefinition = this.attributeDefinitions.forName(this.templateMode, attributeName);
+        final String attributeName = this.attributeStringPool.getCompleteName(attributeDefinition, buffer, nameOffset, nameLen);
 
         final String attributeOperator =
                 (operatorLen > 0 ?
@@ -277,7 +280,7 @@ public void handleAttribute(
 
         final String value =
                 (attributeOperator != null ?
-                        new String(buffer, valueContentOffset, valueContentLen) :
+                        this.attributeStringPool.get(buffer, valueContentOffset, valueContentLen) :
                         null);
 
         final AttributeValueQuotes valueQuotes;
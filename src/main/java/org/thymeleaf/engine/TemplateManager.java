@@ -19,12 +19,19 @@
  */
 package org.thymeleaf.engine;
 
+import java.io.IOException;
 import java.io.Writer;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -35,19 +42,35 @@
 import org.thymeleaf.cache.ICache;
 import org.thymeleaf.cache.ICacheEntryValidity;
 import org.thymeleaf.cache.ICacheManager;
+import org.thymeleaf.cache.IMonitoredCache;
 import org.thymeleaf.cache.NonCacheableCacheEntryValidity;
+import org.thymeleaf.cache.StaleWhileRevalidateCacheEntryValidity;
 import org.thymeleaf.cache.TemplateCacheKey;
+import org.thymeleaf.context.ExpressionContext;
 import org.thymeleaf.context.IContext;
 import org.thymeleaf.context.IEngineContext;
+import org.thymeleaf.context.IExpressionContext;
 import org.thymeleaf.context.ITemplateContext;
 import org.thymeleaf.exceptions.TemplateInputException;
+import org.thymeleaf.exceptions.TemplateOutputException;
 import org.thymeleaf.exceptions.TemplateProcessingException;
+import org.thymeleaf.metrics.IEngineMetricsListener;
+import org.thymeleaf.metrics.IEngineProfilingListener;
+import org.thymeleaf.metrics.ProfileFrameType;
 import org.thymeleaf.postprocessor.IPostProcessor;
 import org.thymeleaf.preprocessor.IPreProcessor;
+import org.thymeleaf.processor.element.IElementProcessor;
+import org.thymeleaf.standard.expression.AssignationUtils;
+import org.thymeleaf.standard.expression.EachUtils;
+import org.thymeleaf.standard.processor.AbstractStandardExpressionAttributeTagProcessor;
+import org.thymeleaf.standard.processor.AbstractStandardMultipleAttributeModifierTagProcessor;
+import org.thymeleaf.standard.processor.StandardEachTagProcessor;
+import org.thymeleaf.standard.processor.StandardWithTagProcessor;
 import org.thymeleaf.templatemode.TemplateMode;
 import org.thymeleaf.templateparser.ITemplateParser;
 import org.thymeleaf.templateparser.markup.HTMLTemplateParser;
 import org.thymeleaf.templateparser.markup.XMLTemplateParser;
+import org.thymeleaf.templateparser.markup.decoupled.DecoupledTemplateLogicCache;
 import org.thymeleaf.templateparser.raw.RawTemplateParser;
 import org.thymeleaf.templateparser.text.CSSTemplateParser;
 import org.thymeleaf.templateparser.text.JavaScriptTemplateParser;
@@ -55,7 +78,10 @@
 import org.thymeleaf.templateresolver.ITemplateResolver;
 import org.thymeleaf.templateresolver.TemplateResolution;
 import org.thymeleaf.templateresource.ITemplateResource;
+import org.thymeleaf.util.EngineConfigurationUtils;
+import org.thymeleaf.util.FragmentStitchingWriter;
 import org.thymeleaf.util.LoggingUtils;
+import org.thymeleaf.util.ProcessorConfigurationUtils;
 import org.thymeleaf.util.Validate;
 
 
@@ -84,6 +110,11 @@ public final class TemplateManager {
 
 
     private final ICache<TemplateCacheKey,TemplateModel> templateCache; // might be null! (= no cache)
+    private final TemplateParseRegistry parseRegistry;
+    private final TemplateModelSnapshotStore snapshotStore; // might be null! (= no snapshots)
+    private final DecoupledTemplateLogicCache decoupledTemplateLogicCache; // might be null! (= no cache)
+    private final ProcessorTemplateHandlerPool processorTemplateHandlerPool; // might be null! (= no pooling)
+    private final Executor revalidationExecutor; // might be null! (= no cache)
 
 
 
@@ -111,12 +142,29 @@ public TemplateManager(final IEngineConfiguration configuration) {
             this.templateCache = cacheManager.getTemplateCache();
         }
 
+        this.parseRegistry = new TemplateParseRegistry();
+
+        this.snapshotStore = EngineConfigurationUtils.getTemplateModelSnapshotStore(this.configuration);
+        if (this.snapshotStore != null && this.templateCache != null) {
+            // Snapshots are only used for cacheable templates, so no need to read the file if there is no cache
+            this.snapshotStore.load(this.configuration);
+        }
+
+        // No threads are started until a stale template actually needs to be revalidated
+        this.revalidationExecutor = (this.templateCache != null? createRevalidationExecutor() : null);
+
+        final int processingHandlerPoolSize = EngineConfigurationUtils.getProcessingHandlerPoolSize(this.configuration);
+        this.processorTemplateHandlerPool =
+                (processingHandlerPoolSize > 0? new ProcessorTemplateHandlerPool(processingHandlerPoolSize) : null);
+
+        this.decoupledTemplateLogicCache = EngineConfigurationUtils.getDecoupledTemplateLogicCache(this.configuration);
+
         final boolean standardDialectPresent = this.configuration.isStandardDialectPresent();
         final String standardDialectPrefix = this.configuration.getStandardDialectPrefix();
 
         // TODO Make these parser implementations configurable: one parser per template mode, then make default implementations extensible/configurable (e.g. AttoParser config)
-        this.htmlParser = new HTMLTemplateParser(DEFAULT_PARSER_POOL_SIZE,DEFAULT_PARSER_BLOCK_SIZE);
-        this.xmlParser = new XMLTemplateParser(DEFAULT_PARSER_POOL_SIZE, DEFAULT_PARSER_BLOCK_SIZE);
+        this.htmlParser = new HTMLTemplateParser(DEFAULT_PARSER_POOL_SIZE,DEFAULT_PARSER_BLOCK_SIZE, this.decoupledTemplateLogicCache);
+        this.xmlParser = new XMLTemplateParser(DEFAULT_PARSER_POOL_SIZE, DEFAULT_PARSER_BLOCK_SIZE, this.decoupledTemplateLogicCache);
         this.textParser = new TextTemplateParser(DEFAULT_PARSER_POOL_SIZE, DEFAULT_PARSER_BLOCK_SIZE, standardDialectPresent, standardDialectPrefix);
         this.javascriptParser = new JavaScriptTemplateParser(DEFAULT_PARSER_POOL_SIZE, DEFAULT_PARSER_BLOCK_SIZE, standardDialectPresent, standardDialectPrefix);
         this.cssParser = new CSSTemplateParser(DEFAULT_PARSER_POOL_SIZE, DEFAULT_PARSER_BLOCK_SIZE, standardDialectPresent, standardDialectPrefix);
@@ -130,13 +178,16 @@ public TemplateManager(final IEngineConfiguration configuration) {
     
     /**
      * <p>
-     *   Clears the template cache.
+     *   Clears the template cache (and the decoupled template logic cache, if any).
      * </p>
      */
     public void clearCaches() {
         if (this.templateCache != null) {
             this.templateCache.clear();
         }
+        if (this.decoupledTemplateLogicCache != null) {
+            this.decoupledTemplateLogicCache.clear();
+        }
     }
 
     
@@ -177,6 +228,66 @@ public void clearCachesFor(final String template) {
 
 
 
+    /**
+     * <p>
+     *   Returns the number of template parsing operations currently in flight, i.e. cacheable templates
+     *   (or fragments) being parsed at this moment by some thread.
+     * </p>
+     *
+     * @return the number of parsing operations in flight.
+     * @since 3.0.3
+     */
+    public int getInFlightParseCount() {
+        return this.parseRegistry.getInFlightCount();
+    }
+
+
+    /**
+     * <p>
+     *   Returns the number of parsing operations executed for cacheable templates (or fragments) since this
+     *   template manager was created.
+     * </p>
+     *
+     * @return the number of parsing operations executed for cacheable templates.
+     * @since 3.0.3
+     */
+    public long getCacheableParseCount() {
+        return this.parseRegistry.getParseCount();
+    }
+
+
+    /**
+     * <p>
+     *   Returns the number of times a thread needing a cacheable template (or fragment) that was not yet in
+     *   the template cache did not parse it, but waited instead for the result of a parsing operation already
+     *   being executed by another thread for the same template cache key.
+     * </p>
+     *
+     * @return the number of coalesced parse waits.
+     * @since 3.0.3
+     */
+    public long getCoalescedParseWaitCount() {
+        return this.parseRegistry.getCoalescedCount();
+    }
+
+
+    /**
+     * <p>
+     *   Returns the number of times a thread waited for a parsing operation being executed by another thread
+     *   but could not use its result (because the parsing operation failed or the waiting thread was
+     *   interrupted), and therefore had to parse the template by itself.
+     * </p>
+     *
+     * @return the number of failed parse waits.
+     * @since 3.0.3
+     */
+    public long getFailedParseWaitCount() {
+        return this.parseRegistry.getFailedWaitCount();
+    }
+
+
+
+
 
 
     /*
@@ -193,6 +304,37 @@ public TemplateModel parseStandalone(
             final ITemplateContext context, final String template, final Set<String> templateSelectors,
             final TemplateMode templateMode, final boolean useCache, final boolean failIfNotExists) {
 
+        final IEngineMetricsListener metricsListener = EngineConfigurationUtils.getMetricsListener(this.configuration);
+        if (metricsListener == null) {
+            return doParseStandalone(context, template, templateSelectors, templateMode, useCache, failIfNotExists);
+        }
+
+        final IEngineProfilingListener profilingListener =
+                (metricsListener instanceof IEngineProfilingListener? (IEngineProfilingListener) metricsListener : null);
+        if (profilingListener != null) {
+            profilingListener.enterFragment(
+                    (context == null? null : context.getTemplateData().getTemplate()), template, templateSelectors);
+        }
+
+        final long startNanos = System.nanoTime();
+        try {
+            return doParseStandalone(context, template, templateSelectors, templateMode, useCache, failIfNotExists);
+        } finally {
+            if (profilingListener != null) {
+                profilingListener.exit(ProfileFrameType.FRAGMENT);
+            }
+            metricsListener.fragmentResolved(
+                    (context == null? null : context.getTemplateData().getTemplate()),
+                    template, templateSelectors, System.nanoTime() - startNanos);
+        }
+
+    }
+
+
+    private TemplateModel doParseStandalone(
+            final ITemplateContext context, final String template, final Set<String> templateSelectors,
+            final TemplateMode templateMode, final boolean useCache, final boolean failIfNotExists) {
+
         Validate.notNull(context, "Context cannot be null");
         Validate.notNull(template, "Template cannot be null");
         // templateSelectors CAN be null if we are going to render the entire template
@@ -233,7 +375,11 @@ public TemplateModel parseStandalone(
          * First look at the cache - it might be already cached
          */
         if (useCache && this.templateCache != null) {
-            final TemplateModel cached =  this.templateCache.get(cacheKey);
+            TemplateModel cached =  lookupCache(cacheKey, true);
+            if (cached == null) {
+                // It might be being parsed right now by a different thread, in which case we will wait for it
+                cached = awaitInFlightParse(cacheKey);
+            }
             if (cached != null) {
                 /*
                  * Just at the end, and importantly AFTER CACHING, check if we need to apply any pre-processors
@@ -291,30 +437,20 @@ public TemplateModel parseStandalone(
 
 
         /*
-         *  Create the Template Handler that will be in charge of building the TemplateModel
-         */
-        final ModelBuilderTemplateHandler builderHandler = new ModelBuilderTemplateHandler(this.configuration, templateData);
-
-
-        /*
-         * PROCESS THE TEMPLATE
-         */
-        final ITemplateParser parser = getParserForTemplateMode(templateData.getTemplateMode());
-        parser.parseStandalone(
-                this.configuration,
-                ownerTemplate, template, cleanTemplateSelectors, templateData.getTemplateResource(),
-                templateData.getTemplateMode(), templateResolution.getUseDecoupledLogic(), builderHandler);
-
-        final TemplateModel templateModel = builderHandler.getModel();
-
-
-        /*
-         * Cache the template if it is cacheable
+         * PARSE THE TEMPLATE, and cache it if it is cacheable (in which case only one thread will be allowed to
+         * parse this cache key at a time)
          */
-        if (useCache && this.templateCache != null) {
-            if (templateResolution.getValidity().isCacheable()) {
-                this.templateCache.put(cacheKey, templateModel);
-            }
+        final TemplateModel templateModel;
+        if (useCache && this.templateCache != null && templateResolution.getValidity().isCacheable()) {
+            templateModel =
+                    parseAndCacheCoalesced(
+                            cacheKey, templateData, ownerTemplate, template, cleanTemplateSelectors,
+                            templateResolution.getUseDecoupledLogic());
+        } else {
+            templateModel =
+                    parseTemplateModel(
+                            templateData, ownerTemplate, template, cleanTemplateSelectors,
+                            templateResolution.getUseDecoupledLogic());
         }
 
 
@@ -400,7 +536,7 @@ public TemplateModel parseString(
          * First look at the cache - it might be already cached
          */
         if (useCache && this.templateCache != null) {
-            final TemplateModel cached =  this.templateCache.get(cacheKey);
+            final TemplateModel cached =  lookupCache(cacheKey, false);
             if (cached != null) {
                 return cached;
             }
@@ -460,6 +596,7 @@ public TemplateModel parseString(
          */
         if (useCache && this.templateCache != null) {
             if (cacheValidity.isCacheable()) {
+                prepareForCaching(parsedTemplate);
                 this.templateCache.put(cacheKey, parsedTemplate);
             }
         }
@@ -473,6 +610,179 @@ public TemplateModel parseString(
 
 
 
+    /*
+     * ----------------
+     * WARM-UP methods
+     * ----------------
+     *
+     * Warm-up methods allow parsing templates (and the expressions in their attributes) ahead of time, so that
+     * the template cache and the expression cache are already populated when templates are first processed.
+     */
+
+
+    /**
+     * <p>
+     *   Resolves and parses a template in exactly the same way it would be done for processing it by means of
+     *   {@link org.thymeleaf.TemplateEngine#process(TemplateSpec, IContext, Writer)}, putting the resulting
+     *   {@link TemplateModel} into the template cache if the template is cacheable.
+     * </p>
+     * <p>
+     *   If the template is already at the template cache, the cached model will be returned.
+     * </p>
+     *
+     * @param templateSpec the template specification.
+     * @return the parsed (and, if cacheable, cached) template model.
+     * @since 3.0.3
+     */
+    public TemplateModel parseAndCache(final TemplateSpec templateSpec) {
+
+        Validate.notNull(templateSpec, "Template Specification cannot be null");
+
+        final String template = templateSpec.getTemplate();
+        final Set<String> templateSelectors = templateSpec.getTemplateSelectors();
+        final TemplateMode templateMode = templateSpec.getTemplateMode();
+        final Map<String, Object> templateResolutionAttributes = templateSpec.getTemplateResolutionAttributes();
+
+        // This key must be exactly the same one used at parseAndProcess(...)
+        final TemplateCacheKey cacheKey =
+                new TemplateCacheKey(
+                        null, // ownerTemplate
+                        template, templateSelectors,
+                        0, 0, // lineOffset, colOffset
+                        templateMode,
+                        templateResolutionAttributes);
+
+        if (this.templateCache != null) {
+            TemplateModel cached =  lookupCache(cacheKey, true);
+            if (cached == null) {
+                cached = awaitInFlightParse(cacheKey);
+            }
+            if (cached != null) {
+                return cached;
+            }
+        }
+
+        final TemplateResolution templateResolution =
+                resolveTemplate(this.configuration, null, template, templateResolutionAttributes, true);
+
+        final TemplateData templateData =
+                buildTemplateData(templateResolution, template, templateSelectors, templateMode, true);
+
+        if (templateResolution.getValidity().isCacheable() && this.templateCache != null) {
+            return parseAndCacheCoalesced(
+                    cacheKey, templateData, null, template, templateSelectors,
+                    templateResolution.getUseDecoupledLogic());
+        }
+
+        return parseTemplateModel(
+                templateData, null, template, templateSelectors, templateResolution.getUseDecoupledLogic());
+
+    }
+
+
+    /**
+     * <p>
+     *   Parses ahead of time the values of all the attributes in a template model that are known to be processed
+     *   as Standard Expressions (or as iteration or assignation specifications) by the Standard Dialects, so that
+     *   they are put into the expression cache and also cached at the attributes themselves.
+     * </p>
+     * <p>
+     *   Attribute values containing preprocessing expressions (<tt>__...__</tt>) are ignored, as these
+     *   can only be parsed at processing time.
+     * </p>
+     *
+     * @param templateModel the template model.
+     * @return the number of attribute values that have been parsed.
+     * @since 3.0.3
+     */
+    public int preParseExpressions(final TemplateModel templateModel) {
+        Validate.notNull(templateModel, "Template Model cannot be null");
+        return preParseExpressions(templateModel, false);
+    }
+
+
+    /*
+     * Cached models are immutable and will be executed many times, so before caching them we link expressions to
+     * their attributes and coalesce the static regions to be output without further processing.
+     */
+    private void prepareForCaching(final TemplateModel templateModel) {
+        preParseExpressions(templateModel, true);
+        templateModel.coalesceStaticRegions();
+    }
+
+
+    /*
+     * When ignoring errors (as done for every model being put into the template cache), attributes that cannot be
+     * parsed are simply skipped: the error will be raised (in the adequate context) when they are processed.
+     */
+    private int preParseExpressions(final TemplateModel templateModel, final boolean ignoreErrors) {
+
+        final IExpressionContext expressionContext = new ExpressionContext(this.configuration);
+
+        int parsed = 0;
+        for (final IEngineTemplateEvent event : templateModel.queue) {
+            if (!(event instanceof AbstractProcessableElementTag)) {
+                continue;
+            }
+            final Attributes attributes = ((AbstractProcessableElementTag) event).attributes;
+            if (attributes == null || attributes.attributes == null) {
+                continue;
+            }
+            for (final Attribute attribute : attributes.attributes) {
+                try {
+                    if (preParseAttributeExpression(expressionContext, attribute)) {
+                        parsed++;
+                    }
+                } catch (final RuntimeException e) {
+                    if (!ignoreErrors) {
+                        throw e;
+                    }
+                }
+            }
+        }
+
+        return parsed;
+
+    }
+
+
+    private static boolean preParseAttributeExpression(final IExpressionContext context, final Attribute attribute) {
+
+        final String value = attribute.value;
+        if (value == null || attribute.definition == null || !attribute.definition.hasAssociatedProcessors) {
+            return false;
+        }
+        if (value.indexOf("__") >= 0) {
+            // Preprocessing needs execution, so this cannot be parsed until processing time
+            return false;
+        }
+
+        for (final IElementProcessor associatedProcessor : attribute.definition.associatedProcessors) {
+            final IElementProcessor processor = ProcessorConfigurationUtils.unwrap(associatedProcessor);
+            if (processor instanceof AbstractStandardExpressionAttributeTagProcessor) {
+                EngineEventUtils.computeAttributeExpression(context, attribute, value);
+                return true;
+            }
+            if (processor instanceof StandardEachTagProcessor) {
+                EachUtils.parseEach(context, value);
+                return true;
+            }
+            if (processor instanceof StandardWithTagProcessor ||
+                    processor instanceof AbstractStandardMultipleAttributeModifierTagProcessor) {
+                AssignationUtils.parseAssignationSequence(context, value, false);
+                return true;
+            }
+        }
+
+        return false;
+
+    }
+
+
+
+
+
+
     /*
      * ---------------
      * PROCESS methods
@@ -510,7 +820,7 @@ public void process(
          * LazyProcessingCharSequence, and in such case we know those CharSequences are only used when there are
          * NO post-processors, so we are safe anyway.
          */
-        final ProcessorTemplateHandler processorTemplateHandler = new ProcessorTemplateHandler();
+        final ProcessorTemplateHandler processorTemplateHandler = acquireProcessorTemplateHandler();
         final ITemplateHandler processingHandlerChain =
                 createTemplateProcessingHandlerChain(engineContext, false, false, processorTemplateHandler, writer);
 
@@ -524,6 +834,7 @@ public void process(
          * Dispose the engine context now that processing has been done
          */
         EngineContextManager.disposeEngineContext(engineContext);
+        releaseProcessorTemplateHandler(processorTemplateHandler);
 
     }
 
@@ -547,6 +858,58 @@ public void parseAndProcess(
             final IContext context,
             final Writer writer) {
 
+        final IEngineMetricsListener metricsListener = EngineConfigurationUtils.getMetricsListener(this.configuration);
+        if (!(metricsListener instanceof IEngineProfilingListener)) {
+            parseAndProcessStitched(templateSpec, context, writer);
+            return;
+        }
+
+        final IEngineProfilingListener profilingListener = (IEngineProfilingListener) metricsListener;
+        profilingListener.enterTemplate(templateSpec == null? null : templateSpec.getTemplate());
+        try {
+            parseAndProcessStitched(templateSpec, context, writer);
+        } finally {
+            profilingListener.exit(ProfileFrameType.TEMPLATE);
+        }
+
+    }
+
+
+    /*
+     * If parallel fragment rendering is enabled, output will be written through a FragmentStitchingWriter so that
+     * fragments being rendered concurrently do not block the processing of the rest of the template, and then
+     * written to output in document order once they are ready.
+     */
+    private void parseAndProcessStitched(
+            final TemplateSpec templateSpec,
+            final IContext context,
+            final Writer writer) {
+
+        if (EngineConfigurationUtils.getParallelFragmentExecutor(this.configuration) == null || writer == null) {
+            doParseAndProcess(templateSpec, context, writer);
+            return;
+        }
+
+        final FragmentStitchingWriter stitchingWriter = new FragmentStitchingWriter(writer);
+
+        doParseAndProcess(templateSpec, context, stitchingWriter);
+
+        try {
+            stitchingWriter.finish();
+        } catch (final IOException e) {
+            throw new TemplateOutputException(
+                    "An error happened while writing concurrently rendered fragments to output",
+                    templateSpec.getTemplate(), -1, -1, e);
+        }
+
+    }
+
+
+    private void doParseAndProcess(
+            final TemplateSpec templateSpec,
+            final IContext context,
+            final Writer writer) {
+
         Validate.notNull(templateSpec, "Template Specification cannot be null");
         Validate.notNull(context, "Context cannot be null");
         Validate.notNull(writer, "Writer cannot be null");
@@ -574,7 +937,12 @@ public void parseAndProcess(
          */
         if (this.templateCache != null) {
 
-            final TemplateModel cached =  this.templateCache.get(cacheKey);
+            TemplateModel cached =  lookupCache(cacheKey, true);
+
+            if (cached == null) {
+                // It might be being parsed right now by a different thread, in which case we will wait for it
+                cached = awaitInFlightParse(cacheKey);
+            }
 
             if (cached != null) {
 
@@ -586,13 +954,14 @@ public void parseAndProcess(
                  * This is PARSE + PROCESS, so its called from the TemplateEngine, and the only case in which we should apply
                  * both pre-processors and post-processors (besides creating a last output-to-writer step)
                  */
-                final ProcessorTemplateHandler processorTemplateHandler = new ProcessorTemplateHandler();
+                final ProcessorTemplateHandler processorTemplateHandler = acquireProcessorTemplateHandler();
                 final ITemplateHandler processingHandlerChain =
                         createTemplateProcessingHandlerChain(engineContext, true, true, processorTemplateHandler, writer);
 
                 cached.process(processingHandlerChain);
 
                 EngineContextManager.disposeEngineContext(engineContext);
+                releaseProcessorTemplateHandler(processorTemplateHandler);
 
                 return;
 
@@ -627,7 +996,7 @@ public void parseAndProcess(
          * This is PARSE + PROCESS, so its called from the TemplateEngine, and the only case in which we should apply
          * both pre-processors and post-processors (besides creating a last output-to-writer step)
          */
-        final ProcessorTemplateHandler processorTemplateHandler = new ProcessorTemplateHandler();
+        final ProcessorTemplateHandler processorTemplateHandler = acquireProcessorTemplateHandler();
         final ITemplateHandler processingHandlerChain =
                 createTemplateProcessingHandlerChain(engineContext, true, true, processorTemplateHandler, writer);
 
@@ -643,20 +1012,12 @@ public void parseAndProcess(
          */
         if (templateResolution.getValidity().isCacheable() && this.templateCache != null) {
 
-            // Create the handler chain to create the Template object
-            final ModelBuilderTemplateHandler builderHandler = new ModelBuilderTemplateHandler(this.configuration, templateData);
-
-            // Process the template into a TemplateModel
-            parser.parseStandalone(
-                    this.configuration,
-                    null, template, templateSelectors, templateData.getTemplateResource(),
-                    engineContext.getTemplateMode(), templateResolution.getUseDecoupledLogic(), builderHandler);
-
-            // Obtain the TemplateModel
-            final TemplateModel templateModel = builderHandler.getModel();
-
-            // Put the new template into cache
-            this.templateCache.put(cacheKey, templateModel);
+            // Parse the template into a TemplateModel and put it into cache (unless another thread is already
+            // doing so, in which case we will simply wait for its result)
+            final TemplateModel templateModel =
+                    parseAndCacheCoalesced(
+                            cacheKey, templateData, null, template, templateSelectors,
+                            templateResolution.getUseDecoupledLogic());
 
             // Process the read (+cached) template itself
             templateModel.process(processingHandlerChain);
@@ -676,6 +1037,7 @@ public void parseAndProcess(
          * Dispose the engine context now that processing has been done
          */
         EngineContextManager.disposeEngineContext(engineContext);
+        releaseProcessorTemplateHandler(processorTemplateHandler);
 
 
     }
@@ -716,7 +1078,12 @@ public ThrottledTemplateProcessor parseAndProcessThrottled(final TemplateSpec te
          */
         if (this.templateCache != null) {
 
-            final TemplateModel cached =  this.templateCache.get(cacheKey);
+            TemplateModel cached =  lookupCache(cacheKey, true);
+
+            if (cached == null) {
+                // It might be being parsed right now by a different thread, in which case we will wait for it
+                cached = awaitInFlightParse(cacheKey);
+            }
 
             if (cached != null) {
 
@@ -778,47 +1145,351 @@ public ThrottledTemplateProcessor parseAndProcessThrottled(final TemplateSpec te
 
 
         /*
-         * Obtain the parser
+         * Parse the template into a TemplateModel. Even if we are not using the cache, throttled template processings
+         * will always be processed first into a TemplateModel, so that throttling can then be applied on an
+         * already-in-memory sequence of events.
+         *
+         * If cache is active, the TemplateModel will also be put into cache (and only one thread will be allowed
+         * to parse this cache key at a time)
          */
-        final ITemplateParser parser = getParserForTemplateMode(engineContext.getTemplateMode());
+        final TemplateModel templateModel;
+        if (templateResolution.getValidity().isCacheable() && this.templateCache != null) {
+            templateModel =
+                    parseAndCacheCoalesced(
+                            cacheKey, templateData, null, template, templateSelectors,
+                            templateResolution.getUseDecoupledLogic());
+        } else {
+            templateModel =
+                    parseTemplateModel(
+                            templateData, null, template, templateSelectors,
+                            templateResolution.getUseDecoupledLogic());
+        }
 
 
         /*
-         * Parse the template into a TemplateModel. Even if we are not using the cache, throttled template processings
-         * will always be processed first into a TemplateModel, so that throttling can then be applied on an
-         * already-in-memory sequence of events
+         * Return the throttled template processor
          */
+        return new ThrottledTemplateProcessor(
+                templateSpec, engineContext, templateModel, processingHandlerChain,
+                processorTemplateHandler, flowController, throttledTemplateWriter);
+
+    }
+
+
+
+
+
+
+    /*
+     * Parses a standalone template (or fragment) into a TemplateModel, without caching it.
+     */
+    private TemplateModel parseTemplateModel(
+            final TemplateData templateData,
+            final String ownerTemplate, final String template, final Set<String> templateSelectors,
+            final boolean useDecoupledLogic) {
+        return parseTemplateModel(
+                templateData, templateData.getTemplateResource(),
+                ownerTemplate, template, templateSelectors, useDecoupledLogic);
+    }
+
+
+    /*
+     * Parses a standalone template (or fragment) reading it from the specified resource (normally the template
+     * data's resource, or a wrapper on it), without caching it.
+     */
+    private TemplateModel parseTemplateModel(
+            final TemplateData templateData, final ITemplateResource templateResource,
+            final String ownerTemplate, final String template, final Set<String> templateSelectors,
+            final boolean useDecoupledLogic) {
+
+        final IEngineMetricsListener metricsListener = EngineConfigurationUtils.getMetricsListener(this.configuration);
+        final long startNanos = (metricsListener == null? 0L : System.nanoTime());
+
         final ModelBuilderTemplateHandler builderHandler = new ModelBuilderTemplateHandler(this.configuration, templateData);
+
+        final ITemplateParser parser = getParserForTemplateMode(templateData.getTemplateMode());
         parser.parseStandalone(
                 this.configuration,
-                null, template, templateSelectors, templateData.getTemplateResource(),
-                engineContext.getTemplateMode(), templateResolution.getUseDecoupledLogic(), builderHandler);
+                ownerTemplate, template, templateSelectors, templateResource,
+                templateData.getTemplateMode(), useDecoupledLogic, builderHandler);
+
         final TemplateModel templateModel = builderHandler.getModel();
 
+        if (metricsListener != null) {
+            metricsListener.templateParsed(template, System.nanoTime() - startNanos);
+        }
 
-        /*
-         * If cache is active, put the cached TemplateModel into cache
-         */
-        if (templateResolution.getValidity().isCacheable() && this.templateCache != null) {
+        return templateModel;
+
+    }
+
+
+
+
+    /*
+     * Parses a cacheable standalone template (or fragment) into a TemplateModel and puts it into the template cache.
+     *
+     * Only one thread will be allowed to parse each cache key at a time: any other threads asking for the same
+     * key while the parsing operation is in flight will wait for its result instead of resolving and parsing the
+     * same resource again (which would produce cache-miss stampedes for popular templates right after eviction or
+     * at cold start).
+     */
+    private TemplateModel parseAndCacheCoalesced(
+            final TemplateCacheKey cacheKey, final TemplateData templateData,
+            final String ownerTemplate, final String template, final Set<String> templateSelectors,
+            final boolean useDecoupledLogic) {
+
+        while (true) {
+
+            final TemplateParseRegistry.InFlightParse inFlightParse = this.parseRegistry.register(cacheKey);
+
+            if (inFlightParse.isOwnedByCurrentThread()) {
+                return parseAndCacheAsOwner(
+                        inFlightParse, cacheKey, templateData, ownerTemplate, template, templateSelectors,
+                        useDecoupledLogic);
+            }
+
+            final TemplateModel inFlightModel = this.parseRegistry.await(inFlightParse);
+            if (inFlightModel != null) {
+                return inFlightModel;
+            }
+
+            if (Thread.currentThread().isInterrupted()) {
+                // We cannot wait for any other parses, so we will parse the template by ourselves. The result is
+                // not cached, as caching models is a responsibility of the owners of the parses
+                return parseTemplateModel(templateData, ownerTemplate, template, templateSelectors, useDecoupledLogic);
+            }
+
+            // The thread owning the parse failed, so we will try to become the owner of a new one (which will
+            // report any errors in the context of this execution). If another waiting thread gets there first,
+            // we will simply wait for it.
+
+        }
+
+    }
+
+
+    private TemplateModel parseAndCacheAsOwner(
+            final TemplateParseRegistry.InFlightParse inFlightParse,
+            final TemplateCacheKey cacheKey, final TemplateData templateData,
+            final String ownerTemplate, final String template, final Set<String> templateSelectors,
+            final boolean useDecoupledLogic) {
+
+        TemplateModel templateModel = null;
+        try {
+            // Another thread's parse of this key might have completed between our cache miss and our registration
+            templateModel = this.templateCache.get(cacheKey);
+            if (templateModel != null) {
+                return templateModel;
+            }
+            this.parseRegistry.recordParse();
+            final long startNanos = System.nanoTime();
+            final boolean useSnapshot =
+                    (this.snapshotStore != null && TemplateModelSnapshotStore.isSnapshotable(cacheKey, useDecoupledLogic));
+            if (useSnapshot) {
+                // A model persisted in a previous execution will be used if its resource has not changed since
+                templateModel = this.snapshotStore.lookup(this.configuration, cacheKey, templateData);
+            }
+            if (templateData.getValidity() instanceof StaleWhileRevalidateCacheEntryValidity) {
+                // Computed before parsing, so that any changes during the parse are detected at revalidation
+                recordResourceFingerprint(templateData);
+            }
+            if (templateModel == null) {
+                if (useSnapshot) {
+                    // The checksum needed by the snapshot is computed while the parser reads the resource
+                    final TemplateModelSnapshotStore.ResourceMetadata resourceMetadata =
+                            TemplateModelSnapshotStore.ResourceMetadata.forResource(templateData.getTemplateResource());
+                    final ChecksummingTemplateResource checksummingResource =
+                            new ChecksummingTemplateResource(templateData.getTemplateResource());
+                    templateModel =
+                            parseTemplateModel(
+                                    templateData, checksummingResource,
+                                    ownerTemplate, template, templateSelectors, useDecoupledLogic);
+                    this.snapshotStore.record(cacheKey, templateData, templateModel, resourceMetadata, checksummingResource);
+                } else {
+                    templateModel =
+                            parseTemplateModel(templateData, ownerTemplate, template, templateSelectors, useDecoupledLogic);
+                }
+            }
+            if (this.templateCache instanceof IMonitoredCache) {
+                ((IMonitoredCache<TemplateCacheKey,TemplateModel>)this.templateCache).recordLoad(System.nanoTime() - startNanos);
+            }
+            // Cached models are immutable and will be executed many times, so we prepare them for that now
+            prepareForCaching(templateModel);
+            this.templateCache.put(cacheKey, templateModel);
+        } finally {
+            // Waiting threads are always released, even if parsing failed (they will see a null model)
+            this.parseRegistry.complete(inFlightParse, templateModel);
+        }
+
+        return templateModel;
+
+    }
+
+
+
+
+    private static void recordResourceFingerprint(final TemplateData templateData) {
+        try {
+            ((StaleWhileRevalidateCacheEntryValidity)templateData.getValidity()).setResourceFingerprint(
+                    TemplateModelSnapshotStore.computeFingerprint(templateData.getTemplateResource()));
+        } catch (final IOException e) {
+            // No fingerprint: the template will simply be parsed again at revalidation
+        }
+    }
+
+
+
+
+    /*
+     * Looks up the template cache, reporting the hit or miss to the metrics listener (if there is one).
+     *
+     * Templates obtained by means of template resolvers (i.e. not String fragments) that are being served stale
+     * (see StaleWhileRevalidateCacheEntryValidity) will also be scheduled for revalidation if needed.
+     */
+    private TemplateModel lookupCache(final TemplateCacheKey cacheKey, final boolean resolved) {
+        final TemplateModel cached = this.templateCache.get(cacheKey);
+        final IEngineMetricsListener metricsListener = EngineConfigurationUtils.getMetricsListener(this.configuration);
+        if (metricsListener != null) {
+            metricsListener.templateCacheLookup(cacheKey.getTemplate(), cached != null);
+        }
+        if (resolved && cached != null) {
+            final ICacheEntryValidity validity = cached.getTemplateData().getValidity();
+            if (validity instanceof StaleWhileRevalidateCacheEntryValidity) {
+                final StaleWhileRevalidateCacheEntryValidity staleValidity = (StaleWhileRevalidateCacheEntryValidity) validity;
+                if (staleValidity.isRevalidationNeeded() && staleValidity.startRevalidation()) {
+                    scheduleRevalidation(cacheKey, staleValidity);
+                }
+            }
+        }
+        return cached;
+    }
 
-            // Put the new template into cache
+
+
+
+    private void scheduleRevalidation(
+            final TemplateCacheKey cacheKey, final StaleWhileRevalidateCacheEntryValidity staleValidity) {
+        try {
+            this.revalidationExecutor.execute(new Runnable() {
+                public void run() {
+                    revalidate(cacheKey, staleValidity);
+                }
+            });
+        } catch (final RejectedExecutionException e) {
+            // Will be tried again once the TTL expires again
+            staleValidity.revalidated();
+        }
+    }
+
+
+    /*
+     * Revalidates a cached template whose TTL has expired, while the stale model keeps being served from cache.
+     *
+     * The template is resolved again and, if its resource has not changed since it was parsed (as determined by
+     * its fingerprint), its validity is simply renewed. Otherwise the template is parsed again and the new model
+     * replaces the stale one at the cache. The parse is registered as in flight so that any threads missing
+     * the cache key while models are being swapped wait for the new model instead of parsing it themselves.
+     *
+     * If revalidation fails, the stale entry is invalidated so that the next request resolves the template
+     * by itself, reporting any errors in the context of its execution.
+     */
+    private void revalidate(
+            final TemplateCacheKey cacheKey, final StaleWhileRevalidateCacheEntryValidity staleValidity) {
+
+        final TemplateParseRegistry.InFlightParse inFlightParse = this.parseRegistry.register(cacheKey);
+        if (!inFlightParse.isOwnedByCurrentThread()) {
+            // The entry must have been removed and is already being parsed again by a different thread
+            staleValidity.revalidated();
+            return;
+        }
+
+        TemplateModel templateModel = null;
+        try {
+
+            final TemplateResolution templateResolution =
+                    resolveTemplate(
+                            this.configuration, cacheKey.getOwnerTemplate(), cacheKey.getTemplate(),
+                            cacheKey.getTemplateResolutionAttributes(), true);
+
+            if (!templateResolution.getValidity().isCacheable()) {
+                // Configuration changed and the template is not cacheable anymore
+                staleValidity.invalidate();
+                return;
+            }
+
+            final TemplateData templateData =
+                    buildTemplateData(
+                            templateResolution, cacheKey.getTemplate(), cacheKey.getTemplateSelectors(),
+                            cacheKey.getTemplateMode(), true);
+
+            final long resourceFingerprint = TemplateModelSnapshotStore.computeFingerprint(templateData.getTemplateResource());
+            if (staleValidity.hasResourceFingerprint() && staleValidity.getResourceFingerprint() == resourceFingerprint) {
+                // Resource has not changed: no need to parse it again
+                staleValidity.revalidated();
+                return;
+            }
+
+            this.parseRegistry.recordParse();
+            final long startNanos = System.nanoTime();
+            templateModel =
+                    parseTemplateModel(
+                            templateData, cacheKey.getOwnerTemplate(), cacheKey.getTemplate(),
+                            cacheKey.getTemplateSelectors(), templateResolution.getUseDecoupledLogic());
+            if (templateData.getValidity() instanceof StaleWhileRevalidateCacheEntryValidity) {
+                ((StaleWhileRevalidateCacheEntryValidity)templateData.getValidity()).setResourceFingerprint(resourceFingerprint);
+            }
+            if (this.templateCache instanceof IMonitoredCache) {
+                ((IMonitoredCache<TemplateCacheKey,TemplateModel>)this.templateCache).recordLoad(System.nanoTime() - startNanos);
+            }
+
+            prepareForCaching(templateModel);
+            this.templateCache.clearKey(cacheKey);
             this.templateCache.put(cacheKey, templateModel);
 
+        } catch (final Exception e) {
+            logger.warn(
+                    "[THYMELEAF] Revalidation of stale template \"" + cacheKey.getTemplate() + "\" failed. It will " +
+                    "be removed from cache and resolved again when next requested.", e);
+            staleValidity.invalidate();
+        } finally {
+            this.parseRegistry.complete(inFlightParse, templateModel);
         }
 
+    }
+
 
-        /*
-         * Return the throttled template processor
-         */
-        return new ThrottledTemplateProcessor(
-                templateSpec, engineContext, templateModel, processingHandlerChain,
-                processorTemplateHandler, flowController, throttledTemplateWriter);
 
+
+    private static Executor createRevalidationExecutor() {
+        // At most one revalidation thread per template manager, which finishes after some idle time
+        return new ThreadPoolExecutor(
+                0, 1, 30L, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
+                new ThreadFactory() {
+                    public Thread newThread(final Runnable runnable) {
+                        final Thread thread = new Thread(runnable, "thymeleaf-template-revalidation");
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+                });
     }
 
 
 
 
+    /*
+     * Waits for the result of a parsing operation in flight for the specified cache key, if there is one
+     * being executed by a different thread. Will return null if there is none (or if it fails).
+     */
+    private TemplateModel awaitInFlightParse(final TemplateCacheKey cacheKey) {
+        final TemplateParseRegistry.InFlightParse inFlightParse = this.parseRegistry.find(cacheKey);
+        if (inFlightParse == null || inFlightParse.isOwnedByCurrentThread()) {
+            return null;
+        }
+        return this.parseRegistry.await(inFlightParse);
+    }
+
+
 
 
     private static TemplateResolution resolveTemplate(
@@ -828,6 +1499,33 @@ private static TemplateResolution resolveTemplate(
             final Map<String, Object> templateResolutionAttributes,
             final boolean failIfNotExists) {
 
+        final IEngineMetricsListener metricsListener = EngineConfigurationUtils.getMetricsListener(configuration);
+        if (metricsListener == null) {
+            return resolveTemplateWithResolvers(
+                    configuration, ownerTemplate, template, templateResolutionAttributes, failIfNotExists);
+        }
+
+        final long startNanos = System.nanoTime();
+        TemplateResolution templateResolution = null;
+        try {
+            templateResolution =
+                    resolveTemplateWithResolvers(
+                            configuration, ownerTemplate, template, templateResolutionAttributes, failIfNotExists);
+            return templateResolution;
+        } finally {
+            metricsListener.templateResolved(template, (templateResolution != null), System.nanoTime() - startNanos);
+        }
+
+    }
+
+
+    private static TemplateResolution resolveTemplateWithResolvers(
+            final IEngineConfiguration configuration,
+            final String ownerTemplate,
+            final String template,
+            final Map<String, Object> templateResolutionAttributes,
+            final boolean failIfNotExists) {
+
         // Note that the MARKUP SELECTORS that might be used for a executing or inserting a template
         // are not specified to the template resolver. The reason is markup selectors are applied by the parser,
         // not the template resolvers, and allowing the resolver to take any decisions based on markup selectors
@@ -910,6 +1608,27 @@ private ITemplateParser getParserForTemplateMode(final TemplateMode templateMode
 
 
 
+    /*
+     * Handlers are only reused when pooling has been enabled, and never for throttled processing. Released handlers
+     * are those of executions that finished normally (see ProcessorTemplateHandlerPool).
+     */
+    private ProcessorTemplateHandler acquireProcessorTemplateHandler() {
+        if (this.processorTemplateHandlerPool == null) {
+            return new ProcessorTemplateHandler();
+        }
+        return this.processorTemplateHandlerPool.acquire();
+    }
+
+
+    private void releaseProcessorTemplateHandler(final ProcessorTemplateHandler processorTemplateHandler) {
+        if (this.processorTemplateHandlerPool != null) {
+            this.processorTemplateHandlerPool.release(processorTemplateHandler);
+        }
+    }
+
+
+
+
     private static ITemplateHandler createTemplateProcessingHandlerChain(
             final IEngineContext context,
             final boolean setPreProcessors, final boolean setPostProcessors,
@@ -44,6 +44,13 @@ public final class TemplateModel implements IModel {
     final TemplateData templateData;
     final IEngineTemplateEvent[] queue; // This is final because this IModel is IMMUTABLE
 
+    // Version of the queue used for processing, in which static regions might have been coalesced
+    // (see StaticRegion). Only set before the model is put into the template cache, so it is never seen changing.
+    private IEngineTemplateEvent[] processingQueue;
+
+    // Computed lazily, as it is only needed by caches that weigh their entries
+    private volatile long estimatedRetainedSize = -1L;
+
 
     // Package-protected constructor, because we don't want anyone creating these objects from outside the engine.
     // If a processor (be it standard or custom-made) wants to create a piece of model, that should be a Model
@@ -64,6 +71,7 @@ public final class TemplateModel implements IModel {
         this.configuration = configuration;
         this.templateData = templateData;
         this.queue = queue;
+        this.processingQueue = queue;
 
     }
 
@@ -84,6 +92,29 @@ public final TemplateMode getTemplateMode() {
 
 
 
+    /**
+     * <p>
+     *   Returns an estimation of the heap size (in bytes) retained by this model, including its events,
+     *   their attributes and their text buffers, as well as any static regions coalesced for processing.
+     * </p>
+     * <p>
+     *   This is an approximation meant for weighing the entries of the template cache
+     *   (see {@link org.thymeleaf.cache.StandardTemplateModelWeigher}), not an exact measurement.
+     * </p>
+     *
+     * @return the estimated retained size, in bytes.
+     * @since 3.0.3
+     */
+    public final long getEstimatedRetainedSize() {
+        long size = this.estimatedRetainedSize;
+        if (size < 0L) {
+            this.estimatedRetainedSize = size = TemplateModelSizeEstimator.estimate(this.queue, this.processingQueue);
+        }
+        return size;
+    }
+
+
+
     public final int size() {
         return this.queue.length;
     }
@@ -131,28 +162,43 @@ public final void reset() {
 
 
 
+    void coalesceStaticRegions() {
+        this.processingQueue = StaticRegion.coalesce(this.configuration, this);
+        this.estimatedRetainedSize = -1L;
+    }
+
+
+    // Offsets used for throttled processing refer to the processing queue, not to the model's events
+    int processingSize() {
+        return this.processingQueue.length;
+    }
+
+
     void process(final ITemplateHandler handler) {
-        for (int i = 0; i < this.queue.length; i++) {
-            this.queue[i].beHandled(handler);
+        final IEngineTemplateEvent[] events = this.processingQueue;
+        for (int i = 0; i < events.length; i++) {
+            events[i].beHandled(handler);
         }
     }
 
 
     int process(final ITemplateHandler handler, final int offset, final TemplateFlowController controller) {
 
+        final IEngineTemplateEvent[] events = this.processingQueue;
+
         if (controller == null) {
             process(handler);
-            return this.queue.length;
+            return events.length;
         }
 
-        if (this.queue.length == 0 || offset >= this.queue.length) {
+        if (events.length == 0 || offset >= events.length) {
             return 0;
         }
 
         int processed = 0;
 
-        for (int i = offset; i < this.queue.length && !controller.stopProcessing; i++) {
-            this.queue[i].beHandled(handler);
+        for (int i = offset; i < events.length && !controller.stopProcessing; i++) {
+            events[i].beHandled(handler);
             processed++;
         }
 
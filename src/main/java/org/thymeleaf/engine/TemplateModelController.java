@@ -352,6 +352,20 @@ boolean shouldProcessText(final IText text) {
     }
 
 
+    /*
+     * Static regions can only be output at once if their events would have been processed normally one by one,
+     * i.e. if we are neither gathering nor skipping anything. Being balanced, a region leaves the model level
+     * unchanged, so we only need to remember its last event (for the white space preceding iterations).
+     */
+    boolean shouldOutputStaticRegion(final StaticRegion staticRegion) {
+        if (this.gatheredModel != null || this.skipBody != SkipBody.PROCESS) {
+            return false;
+        }
+        this.lastEvent = staticRegion.lastEvent;
+        return true;
+    }
+
+
     boolean shouldProcessComment(final IComment comment) {
         this.lastEvent = comment;
         if (this.gatheredModel != null) {
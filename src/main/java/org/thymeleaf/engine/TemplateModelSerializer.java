@@ -0,0 +1,538 @@
+/*
+ * =============================================================================
+ *
+ *   Copyright (c) 2011-2016, The THYMELEAF team (http://www.thymeleaf.org)
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ * =============================================================================
+ */
+package org.thymeleaf.engine;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.thymeleaf.IEngineConfiguration;
+import org.thymeleaf.model.AttributeValueQuotes;
+import org.thymeleaf.templatemode.TemplateMode;
+
+/*
+ * Binary serialization format for the events contained in TemplateModel objects, used for persisting parsed
+ * templates into snapshot files (see TemplateModelSnapshotStore).
+ *
+ * Every model is serialized as an event count followed by the events themselves, each one of them starting
+ * with a one-byte type code. Strings are written as UTF-8 and pooled per model: the first occurrence of a
+ * String is written in full and any further occurrences (element names, attribute names, template names...)
+ * are written as a reference to the first one, which makes snapshots smaller and deserialized models share
+ * String instances just like the ones produced by the parsers.
+ *
+ * Element and attribute definitions are not serialized: they are looked up again in the engine configuration
+ * at deserialization time, so that their associated processors are the ones currently configured.
+ *
+ * @author Daniel Fernandez
+ * @since 3.0.3
+ *
+ */
+final class TemplateModelSerializer {
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private static final byte TEMPLATE_START = 0;
+    private static final byte TEMPLATE_END = 1;
+    private static final byte TEXT = 2;
+    private static final byte COMMENT = 3;
+    private static final byte CDATA_SECTION = 4;
+    private static final byte DOCTYPE = 5;
+    private static final byte XML_DECLARATION = 6;
+    private static final byte PROCESSING_INSTRUCTION = 7;
+    private static final byte OPEN_ELEMENT = 8;
+    private static final byte STANDALONE_ELEMENT = 9;
+    private static final byte CLOSE_ELEMENT = 10;
+
+    private static final byte NULL_ATTRIBUTES = 0;
+    private static final byte EMPTY_ATTRIBUTES = 1;
+    private static final byte FULL_ATTRIBUTES = 2;
+
+    private static final int NULL_STRING = -1;
+
+    private static final TemplateMode[] TEMPLATE_MODES = TemplateMode.values();
+    private static final AttributeValueQuotes[] VALUE_QUOTES = AttributeValueQuotes.values();
+
+
+
+
+    static void writeModel(final DataOutputStream out, final TemplateModel templateModel) throws IOException {
+
+        final Map<String,Integer> stringPool = new HashMap<String, Integer>(64);
+        final IEngineTemplateEvent[] queue = templateModel.queue;
+
+        out.writeInt(queue.length);
+        for (int i = 0; i < queue.length; i++) {
+            writeEvent(out, stringPool, queue[i]);
+        }
+
+    }
+
+
+    static TemplateModel readModel(
+            final ByteBuffer in, final IEngineConfiguration configuration, final TemplateData templateData) {
+
+        final StringPool stringPool = new StringPool();
+        final int eventCount = in.getInt();
+
+        final IEngineTemplateEvent[] queue = new IEngineTemplateEvent[eventCount];
+        for (int i = 0; i < eventCount; i++) {
+            queue[i] = readEvent(in, stringPool, configuration);
+        }
+
+        return new TemplateModel(configuration, templateData, queue);
+
+    }
+
+
+
+
+    private static void writeEvent(
+            final DataOutputStream out, final Map<String,Integer> stringPool, final IEngineTemplateEvent event)
+            throws IOException {
+
+        if (event == TemplateStart.TEMPLATE_START_INSTANCE) {
+            out.writeByte(TEMPLATE_START);
+            return;
+        }
+        if (event == TemplateEnd.TEMPLATE_END_INSTANCE) {
+            out.writeByte(TEMPLATE_END);
+            return;
+        }
+
+        if (event instanceof OpenElementTag) {
+            final OpenElementTag tag = (OpenElementTag) event;
+            out.writeByte(OPEN_ELEMENT);
+            writeLocation(out, stringPool, tag);
+            writeElementTag(out, stringPool, tag);
+            writeAttributes(out, stringPool, tag.attributes);
+            return;
+        }
+        if (event instanceof CloseElementTag) {
+            final CloseElementTag tag = (CloseElementTag) event;
+            out.writeByte(CLOSE_ELEMENT);
+            writeLocation(out, stringPool, tag);
+            writeElementTag(out, stringPool, tag);
+            writeString(out, stringPool, tag.trailingWhiteSpace);
+            out.writeBoolean(tag.unmatched);
+            return;
+        }
+        if (event instanceof StandaloneElementTag) {
+            final StandaloneElementTag tag = (StandaloneElementTag) event;
+            out.writeByte(STANDALONE_ELEMENT);
+            writeLocation(out, stringPool, tag);
+            writeElementTag(out, stringPool, tag);
+            writeAttributes(out, stringPool, tag.attributes);
+            out.writeBoolean(tag.minimized);
+            return;
+        }
+        if (event instanceof Text) {
+            final Text text = (Text) event;
+            out.writeByte(TEXT);
+            writeLocation(out, stringPool, text);
+            writeString(out, stringPool, text.getText());
+            return;
+        }
+        if (event instanceof Comment) {
+            final Comment comment = (Comment) event;
+            out.writeByte(COMMENT);
+            writeLocation(out, stringPool, comment);
+            writeString(out, stringPool, comment.prefix);
+            writeString(out, stringPool, comment.getContent());
+            writeString(out, stringPool, comment.suffix);
+            return;
+        }
+        if (event instanceof CDATASection) {
+            final CDATASection cdataSection = (CDATASection) event;
+            out.writeByte(CDATA_SECTION);
+            writeLocation(out, stringPool, cdataSection);
+            writeString(out, stringPool, cdataSection.prefix);
+            writeString(out, stringPool, cdataSection.getContent());
+            writeString(out, stringPool, cdataSection.suffix);
+            return;
+        }
+        if (event instanceof DocType) {
+            final DocType docType = (DocType) event;
+            out.writeByte(DOCTYPE);
+            writeLocation(out, stringPool, docType);
+            writeString(out, stringPool, docType.getDocType());
+            writeString(out, stringPool, docType.getKeyword());
+            writeString(out, stringPool, docType.getElementName());
+            writeString(out, stringPool, docType.getPublicId());
+            writeString(out, stringPool, docType.getSystemId());
+            writeString(out, stringPool, docType.getInternalSubset());
+            return;
+        }
+        if (event instanceof XMLDeclaration) {
+            final XMLDeclaration xmlDeclaration = (XMLDeclaration) event;
+            out.writeByte(XML_DECLARATION);
+            writeLocation(out, stringPool, xmlDeclaration);
+            writeString(out, stringPool, xmlDeclaration.getXmlDeclaration());
+            writeString(out, stringPool, xmlDeclaration.getKeyword());
+            writeString(out, stringPool, xmlDeclaration.getVersion());
+            writeString(out, stringPool, xmlDeclaration.getEncoding());
+            writeString(out, stringPool, xmlDeclaration.getStandalone());
+            return;
+        }
+        if (event instanceof ProcessingInstruction) {
+            final ProcessingInstruction processingInstruction = (ProcessingInstruction) event;
+            out.writeByte(PROCESSING_INSTRUCTION);
+            writeLocation(out, stringPool, processingInstruction);
+            writeString(out, stringPool, processingInstruction.getProcessingInstruction());
+            writeString(out, stringPool, processingInstruction.getTarget());
+            writeString(out, stringPool, processingInstruction.getContent());
+            return;
+        }
+
+        throw new IOException("Cannot serialize template event of unknown type: " + event.getClass().getName());
+
+    }
+
+
+    private static IEngineTemplateEvent readEvent(
+            final ByteBuffer in, final StringPool stringPool, final IEngineConfiguration configuration) {
+
+        final byte type = in.get();
+
+        switch (type) {
+
+            case TEMPLATE_START:
+                return TemplateStart.TEMPLATE_START_INSTANCE;
+
+            case TEMPLATE_END:
+                return TemplateEnd.TEMPLATE_END_INSTANCE;
+
+            case OPEN_ELEMENT: {
+                final String templateName = readString(in, stringPool);
+                final int line = in.getInt();
+                final int col = in.getInt();
+                final TemplateMode templateMode = TEMPLATE_MODES[in.get()];
+                final String elementCompleteName = readString(in, stringPool);
+                final boolean synthetic = readBoolean(in);
+                final Attributes attributes = readAttributes(in, stringPool, configuration, templateMode);
+                return new OpenElementTag(
+                        templateMode, configuration.getElementDefinitions().forName(templateMode, elementCompleteName),
+                        elementCompleteName, attributes, synthetic, templateName, line, col);
+            }
+
+            case CLOSE_ELEMENT: {
+                final String templateName = readString(in, stringPool);
+                final int line = in.getInt();
+                final int col = in.getInt();
+                final TemplateMode templateMode = TEMPLATE_MODES[in.get()];
+                final String elementCompleteName = readString(in, stringPool);
+                final boolean synthetic = readBoolean(in);
+                final String trailingWhiteSpace = readString(in, stringPool);
+                final boolean unmatched = readBoolean(in);
+                return new CloseElementTag(
+                        templateMode, configuration.getElementDefinitions().forName(templateMode, elementCompleteName),
+                        elementCompleteName, trailingWhiteSpace, synthetic, unmatched, templateName, line, col);
+            }
+
+            case STANDALONE_ELEMENT: {
+                final String templateName = readString(in, stringPool);
+                final int line = in.getInt();
+                final int col = in.getInt();
+                final TemplateMode templateMode = TEMPLATE_MODES[in.get()];
+                final String elementCompleteName = readString(in, stringPool);
+                final boolean synthetic = readBoolean(in);
+                final Attributes attributes = readAttributes(in, stringPool, configuration, templateMode);
+                final boolean minimized = readBoolean(in);
+                return new StandaloneElementTag(
+                        templateMode, configuration.getElementDefinitions().forName(templateMode, elementCompleteName),
+                        elementCompleteName, attributes, synthetic, minimized, templateName, line, col);
+            }
+
+            case TEXT: {
+                final String templateName = readString(in, stringPool);
+                final int line = in.getInt();
+                final int col = in.getInt();
+                return new Text(readString(in, stringPool), templateName, line, col);
+            }
+
+            case COMMENT: {
+                final String templateName = readString(in, stringPool);
+                final int line = in.getInt();
+                final int col = in.getInt();
+                final String prefix = readString(in, stringPool);
+                final String content = readString(in, stringPool);
+                final String suffix = readString(in, stringPool);
+                return new Comment(prefix, content, suffix, templateName, line, col);
+            }
+
+            case CDATA_SECTION: {
+                final String templateName = readString(in, stringPool);
+                final int line = in.getInt();
+                final int col = in.getInt();
+                final String prefix = readString(in, stringPool);
+                final String content = readString(in, stringPool);
+                final String suffix = readString(in, stringPool);
+                return new CDATASection(prefix, content, suffix, templateName, line, col);
+            }
+
+            case DOCTYPE: {
+                final String templateName = readString(in, stringPool);
+                final int line = in.getInt();
+                final int col = in.getInt();
+                final String docType = readString(in, stringPool);
+                final String keyword = readString(in, stringPool);
+                final String elementName = readString(in, stringPool);
+                final String publicId = readString(in, stringPool);
+                final String systemId = readString(in, stringPool);
+                final String internalSubset = readString(in, stringPool);
+                return new DocType(
+                        docType, keyword, elementName, publicId, systemId, internalSubset, templateName, line, col);
+            }
+
+            case XML_DECLARATION: {
+                final String templateName = readString(in, stringPool);
+                final int line = in.getInt();
+                final int col = in.getInt();
+                final String xmlDeclaration = readString(in, stringPool);
+                final String keyword = readString(in, stringPool);
+                final String version = readString(in, stringPool);
+                final String encoding = readString(in, stringPool);
+                final String standalone = readString(in, stringPool);
+                return new XMLDeclaration(
+                        xmlDeclaration, keyword, version, encoding, standalone, templateName, line, col);
+            }
+
+            case PROCESSING_INSTRUCTION: {
+                final String templateName = readString(in, stringPool);
+                final int line = in.getInt();
+                final int col = in.getInt();
+                final String processingInstruction = readString(in, stringPool);
+                final String target = readString(in, stringPool);
+                final String content = readString(in, stringPool);
+                return new ProcessingInstruction(processingInstruction, target, content, templateName, line, col);
+            }
+
+            default:
+                throw new IllegalStateException("Unknown template event type in snapshot: " + type);
+
+        }
+
+    }
+
+
+
+
+    private static void writeLocation(
+            final DataOutputStream out, final Map<String,Integer> stringPool, final AbstractTemplateEvent event)
+            throws IOException {
+        writeString(out, stringPool, event.templateName);
+        out.writeInt(event.line);
+        out.writeInt(event.col);
+    }
+
+
+    private static void writeElementTag(
+            final DataOutputStream out, final Map<String,Integer> stringPool, final AbstractElementTag tag)
+            throws IOException {
+        out.writeByte(tag.templateMode.ordinal());
+        writeString(out, stringPool, tag.elementCompleteName);
+        out.writeBoolean(tag.synthetic);
+    }
+
+
+    private static void writeAttributes(
+            final DataOutputStream out, final Map<String,Integer> stringPool, final Attributes attributes)
+            throws IOException {
+
+        if (attributes == null) {
+            out.writeByte(NULL_ATTRIBUTES);
+            return;
+        }
+        if (attributes == Attributes.EMPTY_ATTRIBUTES) {
+            out.writeByte(EMPTY_ATTRIBUTES);
+            return;
+        }
+
+        out.writeByte(FULL_ATTRIBUTES);
+
+        if (attributes.attributes == null) {
+            out.writeInt(-1);
+        } else {
+            out.writeInt(attributes.attributes.length);
+            for (final Attribute attribute : attributes.attributes) {
+                writeString(out, stringPool, attribute.completeName);
+                writeString(out, stringPool, attribute.operator);
+                writeString(out, stringPool, attribute.value);
+                out.writeByte(attribute.valueQuotes == null ? -1 : attribute.valueQuotes.ordinal());
+                writeString(out, stringPool, attribute.templateName);
+                out.writeInt(attribute.line);
+                out.writeInt(attribute.col);
+            }
+        }
+
+        if (attributes.innerWhiteSpaces == null) {
+            out.writeInt(-1);
+        } else {
+            out.writeInt(attributes.innerWhiteSpaces.length);
+            for (final String innerWhiteSpace : attributes.innerWhiteSpaces) {
+                writeString(out, stringPool, innerWhiteSpace);
+            }
+        }
+
+    }
+
+
+    private static Attributes readAttributes(
+            final ByteBuffer in, final StringPool stringPool,
+            final IEngineConfiguration configuration, final TemplateMode templateMode) {
+
+        final byte type = in.get();
+        if (type == NULL_ATTRIBUTES) {
+            return null;
+        }
+        if (type == EMPTY_ATTRIBUTES) {
+            return Attributes.EMPTY_ATTRIBUTES;
+        }
+
+        final AttributeDefinitions attributeDefinitions = configuration.getAttributeDefinitions();
+
+        final Attribute[] attributeArray;
+        final int attributeCount = in.getInt();
+        if (attributeCount < 0) {
+            attributeArray = null;
+        } else {
+            attributeArray = new Attribute[attributeCount];
+            for (int i = 0; i < attributeCount; i++) {
+                final String completeName = readString(in, stringPool);
+                final String operator = readString(in, stringPool);
+                final String value = readString(in, stringPool);
+                final byte quotes = in.get();
+                final String templateName = readString(in, stringPool);
+                final int line = in.getInt();
+                final int col = in.getInt();
+                attributeArray[i] =
+                        new Attribute(
+                                attributeDefinitions.forName(templateMode, completeName), completeName,
+                                operator, value, (quotes < 0 ? null : VALUE_QUOTES[quotes]),
+                                templateName, line, col);
+            }
+        }
+
+        final String[] innerWhiteSpaces;
+        final int innerWhiteSpaceCount = in.getInt();
+        if (innerWhiteSpaceCount < 0) {
+            innerWhiteSpaces = null;
+        } else {
+            innerWhiteSpaces = new String[innerWhiteSpaceCount];
+            for (int i = 0; i < innerWhiteSpaceCount; i++) {
+                innerWhiteSpaces[i] = readString(in, stringPool);
+            }
+        }
+
+        return new Attributes(attributeArray, innerWhiteSpaces);
+
+    }
+
+
+
+
+    /*
+     * Strings are written as an int code followed (for new Strings) by their UTF-8 bytes:
+     *    -1: null
+     *    >= 0: a new String, the code being the length of its UTF-8 representation (in bytes)
+     *    <= -2: a reference to a String already written, the code being -(index + 2)
+     */
+    private static void writeString(
+            final DataOutputStream out, final Map<String,Integer> stringPool, final String str)
+            throws IOException {
+
+        if (str == null) {
+            out.writeInt(NULL_STRING);
+            return;
+        }
+
+        final Integer index = stringPool.get(str);
+        if (index != null) {
+            out.writeInt(-(index.intValue() + 2));
+            return;
+        }
+
+        stringPool.put(str, Integer.valueOf(stringPool.size()));
+        final byte[] bytes = str.getBytes(UTF8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+
+    }
+
+
+    private static String readString(final ByteBuffer in, final StringPool stringPool) {
+
+        final int code = in.getInt();
+        if (code == NULL_STRING) {
+            return null;
+        }
+        if (code < NULL_STRING) {
+            return stringPool.get(-code - 2);
+        }
+
+        final byte[] bytes = new byte[code];
+        in.get(bytes);
+        final String str = new String(bytes, UTF8);
+        stringPool.add(str);
+        return str;
+
+    }
+
+
+    private static boolean readBoolean(final ByteBuffer in) {
+        return in.get() != 0;
+    }
+
+
+
+
+    private TemplateModelSerializer() {
+        super();
+    }
+
+
+
+
+    private static final class StringPool {
+
+        private String[] strings = new String[64];
+        private int size = 0;
+
+        void add(final String str) {
+            if (this.size == this.strings.length) {
+                final String[] newStrings = new String[this.strings.length * 2];
+                System.arraycopy(this.strings, 0, newStrings, 0, this.size);
+                this.strings = newStrings;
+            }
+            this.strings[this.size++] = str;
+        }
+
+        String get(final int index) {
+            if (index >= this.size) {
+                throw new IllegalStateException("Invalid String reference in snapshot: " + index);
+            }
+            return this.strings[index];
+        }
+
+    }
+
+}
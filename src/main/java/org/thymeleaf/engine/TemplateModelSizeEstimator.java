@@ -0,0 +1,179 @@
+/*
+ * =============================================================================
+ *
+ *   Copyright (c) 2011-2016, The THYMELEAF team (http://www.thymeleaf.org)
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ * =============================================================================
+ */
+package org.thymeleaf.engine;
+
+/*
+ * Estimates the heap size retained by a TemplateModel, so that template caches can be bounded by the total
+ * size of their entries (see org.thymeleaf.cache.ICacheEntryWeigher).
+ *
+ * Estimates are based on a 64-bit JVM without compressed oops and on UTF-16 String storage, which makes them
+ * slightly pessimistic for most environments. Objects shared among several models (element and attribute
+ * definitions, pooled attribute names and values, TemplateStart/TemplateEnd) are counted as if they were
+ * exclusively retained by each model, with the exception of the engine-wide singletons.
+ *
+ * @author Daniel Fernandez
+ * @since 3.0.3
+ */
+final class TemplateModelSizeEstimator {
+
+    private static final int OBJECT_HEADER = 16;
+    private static final int REFERENCE = 8;
+    private static final int ARRAY_HEADER = 24;
+    private static final int STRING_OVERHEAD = OBJECT_HEADER + REFERENCE + 8 + ARRAY_HEADER; // String + char[]
+
+    // Location (template name reference, line, col) and header shared by all template events
+    private static final int EVENT_OVERHEAD = OBJECT_HEADER + REFERENCE + 8;
+    private static final int TEXTUAL_EVENT_OVERHEAD = EVENT_OVERHEAD + (6 * REFERENCE) + 8;
+    private static final int ELEMENT_TAG_OVERHEAD = EVENT_OVERHEAD + (5 * REFERENCE) + 8;
+    private static final int ATTRIBUTES_OVERHEAD = OBJECT_HEADER + (3 * REFERENCE) + 8;
+    private static final int ATTRIBUTE_OVERHEAD = OBJECT_HEADER + (6 * REFERENCE) + 8;
+    private static final int STATIC_REGION_OVERHEAD = OBJECT_HEADER + (5 * REFERENCE);
+    private static final int MODEL_OVERHEAD = OBJECT_HEADER + (4 * REFERENCE);
+
+
+
+
+    static long estimate(final IEngineTemplateEvent[] queue, final IEngineTemplateEvent[] processingQueue) {
+
+        long size = MODEL_OVERHEAD + arraySize(queue.length);
+        for (int i = 0; i < queue.length; i++) {
+            size += estimateEvent(queue[i]);
+        }
+
+        // The processing queue only retains additional memory if static regions have been coalesced, in which
+        // case each region references the original events (already counted) plus its own serialized text
+        if (processingQueue != queue) {
+            size += arraySize(processingQueue.length);
+            for (int i = 0; i < processingQueue.length; i++) {
+                if (processingQueue[i] instanceof StaticRegion) {
+                    final StaticRegion region = (StaticRegion) processingQueue[i];
+                    final int textLength = region.text.getContentLength();
+                    size += STATIC_REGION_OVERHEAD + arraySize(region.events.length);
+                    size += estimateEvent(region.text);
+                    // Regions are normally also kept encoded for byte-based outputs (one byte per char, approx.)
+                    size += OBJECT_HEADER + (2 * REFERENCE) + ARRAY_HEADER + textLength;
+                }
+            }
+        }
+
+        return size;
+
+    }
+
+
+
+
+    private static long estimateEvent(final IEngineTemplateEvent event) {
+
+        if (event == TemplateStart.TEMPLATE_START_INSTANCE || event == TemplateEnd.TEMPLATE_END_INSTANCE) {
+            return 0L;
+        }
+
+        if (event instanceof AbstractTextualTemplateEvent) {
+            return TEXTUAL_EVENT_OVERHEAD + STRING_OVERHEAD + (2L * ((AbstractTextualTemplateEvent) event).getContentLength());
+        }
+
+        if (event instanceof AbstractElementTag) {
+            long size = ELEMENT_TAG_OVERHEAD + stringSize(((AbstractElementTag) event).elementCompleteName);
+            if (event instanceof AbstractProcessableElementTag) {
+                size += estimateAttributes(((AbstractProcessableElementTag) event).attributes);
+            }
+            return size;
+        }
+
+        if (event instanceof DocType) {
+            final DocType docType = (DocType) event;
+            return EVENT_OVERHEAD + (7 * REFERENCE) +
+                    stringSize(docType.getKeyword()) + stringSize(docType.getElementName()) +
+                    stringSize(docType.getType()) + stringSize(docType.getPublicId()) +
+                    stringSize(docType.getSystemId()) + stringSize(docType.getInternalSubset()) +
+                    stringSize(docType.getDocType());
+        }
+
+        if (event instanceof XMLDeclaration) {
+            final XMLDeclaration xmlDeclaration = (XMLDeclaration) event;
+            return EVENT_OVERHEAD + (5 * REFERENCE) +
+                    stringSize(xmlDeclaration.getKeyword()) + stringSize(xmlDeclaration.getVersion()) +
+                    stringSize(xmlDeclaration.getEncoding()) + stringSize(xmlDeclaration.getStandalone()) +
+                    stringSize(xmlDeclaration.getXmlDeclaration());
+        }
+
+        if (event instanceof ProcessingInstruction) {
+            final ProcessingInstruction processingInstruction = (ProcessingInstruction) event;
+            return EVENT_OVERHEAD + (3 * REFERENCE) +
+                    stringSize(processingInstruction.getTarget()) + stringSize(processingInstruction.getContent()) +
+                    stringSize(processingInstruction.getProcessingInstruction());
+        }
+
+        // Unknown event type: count its header and location only
+        return EVENT_OVERHEAD;
+
+    }
+
+
+    private static long estimateAttributes(final Attributes attributes) {
+
+        if (attributes == null || attributes == Attributes.EMPTY_ATTRIBUTES) {
+            return 0L;
+        }
+
+        long size = ATTRIBUTES_OVERHEAD;
+
+        final Attribute[] attributeArray = attributes.attributes;
+        if (attributeArray != null) {
+            size += arraySize(attributeArray.length);
+            for (int i = 0; i < attributeArray.length; i++) {
+                final Attribute attribute = attributeArray[i];
+                size += ATTRIBUTE_OVERHEAD + stringSize(attribute.completeName) + stringSize(attribute.value);
+            }
+        }
+
+        final String[] innerWhiteSpaces = attributes.innerWhiteSpaces;
+        if (innerWhiteSpaces != null && innerWhiteSpaces != Attributes.DEFAULT_WHITE_SPACE_ARRAY) {
+            size += arraySize(innerWhiteSpaces.length);
+            for (int i = 0; i < innerWhiteSpaces.length; i++) {
+                if (innerWhiteSpaces[i] != Attributes.DEFAULT_WHITE_SPACE) {
+                    size += stringSize(innerWhiteSpaces[i]);
+                }
+            }
+        }
+
+        return size;
+
+    }
+
+
+    private static long stringSize(final String str) {
+        return (str == null? 0L : STRING_OVERHEAD + (2L * str.length()));
+    }
+
+
+    private static long arraySize(final int length) {
+        return ARRAY_HEADER + ((long) length * REFERENCE);
+    }
+
+
+
+
+    private TemplateModelSizeEstimator() {
+        super();
+    }
+
+}
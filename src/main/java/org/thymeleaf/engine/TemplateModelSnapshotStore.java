@@ -0,0 +1,745 @@
+/*
+ * =============================================================================
+ *
+ *   Copyright (c) 2011-2016, The THYMELEAF team (http://www.thymeleaf.org)
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ * =============================================================================
+ */
+package org.thymeleaf.engine;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.thymeleaf.DialectConfiguration;
+import org.thymeleaf.IEngineConfiguration;
+import org.thymeleaf.cache.TemplateCacheKey;
+import org.thymeleaf.dialect.IProcessorDialect;
+import org.thymeleaf.templatemode.TemplateMode;
+import org.thymeleaf.templateresource.ITemplateResource;
+import org.thymeleaf.templateresource.ITemplateResourceMetadata;
+import org.thymeleaf.util.Validate;
+
+/**
+ * <p>
+ *   Persistent store of parsed templates ({@link TemplateModel} objects), meant to avoid the cost of
+ *   parsing templates again when an application is restarted.
+ * </p>
+ * <p>
+ *   When a snapshot store is configured at the template engine (see
+ *   {@link org.thymeleaf.TemplateEngine#setTemplateModelSnapshotStore(TemplateModelSnapshotStore)}), the
+ *   {@link TemplateManager} will read the snapshot file at startup and, whenever a cacheable template
+ *   is not found at the template cache, will try to obtain its model from the snapshot before parsing it.
+ *   Templates that do need parsing are added to the store, and the whole set of models can be written back
+ *   to the snapshot file by calling {@link #save()} (e.g. after warming up the engine, or at shutdown).
+ * </p>
+ * <p>
+ *   Snapshot entries are keyed by {@link TemplateCacheKey} and contain the description of the template resource
+ *   they were parsed from, along with its metadata (last modification date and length, if the resource implements
+ *   {@link ITemplateResourceMetadata}) and a checksum of its contents. An entry will only be used if the resource
+ *   resolved for the template has not changed: when metadata matches no access to the resource contents is
+ *   needed at all, and when it is not available (or does not match) the checksum is computed and compared instead.
+ * </p>
+ * <p>
+ *   Some templates are never added to snapshots: those using template resolution attributes (which cannot be
+ *   persisted) and those using decoupled template logic (as their model depends on a second resource).
+ *   Also, the whole snapshot is discarded if the engine configuration affecting parsing (the configured dialects
+ *   and their prefixes) is not the same one that was in effect when the snapshot was saved.
+ * </p>
+ * <p>
+ *   Each snapshot store instance should be used by only one template engine.
+ * </p>
+ * <p>
+ *   Objects of this class are <strong>thread-safe</strong>.
+ * </p>
+ *
+ * @author Daniel Fern&aacute;ndez
+ *
+ * @since 3.0.3
+ *
+ */
+public final class TemplateModelSnapshotStore {
+
+    private static final Logger logger = LoggerFactory.getLogger(TemplateModelSnapshotStore.class);
+
+    private static final int MAGIC = 0x54484D53; // "THMS"
+    private static final int FORMAT_VERSION = 1;
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+    private static final int CHECKSUM_BUFFER_SIZE = 4096;
+
+    private final File snapshotFile;
+    private final ConcurrentHashMap<TemplateCacheKey,SnapshotEntry> entries;
+
+    private String configurationFingerprint = null;
+
+    private final AtomicLong hitCount = new AtomicLong(0L);
+    private final AtomicLong missCount = new AtomicLong(0L);
+    private final AtomicLong staleCount = new AtomicLong(0L);
+
+
+
+    /**
+     * <p>
+     *   Creates a new snapshot store backed by the specified file. The file does not need to exist: if it does
+     *   not, the store will be empty at startup and the file will be created when {@link #save()} is called.
+     * </p>
+     *
+     * @param snapshotFile the snapshot file.
+     */
+    public TemplateModelSnapshotStore(final File snapshotFile) {
+        super();
+        Validate.notNull(snapshotFile, "Snapshot file cannot be null");
+        this.snapshotFile = snapshotFile;
+        this.entries = new ConcurrentHashMap<TemplateCacheKey, SnapshotEntry>(128, 0.75f, 16);
+    }
+
+
+
+
+    /**
+     * <p>
+     *   Returns the file backing this snapshot store.
+     * </p>
+     *
+     * @return the snapshot file.
+     */
+    public File getSnapshotFile() {
+        return this.snapshotFile;
+    }
+
+
+    /**
+     * <p>
+     *   Returns the number of template models currently contained in the store (loaded from the snapshot
+     *   file or added after parsing).
+     * </p>
+     *
+     * @return the number of entries.
+     */
+    public int size() {
+        return this.entries.size();
+    }
+
+
+    /**
+     * <p>
+     *   Returns the number of templates which models were obtained from this store instead of being parsed.
+     * </p>
+     *
+     * @return the hit count.
+     */
+    public long getHitCount() {
+        return this.hitCount.get();
+    }
+
+
+    /**
+     * <p>
+     *   Returns the number of snapshotable templates that were not found in this store.
+     * </p>
+     *
+     * @return the miss count.
+     */
+    public long getMissCount() {
+        return this.missCount.get();
+    }
+
+
+    /**
+     * <p>
+     *   Returns the number of entries that were found in this store but discarded because their template
+     *   resource had changed (or could not be deserialized).
+     * </p>
+     *
+     * @return the stale count.
+     */
+    public long getStaleCount() {
+        return this.staleCount.get();
+    }
+
+
+
+
+    /**
+     * <p>
+     *   Removes all entries from this store. Note the snapshot file will not be modified until
+     *   {@link #save()} is called.
+     * </p>
+     */
+    public void clear() {
+        this.entries.clear();
+    }
+
+
+
+
+    /**
+     * <p>
+     *   Writes all the entries currently in the store to the snapshot file, replacing its previous contents.
+     * </p>
+     * <p>
+     *   The snapshot is first written to a temporary file in the same folder, which is then renamed to the
+     *   snapshot file. On platforms where renaming cannot replace an existing file, the previous snapshot
+     *   file is deleted first.
+     * </p>
+     *
+     * @throws IOException if the snapshot file cannot be written.
+     */
+    public synchronized void save() throws IOException {
+
+        if (this.configurationFingerprint == null) {
+            // Never used by a template engine, so nothing to be saved
+            return;
+        }
+
+        final List<TemplateCacheKey> keys = new ArrayList<TemplateCacheKey>();
+        final List<SnapshotEntry> savedEntries = new ArrayList<SnapshotEntry>();
+        final List<byte[]> modelData = new ArrayList<byte[]>();
+
+        for (final Map.Entry<TemplateCacheKey,SnapshotEntry> mapEntry : this.entries.entrySet()) {
+            final SnapshotEntry entry = mapEntry.getValue();
+            try {
+                modelData.add(entry.computeModelData());
+            } catch (final IOException e) {
+                logger.warn(
+                        String.format("[THYMELEAF] Template \"%s\" could not be added to snapshot file \"%s\": %s",
+                                mapEntry.getKey(), this.snapshotFile.getAbsolutePath(), e.getMessage()), e);
+                continue;
+            }
+            keys.add(mapEntry.getKey());
+            savedEntries.add(entry);
+        }
+
+        final File folder = this.snapshotFile.getAbsoluteFile().getParentFile();
+        if (folder != null && !folder.isDirectory() && !folder.mkdirs()) {
+            throw new IOException("Cannot create folder for snapshot file \"" + this.snapshotFile.getAbsolutePath() + "\"");
+        }
+        final File tempFile = File.createTempFile(this.snapshotFile.getName(), ".tmp", folder);
+
+        try {
+
+            final DataOutputStream out =
+                    new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile), 65536));
+            try {
+
+                out.writeInt(MAGIC);
+                out.writeInt(FORMAT_VERSION);
+                writeString(out, this.configurationFingerprint);
+                out.writeInt(keys.size());
+
+                // Index: keys and validation data, along with the position of each model in the data section
+                int offset = 0;
+                for (int i = 0; i < keys.size(); i++) {
+                    writeKey(out, keys.get(i));
+                    savedEntries.get(i).writeValidationData(out);
+                    out.writeInt(offset);
+                    out.writeInt(modelData.get(i).length);
+                    offset += modelData.get(i).length;
+                }
+
+                // Data section
+                for (final byte[] data : modelData) {
+                    out.write(data);
+                }
+
+            } finally {
+                out.close();
+            }
+
+            // File.renameTo(...) atomically replaces existing files on POSIX platforms, but not on some others
+            // (e.g. Windows), where the existing snapshot file has to be deleted first
+            if (!tempFile.renameTo(this.snapshotFile)) {
+                if (this.snapshotFile.exists() && !this.snapshotFile.delete()) {
+                    throw new IOException("Cannot replace snapshot file \"" + this.snapshotFile.getAbsolutePath() + "\"");
+                }
+                if (!tempFile.renameTo(this.snapshotFile)) {
+                    throw new IOException("Cannot rename temporary snapshot file to \"" + this.snapshotFile.getAbsolutePath() + "\"");
+                }
+            }
+
+        } finally {
+            if (tempFile.exists()) {
+                tempFile.delete();
+            }
+        }
+
+        if (logger.isDebugEnabled()) {
+            logger.debug(
+                    "[THYMELEAF] Saved {} template models to snapshot file \"{}\"",
+                    Integer.valueOf(keys.size()), this.snapshotFile.getAbsolutePath());
+        }
+
+    }
+
+
+
+
+    /*
+     * Called by the TemplateManager at startup. Reads the snapshot file (if it exists) and its index, but does
+     * not deserialize any models yet: these are deserialized only when first needed.
+     *
+     * The file is read into heap memory instead of being memory-mapped, so that it is not kept open (mappings
+     * are only released on GC), which would prevent save() from replacing it on some platforms.
+     */
+    synchronized void load(final IEngineConfiguration configuration) {
+
+        if (this.configurationFingerprint != null) {
+            // Already loaded
+            return;
+        }
+
+        this.configurationFingerprint = computeConfigurationFingerprint(configuration);
+
+        if (!this.snapshotFile.isFile()) {
+            return;
+        }
+
+        try {
+
+            final ByteBuffer buffer;
+            final RandomAccessFile randomAccessFile = new RandomAccessFile(this.snapshotFile, "r");
+            try {
+                final long length = randomAccessFile.length();
+                if (length > Integer.MAX_VALUE) {
+                    throw new IOException("Snapshot file is too big (" + length + " bytes)");
+                }
+                final byte[] bytes = new byte[(int) length];
+                randomAccessFile.readFully(bytes);
+                buffer = ByteBuffer.wrap(bytes);
+            } finally {
+                randomAccessFile.close();
+            }
+
+            if (buffer.getInt() != MAGIC || buffer.getInt() != FORMAT_VERSION) {
+                logger.warn(
+                        "[THYMELEAF] File \"{}\" is not a valid template snapshot file (or was created by a different " +
+                        "version). It will be ignored.", this.snapshotFile.getAbsolutePath());
+                return;
+            }
+
+            if (!this.configurationFingerprint.equals(readString(buffer))) {
+                if (logger.isDebugEnabled()) {
+                    logger.debug(
+                            "[THYMELEAF] Snapshot file \"{}\" was created with a different engine configuration. " +
+                            "It will be ignored.", this.snapshotFile.getAbsolutePath());
+                }
+                return;
+            }
+
+            final int entryCount = buffer.getInt();
+
+            final List<TemplateCacheKey> keys = new ArrayList<TemplateCacheKey>(entryCount);
+            final List<SnapshotEntry> loadedEntries = new ArrayList<SnapshotEntry>(entryCount);
+            final int[] offsets = new int[entryCount];
+            final int[] lengths = new int[entryCount];
+            for (int i = 0; i < entryCount; i++) {
+                keys.add(readKey(buffer));
+                loadedEntries.add(SnapshotEntry.readValidationData(buffer));
+                offsets[i] = buffer.getInt();
+                lengths[i] = buffer.getInt();
+            }
+
+            final int dataStart = buffer.position();
+            for (int i = 0; i < entryCount; i++) {
+                final ByteBuffer data = buffer.duplicate();
+                data.position(dataStart + offsets[i]);
+                data.limit(dataStart + offsets[i] + lengths[i]);
+                loadedEntries.get(i).modelData = data.slice();
+                this.entries.putIfAbsent(keys.get(i), loadedEntries.get(i));
+            }
+
+            if (logger.isDebugEnabled()) {
+                logger.debug(
+                        "[THYMELEAF] Loaded {} template models from snapshot file \"{}\"",
+                        Integer.valueOf(entryCount), this.snapshotFile.getAbsolutePath());
+            }
+
+        } catch (final Exception e) {
+            // A corrupt or unreadable snapshot should never prevent the engine from working, it will just be ignored
+            this.entries.clear();
+            logger.warn(
+                    String.format("[THYMELEAF] Snapshot file \"%s\" could not be read and will be ignored: %s",
+                            this.snapshotFile.getAbsolutePath(), e.getMessage()), e);
+        }
+
+    }
+
+
+
+
+    /*
+     * Tries to obtain the model for the specified key from the snapshot, checking that the resource the
+     * template has been resolved to has not changed. Will return null if there is no valid entry.
+     */
+    TemplateModel lookup(
+            final IEngineConfiguration configuration, final TemplateCacheKey cacheKey, final TemplateData templateData) {
+
+        final SnapshotEntry entry = this.entries.get(cacheKey);
+        if (entry == null) {
+            this.missCount.incrementAndGet();
+            return null;
+        }
+
+        if (!entry.isValidFor(templateData)) {
+            this.entries.remove(cacheKey, entry);
+            this.staleCount.incrementAndGet();
+            return null;
+        }
+
+        try {
+
+            final TemplateModel templateModel = entry.computeModel(configuration, templateData);
+            this.hitCount.incrementAndGet();
+            return templateModel;
+
+        } catch (final RuntimeException e) {
+            this.entries.remove(cacheKey, entry);
+            this.staleCount.incrementAndGet();
+            logger.warn(
+                    String.format("[THYMELEAF] Snapshot entry for template \"%s\" could not be read and will be ignored: %s",
+                            cacheKey, e.getMessage()), e);
+            return null;
+        }
+
+    }
+
+
+    /*
+     * Adds a just-parsed model to the store. The resource metadata should have been read before parsing: if the
+     * resource changes while being parsed the model will not be added, as it could not match the recorded data.
+     *
+     * The checksum is obtained from the (wrapped) resource the model was parsed from, so that the resource does
+     * not need to be read again. If the parser did not fully consume the resource, the model will not be added.
+     */
+    void record(
+            final TemplateCacheKey cacheKey, final TemplateData templateData, final TemplateModel templateModel,
+            final ResourceMetadata metadataBeforeParsing, final ChecksummingTemplateResource parsedResource) {
+
+        if (!parsedResource.isChecksumAvailable()) {
+            return;
+        }
+        final long checksum = parsedResource.getChecksum();
+
+        final ITemplateResource resource = templateData.getTemplateResource();
+
+        final ResourceMetadata metadata = ResourceMetadata.forResource(resource);
+        if (!metadata.equals(metadataBeforeParsing)) {
+            return;
+        }
+
+        final SnapshotEntry entry =
+                new SnapshotEntry(
+                        resource.getDescription(), templateData.getTemplateMode(),
+                        metadata.lastModified, metadata.contentLength, checksum);
+        entry.templateModel = templateModel;
+
+        this.entries.put(cacheKey, entry);
+
+    }
+
+
+    /*
+     * Determines whether a template can be added to snapshots at all.
+     */
+    static boolean isSnapshotable(final TemplateCacheKey cacheKey, final boolean useDecoupledLogic) {
+        return (!useDecoupledLogic && cacheKey.getTemplateResolutionAttributes() == null);
+    }
+
+
+
+
+    private static String computeConfigurationFingerprint(final IEngineConfiguration configuration) {
+        final StringBuilder strBuilder = new StringBuilder();
+        strBuilder.append(configuration.isStandardDialectPresent());
+        strBuilder.append('|');
+        strBuilder.append(configuration.getStandardDialectPrefix());
+        // Dialects are sorted so that the fingerprint does not depend on the order in which they are configured
+        final Set<String> dialects = new TreeSet<String>();
+        for (final DialectConfiguration dialectConfiguration : configuration.getDialectConfigurations()) {
+            final String prefix =
+                    (dialectConfiguration.isPrefixSpecified()?
+                            dialectConfiguration.getPrefix() :
+                            (dialectConfiguration.getDialect() instanceof IProcessorDialect?
+                                    ((IProcessorDialect)dialectConfiguration.getDialect()).getPrefix() : null));
+            dialects.add(dialectConfiguration.getDialect().getClass().getName() + ':' + prefix);
+        }
+        for (final String dialect : dialects) {
+            strBuilder.append('|');
+            strBuilder.append(dialect);
+        }
+        return strBuilder.toString();
+    }
+
+
+
+
+    /*
+     * Computes a fingerprint for the current version of a resource: its metadata if it is known, or else the
+     * checksum of its contents. Fingerprints are only comparable among different versions of the same resource.
+     */
+    static long computeFingerprint(final ITemplateResource resource) throws IOException {
+        final ResourceMetadata metadata = ResourceMetadata.forResource(resource);
+        if (metadata.isKnown()) {
+            return 31L * metadata.lastModified + metadata.contentLength;
+        }
+        return computeChecksum(resource);
+    }
+
+
+    private static long computeChecksum(final ITemplateResource resource) throws IOException {
+        // 64-bit FNV-1a hash on the characters of the resource, as read by the parsers
+        long hash = ChecksummingTemplateResource.CHECKSUM_OFFSET_BASIS;
+        final char[] buffer = new char[CHECKSUM_BUFFER_SIZE];
+        final Reader reader = resource.reader();
+        try {
+            int read;
+            while ((read = reader.read(buffer)) != -1) {
+                hash = ChecksummingTemplateResource.updateChecksum(hash, buffer, 0, read);
+            }
+        } finally {
+            reader.close();
+        }
+        return hash;
+    }
+
+
+
+
+    private static void writeKey(final DataOutputStream out, final TemplateCacheKey key) throws IOException {
+        writeString(out, key.getOwnerTemplate());
+        writeString(out, key.getTemplate());
+        final Set<String> templateSelectors = key.getTemplateSelectors();
+        if (templateSelectors == null) {
+            out.writeInt(-1);
+        } else {
+            out.writeInt(templateSelectors.size());
+            for (final String templateSelector : templateSelectors) {
+                writeString(out, templateSelector);
+            }
+        }
+        out.writeInt(key.getLineOffset());
+        out.writeInt(key.getColOffset());
+        writeString(out, (key.getTemplateMode() == null? null : key.getTemplateMode().name()));
+    }
+
+
+    private static TemplateCacheKey readKey(final ByteBuffer in) {
+        final String ownerTemplate = readString(in);
+        final String template = readString(in);
+        final Set<String> templateSelectors;
+        final int templateSelectorCount = in.getInt();
+        if (templateSelectorCount < 0) {
+            templateSelectors = null;
+        } else if (templateSelectorCount == 1) {
+            templateSelectors = Collections.singleton(readString(in));
+        } else {
+            // Same kind of set as the one created by the TemplateManager (ordered)
+            final Set<String> selectors = new TreeSet<String>();
+            for (int i = 0; i < templateSelectorCount; i++) {
+                selectors.add(readString(in));
+            }
+            templateSelectors = Collections.unmodifiableSet(selectors);
+        }
+        final int lineOffset = in.getInt();
+        final int colOffset = in.getInt();
+        final String templateModeName = readString(in);
+        final TemplateMode templateMode = (templateModeName == null? null : TemplateMode.valueOf(templateModeName));
+        return new TemplateCacheKey(ownerTemplate, template, templateSelectors, lineOffset, colOffset, templateMode, null);
+    }
+
+
+    private static void writeString(final DataOutputStream out, final String str) throws IOException {
+        if (str == null) {
+            out.writeInt(-1);
+            return;
+        }
+        final byte[] bytes = str.getBytes(UTF8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+
+    private static String readString(final ByteBuffer in) {
+        final int length = in.getInt();
+        if (length < 0) {
+            return null;
+        }
+        final byte[] bytes = new byte[length];
+        in.get(bytes);
+        return new String(bytes, UTF8);
+    }
+
+
+
+
+    static final class ResourceMetadata {
+
+        final long lastModified;
+        final long contentLength;
+
+        private ResourceMetadata(final long lastModified, final long contentLength) {
+            super();
+            this.lastModified = lastModified;
+            this.contentLength = contentLength;
+        }
+
+        static ResourceMetadata forResource(final ITemplateResource resource) {
+            if (resource instanceof ITemplateResourceMetadata) {
+                final ITemplateResourceMetadata metadata = (ITemplateResourceMetadata) resource;
+                return new ResourceMetadata(metadata.lastModified(), metadata.contentLength());
+            }
+            return new ResourceMetadata(-1L, -1L);
+        }
+
+        boolean isKnown() {
+            return (this.lastModified != -1L && this.contentLength != -1L);
+        }
+
+        @Override
+        public boolean equals(final Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof ResourceMetadata)) {
+                return false;
+            }
+            final ResourceMetadata that = (ResourceMetadata) o;
+            return (this.lastModified == that.lastModified && this.contentLength == that.contentLength);
+        }
+
+        @Override
+        public int hashCode() {
+            return (int) (31 * (this.lastModified ^ (this.lastModified >>> 32)) + this.contentLength);
+        }
+
+    }
+
+
+
+
+    private static final class SnapshotEntry {
+
+        private final String resourceDescription;
+        private final TemplateMode templateMode;
+        private final long lastModified;
+        private final long contentLength;
+        private final long checksum;
+
+        // Only one of these will be non-null: the serialized model (read from the snapshot file) or a model
+        // that has been parsed during the execution of the engine.
+        private volatile ByteBuffer modelData = null;
+        private volatile TemplateModel templateModel = null;
+
+        private SnapshotEntry(
+                final String resourceDescription, final TemplateMode templateMode,
+                final long lastModified, final long contentLength, final long checksum) {
+            super();
+            this.resourceDescription = resourceDescription;
+            this.templateMode = templateMode;
+            this.lastModified = lastModified;
+            this.contentLength = contentLength;
+            this.checksum = checksum;
+        }
+
+
+        boolean isValidFor(final TemplateData templateData) {
+
+            final ITemplateResource resource = templateData.getTemplateResource();
+            if (this.templateMode != templateData.getTemplateMode() ||
+                    !this.resourceDescription.equals(resource.getDescription())) {
+                return false;
+            }
+
+            final ResourceMetadata metadata = ResourceMetadata.forResource(resource);
+            if (metadata.isKnown() && metadata.lastModified == this.lastModified && metadata.contentLength == this.contentLength) {
+                return true;
+            }
+
+            // Either no metadata is available, or it changed (though contents might still be the same)
+            try {
+                return (computeChecksum(resource) == this.checksum);
+            } catch (final IOException e) {
+                return false;
+            }
+
+        }
+
+
+        TemplateModel computeModel(final IEngineConfiguration configuration, final TemplateData templateData) {
+            final TemplateModel model = this.templateModel;
+            if (model != null) {
+                // Models are immutable, so the event queue can be safely shared
+                return new TemplateModel(configuration, templateData, model.queue);
+            }
+            // A duplicate is needed because buffer positions are not thread-safe
+            return TemplateModelSerializer.readModel(this.modelData.duplicate(), configuration, templateData);
+        }
+
+
+        byte[] computeModelData() throws IOException {
+            final TemplateModel model = this.templateModel;
+            if (model != null) {
+                final ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream(4096);
+                final DataOutputStream out = new DataOutputStream(byteArrayOutputStream);
+                TemplateModelSerializer.writeModel(out, model);
+                out.flush();
+                return byteArrayOutputStream.toByteArray();
+            }
+            final ByteBuffer data = this.modelData.duplicate();
+            final byte[] bytes = new byte[data.remaining()];
+            data.get(bytes);
+            return bytes;
+        }
+
+
+        void writeValidationData(final DataOutputStream out) throws IOException {
+            writeString(out, this.resourceDescription);
+            writeString(out, this.templateMode.name());
+            out.writeLong(this.lastModified);
+            out.writeLong(this.contentLength);
+            out.writeLong(this.checksum);
+        }
+
+
+        static SnapshotEntry readValidationData(final ByteBuffer in) {
+            final String resourceDescription = readString(in);
+            final TemplateMode templateMode = TemplateMode.valueOf(readString(in));
+            final long lastModified = in.getLong();
+            final long contentLength = in.getLong();
+            final long checksum = in.getLong();
+            return new SnapshotEntry(resourceDescription, templateMode, lastModified, contentLength, checksum);
+        }
+
+    }
+
+}
@@ -0,0 +1,164 @@
+/*
+ * =============================================================================
+ *
+ *   Copyright (c) 2011-2016, The THYMELEAF team (http://www.thymeleaf.org)
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ * =============================================================================
+ */
+package org.thymeleaf.engine;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.thymeleaf.cache.TemplateCacheKey;
+
+/*
+ * Registry of the template parsing operations currently being executed for cacheable templates, keyed by
+ * their TemplateCacheKey (which includes the owner template for fragments).
+ *
+ * It allows the TemplateManager to execute only one parsing operation per cache key at a time: the first thread
+ * registering a key becomes the "owner" of the parse, and any other threads asking for the same key while the
+ * parse is in flight simply wait for the resulting TemplateModel instead of parsing the same resource again.
+ *
+ * @author Daniel Fernandez
+ * @since 3.0.3
+ *
+ */
+final class TemplateParseRegistry {
+
+    private final ConcurrentHashMap<TemplateCacheKey,InFlightParse> inFlightParses;
+
+    private final AtomicLong parseCount = new AtomicLong(0L);
+    private final AtomicLong coalescedCount = new AtomicLong(0L);
+    private final AtomicLong failedWaitCount = new AtomicLong(0L);
+
+
+
+    TemplateParseRegistry() {
+        super();
+        this.inFlightParses = new ConcurrentHashMap<TemplateCacheKey, InFlightParse>(16, 0.75f, 16);
+    }
+
+
+
+
+    /*
+     * Returns the parse currently in flight for the specified key, or null if there is none.
+     */
+    InFlightParse find(final TemplateCacheKey key) {
+        return this.inFlightParses.get(key);
+    }
+
+
+    /*
+     * Registers a new parse for the specified key. If a parse is already in flight for the key, the existing
+     * one will be returned instead and the caller should wait for it (see InFlightParse.isOwnedByCurrentThread()).
+     */
+    InFlightParse register(final TemplateCacheKey key) {
+        final InFlightParse parse = new InFlightParse(key, Thread.currentThread());
+        final InFlightParse existing = this.inFlightParses.putIfAbsent(key, parse);
+        if (existing != null) {
+            return existing;
+        }
+        return parse;
+    }
+
+
+    /*
+     * Called by the owner of a registered parse when the resource is actually going to be parsed (the owner
+     * might find out after registering that parsing is not needed, e.g. because the model is already cached).
+     */
+    void recordParse() {
+        this.parseCount.incrementAndGet();
+    }
+
+
+    /*
+     * Marks a parse as finished, either successfully (a non-null model) or not (null model). Waiting threads
+     * are released in any case, so this should always be called from a finally block by the owner of the parse.
+     */
+    void complete(final InFlightParse parse, final TemplateModel templateModel) {
+        parse.templateModel = templateModel;
+        this.inFlightParses.remove(parse.key, parse);
+        parse.latch.countDown();
+    }
+
+
+    /*
+     * Waits for a parse being executed by another thread. Returns null if the owner failed (in which case the
+     * caller is expected to register a new parse) or if the waiting thread was interrupted (in which case it is
+     * expected to parse the template by itself).
+     */
+    TemplateModel await(final InFlightParse parse) {
+        try {
+            parse.latch.await();
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            this.failedWaitCount.incrementAndGet();
+            return null;
+        }
+        final TemplateModel templateModel = parse.templateModel;
+        if (templateModel == null) {
+            this.failedWaitCount.incrementAndGet();
+            return null;
+        }
+        this.coalescedCount.incrementAndGet();
+        return templateModel;
+    }
+
+
+
+
+    int getInFlightCount() {
+        return this.inFlightParses.size();
+    }
+
+    long getParseCount() {
+        return this.parseCount.get();
+    }
+
+    long getCoalescedCount() {
+        return this.coalescedCount.get();
+    }
+
+    long getFailedWaitCount() {
+        return this.failedWaitCount.get();
+    }
+
+
+
+
+    static final class InFlightParse {
+
+        private final TemplateCacheKey key;
+        private final Thread owner;
+        private final CountDownLatch latch;
+        private volatile TemplateModel templateModel = null;
+
+        private InFlightParse(final TemplateCacheKey key, final Thread owner) {
+            super();
+            this.key = key;
+            this.owner = owner;
+            this.latch = new CountDownLatch(1);
+        }
+
+        boolean isOwnedByCurrentThread() {
+            return this.owner == Thread.currentThread();
+        }
+
+    }
+
+}
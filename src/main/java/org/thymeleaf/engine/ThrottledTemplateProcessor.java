@@ -28,7 +28,7 @@
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.thymeleaf.IThrottledTemplateProcessor;
+import org.thymeleaf.IDataDrivenThrottledTemplateProcessor;
 import org.thymeleaf.TemplateEngine;
 import org.thymeleaf.TemplateSpec;
 import org.thymeleaf.context.IEngineContext;
@@ -44,7 +44,7 @@
  * @since 3.0.0
  *
  */
-final class ThrottledTemplateProcessor implements IThrottledTemplateProcessor {
+final class ThrottledTemplateProcessor implements IDataDrivenThrottledTemplateProcessor {
 
     private static final Logger logger = LoggerFactory.getLogger(TemplateEngine.class);
     private static final Logger timerLogger = LoggerFactory.getLogger(TemplateEngine.TIMER_LOGGER_NAME);
@@ -100,6 +100,18 @@ public boolean isFinished() {
 
 
 
+    public boolean isWaitingForData() {
+        return this.flowController.waitingForData;
+    }
+
+
+    public void setDataAvailableListener(final Runnable listener) {
+        this.flowController.dataAvailableListener = listener;
+    }
+
+
+
+
     private boolean computeFinish() throws IOException {
 
         if (this.allProcessingFinished) {
@@ -170,6 +182,9 @@ private void process(final int maxOutput, final String outputType) {
 
             final long startNanos = System.nanoTime();
 
+            // Will be set again if a data-driven iteration still has no data to be processed
+            this.flowController.waitingForData = false;
+
             // Set the new limit for the writer (might provoke overflow being processed)
             this.writer.allow(maxOutput);
 
@@ -183,7 +198,7 @@ private void process(final int maxOutput, final String outputType) {
                 if (!computeFinish() && !this.writer.isStopped()) {
 
                     this.offset += this.templateModel.process(this.templateHandler, this.offset, this.flowController);
-                    if (this.offset == this.templateModel.size()) {
+                    if (this.offset == this.templateModel.processingSize()) {
                         EngineContextManager.disposeEngineContext(this.context);
                         this.eventProcessingFinished = true;
                         computeFinish();
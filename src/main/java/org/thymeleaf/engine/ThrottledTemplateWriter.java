@@ -43,6 +43,7 @@ final class ThrottledTemplateWriter extends Writer {
 
     private IThrottledTemplateWriterAdapter adapter;
     private Writer writer;
+    private Charset charset;
 
     private boolean flushable;
 
@@ -53,6 +54,7 @@ final class ThrottledTemplateWriter extends Writer {
         this.flowController = flowController;
         this.adapter = null;
         this.writer = null;
+        this.charset = null;
         this.flushable = false;
     }
 
@@ -111,6 +113,7 @@ void setOutput(final OutputStream outputStream, final Charset charset, final int
             // Use of a wrapping BufferedWriter is recommended by OutputStreamWriter javadoc for improving efficiency,
             // avoiding frequent converter invocations (note that the character converter also has its own buffer).
             //this.writer = new BufferedWriter(new OutputStreamWriter((ThrottledTemplateWriterOutputStreamAdapter)this.adapter, charset));
+            this.charset = charset;
         }
         ((ThrottledTemplateWriterOutputStreamAdapter)this.adapter).setOutputStream(outputStream);
     }
@@ -162,6 +165,25 @@ void allow(final int limit) {
 
 
 
+    /*
+     * When output is byte-based, static regions are copied to the adapter already encoded (after flushing any chars
+     * pending at the encoder, so that order is kept). Bytes will be counted and overflown as any others.
+     */
+    boolean writeEncoded(final StaticRegion staticRegion) throws IOException {
+        if (this.charset == null) {
+            return false;
+        }
+        final byte[] bytes = staticRegion.getEncoded(this.charset);
+        if (bytes == null) {
+            return false;
+        }
+        this.writer.flush();
+        ((ThrottledTemplateWriterOutputStreamAdapter)this.adapter).write(bytes);
+        return true;
+    }
+
+
+
     @Override
     public void write(final int c) throws IOException {
         this.flushable = true;
@@ -31,6 +31,8 @@
 import java.util.Locale;
 import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
 
 import org.thymeleaf.exceptions.TemplateInputException;
 import org.thymeleaf.exceptions.TemplateProcessingException;
@@ -51,6 +53,15 @@ final class StandardMessageResolutionUtils {
     private static final String PROPERTIES_FILE_EXTENSION = ".properties";
     private static final Object[] EMPTY_MESSAGE_PARAMETERS = new Object[0];
 
+    /*
+     * Compiled messages are cached per locale and then per message pattern (two levels, so that lookups do not
+     * need to create any key objects). Messages normally come from a finite set of .properties files, but the
+     * maps are bounded anyway just in case some custom message resolver produces an unbounded set of patterns.
+     */
+    private static final int COMPILED_MESSAGES_MAX_SIZE_PER_LOCALE = 2000;
+    private static final ConcurrentHashMap<Locale,ConcurrentHashMap<String,CompiledMessage>> compiledMessages =
+            new ConcurrentHashMap<Locale, ConcurrentHashMap<String, CompiledMessage>>(4, 0.9f, 2);
+
 
 
     static Map<String,String> resolveMessagesForTemplate(final ITemplateResource templateResource, final Locale locale) {
@@ -253,8 +264,38 @@ static String formatMessage(final Locale locale, final String message, final Obj
         if (!isFormatCandidate(message)) { // trying to avoid creating MessageFormat if not needed
             return message;
         }
-        final MessageFormat messageFormat = new MessageFormat(message, locale);
-        return messageFormat.format((messageParameters != null? messageParameters : EMPTY_MESSAGE_PARAMETERS));
+        final CompiledMessage compiledMessage = getCompiledMessage(locale, message);
+        return compiledMessage.format((messageParameters != null? messageParameters : EMPTY_MESSAGE_PARAMETERS));
+    }
+
+
+
+    private static CompiledMessage getCompiledMessage(final Locale locale, final String message) {
+
+        ConcurrentHashMap<String,CompiledMessage> compiledMessagesForLocale = compiledMessages.get(locale);
+        if (compiledMessagesForLocale == null) {
+            final ConcurrentHashMap<String,CompiledMessage> newCompiledMessagesForLocale =
+                    new ConcurrentHashMap<String, CompiledMessage>(32, 0.9f, 2);
+            compiledMessagesForLocale = compiledMessages.putIfAbsent(locale, newCompiledMessagesForLocale);
+            if (compiledMessagesForLocale == null) {
+                compiledMessagesForLocale = newCompiledMessagesForLocale;
+            }
+        }
+
+        CompiledMessage compiledMessage = compiledMessagesForLocale.get(message);
+        if (compiledMessage == null) {
+            if (compiledMessagesForLocale.size() >= COMPILED_MESSAGES_MAX_SIZE_PER_LOCALE) {
+                // Not expected to happen with messages coming from .properties files, so simply start over
+                compiledMessagesForLocale.clear();
+            }
+            compiledMessage = new CompiledMessage(locale, message);
+            final CompiledMessage existing = compiledMessagesForLocale.putIfAbsent(message, compiledMessage);
+            if (existing != null) {
+                compiledMessage = existing;
+            }
+        }
+        return compiledMessage;
+
     }
 
 
@@ -280,4 +321,51 @@ private StandardMessageResolutionUtils() {
         super();
     }
 
+
+
+
+    /*
+     * Result of compiling a message pattern for a specific locale. Messages without any argument placeholders
+     * (which only passed the isFormatCandidate() check because of quotes or braces) are classified as literals
+     * and formatted only once. For the rest, MessageFormat objects are not thread-safe, so a prototype instance
+     * (never used for formatting) is kept along with a pooled clone that threads take while formatting and then
+     * return, only needing to clone the prototype again if the pooled instance is in use by another thread.
+     */
+    private static final class CompiledMessage {
+
+        private final String literal;
+        private final MessageFormat prototype;
+        private final AtomicReference<MessageFormat> pooled;
+
+        CompiledMessage(final Locale locale, final String message) {
+            super();
+            final MessageFormat messageFormat = new MessageFormat(message, locale);
+            if (messageFormat.getFormats().length == 0) {
+                this.literal = messageFormat.format(EMPTY_MESSAGE_PARAMETERS);
+                this.prototype = null;
+                this.pooled = null;
+            } else {
+                this.literal = null;
+                this.prototype = messageFormat;
+                this.pooled = new AtomicReference<MessageFormat>((MessageFormat) messageFormat.clone());
+            }
+        }
+
+        String format(final Object[] messageParameters) {
+            if (this.literal != null) {
+                return this.literal;
+            }
+            MessageFormat messageFormat = this.pooled.getAndSet(null);
+            if (messageFormat == null) {
+                messageFormat = (MessageFormat) this.prototype.clone();
+            }
+            try {
+                return messageFormat.format(messageParameters);
+            } finally {
+                this.pooled.set(messageFormat);
+            }
+        }
+
+    }
+
 }
@@ -0,0 +1,141 @@
+/*
+ * =============================================================================
+ *
+ *   Copyright (c) 2011-2016, The THYMELEAF team (http://www.thymeleaf.org)
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ * =============================================================================
+ */
+package org.thymeleaf.metrics;
+
+import java.util.Set;
+
+import org.thymeleaf.processor.IProcessor;
+
+/**
+ * <p>
+ *   Listener receiving render-time metrics from the template engine: template resolution, template cache
+ *   lookups, parsing, fragment resolution, processor executions, expression evaluations, template processing and
+ *   output size.
+ * </p>
+ * <p>
+ *   A metrics listener can be set into the template engine by means of
+ *   {@link org.thymeleaf.TemplateEngine#setMetricsListener(IEngineMetricsListener)}. When no listener is set
+ *   (the default), the engine does not even measure time, so metrics have no cost at all.
+ * </p>
+ * <p>
+ *   All times are specified in nanoseconds, as measured by {@link System#nanoTime()}. Note that callbacks are
+ *   invoked synchronously by the threads processing templates (and for every processor execution and expression
+ *   evaluation), so implementations must be <strong>thread-safe</strong> and extremely fast. See
+ *   {@link StandardEngineMetricsListener} for an implementation aggregating all metrics into lock-free histograms,
+ *   and {@link TemplateProfiler} for a profiling implementation.
+ * </p>
+ *
+ * @author Daniel Fern&aacute;ndez
+ *
+ * @since 3.0.3
+ *
+ */
+public interface IEngineMetricsListener {
+
+    /**
+     * <p>
+     *   Called after trying to resolve a template by means of the configured template resolvers.
+     * </p>
+     *
+     * @param template the template being resolved.
+     * @param resolved whether any template resolver was able to resolve the template.
+     * @param nanos the time spent resolving.
+     */
+    public void templateResolved(final String template, final boolean resolved, final long nanos);
+
+    /**
+     * <p>
+     *   Called after looking up a template (or fragment) in the template cache.
+     * </p>
+     *
+     * @param template the template being looked up.
+     * @param hit whether the template was found in the cache.
+     */
+    public void templateCacheLookup(final String template, final boolean hit);
+
+    /**
+     * <p>
+     *   Called after parsing a template (or fragment) into a template model, which happens when the template is
+     *   not cached. Templates parsed and processed at the same time (non-cacheable ones) are not reported.
+     * </p>
+     *
+     * @param template the template parsed.
+     * @param nanos the time spent parsing.
+     */
+    public void templateParsed(final String template, final long nanos);
+
+    /**
+     * <p>
+     *   Called after obtaining a fragment to be inserted into a template (e.g. by <tt>th:insert</tt> or
+     *   <tt>th:replace</tt>), either from the cache or by resolving and parsing it.
+     * </p>
+     *
+     * @param ownerTemplate the template the fragment is being inserted into.
+     * @param template the template containing the fragment.
+     * @param templateSelectors the selectors specifying the fragment (might be null).
+     * @param nanos the time spent obtaining the fragment.
+     */
+    public void fragmentResolved(
+            final String ownerTemplate, final String template, final Set<String> templateSelectors, final long nanos);
+
+    /**
+     * <p>
+     *   Called after each execution of a processor (of any kind) during template processing. Time spent processing
+     *   the body of an element is never included in the time reported for its processors.
+     * </p>
+     *
+     * @param processor the processor executed.
+     * @param nanos the time spent executing it.
+     */
+    public void processorExecuted(final IProcessor processor, final long nanos);
+
+    /**
+     * <p>
+     *   Called after evaluating a Standard Expression. Only the outermost evaluation is reported for expressions
+     *   containing other expressions.
+     * </p>
+     *
+     * @param expression the String representation of the expression evaluated.
+     * @param nanos the time spent evaluating it.
+     */
+    public void expressionEvaluated(final String expression, final long nanos);
+
+    /**
+     * <p>
+     *   Called after processing a template with any of the <tt>process(...)</tt> methods of the template engine.
+     * </p>
+     *
+     * @param template the template processed.
+     * @param nanos the time spent processing it (including resolution and parsing, if needed).
+     */
+    public void templateProcessed(final String template, final long nanos);
+
+    /**
+     * <p>
+     *   Called after processing a template into an {@link java.io.OutputStream}, reporting the amount of bytes
+     *   written as output.
+     * </p>
+     *
+     * @param template the template processed.
+     * @param bytes the amount of output bytes.
+     */
+    public void outputWritten(final String template, final long bytes);
+
+}
@@ -0,0 +1,110 @@
+/*
+ * =============================================================================
+ *
+ *   Copyright (c) 2011-2016, The THYMELEAF team (http://www.thymeleaf.org)
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ * =============================================================================
+ */
+package org.thymeleaf.metrics;
+
+import java.util.Set;
+
+import org.thymeleaf.processor.IProcessor;
+
+/**
+ * <p>
+ *   Extension of {@link IEngineMetricsListener} for listeners that also need to know about the nesting of the
+ *   operations performed by the engine, i.e. which template, fragment, element and processor was being processed
+ *   when each operation was executed.
+ * </p>
+ * <p>
+ *   Every {@code enter*(...)} call is followed by a call to {@link #exit(ProfileFrameType)} with the same frame type
+ *   once the operation finishes. Note however that, if an exception is raised during template processing, some
+ *   frames might never be explicitly exited, so implementations should consider exiting a frame to also exit any
+ *   other frames entered after it.
+ * </p>
+ * <p>
+ *   Calls are always performed by the thread executing the operations. See {@link TemplateProfiler} for an
+ *   implementation producing flame-graph-ready profiles.
+ * </p>
+ *
+ * @author Daniel Fern&aacute;ndez
+ *
+ * @since 3.0.3
+ *
+ */
+public interface IEngineProfilingListener extends IEngineMetricsListener {
+
+    /**
+     * <p>
+     *   Called when the engine starts processing a template.
+     * </p>
+     *
+     * @param template the template.
+     */
+    public void enterTemplate(final String template);
+
+    /**
+     * <p>
+     *   Called when the engine starts resolving (and parsing if not cached) a fragment to be inserted into a
+     *   template.
+     * </p>
+     *
+     * @param ownerTemplate the template the fragment is being inserted into.
+     * @param template the template the fragment belongs to.
+     * @param templateSelectors the selectors used for selecting the fragment (might be null).
+     */
+    public void enterFragment(final String ownerTemplate, final String template, final Set<String> templateSelectors);
+
+    /**
+     * <p>
+     *   Called when the engine starts processing an element that has associated processors. Note the element
+     *   might belong to a template different from the one being processed, if it was inserted from a fragment.
+     * </p>
+     *
+     * @param template the template the element belongs to.
+     * @param elementCompleteName the complete name of the element.
+     */
+    public void enterElement(final String template, final String elementCompleteName);
+
+    /**
+     * <p>
+     *   Called when the engine starts executing a processor.
+     * </p>
+     *
+     * @param processor the processor (unwrapped, i.e. the processor instance provided by the dialect).
+     */
+    public void enterProcessor(final IProcessor processor);
+
+    /**
+     * <p>
+     *   Called when the engine starts evaluating a standard expression.
+     * </p>
+     *
+     * @param expression the expression.
+     */
+    public void enterExpression(final String expression);
+
+    /**
+     * <p>
+     *   Called when the engine finishes the operation started with the last {@code enter*(...)} call for the
+     *   specified frame type.
+     * </p>
+     *
+     * @param type the type of the frame being exited.
+     */
+    public void exit(final ProfileFrameType type);
+
+}
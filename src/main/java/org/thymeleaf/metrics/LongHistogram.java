@@ -0,0 +1,197 @@
+/*
+ * =============================================================================
+ *
+ *   Copyright (c) 2011-2016, The THYMELEAF team (http://www.thymeleaf.org)
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ * =============================================================================
+ */
+package org.thymeleaf.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * <p>
+ *   Lock-free histogram of (non-negative) <tt>long</tt> values, such as times in nanoseconds or sizes in bytes.
+ * </p>
+ * <p>
+ *   Values are counted in buckets of exponentially growing size (powers of two), so that recording a value only
+ *   requires a few atomic increments and the memory used by the histogram is fixed. As a consequence, percentiles
+ *   are approximate: they are reported as the upper bound of the bucket containing them (capped to the maximum
+ *   value recorded), which means an error of less than 2x.
+ * </p>
+ * <p>
+ *   Objects of this class are <strong>thread-safe</strong>. Values obtained while other threads are recording
+ *   are not guaranteed to be consistent with each other (e.g. count and total).
+ * </p>
+ *
+ * @author Daniel Fern&aacute;ndez
+ *
+ * @since 3.0.3
+ *
+ */
+public final class LongHistogram {
+
+    /**
+     * <p>
+     *   Number of buckets: bucket <tt>0</tt> counts zeroes, and any other bucket <tt>i</tt> counts values
+     *   in the range [2<sup>i-1</sup>, 2<sup>i</sup>).
+     * </p>
+     */
+    public static final int BUCKET_COUNT = 64;
+
+    private final AtomicLongArray buckets;
+    private final AtomicLong count;
+    private final AtomicLong total;
+    private final AtomicLong max;
+
+
+
+    public LongHistogram() {
+        super();
+        this.buckets = new AtomicLongArray(BUCKET_COUNT);
+        this.count = new AtomicLong(0L);
+        this.total = new AtomicLong(0L);
+        this.max = new AtomicLong(0L);
+    }
+
+
+
+
+    /**
+     * <p>
+     *   Records a value. Negative values are recorded as zero.
+     * </p>
+     *
+     * @param value the value to be recorded.
+     */
+    public void record(final long value) {
+        final long recorded = (value < 0L? 0L : value);
+        this.buckets.incrementAndGet(bucketIndex(recorded));
+        this.count.incrementAndGet();
+        this.total.addAndGet(recorded);
+        long currentMax = this.max.get();
+        while (recorded > currentMax && !this.max.compareAndSet(currentMax, recorded)) {
+            currentMax = this.max.get();
+        }
+    }
+
+
+
+
+    public long getCount() {
+        return this.count.get();
+    }
+
+
+    public long getTotal() {
+        return this.total.get();
+    }
+
+
+    public long getMax() {
+        return this.max.get();
+    }
+
+
+    public double getMean() {
+        final long currentCount = this.count.get();
+        return (currentCount == 0L? 0.0d : (double) this.total.get() / (double) currentCount);
+    }
+
+
+    /**
+     * <p>
+     *   Returns the (approximate) value below which the specified percentage of the recorded values fall.
+     * </p>
+     *
+     * @param percentile the percentile, between <tt>0.0</tt> and <tt>100.0</tt> (e.g. <tt>99.0</tt>).
+     * @return the approximate value for the percentile, or <tt>0</tt> if no values have been recorded.
+     */
+    public long getPercentile(final double percentile) {
+        if (percentile < 0.0d || percentile > 100.0d) {
+            throw new IllegalArgumentException("Percentile must be between 0.0 and 100.0");
+        }
+        final long[] counts = getBucketCounts();
+        long currentCount = 0L;
+        for (int i = 0; i < counts.length; i++) {
+            currentCount += counts[i];
+        }
+        if (currentCount == 0L) {
+            return 0L;
+        }
+        final long target = Math.max(1L, (long) Math.ceil((percentile / 100.0d) * currentCount));
+        long accumulated = 0L;
+        for (int i = 0; i < counts.length; i++) {
+            accumulated += counts[i];
+            if (accumulated >= target) {
+                return Math.min(getBucketUpperBound(i), this.max.get());
+            }
+        }
+        return this.max.get();
+    }
+
+
+    /**
+     * <p>
+     *   Returns a copy of the counts of all buckets (see {@link #BUCKET_COUNT}).
+     * </p>
+     *
+     * @return the bucket counts.
+     */
+    public long[] getBucketCounts() {
+        final long[] counts = new long[BUCKET_COUNT];
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            counts[i] = this.buckets.get(i);
+        }
+        return counts;
+    }
+
+
+    /**
+     * <p>
+     *   Returns the (inclusive) upper bound of the values counted in a bucket.
+     * </p>
+     *
+     * @param bucket the bucket index.
+     * @return the largest value that would be counted in the bucket.
+     */
+    public static long getBucketUpperBound(final int bucket) {
+        if (bucket < 0 || bucket >= BUCKET_COUNT) {
+            throw new IllegalArgumentException("Bucket index must be between 0 and " + (BUCKET_COUNT - 1));
+        }
+        if (bucket == BUCKET_COUNT - 1) {
+            return Long.MAX_VALUE;
+        }
+        return (1L << bucket) - 1L;
+    }
+
+
+    private static int bucketIndex(final long value) {
+        // 0 -> 0, 1 -> 1, [2,3] -> 2, [4,7] -> 3 ... and [2^62, 2^63) -> 63
+        return (Long.SIZE - Long.numberOfLeadingZeros(value));
+    }
+
+
+
+
+    @Override
+    public String toString() {
+        return "[count=" + getCount() + ", mean=" + Math.round(getMean()) + ", p50=" + getPercentile(50.0d) +
+                ", p99=" + getPercentile(99.0d) + ", max=" + getMax() + "]";
+    }
+
+
+}
@@ -0,0 +1,56 @@
+/*
+ * =============================================================================
+ *
+ *   Copyright (c) 2011-2016, The THYMELEAF team (http://www.thymeleaf.org)
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ * =============================================================================
+ */
+package org.thymeleaf.metrics;
+
+/**
+ * <p>
+ *   Types of the frames recorded by a {@link TemplateProfiler}.
+ * </p>
+ *
+ * @author Daniel Fern&aacute;ndez
+ *
+ * @since 3.0.3
+ *
+ */
+public enum ProfileFrameType {
+
+    TEMPLATE("template"), FRAGMENT("fragment"), ELEMENT("element"), PROCESSOR("processor"), EXPRESSION("expression");
+
+
+    private final String label;
+
+
+    ProfileFrameType(final String label) {
+        this.label = label;
+    }
+
+
+    /**
+     * <p>
+     *   Returns the label used for prefixing the names of frames of this type when exporting profiles.
+     * </p>
+     *
+     * @return the label.
+     */
+    public String getLabel() {
+        return this.label;
+    }
+
+}
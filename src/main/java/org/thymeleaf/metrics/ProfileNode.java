@@ -0,0 +1,152 @@
+/*
+ * =============================================================================
+ *
+ *   Copyright (c) 2011-2016, The THYMELEAF team (http://www.thymeleaf.org)
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ * =============================================================================
+ */
+package org.thymeleaf.metrics;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * <p>
+ *   Node of the tree of frames recorded by a {@link TemplateProfiler}. Each node aggregates all the executions of
+ *   a frame (e.g. an expression) performed at the same position of the tree (e.g. inside a specific processor
+ *   of a specific element of a specific template).
+ * </p>
+ * <p>
+ *   <em>Total</em> values include the values of all child frames, whereas <em>self</em> values only include the
+ *   time and memory spent in the frame itself. Allocated bytes will be zero if the JVM does not support
+ *   per-thread allocation accounting, or if it was disabled at the profiler.
+ * </p>
+ *
+ * @author Daniel Fern&aacute;ndez
+ *
+ * @since 3.0.3
+ *
+ */
+public final class ProfileNode {
+
+    private final ProfileFrameType type; // null for the root node
+    private final String name;
+    private final ConcurrentHashMap<String,ProfileNode> children;
+
+    private final AtomicLong count = new AtomicLong(0L);
+    private final AtomicLong totalNanos = new AtomicLong(0L);
+    private final AtomicLong selfNanos = new AtomicLong(0L);
+    private final AtomicLong totalAllocatedBytes = new AtomicLong(0L);
+    private final AtomicLong selfAllocatedBytes = new AtomicLong(0L);
+
+
+
+    ProfileNode(final ProfileFrameType type, final String name) {
+        super();
+        this.type = type;
+        this.name = name;
+        this.children = new ConcurrentHashMap<String, ProfileNode>(4, 0.75f, 4);
+    }
+
+
+
+
+    ProfileNode child(final ProfileFrameType childType, final String childName) {
+        final String key = childType.getLabel() + ':' + childName;
+        final ProfileNode child = this.children.get(key);
+        if (child != null) {
+            return child;
+        }
+        final ProfileNode newChild = new ProfileNode(childType, childName);
+        final ProfileNode existing = this.children.putIfAbsent(key, newChild);
+        return (existing != null? existing : newChild);
+    }
+
+
+    void record(final long total, final long self, final long totalBytes, final long selfBytes) {
+        this.count.incrementAndGet();
+        this.totalNanos.addAndGet(total);
+        this.selfNanos.addAndGet(self);
+        if (totalBytes != 0L) {
+            this.totalAllocatedBytes.addAndGet(totalBytes);
+            this.selfAllocatedBytes.addAndGet(selfBytes);
+        }
+    }
+
+
+
+
+    /**
+     * <p>
+     *   Returns the type of the frame, or null if this is the root node of the profile.
+     * </p>
+     *
+     * @return the frame type.
+     */
+    public ProfileFrameType getType() {
+        return this.type;
+    }
+
+    public String getName() {
+        return this.name;
+    }
+
+    public long getCount() {
+        return this.count.get();
+    }
+
+    public long getTotalNanos() {
+        return this.totalNanos.get();
+    }
+
+    public long getSelfNanos() {
+        return this.selfNanos.get();
+    }
+
+    public long getTotalAllocatedBytes() {
+        return this.totalAllocatedBytes.get();
+    }
+
+    public long getSelfAllocatedBytes() {
+        return this.selfAllocatedBytes.get();
+    }
+
+    public List<ProfileNode> getChildren() {
+        return Collections.unmodifiableList(new ArrayList<ProfileNode>(this.children.values()));
+    }
+
+
+    void clear() {
+        this.children.clear();
+        this.count.set(0L);
+        this.totalNanos.set(0L);
+        this.selfNanos.set(0L);
+        this.totalAllocatedBytes.set(0L);
+        this.selfAllocatedBytes.set(0L);
+    }
+
+
+    @Override
+    public String toString() {
+        return (this.type == null? this.name : (this.type.getLabel() + ':' + this.name)) +
+                " {count=" + getCount() + ", totalNanos=" + getTotalNanos() + ", selfNanos=" + getSelfNanos() +
+                ", totalAllocatedBytes=" + getTotalAllocatedBytes() +
+                ", selfAllocatedBytes=" + getSelfAllocatedBytes() + "}";
+    }
+
+}
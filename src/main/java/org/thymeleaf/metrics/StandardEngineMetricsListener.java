@@ -0,0 +1,270 @@
+/*
+ * =============================================================================
+ *
+ *   Copyright (c) 2011-2016, The THYMELEAF team (http://www.thymeleaf.org)
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ * =============================================================================
+ */
+package org.thymeleaf.metrics;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.thymeleaf.processor.IProcessor;
+import org.thymeleaf.util.Validate;
+
+/**
+ * <p>
+ *   Standard implementation of {@link IEngineMetricsListener}, which aggregates all metrics into
+ *   {@link LongHistogram}s: one per template (resolution, parsing and processing times), fragment, processor
+ *   class and expression, plus a single one for output size and counters for template cache lookups.
+ * </p>
+ * <p>
+ *   In order to limit the memory used by this listener, each of the maps of histograms will contain at most
+ *   a specific amount of keys (see {@link #DEFAULT_MAX_KEYS_PER_METRIC}). Values for any keys beyond that limit
+ *   will be aggregated into a single histogram with key {@link #OTHER_KEY}.
+ * </p>
+ * <p>
+ *   Objects of this class are <strong>thread-safe</strong>, and recording metrics never blocks.
+ * </p>
+ *
+ * @author Daniel Fern&aacute;ndez
+ *
+ * @since 3.0.3
+ *
+ */
+public class StandardEngineMetricsListener implements IEngineMetricsListener {
+
+    public static final int DEFAULT_MAX_KEYS_PER_METRIC = 5000;
+    public static final String OTHER_KEY = "[other]";
+
+    private final int maxKeysPerMetric;
+
+    private final ConcurrentHashMap<String,LongHistogram> resolutionTimes;
+    private final ConcurrentHashMap<String,LongHistogram> parseTimes;
+    private final ConcurrentHashMap<String,LongHistogram> fragmentTimes;
+    private final ConcurrentHashMap<String,LongHistogram> processorTimes;
+    private final ConcurrentHashMap<String,LongHistogram> expressionTimes;
+    private final ConcurrentHashMap<String,LongHistogram> processingTimes;
+    private final LongHistogram outputBytes;
+    private final AtomicLong unresolvedCount;
+    private final AtomicLong cacheHitCount;
+    private final AtomicLong cacheMissCount;
+
+
+
+    public StandardEngineMetricsListener() {
+        this(DEFAULT_MAX_KEYS_PER_METRIC);
+    }
+
+
+    public StandardEngineMetricsListener(final int maxKeysPerMetric) {
+        super();
+        Validate.isTrue(maxKeysPerMetric > 0, "Maximum amount of keys per metric must be greater than zero");
+        this.maxKeysPerMetric = maxKeysPerMetric;
+        this.resolutionTimes = new ConcurrentHashMap<String, LongHistogram>();
+        this.parseTimes = new ConcurrentHashMap<String, LongHistogram>();
+        this.fragmentTimes = new ConcurrentHashMap<String, LongHistogram>();
+        this.processorTimes = new ConcurrentHashMap<String, LongHistogram>();
+        this.expressionTimes = new ConcurrentHashMap<String, LongHistogram>();
+        this.processingTimes = new ConcurrentHashMap<String, LongHistogram>();
+        this.outputBytes = new LongHistogram();
+        this.unresolvedCount = new AtomicLong(0L);
+        this.cacheHitCount = new AtomicLong(0L);
+        this.cacheMissCount = new AtomicLong(0L);
+    }
+
+
+
+
+    public void templateResolved(final String template, final boolean resolved, final long nanos) {
+        histogram(this.resolutionTimes, template).record(nanos);
+        if (!resolved) {
+            this.unresolvedCount.incrementAndGet();
+        }
+    }
+
+
+    public void templateCacheLookup(final String template, final boolean hit) {
+        if (hit) {
+            this.cacheHitCount.incrementAndGet();
+        } else {
+            this.cacheMissCount.incrementAndGet();
+        }
+    }
+
+
+    public void templateParsed(final String template, final long nanos) {
+        histogram(this.parseTimes, template).record(nanos);
+    }
+
+
+    public void fragmentResolved(
+            final String ownerTemplate, final String template, final Set<String> templateSelectors, final long nanos) {
+        final String fragment =
+                (templateSelectors == null || templateSelectors.isEmpty()? template : template + " :: " + templateSelectors);
+        histogram(this.fragmentTimes, fragment).record(nanos);
+    }
+
+
+    public void processorExecuted(final IProcessor processor, final long nanos) {
+        histogram(this.processorTimes, processor.getClass().getName()).record(nanos);
+    }
+
+
+    public void expressionEvaluated(final String expression, final long nanos) {
+        histogram(this.expressionTimes, expression).record(nanos);
+    }
+
+
+    public void templateProcessed(final String template, final long nanos) {
+        histogram(this.processingTimes, template).record(nanos);
+    }
+
+
+    public void outputWritten(final String template, final long bytes) {
+        this.outputBytes.record(bytes);
+    }
+
+
+
+
+    private LongHistogram histogram(final ConcurrentHashMap<String,LongHistogram> histograms, final String key) {
+        final String histogramKey = (key == null? OTHER_KEY : key);
+        LongHistogram histogram = histograms.get(histogramKey);
+        if (histogram != null) {
+            return histogram;
+        }
+        // The size check is not atomic with the insertion, so the limit might be slightly exceeded under contention
+        if (histograms.size() >= this.maxKeysPerMetric) {
+            histogram = histograms.get(OTHER_KEY);
+            if (histogram != null) {
+                return histogram;
+            }
+        }
+        final LongHistogram newHistogram = new LongHistogram();
+        histogram =
+                histograms.putIfAbsent(
+                        (histograms.size() < this.maxKeysPerMetric? histogramKey : OTHER_KEY), newHistogram);
+        return (histogram == null? newHistogram : histogram);
+    }
+
+
+
+
+    /**
+     * <p>
+     *   Returns the histograms of template resolution times (in nanoseconds), by template name.
+     * </p>
+     *
+     * @return the histograms (an unmodifiable live view).
+     */
+    public Map<String,LongHistogram> getResolutionTimes() {
+        return Collections.unmodifiableMap(this.resolutionTimes);
+    }
+
+
+    /**
+     * <p>
+     *   Returns the histograms of template parsing times (in nanoseconds), by template name.
+     * </p>
+     *
+     * @return the histograms (an unmodifiable live view).
+     */
+    public Map<String,LongHistogram> getParseTimes() {
+        return Collections.unmodifiableMap(this.parseTimes);
+    }
+
+
+    /**
+     * <p>
+     *   Returns the histograms of fragment resolution times (in nanoseconds), by fragment, specified as
+     *   <tt>template :: [selectors]</tt>.
+     * </p>
+     *
+     * @return the histograms (an unmodifiable live view).
+     */
+    public Map<String,LongHistogram> getFragmentTimes() {
+        return Collections.unmodifiableMap(this.fragmentTimes);
+    }
+
+
+    /**
+     * <p>
+     *   Returns the histograms of processor execution times (in nanoseconds), by processor class name.
+     * </p>
+     *
+     * @return the histograms (an unmodifiable live view).
+     */
+    public Map<String,LongHistogram> getProcessorTimes() {
+        return Collections.unmodifiableMap(this.processorTimes);
+    }
+
+
+    /**
+     * <p>
+     *   Returns the histograms of expression evaluation times (in nanoseconds), by expression.
+     * </p>
+     *
+     * @return the histograms (an unmodifiable live view).
+     */
+    public Map<String,LongHistogram> getExpressionTimes() {
+        return Collections.unmodifiableMap(this.expressionTimes);
+    }
+
+
+    /**
+     * <p>
+     *   Returns the histograms of template processing times (in nanoseconds), by template name.
+     * </p>
+     *
+     * @return the histograms (an unmodifiable live view).
+     */
+    public Map<String,LongHistogram> getProcessingTimes() {
+        return Collections.unmodifiableMap(this.processingTimes);
+    }
+
+
+    /**
+     * <p>
+     *   Returns the histogram of output sizes (in bytes) of templates processed into output streams.
+     * </p>
+     *
+     * @return the histogram.
+     */
+    public LongHistogram getOutputBytes() {
+        return this.outputBytes;
+    }
+
+
+    public long getUnresolvedCount() {
+        return this.unresolvedCount.get();
+    }
+
+
+    public long getCacheHitCount() {
+        return this.cacheHitCount.get();
+    }
+
+
+    public long getCacheMissCount() {
+        return this.cacheMissCount.get();
+    }
+
+
+}
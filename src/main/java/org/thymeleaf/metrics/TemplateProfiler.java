@@ -0,0 +1,539 @@
+/*
+ * =============================================================================
+ *
+ *   Copyright (c) 2011-2016, The THYMELEAF team (http://www.thymeleaf.org)
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ * =============================================================================
+ */
+package org.thymeleaf.metrics;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.lang.reflect.Method;
+import java.util.Set;
+
+import org.thymeleaf.processor.IProcessor;
+import org.thymeleaf.processor.element.IElementProcessor;
+import org.thymeleaf.processor.element.MatchingAttributeName;
+import org.thymeleaf.util.Validate;
+
+/**
+ * <p>
+ *   Profiling listener that records a tree of <em>template &rarr; fragment &rarr; element &rarr; processor
+ *   &rarr; expression</em> frames for every template processed by the engine, aggregating the number of
+ *   executions, total and self time and (if supported by the JVM) total and self allocated bytes of each frame.
+ * </p>
+ * <p>
+ *   Profiling is enabled by setting an instance of this class as metrics listener at the template engine:
+ * </p>
+ * <pre><code>
+ * final TemplateProfiler profiler = new TemplateProfiler();
+ * templateEngine.setMetricsListener(profiler);
+ * ...
+ * profiler.writeCollapsedStacks(writer);
+ * </code></pre>
+ * <p>
+ *   The recorded profile can be exported in <em>collapsed stack</em> format (one line per tree path followed by
+ *   its self value), which can be directly converted into a flame graph by tools like {@code flamegraph.pl}
+ *   or speedscope. Unlike the profiles obtained from a JVM profiler, this allows attributing the time spent
+ *   in the (highly recursive) engine handlers to the templates, fragments and processors causing it.
+ * </p>
+ * <p>
+ *   Elements are profiled from the moment their processors start executing until all of them have finished,
+ *   which includes the processing of iterated bodies and inserted fragments, but not the processing of the
+ *   element's body markup when it is simply output. Elements without associated processors are not recorded.
+ * </p>
+ * <p>
+ *   All other (non-profiling) metrics callbacks can be forwarded to a delegate listener specified at
+ *   construction. Note profiling adds a significant overhead to processing, so it should not be enabled
+ *   permanently in production environments.
+ * </p>
+ * <p>
+ *   This class is <strong>thread-safe</strong>.
+ * </p>
+ *
+ * @author Daniel Fern&aacute;ndez
+ *
+ * @since 3.0.3
+ *
+ */
+public class TemplateProfiler implements IEngineProfilingListener {
+
+    private static final int DEFAULT_STACK_DEPTH = 32;
+    private static final AllocationCounter ALLOCATION_COUNTER = AllocationCounter.create();
+
+    private final IEngineMetricsListener delegate;
+    private final boolean trackAllocations;
+    private final ProfileNode root;
+
+    private final ThreadLocal<ProfileStack> stacks = new ThreadLocal<ProfileStack>() {
+        @Override
+        protected ProfileStack initialValue() {
+            return new ProfileStack();
+        }
+    };
+
+
+
+    /**
+     * <p>
+     *   Creates a new profiler not delegating any metrics and tracking allocated bytes (if supported).
+     * </p>
+     */
+    public TemplateProfiler() {
+        this(null, true);
+    }
+
+
+    /**
+     * <p>
+     *   Creates a new profiler.
+     * </p>
+     *
+     * @param delegate the listener to which non-profiling metrics will be forwarded (can be null).
+     * @param trackAllocations whether allocated bytes should be tracked (if supported by the JVM).
+     */
+    public TemplateProfiler(final IEngineMetricsListener delegate, final boolean trackAllocations) {
+        super();
+        this.delegate = delegate;
+        this.trackAllocations = trackAllocations && ALLOCATION_COUNTER != null;
+        this.root = new ProfileNode(null, "root");
+    }
+
+
+
+
+    /**
+     * <p>
+     *   Returns whether this profiler is tracking allocated bytes.
+     * </p>
+     *
+     * @return true if allocated bytes are being tracked.
+     */
+    public boolean isTrackingAllocations() {
+        return this.trackAllocations;
+    }
+
+
+    /**
+     * <p>
+     *   Returns the root node of the recorded profile, whose children are the profiled templates.
+     * </p>
+     *
+     * @return the root node.
+     */
+    public ProfileNode getRoot() {
+        return this.root;
+    }
+
+
+    /**
+     * <p>
+     *   Discards all the recorded profile data. Should not be called while templates are being processed.
+     * </p>
+     */
+    public void reset() {
+        this.root.clear();
+    }
+
+
+
+
+    /**
+     * <p>
+     *   Writes the recorded profile in collapsed stack format, using self time (in nanoseconds) as value.
+     * </p>
+     *
+     * @param writer the writer to output the profile to.
+     * @throws IOException if the writer raises it.
+     */
+    public void writeCollapsedStacks(final Writer writer) throws IOException {
+        Validate.notNull(writer, "Writer cannot be null");
+        writeCollapsedStacks(writer, this.root, new StringBuilder(), false);
+        writer.flush();
+    }
+
+
+    /**
+     * <p>
+     *   Writes the recorded profile in collapsed stack format, using self allocated bytes as value.
+     * </p>
+     *
+     * @param writer the writer to output the profile to.
+     * @throws IOException if the writer raises it.
+     */
+    public void writeCollapsedAllocationStacks(final Writer writer) throws IOException {
+        Validate.notNull(writer, "Writer cannot be null");
+        writeCollapsedStacks(writer, this.root, new StringBuilder(), true);
+        writer.flush();
+    }
+
+
+    private static void writeCollapsedStacks(
+            final Writer writer, final ProfileNode node, final StringBuilder path, final boolean allocations)
+            throws IOException {
+
+        final int pathLen = path.length();
+        if (node.getType() != null) {
+            if (pathLen > 0) {
+                path.append(';');
+            }
+            path.append(node.getType().getLabel());
+            path.append(':');
+            appendFrameName(path, node.getName());
+            final long value = (allocations? node.getSelfAllocatedBytes() : node.getSelfNanos());
+            if (value > 0L) {
+                writer.write(path.toString());
+                writer.write(' ');
+                writer.write(String.valueOf(value));
+                writer.write('\n');
+            }
+        }
+        for (final ProfileNode child : node.getChildren()) {
+            writeCollapsedStacks(writer, child, path, allocations);
+        }
+        path.setLength(pathLen);
+
+    }
+
+
+    private static void appendFrameName(final StringBuilder path, final String name) {
+        // Semicolons separate frames and line feeds separate stacks in collapsed format, so they cannot appear
+        final int nameLen = name.length();
+        for (int i = 0; i < nameLen; i++) {
+            final char c = name.charAt(i);
+            if (c == ';') {
+                path.append(',');
+            } else if (c == '\n' || c == '\r') {
+                path.append(' ');
+            } else {
+                path.append(c);
+            }
+        }
+    }
+
+
+
+
+    public void enterTemplate(final String template) {
+        enter(ProfileFrameType.TEMPLATE, template, template);
+    }
+
+
+    public void enterFragment(final String ownerTemplate, final String template, final Set<String> templateSelectors) {
+        final String name =
+                (templateSelectors == null || templateSelectors.isEmpty()? template : (template + " :: " + templateSelectors));
+        enter(ProfileFrameType.FRAGMENT, name, template);
+    }
+
+
+    public void enterElement(final String template, final String elementCompleteName) {
+        final ProfileStack stack = this.stacks.get();
+        if (template != null && stack.size > 0 && !template.equals(stack.frames[stack.size - 1].template)) {
+            // This element has been inserted from a different template (a fragment), which we will signal with an
+            // implicit fragment frame that will be exited along with the element
+            enter(stack, ProfileFrameType.FRAGMENT, template, template, true);
+        }
+        enter(stack, ProfileFrameType.ELEMENT, elementCompleteName, template, false);
+    }
+
+
+    public void enterProcessor(final IProcessor processor) {
+        enter(ProfileFrameType.PROCESSOR, computeProcessorName(processor), null);
+    }
+
+
+    public void enterExpression(final String expression) {
+        enter(ProfileFrameType.EXPRESSION, expression, null);
+    }
+
+
+    public void exit(final ProfileFrameType type) {
+
+        final ProfileStack stack = this.stacks.get();
+
+        int pos = stack.size - 1;
+        while (pos >= 0 && stack.frames[pos].type != type) {
+            pos--;
+        }
+        if (pos < 0) {
+            // Nothing to exit (e.g. the profiler was set while the frame was being executed)
+            return;
+        }
+
+        final long nanos = System.nanoTime();
+        final long bytes = (this.trackAllocations? ALLOCATION_COUNTER.getAllocatedBytes(stack) : 0L);
+
+        // Frames above the one being exited were not properly exited (an exception was raised), so we exit them now
+        while (stack.size > pos) {
+            stack.pop(nanos, bytes);
+        }
+
+        // Implicit fragment frames are exited along with the element that caused them
+        if (type == ProfileFrameType.ELEMENT && stack.size > 0 && stack.frames[stack.size - 1].implicit) {
+            stack.pop(nanos, bytes);
+        }
+
+    }
+
+
+    private void enter(final ProfileFrameType type, final String name, final String template) {
+        enter(this.stacks.get(), type, name, template, false);
+    }
+
+
+    private void enter(
+            final ProfileStack stack, final ProfileFrameType type, final String name, final String template,
+            final boolean implicit) {
+
+        final ProfileNode parent = (stack.size == 0? this.root : stack.frames[stack.size - 1].node);
+        final ProfileNode node = parent.child(type, (name == null? "null" : name));
+        final String frameTemplate =
+                (template != null? template : (stack.size == 0? null : stack.frames[stack.size - 1].template));
+
+        stack.push(
+                node, type, frameTemplate, implicit,
+                System.nanoTime(), (this.trackAllocations? ALLOCATION_COUNTER.getAllocatedBytes(stack) : 0L));
+
+    }
+
+
+    private static String computeProcessorName(final IProcessor processor) {
+        if (processor instanceof IElementProcessor) {
+            final MatchingAttributeName matchingAttributeName =
+                    ((IElementProcessor) processor).getMatchingAttributeName();
+            if (matchingAttributeName != null && !matchingAttributeName.isMatchingAllAttributes()) {
+                return matchingAttributeName.toString();
+            }
+        }
+        return processor.getClass().getSimpleName();
+    }
+
+
+
+
+    public void templateResolved(final String template, final boolean resolved, final long nanos) {
+        if (this.delegate != null) {
+            this.delegate.templateResolved(template, resolved, nanos);
+        }
+    }
+
+    public void templateCacheLookup(final String template, final boolean hit) {
+        if (this.delegate != null) {
+            this.delegate.templateCacheLookup(template, hit);
+        }
+    }
+
+    public void templateParsed(final String template, final long nanos) {
+        if (this.delegate != null) {
+            this.delegate.templateParsed(template, nanos);
+        }
+    }
+
+    public void fragmentResolved(
+            final String ownerTemplate, final String template, final Set<String> templateSelectors, final long nanos) {
+        if (this.delegate != null) {
+            this.delegate.fragmentResolved(ownerTemplate, template, templateSelectors, nanos);
+        }
+    }
+
+    public void processorExecuted(final IProcessor processor, final long nanos) {
+        if (this.delegate != null) {
+            this.delegate.processorExecuted(processor, nanos);
+        }
+    }
+
+    public void expressionEvaluated(final String expression, final long nanos) {
+        if (this.delegate != null) {
+            this.delegate.expressionEvaluated(expression, nanos);
+        }
+    }
+
+    public void templateProcessed(final String template, final long nanos) {
+        if (this.delegate != null) {
+            this.delegate.templateProcessed(template, nanos);
+        }
+    }
+
+    public void outputWritten(final String template, final long bytes) {
+        if (this.delegate != null) {
+            this.delegate.outputWritten(template, bytes);
+        }
+    }
+
+
+
+
+    /*
+     * Stack of the frames currently open at a thread. Frame objects are reused in order to avoid allocating
+     * (and therefore polluting allocation measurements) during profiling.
+     */
+    private static final class ProfileStack {
+
+        private Frame[] frames = new Frame[DEFAULT_STACK_DEPTH];
+        private int size = 0;
+        // Number of allocation counter readings performed at this stack's thread (see AllocationCounter)
+        private long allocationReadings = 0L;
+
+        void push(
+                final ProfileNode node, final ProfileFrameType type, final String template, final boolean implicit,
+                final long startNanos, final long startBytes) {
+            if (this.size == this.frames.length) {
+                final Frame[] newFrames = new Frame[this.frames.length * 2];
+                System.arraycopy(this.frames, 0, newFrames, 0, this.frames.length);
+                this.frames = newFrames;
+            }
+            Frame frame = this.frames[this.size];
+            if (frame == null) {
+                frame = new Frame();
+                this.frames[this.size] = frame;
+            }
+            frame.node = node;
+            frame.type = type;
+            frame.template = template;
+            frame.implicit = implicit;
+            frame.startNanos = startNanos;
+            frame.startBytes = startBytes;
+            frame.childNanos = 0L;
+            frame.childBytes = 0L;
+            this.size++;
+        }
+
+        void pop(final long endNanos, final long endBytes) {
+            final Frame frame = this.frames[--this.size];
+            final long totalNanos = endNanos - frame.startNanos;
+            final long totalBytes = endBytes - frame.startBytes;
+            frame.node.record(totalNanos, totalNanos - frame.childNanos, totalBytes, totalBytes - frame.childBytes);
+            if (this.size > 0) {
+                final Frame parent = this.frames[this.size - 1];
+                parent.childNanos += totalNanos;
+                parent.childBytes += totalBytes;
+            }
+            frame.node = null;
+            frame.template = null;
+        }
+
+    }
+
+
+    private static final class Frame {
+
+        ProfileNode node;
+        ProfileFrameType type;
+        String template;
+        boolean implicit;
+        long startNanos;
+        long startBytes;
+        long childNanos;
+        long childBytes;
+
+        Frame() {
+            super();
+        }
+
+    }
+
+
+
+
+    /*
+     * Per-thread allocation counter, only available in JVMs offering the (non-standard)
+     * com.sun.management.ThreadMXBean#getThreadAllocatedBytes(long) method. Accessed by reflection so that
+     * there is no compile or runtime dependency on it.
+     *
+     * Reflective invocation allocates by itself (argument array, boxed thread id and result) on every reading, so
+     * the bytes allocated per reading are calibrated once, and discounted from each reading according to the
+     * number of readings previously performed at the same thread. This way the allocations of the profiler itself
+     * are not attributed to the profiled frames. Note this is an approximation: if the JIT later manages to
+     * avoid some of these allocations, allocation figures could be slightly skewed (lower than real).
+     */
+    private static final class AllocationCounter {
+
+        private static final int CALIBRATION_WARMUP_READINGS = 20000;
+        private static final int CALIBRATION_READINGS = 1000;
+
+        private final ThreadMXBean threadMXBean;
+        private final Method getThreadAllocatedBytes;
+        private final long readingOverhead;
+
+        static AllocationCounter create() {
+            try {
+                final ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+                final Class<?> sunThreadMXBeanClass = Class.forName("com.sun.management.ThreadMXBean");
+                if (!sunThreadMXBeanClass.isInstance(threadMXBean)) {
+                    return null;
+                }
+                final Method isSupported = sunThreadMXBeanClass.getMethod("isThreadAllocatedMemorySupported");
+                final Method isEnabled = sunThreadMXBeanClass.getMethod("isThreadAllocatedMemoryEnabled");
+                if (!((Boolean) isSupported.invoke(threadMXBean)).booleanValue() ||
+                        !((Boolean) isEnabled.invoke(threadMXBean)).booleanValue()) {
+                    return null;
+                }
+                final Method getThreadAllocatedBytes =
+                        sunThreadMXBeanClass.getMethod("getThreadAllocatedBytes", long.class);
+                final AllocationCounter uncalibrated = new AllocationCounter(threadMXBean, getThreadAllocatedBytes, 0L);
+                return new AllocationCounter(threadMXBean, getThreadAllocatedBytes, calibrate(uncalibrated));
+            } catch (final Exception e) {
+                // Not available in this JVM: allocations will simply not be tracked
+                return null;
+            }
+        }
+
+        private static long calibrate(final AllocationCounter counter) {
+            // Warm-up is needed so that reflection and the JIT have reached a stable state
+            for (int i = 0; i < CALIBRATION_WARMUP_READINGS; i++) {
+                counter.readAllocatedBytes();
+            }
+            final long start = counter.readAllocatedBytes();
+            for (int i = 0; i < CALIBRATION_READINGS; i++) {
+                counter.readAllocatedBytes();
+            }
+            final long end = counter.readAllocatedBytes();
+            // Between the first and last readings, the equivalent of (CALIBRATION_READINGS + 1) readings allocated
+            return Math.max(0L, (end - start) / (CALIBRATION_READINGS + 1));
+        }
+
+        private AllocationCounter(
+                final ThreadMXBean threadMXBean, final Method getThreadAllocatedBytes, final long readingOverhead) {
+            super();
+            this.threadMXBean = threadMXBean;
+            this.getThreadAllocatedBytes = getThreadAllocatedBytes;
+            this.readingOverhead = readingOverhead;
+        }
+
+        /*
+         * Returns the bytes allocated so far by the current thread (the one owning the specified stack), minus the
+         * bytes allocated by all previous readings at the thread. Only differences between values returned for
+         * the same stack are meaningful.
+         */
+        long getAllocatedBytes(final ProfileStack stack) {
+            final long bytes = readAllocatedBytes();
+            return bytes - (stack.allocationReadings++ * this.readingOverhead);
+        }
+
+        private long readAllocatedBytes() {
+            try {
+                return ((Long) this.getThreadAllocatedBytes.invoke(
+                        this.threadMXBean, Long.valueOf(Thread.currentThread().getId()))).longValue();
+            } catch (final Exception e) {
+                return 0L;
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,121 @@
+/*
+ * =============================================================================
+ *
+ *   Copyright (c) 2011-2016, The THYMELEAF team (http://www.thymeleaf.org)
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ * =============================================================================
+ */
+package org.thymeleaf.reactive;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.thymeleaf.util.Validate;
+
+/**
+ * <p>
+ *   Simple pool of heap {@link ByteBuffer}s of a fixed capacity, used by {@link ThrottledTemplatePublisher}
+ *   for obtaining the buffers its output chunks are written into.
+ * </p>
+ * <p>
+ *   Subscribers that are done with a published buffer can return it to the pool by calling
+ *   {@link #release(ByteBuffer)}, so that it is reused for a subsequent chunk. Buffers that are never
+ *   released are simply garbage collected, so releasing is optional.
+ * </p>
+ * <p>
+ *   Objects of this class are <strong>thread-safe</strong>.
+ * </p>
+ *
+ * @author Daniel Fern&aacute;ndez
+ *
+ * @since 3.0.3
+ *
+ */
+public final class ByteBufferPool {
+
+    private final int bufferCapacity;
+    private final int maxPooledBuffers;
+    private final ConcurrentLinkedQueue<ByteBuffer> buffers;
+    private final AtomicInteger pooledCount;
+
+
+    /**
+     * <p>
+     *   Creates a new pool.
+     * </p>
+     *
+     * @param bufferCapacity the capacity (in bytes) of the buffers in the pool.
+     * @param maxPooledBuffers the maximum amount of released buffers the pool will retain.
+     */
+    public ByteBufferPool(final int bufferCapacity, final int maxPooledBuffers) {
+        super();
+        Validate.isTrue(bufferCapacity > 0, "Buffer capacity must be greater than zero");
+        Validate.isTrue(maxPooledBuffers >= 0, "Maximum amount of pooled buffers cannot be negative");
+        this.bufferCapacity = bufferCapacity;
+        this.maxPooledBuffers = maxPooledBuffers;
+        this.buffers = new ConcurrentLinkedQueue<ByteBuffer>();
+        this.pooledCount = new AtomicInteger(0);
+    }
+
+
+    public int getBufferCapacity() {
+        return this.bufferCapacity;
+    }
+
+
+    public int getPooledCount() {
+        return this.pooledCount.get();
+    }
+
+
+    /**
+     * <p>
+     *   Obtains a cleared buffer, either from the pool or newly allocated if the pool is empty.
+     * </p>
+     *
+     * @return the buffer.
+     */
+    public ByteBuffer acquire() {
+        final ByteBuffer buffer = this.buffers.poll();
+        if (buffer == null) {
+            return ByteBuffer.allocate(this.bufferCapacity);
+        }
+        this.pooledCount.decrementAndGet();
+        buffer.clear();
+        return buffer;
+    }
+
+
+    /**
+     * <p>
+     *   Returns a buffer to the pool. Buffers of a different capacity, read-only or direct buffers, and buffers
+     *   exceeding the maximum amount of pooled buffers are simply discarded.
+     * </p>
+     *
+     * @param buffer the buffer to be returned. The caller must not use it after calling this method.
+     */
+    public void release(final ByteBuffer buffer) {
+        if (buffer == null || buffer.capacity() != this.bufferCapacity || buffer.isReadOnly() || buffer.isDirect()) {
+            return;
+        }
+        if (this.pooledCount.incrementAndGet() > this.maxPooledBuffers) {
+            this.pooledCount.decrementAndGet();
+            return;
+        }
+        this.buffers.offer(buffer);
+    }
+
+}
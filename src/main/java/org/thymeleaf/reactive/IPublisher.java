@@ -0,0 +1,53 @@
+/*
+ * =============================================================================
+ *
+ *   Copyright (c) 2011-2016, The THYMELEAF team (http://www.thymeleaf.org)
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ * =============================================================================
+ */
+package org.thymeleaf.reactive;
+
+/**
+ * <p>
+ *   Provider of a potentially unbounded number of sequenced elements, published according to the demand
+ *   received from its {@link ISubscriber}s.
+ * </p>
+ * <p>
+ *   This interface (together with {@link ISubscriber} and {@link ISubscription}) mirrors the contracts
+ *   defined by <em>Reactive Streams</em> and by <tt>java.util.concurrent.Flow</tt> (Java 9+). It is defined here
+ *   because Thymeleaf cannot depend on any of them, but adapting these objects to any of those APIs is trivial
+ *   as the semantics of every method are exactly the same.
+ * </p>
+ *
+ * @param <T> the type of the published elements.
+ *
+ * @author Daniel Fern&aacute;ndez
+ *
+ * @since 3.0.3
+ *
+ */
+public interface IPublisher<T> {
+
+    /**
+     * <p>
+     *   Requests the publisher to start publishing elements to the specified subscriber. No elements will
+     *   be published until the subscriber signals demand via {@link ISubscription#request(long)}.
+     * </p>
+     *
+     * @param subscriber the subscriber that will consume the published elements.
+     */
+    public void subscribe(final ISubscriber<? super T> subscriber);
+
+}
@@ -0,0 +1,75 @@
+/*
+ * =============================================================================
+ *
+ *   Copyright (c) 2011-2016, The THYMELEAF team (http://www.thymeleaf.org)
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ * =============================================================================
+ */
+package org.thymeleaf.reactive;
+
+/**
+ * <p>
+ *   Receiver of the elements published by an {@link IPublisher}. Equivalent to the <tt>Subscriber</tt>
+ *   interfaces in <em>Reactive Streams</em> and <tt>java.util.concurrent.Flow</tt>.
+ * </p>
+ * <p>
+ *   Calls to the methods of a subscriber are always serialized (never concurrent), although they might
+ *   happen on different threads.
+ * </p>
+ *
+ * @param <T> the type of the received elements.
+ *
+ * @author Daniel Fern&aacute;ndez
+ *
+ * @since 3.0.3
+ *
+ */
+public interface ISubscriber<T> {
+
+    /**
+     * <p>
+     *   Invoked once after calling {@link IPublisher#subscribe(ISubscriber)}, before any other signal.
+     * </p>
+     *
+     * @param subscription the subscription that can be used for requesting elements or cancelling.
+     */
+    public void onSubscribe(final ISubscription subscription);
+
+    /**
+     * <p>
+     *   Invoked with each of the published elements, never more times than requested.
+     * </p>
+     *
+     * @param item the published element.
+     */
+    public void onNext(final T item);
+
+    /**
+     * <p>
+     *   Invoked when the publisher finds an unrecoverable error. No other signals will follow.
+     * </p>
+     *
+     * @param throwable the error.
+     */
+    public void onError(final Throwable throwable);
+
+    /**
+     * <p>
+     *   Invoked when all elements have been published. No other signals will follow.
+     * </p>
+     */
+    public void onComplete();
+
+}
@@ -0,0 +1,54 @@
+/*
+ * =============================================================================
+ *
+ *   Copyright (c) 2011-2016, The THYMELEAF team (http://www.thymeleaf.org)
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ * =============================================================================
+ */
+package org.thymeleaf.reactive;
+
+/**
+ * <p>
+ *   Link between an {@link IPublisher} and one of its {@link ISubscriber}s, used for signalling demand and
+ *   cancellation. Equivalent to the <tt>Subscription</tt> interfaces in <em>Reactive Streams</em> and
+ *   <tt>java.util.concurrent.Flow</tt>.
+ * </p>
+ *
+ * @author Daniel Fern&aacute;ndez
+ *
+ * @since 3.0.3
+ *
+ */
+public interface ISubscription {
+
+    /**
+     * <p>
+     *   Adds the specified number of elements to the current unfulfilled demand of the subscription.
+     * </p>
+     *
+     * @param n the number of elements to be added to demand (must be &gt; 0). {@link Long#MAX_VALUE} means
+     *          "unbounded".
+     */
+    public void request(final long n);
+
+    /**
+     * <p>
+     *   Requests the publisher to stop publishing elements and release any resources held for this
+     *   subscription. Elements might still be received for a short time after calling this method.
+     * </p>
+     */
+    public void cancel();
+
+}
@@ -0,0 +1,368 @@
+/*
+ * =============================================================================
+ *
+ *   Copyright (c) 2011-2016, The THYMELEAF team (http://www.thymeleaf.org)
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ * =============================================================================
+ */
+package org.thymeleaf.reactive;
+
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.thymeleaf.IDataDrivenThrottledTemplateProcessor;
+import org.thymeleaf.ITemplateEngine;
+import org.thymeleaf.IThrottledTemplateProcessor;
+import org.thymeleaf.TemplateSpec;
+import org.thymeleaf.context.IContext;
+import org.thymeleaf.util.Validate;
+
+/**
+ * <p>
+ *   {@link IPublisher} implementation that renders a template as a stream of {@link ByteBuffer} chunks, driven
+ *   by the demand signalled by its subscriber.
+ * </p>
+ * <p>
+ *   This publisher is <em>cold</em>: every subscription creates its own {@link IThrottledTemplateProcessor}
+ *   (by calling {@link ITemplateEngine#processThrottled(TemplateSpec, IContext)}) and processes the template
+ *   from the beginning. Each requested element is obtained by a call to
+ *   {@link IThrottledTemplateProcessor#process(int, OutputStream, Charset)} limited to the capacity of a buffer
+ *   obtained from the configured {@link ByteBufferPool}, so that the engine processes only the part of the
+ *   template needed for filling one chunk. Subscribers can return published buffers to the pool (see
+ *   {@link #getBufferPool()}) once they are done with them.
+ * </p>
+ * <p>
+ *   No thread is ever blocked waiting for demand: template processing only happens while there is outstanding
+ *   demand and, if an {@link Executor} is specified, it happens in tasks submitted to it (one task per burst of
+ *   demand, never two of them at the same time for the same subscription). If no executor is specified,
+ *   processing will happen in the thread calling {@link ISubscription#request(long)}.
+ * </p>
+ * <p>
+ *   Note the same context object will be used by all subscriptions, so subscribing more than once is only
+ *   safe if the context is not modified during template processing and can be shared among threads.
+ * </p>
+ * <p>
+ *   Objects of this class are <strong>thread-safe</strong>.
+ * </p>
+ *
+ * @author Daniel Fern&aacute;ndez
+ *
+ * @since 3.0.3
+ *
+ */
+public final class ThrottledTemplatePublisher implements IPublisher<ByteBuffer> {
+
+    public static final int DEFAULT_CHUNK_SIZE_IN_BYTES = 8192;
+    public static final int DEFAULT_MAX_POOLED_BUFFERS = 32;
+
+    private final ITemplateEngine templateEngine;
+    private final TemplateSpec templateSpec;
+    private final IContext context;
+    private final Charset charset;
+    private final ByteBufferPool bufferPool;
+    private final Executor executor;
+
+
+
+    /**
+     * <p>
+     *   Creates a new publisher that will perform processing in the thread signalling demand, using chunks
+     *   of {@link #DEFAULT_CHUNK_SIZE_IN_BYTES} bytes.
+     * </p>
+     *
+     * @param templateEngine the template engine to be used.
+     * @param templateSpec the template to be processed.
+     * @param context the context to be used.
+     * @param charset the charset to be used for encoding output.
+     */
+    public ThrottledTemplatePublisher(
+            final ITemplateEngine templateEngine, final TemplateSpec templateSpec,
+            final IContext context, final Charset charset) {
+        this(templateEngine, templateSpec, context, charset,
+                new ByteBufferPool(DEFAULT_CHUNK_SIZE_IN_BYTES, DEFAULT_MAX_POOLED_BUFFERS), null);
+    }
+
+
+    /**
+     * <p>
+     *   Creates a new publisher.
+     * </p>
+     *
+     * @param templateEngine the template engine to be used.
+     * @param templateSpec the template to be processed.
+     * @param context the context to be used.
+     * @param charset the charset to be used for encoding output.
+     * @param bufferPool the pool output buffers will be obtained from. Its buffer capacity determines the maximum
+     *                   size of each chunk.
+     * @param executor the executor processing will be performed in (can be null, meaning processing will
+     *                 happen in the thread signalling demand).
+     */
+    public ThrottledTemplatePublisher(
+            final ITemplateEngine templateEngine, final TemplateSpec templateSpec,
+            final IContext context, final Charset charset,
+            final ByteBufferPool bufferPool, final Executor executor) {
+        super();
+        Validate.notNull(templateEngine, "Template Engine cannot be null");
+        Validate.notNull(templateSpec, "Template Specification cannot be null");
+        Validate.notNull(context, "Context cannot be null");
+        Validate.notNull(charset, "Charset cannot be null");
+        Validate.notNull(bufferPool, "Buffer pool cannot be null");
+        this.templateEngine = templateEngine;
+        this.templateSpec = templateSpec;
+        this.context = context;
+        this.charset = charset;
+        this.bufferPool = bufferPool;
+        this.executor = executor;
+    }
+
+
+
+
+    public TemplateSpec getTemplateSpec() {
+        return this.templateSpec;
+    }
+
+
+    public Charset getCharset() {
+        return this.charset;
+    }
+
+
+    public ByteBufferPool getBufferPool() {
+        return this.bufferPool;
+    }
+
+
+
+
+    public void subscribe(final ISubscriber<? super ByteBuffer> subscriber) {
+        Validate.notNull(subscriber, "Subscriber cannot be null");
+        subscriber.onSubscribe(new TemplateSubscription(subscriber));
+    }
+
+
+
+
+    /*
+     * Serialization of processing is achieved by means of a work-in-progress counter: only the thread that
+     * increments it from zero executes (or submits) the drain loop, and any signal received meanwhile (new demand,
+     * cancellation) just increments the counter so that the loop executes once more before exiting. This
+     * also avoids unbounded recursion when subscribers request more elements from inside onNext().
+     */
+    private final class TemplateSubscription implements ISubscription, Runnable {
+
+        private final ISubscriber<? super ByteBuffer> subscriber;
+        private final AtomicLong requested;
+        private final AtomicInteger wip;
+        private final ByteBufferOutputStream outputStream;
+        private final Runnable dataAvailableListener;
+
+        private volatile boolean cancelled;
+        private volatile Throwable requestError;
+
+        // Only accessed from the drain loop, whose executions are ordered by the wip counter
+        private IThrottledTemplateProcessor processor;
+        private boolean done;
+
+
+        TemplateSubscription(final ISubscriber<? super ByteBuffer> subscriber) {
+            super();
+            this.subscriber = subscriber;
+            this.requested = new AtomicLong(0L);
+            this.wip = new AtomicInteger(0);
+            this.outputStream = new ByteBufferOutputStream();
+            this.dataAvailableListener = new Runnable() {
+                public void run() {
+                    schedule();
+                }
+            };
+            this.cancelled = false;
+            this.requestError = null;
+            this.processor = null;
+            this.done = false;
+        }
+
+
+        public void request(final long n) {
+            if (n <= 0L) {
+                this.requestError =
+                        new IllegalArgumentException("Non-positive request signals are illegal (requested: " + n + ")");
+            } else {
+                long current, next;
+                do {
+                    current = this.requested.get();
+                    if (current == Long.MAX_VALUE) {
+                        break;
+                    }
+                    next = current + n;
+                    if (next < 0L) {
+                        next = Long.MAX_VALUE;
+                    }
+                } while (!this.requested.compareAndSet(current, next));
+            }
+            schedule();
+        }
+
+
+        public void cancel() {
+            this.cancelled = true;
+            schedule();
+        }
+
+
+        private void schedule() {
+            if (this.wip.getAndIncrement() != 0) {
+                return;
+            }
+            if (executor == null) {
+                run();
+                return;
+            }
+            try {
+                executor.execute(this);
+            } catch (final RejectedExecutionException e) {
+                this.cancelled = true;
+                this.wip.set(0);
+                this.subscriber.onError(e);
+            }
+        }
+
+
+        public void run() {
+            int missed = 1;
+            do {
+                drain();
+                missed = this.wip.addAndGet(-missed);
+            } while (missed != 0);
+        }
+
+
+        private boolean isWaitingForData() {
+            return this.processor instanceof IDataDrivenThrottledTemplateProcessor &&
+                    ((IDataDrivenThrottledTemplateProcessor) this.processor).isWaitingForData();
+        }
+
+
+        private void drain() {
+
+            if (this.done) {
+                return;
+            }
+
+            try {
+
+                while (true) {
+
+                    if (this.cancelled) {
+                        this.done = true;
+                        this.processor = null;
+                        return;
+                    }
+
+                    if (this.requestError != null) {
+                        this.done = true;
+                        this.processor = null;
+                        this.subscriber.onError(this.requestError);
+                        return;
+                    }
+
+                    if (this.processor == null) {
+                        this.processor = templateEngine.processThrottled(templateSpec, context);
+                        if (this.processor instanceof IDataDrivenThrottledTemplateProcessor) {
+                            // Data arriving for data-driven iterations will resume processing
+                            ((IDataDrivenThrottledTemplateProcessor) this.processor).setDataAvailableListener(this.dataAvailableListener);
+                        }
+                    }
+
+                    if (this.processor.isFinished()) {
+                        this.done = true;
+                        this.processor = null;
+                        this.subscriber.onComplete();
+                        return;
+                    }
+
+                    if (this.requested.get() == 0L) {
+                        return;
+                    }
+
+                    final ByteBuffer buffer = bufferPool.acquire();
+                    this.outputStream.buffer = buffer;
+                    try {
+                        this.processor.process(buffer.remaining(), this.outputStream, charset);
+                    } finally {
+                        this.outputStream.buffer = null;
+                    }
+
+                    if (buffer.position() == 0) {
+                        // Nothing was output in this step (e.g. only non-output events were processed)
+                        bufferPool.release(buffer);
+                        if (isWaitingForData()) {
+                            // Processing will be resumed by the data available listener
+                            return;
+                        }
+                        continue;
+                    }
+
+                    buffer.flip();
+                    if (this.requested.get() != Long.MAX_VALUE) {
+                        this.requested.decrementAndGet();
+                    }
+                    this.subscriber.onNext(buffer);
+
+                }
+
+            } catch (final RuntimeException e) {
+                this.done = true;
+                this.processor = null;
+                this.subscriber.onError(e);
+            }
+
+        }
+
+    }
+
+
+
+
+    /*
+     * Output stream writing into the current chunk buffer. The throttled processor makes sure that no more bytes
+     * than the allowed limit (the remaining space in the buffer) are written in each step.
+     */
+    private static final class ByteBufferOutputStream extends OutputStream {
+
+        ByteBuffer buffer = null;
+
+        ByteBufferOutputStream() {
+            super();
+        }
+
+        @Override
+        public void write(final int b) {
+            this.buffer.put((byte) b);
+        }
+
+        @Override
+        public void write(final byte[] bytes, final int off, final int len) {
+            this.buffer.put(bytes, off, len);
+        }
+
+    }
+
+}
@@ -67,6 +67,7 @@
 import org.thymeleaf.standard.processor.StandardMethodTagProcessor;
 import org.thymeleaf.standard.processor.StandardNonRemovableAttributeTagProcessor;
 import org.thymeleaf.standard.processor.StandardObjectTagProcessor;
+import org.thymeleaf.standard.processor.StandardParallelTagProcessor;
 import org.thymeleaf.standard.processor.StandardRefAttributeTagProcessor;
 import org.thymeleaf.standard.processor.StandardRemovableAttributeTagProcessor;
 import org.thymeleaf.standard.processor.StandardRemoveTagProcessor;
@@ -464,6 +465,7 @@ public static Set<IProcessor> createStandardProcessorsSet(final String dialectPr
             processors.add(new StandardNonRemovableAttributeTagProcessor(dialectPrefix, attrName));
         }
         processors.add(new StandardObjectTagProcessor(TemplateMode.HTML, dialectPrefix));
+        processors.add(new StandardParallelTagProcessor(TemplateMode.HTML, dialectPrefix));
         for (final String attrName : StandardRemovableAttributeTagProcessor.ATTR_NAMES) {
             processors.add(new StandardRemovableAttributeTagProcessor(dialectPrefix, attrName));
         }
@@ -554,6 +556,7 @@ public static Set<IProcessor> createStandardProcessorsSet(final String dialectPr
         processors.add(new StandardInlineXMLTagProcessor(dialectPrefix));
         processors.add(new StandardInsertTagProcessor(TemplateMode.XML, dialectPrefix));
         processors.add(new StandardObjectTagProcessor(TemplateMode.XML, dialectPrefix));
+        processors.add(new StandardParallelTagProcessor(TemplateMode.XML, dialectPrefix));
         processors.add(new StandardRemoveTagProcessor(TemplateMode.XML, dialectPrefix));
         processors.add(new StandardReplaceTagProcessor(TemplateMode.XML, dialectPrefix));
         processors.add(new StandardSubstituteByTagProcessor(TemplateMode.XML, dialectPrefix));
@@ -23,6 +23,10 @@
 
 import org.thymeleaf.context.IExpressionContext;
 import org.thymeleaf.exceptions.TemplateProcessingException;
+import org.thymeleaf.metrics.IEngineMetricsListener;
+import org.thymeleaf.metrics.IEngineProfilingListener;
+import org.thymeleaf.metrics.ProfileFrameType;
+import org.thymeleaf.util.EngineConfigurationUtils;
 import org.thymeleaf.util.Validate;
 
 
@@ -135,8 +139,29 @@ public Object execute(
         final IStandardVariableExpressionEvaluator variableExpressionEvaluator =
                 StandardExpressions.getVariableExpressionEvaluator(context.getConfiguration());
 
-        final Object result = execute(context, this, variableExpressionEvaluator, expContext);
-        return LiteralValue.unwrap(result);
+        final IEngineMetricsListener metricsListener = EngineConfigurationUtils.getMetricsListener(context.getConfiguration());
+        if (metricsListener == null) {
+            final Object result = execute(context, this, variableExpressionEvaluator, expContext);
+            return LiteralValue.unwrap(result);
+        }
+
+        final String stringRepresentation = getStringRepresentation();
+        final IEngineProfilingListener profilingListener =
+                (metricsListener instanceof IEngineProfilingListener? (IEngineProfilingListener) metricsListener : null);
+        if (profilingListener != null) {
+            profilingListener.enterExpression(stringRepresentation);
+        }
+
+        final long startNanos = System.nanoTime();
+        try {
+            final Object result = execute(context, this, variableExpressionEvaluator, expContext);
+            return LiteralValue.unwrap(result);
+        } finally {
+            if (profilingListener != null) {
+                profilingListener.exit(ProfileFrameType.EXPRESSION);
+            }
+            metricsListener.expressionEvaluated(stringRepresentation, System.nanoTime() - startNanos);
+        }
 
     }
 
@@ -65,12 +65,24 @@ final class OGNLShortcutExpression {
     private static final String EXPRESSION_CACHE_TYPE_OGNL_SHORTCUT = "ognlsc";
     private static final Object[] NO_PARAMS = new Object[0];
 
+    // Number of times the receiver class observed at an expression level can change before we stop specializing
+    // the access to that level (i.e. the level is considered megamorphic)
+    private static final int MAX_SPECIALIZATIONS_PER_LEVEL = 4;
+
     private final String[] expressionLevels;
 
+    // Inline caches for specialized evaluation: one property access site per expression level, specialized for the
+    // last receiver class observed at that level. Races when updating these arrays are benign (sites are immutable,
+    // and a lost update only means a site will be computed again), so no synchronization is applied.
+    private final PropertyAccessSite[] accessSites;
+    private final int[] specializationCounts;
+
 
     OGNLShortcutExpression(final String[] expressionLevels) {
         super();
         this.expressionLevels = expressionLevels;
+        this.accessSites = new PropertyAccessSite[expressionLevels.length];
+        this.specializationCounts = new int[expressionLevels.length];
     }
 
 
@@ -89,62 +101,195 @@ Object evaluate(
                 throw new OgnlException("source is null for getProperty(null, \"" + propertyName + "\")");
             }
 
-            // For the best integration possible, we will ask OGNL which property accessor it would use for
-            // this target object, and then depending on the result apply our equivalent or just default to
-            // OGNL evaluation if it is a custom property accessor we do not implement.
-            final Class<?> targetClass = OgnlRuntime.getTargetClass(target);
-            final PropertyAccessor ognlPropertyAccessor = OgnlRuntime.getPropertyAccessor(targetClass);
+            target = getProperty(expressionCache, propertyName, context, target);
 
-            // Depending on the returned OGNL property accessor, we will try to apply ours
-            if (target instanceof Class<?>) {
+        }
 
-                // Because of the way OGNL works, the "OgnlRuntime.getTargetClass(...)" of a Class object is the class
-                // object itself, so we might be trying to apply a PropertyAccessor to a Class instead of a real object,
-                // something we avoid by means of this shortcut
-                target = getObjectProperty(expressionCache, propertyName, target);
+        return target;
 
-            } else if (OGNLContextPropertyAccessor.class.equals(ognlPropertyAccessor.getClass())) {
+    }
 
-                target = getContextProperty(propertyName, context, target);
 
-            } else if (ObjectPropertyAccessor.class.equals(ognlPropertyAccessor.getClass())) {
+    /*
+     * Specialized evaluation: for each expression level, the way to access the property (the OGNL property accessor
+     * to be mimicked and, for normal objects, the getter method to be called) is resolved only once for each observed
+     * receiver class and kept in an inline cache, so that evaluations on objects of the same class skip the
+     * property accessor lookups at OgnlRuntime and the method lookups at the expression cache.
+     *
+     * If the receiver class observed at a level changes, the level is specialized again for the new class. If it
+     * changes too many times, that level will stop being specialized and will be evaluated the non-specialized way.
+     * In any case, whenever a property cannot be accessed this way OGNLShortcutExpressionNotApplicableException
+     * will be thrown as usual, so that the evaluator falls back to pure-OGNL evaluation.
+     */
+    Object evaluateSpecialized(
+            final IEngineConfiguration configuration, final Map<String, Object> context, final Object root)
+            throws Exception {
 
-                target = getObjectProperty(expressionCache, propertyName, target);
+        ICache<ExpressionCacheKey, Object> expressionCache = null;
+        boolean expressionCacheResolved = false;
 
-            } else if (MapPropertyAccessor.class.equals(ognlPropertyAccessor.getClass())) {
+        Object target = root;
+        for (int i = 0; i < this.expressionLevels.length; i++) {
 
-                target = getMapProperty(propertyName, (Map<?, ?>) target);
+            final String propertyName = this.expressionLevels[i];
 
-            } else if (ListPropertyAccessor.class.equals(ognlPropertyAccessor.getClass())) {
+            // If target is null, we will mimic what OGNL does in these cases...
+            if (target == null) {
+                throw new OgnlException("source is null for getProperty(null, \"" + propertyName + "\")");
+            }
 
-                target = getListProperty(expressionCache, propertyName, (List<?>) target);
+            final PropertyAccessSite accessSite = this.accessSites[i];
+            if (accessSite != null && accessSite.receiverClass == target.getClass()) {
+                // Inline cache hit
+                target = accessSite.getProperty(propertyName, context, target);
+                continue;
+            }
 
-            } else if (SetPropertyAccessor.class.equals(ognlPropertyAccessor.getClass())) {
+            if (!expressionCacheResolved) {
+                final ICacheManager cacheManager = configuration.getCacheManager();
+                expressionCache = (cacheManager == null? null : cacheManager.getExpressionCache());
+                expressionCacheResolved = true;
+            }
 
-                target = getSetProperty(expressionCache, propertyName, (Set<?>) target);
+            if (target instanceof Class<?> || this.specializationCounts[i] >= MAX_SPECIALIZATIONS_PER_LEVEL) {
+                // Class objects are never specialized (see getProperty(...)), and neither are megamorphic levels
+                target = getProperty(expressionCache, propertyName, context, target);
+                continue;
+            }
 
-            } else if (IteratorPropertyAccessor.class.equals(ognlPropertyAccessor.getClass())) {
+            final PropertyAccessSite newAccessSite = computePropertyAccessSite(expressionCache, propertyName, target);
+            this.accessSites[i] = newAccessSite;
+            this.specializationCounts[i]++;
 
-                target = getIteratorProperty(expressionCache, propertyName, (Iterator<?>) target);
+            target = newAccessSite.getProperty(propertyName, context, target);
 
-            } else if (EnumerationPropertyAccessor.class.equals(ognlPropertyAccessor.getClass())) {
+        }
 
-                target = getEnumerationProperty(expressionCache, propertyName, (Enumeration<?>) target);
+        return target;
 
-            } else if (ArrayPropertyAccessor.class.equals(ognlPropertyAccessor.getClass())) {
+    }
 
-                target = getArrayProperty(expressionCache, propertyName, (Object[]) target);
 
-            } else {
-                // OGNL would like to apply a different property accessor (probably a custom one we do not know). In
-                // these cases, we must signal the problem with this exception and let the expression evaluator
-                // default to normal OGNL evaluation.
-                throw new OGNLShortcutExpressionNotApplicableException();
-            }
+
+
+    private static Object getProperty(
+            final ICache<ExpressionCacheKey,Object> expressionCache, final String propertyName,
+            final Map<String, Object> context, final Object target)
+            throws Exception {
+
+        // For the best integration possible, we will ask OGNL which property accessor it would use for
+        // this target object, and then depending on the result apply our equivalent or just default to
+        // OGNL evaluation if it is a custom property accessor we do not implement.
+        final Class<?> targetClass = OgnlRuntime.getTargetClass(target);
+        final PropertyAccessor ognlPropertyAccessor = OgnlRuntime.getPropertyAccessor(targetClass);
+
+        // Depending on the returned OGNL property accessor, we will try to apply ours
+        if (target instanceof Class<?>) {
+
+            // Because of the way OGNL works, the "OgnlRuntime.getTargetClass(...)" of a Class object is the class
+            // object itself, so we might be trying to apply a PropertyAccessor to a Class instead of a real object,
+            // something we avoid by means of this shortcut
+            return getObjectProperty(expressionCache, propertyName, target);
+
+        } else if (OGNLContextPropertyAccessor.class.equals(ognlPropertyAccessor.getClass())) {
+
+            return getContextProperty(propertyName, context, target);
+
+        } else if (ObjectPropertyAccessor.class.equals(ognlPropertyAccessor.getClass())) {
+
+            return getObjectProperty(expressionCache, propertyName, target);
+
+        } else if (MapPropertyAccessor.class.equals(ognlPropertyAccessor.getClass())) {
+
+            return getMapProperty(propertyName, (Map<?, ?>) target);
+
+        } else if (ListPropertyAccessor.class.equals(ognlPropertyAccessor.getClass())) {
+
+            return getListProperty(expressionCache, propertyName, (List<?>) target);
+
+        } else if (SetPropertyAccessor.class.equals(ognlPropertyAccessor.getClass())) {
+
+            return getSetProperty(expressionCache, propertyName, (Set<?>) target);
+
+        } else if (IteratorPropertyAccessor.class.equals(ognlPropertyAccessor.getClass())) {
+
+            return getIteratorProperty(expressionCache, propertyName, (Iterator<?>) target);
+
+        } else if (EnumerationPropertyAccessor.class.equals(ognlPropertyAccessor.getClass())) {
+
+            return getEnumerationProperty(expressionCache, propertyName, (Enumeration<?>) target);
+
+        } else if (ArrayPropertyAccessor.class.equals(ognlPropertyAccessor.getClass())) {
+
+            return getArrayProperty(expressionCache, propertyName, (Object[]) target);
 
         }
 
-        return target;
+        // OGNL would like to apply a different property accessor (probably a custom one we do not know). In
+        // these cases, we must signal the problem with this exception and let the expression evaluator
+        // default to normal OGNL evaluation.
+        throw new OGNLShortcutExpressionNotApplicableException();
+
+    }
+
+
+
+
+    /*
+     * Computes the access site for a property on a specific receiver class. This mirrors the decisions taken by
+     * getProperty(...) and the get*Property(...) methods, but resolving them once so that they can be reused.
+     */
+    private static PropertyAccessSite computePropertyAccessSite(
+            final ICache<ExpressionCacheKey,Object> expressionCache, final String propertyName, final Object target)
+            throws OgnlException {
+
+        final Class<?> targetClass = OgnlRuntime.getTargetClass(target);
+        final Class<?> ognlPropertyAccessorClass = OgnlRuntime.getPropertyAccessor(targetClass).getClass();
+
+        if (OGNLContextPropertyAccessor.class.equals(ognlPropertyAccessorClass)) {
+            return new PropertyAccessSite(targetClass, PropertyAccessSite.CONTEXT, null);
+        }
+        if (ObjectPropertyAccessor.class.equals(ognlPropertyAccessorClass)) {
+            return new PropertyAccessSite(targetClass, PropertyAccessSite.METHOD, findReadMethod(expressionCache, propertyName, targetClass));
+        }
+        if (MapPropertyAccessor.class.equals(ognlPropertyAccessorClass)) {
+            return new PropertyAccessSite(targetClass, PropertyAccessSite.MAP, null);
+        }
+        if (ListPropertyAccessor.class.equals(ognlPropertyAccessorClass)) {
+            if (propertyName.equals("size") || propertyName.equals("iterator") ||
+                    propertyName.equals("isEmpty") || propertyName.equals("empty")) {
+                return new PropertyAccessSite(targetClass, PropertyAccessSite.LIST, null);
+            }
+            return new PropertyAccessSite(targetClass, PropertyAccessSite.METHOD, findReadMethod(expressionCache, propertyName, targetClass));
+        }
+        if (SetPropertyAccessor.class.equals(ognlPropertyAccessorClass)) {
+            if (propertyName.equals("size") || propertyName.equals("iterator") || propertyName.equals("isEmpty")) {
+                return new PropertyAccessSite(targetClass, PropertyAccessSite.SET, null);
+            }
+            return new PropertyAccessSite(targetClass, PropertyAccessSite.METHOD, findReadMethod(expressionCache, propertyName, targetClass));
+        }
+        if (IteratorPropertyAccessor.class.equals(ognlPropertyAccessorClass)) {
+            if (propertyName.equals("next") || propertyName.equals("hasNext")) {
+                return new PropertyAccessSite(targetClass, PropertyAccessSite.ITERATOR, null);
+            }
+            return new PropertyAccessSite(targetClass, PropertyAccessSite.METHOD, findReadMethod(expressionCache, propertyName, targetClass));
+        }
+        if (EnumerationPropertyAccessor.class.equals(ognlPropertyAccessorClass)) {
+            if (propertyName.equals("next") || propertyName.equals("nextElement") ||
+                    propertyName.equals("hasNext") || propertyName.equals("hasMoreElements")) {
+                return new PropertyAccessSite(targetClass, PropertyAccessSite.ENUMERATION, null);
+            }
+            return new PropertyAccessSite(targetClass, PropertyAccessSite.METHOD, findReadMethod(expressionCache, propertyName, targetClass));
+        }
+        if (ArrayPropertyAccessor.class.equals(ognlPropertyAccessorClass)) {
+            if (propertyName.equals("length")) {
+                return new PropertyAccessSite(targetClass, PropertyAccessSite.ARRAY, null);
+            }
+            return new PropertyAccessSite(targetClass, PropertyAccessSite.METHOD, findReadMethod(expressionCache, propertyName, targetClass));
+        }
+
+        // Custom property accessor: let OGNL do its job
+        throw new OGNLShortcutExpressionNotApplicableException();
 
     }
 
@@ -211,7 +356,16 @@ private static Object checkExecInfo(final String propertyName, final Map<String,
     private static Object getObjectProperty(
             final ICache<ExpressionCacheKey,Object> expressionCache, final String propertyName, final Object target) {
 
-        final Class<?> currClass = OgnlRuntime.getTargetClass(target);
+        final Method readMethod =
+                findReadMethod(expressionCache, propertyName, OgnlRuntime.getTargetClass(target));
+        return invokeReadMethod(readMethod, target);
+
+    }
+
+
+    private static Method findReadMethod(
+            final ICache<ExpressionCacheKey,Object> expressionCache, final String propertyName, final Class<?> currClass) {
+
         final ExpressionCacheKey cacheKey = computeMethodCacheKey(currClass, propertyName);
 
         Method readMethod = null;
@@ -250,6 +404,13 @@ private static Object getObjectProperty(
             throw new OGNLShortcutExpressionNotApplicableException();
         }
 
+        return readMethod;
+
+    }
+
+
+    private static Object invokeReadMethod(final Method readMethod, final Object target) {
+
         try {
             return readMethod.invoke(target, NO_PARAMS);
         } catch (final IllegalAccessException e) {
@@ -489,6 +650,62 @@ private static ExpressionCacheKey computeMethodCacheKey(final Class<?> targetCla
 
 
 
+    /*
+     * Inline cache entry for an expression level, specialized for a receiver class. Instances are immutable.
+     */
+    private static final class PropertyAccessSite {
+
+        static final int CONTEXT = 0;
+        static final int METHOD = 1;
+        static final int MAP = 2;
+        static final int LIST = 3;
+        static final int SET = 4;
+        static final int ITERATOR = 5;
+        static final int ENUMERATION = 6;
+        static final int ARRAY = 7;
+
+        final Class<?> receiverClass;
+        final int kind;
+        final Method readMethod; // only for METHOD
+
+        PropertyAccessSite(final Class<?> receiverClass, final int kind, final Method readMethod) {
+            super();
+            this.receiverClass = receiverClass;
+            this.kind = kind;
+            this.readMethod = readMethod;
+        }
+
+        Object getProperty(final String propertyName, final Map<String, Object> context, final Object target)
+                throws OgnlException {
+            switch (this.kind) {
+                case METHOD:
+                    return invokeReadMethod(this.readMethod, target);
+                case CONTEXT:
+                    return getContextProperty(propertyName, context, target);
+                case MAP:
+                    return getMapProperty(propertyName, (Map<?, ?>) target);
+                // For the rest of kinds, the access site is only created for the property names that are
+                // specifically handled by each accessor, so the expression cache will never be needed
+                case LIST:
+                    return getListProperty(null, propertyName, (List<?>) target);
+                case SET:
+                    return getSetProperty(null, propertyName, (Set<?>) target);
+                case ITERATOR:
+                    return getIteratorProperty(null, propertyName, (Iterator<?>) target);
+                case ENUMERATION:
+                    return getEnumerationProperty(null, propertyName, (Enumeration<?>) target);
+                case ARRAY:
+                    return getArrayProperty(null, propertyName, (Object[]) target);
+                default:
+                    throw new OGNLShortcutExpressionNotApplicableException();
+            }
+        }
+
+    }
+
+
+
+
     /*
      * This exception signals that the OGNLShortcutExpression mechanism is not applicable for the current
      * expression, and therefore the OGNLVariableExpressionEvaluator should default to standard pure-OGNL
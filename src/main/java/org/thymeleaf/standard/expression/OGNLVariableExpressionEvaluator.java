@@ -67,15 +67,41 @@
 
 
     private final boolean applyOGNLShortcuts;
+    private final boolean specializeOGNLShortcuts;
 
 
 
 
     public OGNLVariableExpressionEvaluator(final boolean applyOGNLShortcuts) {
+        this(applyOGNLShortcuts, false);
+    }
+
+
+    /**
+     * <p>
+     *   Creates a new OGNL variable expression evaluator, optionally specializing the evaluation of
+     *   <em>shortcut</em> expressions (simple property paths like <tt>${order.customer.address.city}</tt>).
+     * </p>
+     * <p>
+     *   When specialization is enabled, each level of a shortcut expression keeps an inline cache of the way its
+     *   property is accessed (the getter method to be called, or the kind of collection access to be performed)
+     *   for the last receiver class observed. Evaluations on objects of the same classes will then directly call
+     *   the cached getter methods, avoiding OGNL's property accessor resolution and any method lookups. Levels at
+     *   which the receiver class keeps changing will stop being specialized, and expressions that cannot be
+     *   evaluated this way (e.g. because of custom OGNL property accessors) will still fall back to OGNL.
+     * </p>
+     *
+     * @param applyOGNLShortcuts whether shortcut evaluation should be applied to simple property paths.
+     * @param specializeOGNLShortcuts whether shortcut evaluation should be specialized per receiver class
+     *                                (only applies if <tt>applyOGNLShortcuts</tt> is <tt>true</tt>).
+     * @since 3.0.3
+     */
+    public OGNLVariableExpressionEvaluator(final boolean applyOGNLShortcuts, final boolean specializeOGNLShortcuts) {
 
         super();
 
         this.applyOGNLShortcuts = applyOGNLShortcuts;
+        this.specializeOGNLShortcuts = specializeOGNLShortcuts;
 
         /*
          * INITIALIZE AND REGISTER THE PROPERTY ACCESSOR
@@ -92,7 +118,7 @@ public final Object evaluate(
             final IExpressionContext context,
             final IStandardVariableExpression expression,
             final StandardExpressionExecutionContext expContext) {
-        return evaluate(context, expression, expContext, this.applyOGNLShortcuts);
+        return evaluate(context, expression, expContext, this.applyOGNLShortcuts, this.specializeOGNLShortcuts);
     }
 
 
@@ -102,7 +128,8 @@ private static Object evaluate(
         final IExpressionContext context,
         final IStandardVariableExpression expression,
         final StandardExpressionExecutionContext expContext,
-        final boolean applyOGNLShortcuts) {
+        final boolean applyOGNLShortcuts,
+        final boolean specializeOGNLShortcuts) {
        
         try {
 
@@ -167,14 +194,17 @@ private static Object evaluate(
             // Execute the expression!
             final Object result;
             try {
-                result = executeExpression(configuration, parsedExpression.expression, contextVariablesMap, evaluationRoot);
+                result =
+                        executeExpression(
+                                configuration, parsedExpression.expression, contextVariablesMap, evaluationRoot,
+                                specializeOGNLShortcuts);
             } catch (final OGNLShortcutExpression.OGNLShortcutExpressionNotApplicableException notApplicable) {
                 // We tried to apply shortcuts, but it is not possible for this expression even if it parsed OK,
                 // so we need to empty the cache and try again disabling shortcuts. Once processed for the first time,
                 // an OGNL (non-shortcut) parsed expression will already be cached and this exception will not be
                 // thrown again
                 invalidateComputedOGNLExpression(configuration, expression, exp);
-                return evaluate(context, expression, expContext, false);
+                return evaluate(context, expression, expContext, false, false);
             }
 
             if (!expContext.getPerformTypeConversion()) {
@@ -303,10 +333,13 @@ private static ComputedOGNLExpression parseExpression(final String expression, f
 
     private static Object executeExpression(
             final IEngineConfiguration configuration, final Object parsedExpression,
-            final Map<String,Object> context, final Object root)
+            final Map<String,Object> context, final Object root, final boolean specializeOGNLShortcuts)
             throws Exception {
 
         if (parsedExpression instanceof OGNLShortcutExpression) {
+            if (specializeOGNLShortcuts) {
+                return ((OGNLShortcutExpression) parsedExpression).evaluateSpecialized(configuration, context, root);
+            }
             return ((OGNLShortcutExpression) parsedExpression).evaluate(configuration, context, root);
         }
 
@@ -21,8 +21,10 @@
 
 import java.io.Writer;
 import java.util.Map;
+import java.util.concurrent.Executor;
 
 import org.thymeleaf.IEngineConfiguration;
+import org.thymeleaf.context.EngineContext;
 import org.thymeleaf.context.IEngineContext;
 import org.thymeleaf.context.ITemplateContext;
 import org.thymeleaf.engine.AttributeName;
@@ -47,6 +49,8 @@
 import org.thymeleaf.standard.expression.StandardExpressionExecutionContext;
 import org.thymeleaf.standard.expression.StandardExpressions;
 import org.thymeleaf.templatemode.TemplateMode;
+import org.thymeleaf.util.ConcurrentProcessingCharSequence;
+import org.thymeleaf.util.EngineConfigurationUtils;
 import org.thymeleaf.util.EscapedAttributeUtils;
 import org.thymeleaf.util.FastStringWriter;
 import org.thymeleaf.util.StringUtils;
@@ -62,6 +66,7 @@ public abstract class AbstractStandardFragmentInsertionTagProcessor extends Abst
 
 
     private static final String FRAGMENT_ATTR_NAME = "fragment";
+    private static final String PARALLEL_ATTR_NAME = StandardParallelTagProcessor.ATTR_NAME;
 
 
     private final boolean replaceHost;
@@ -242,6 +247,41 @@ protected void doProcess(
 
         }
 
+        /*
+         * CHECK WHETHER THE FRAGMENT HAS BEEN MARKED FOR PARALLEL RENDERING (and parallel rendering is enabled). If
+         * so, the fragment will be rendered in a separate thread using a snapshot of the current context, while we
+         * insert its (future) result as NON-PROCESSABLE text. Output will only wait for it when needed.
+         *
+         * Only engine contexts can be snapshotted: web contexts keep their variables in the request, which is also
+         * used by the thread processing the rest of the template. In such case the fragment is simply inserted.
+         */
+        if (!this.insertOnlyContents && tag.hasAttribute(attributeName.getPrefix(), PARALLEL_ATTR_NAME)) {
+
+            final Executor executor = EngineConfigurationUtils.getParallelFragmentExecutor(configuration);
+            if (executor != null && context instanceof EngineContext) {
+
+                final EngineContext contextSnapshot =
+                        ((EngineContext) context).createSnapshot(fragmentModel.getTemplateData());
+                if (fragmentParameters != null && fragmentParameters.size() > 0) {
+                    contextSnapshot.setVariables(fragmentParameters);
+                }
+
+                final CharSequence fragmentResult =
+                        new ConcurrentProcessingCharSequence(contextSnapshot, fragmentModel, executor);
+
+                if (this.replaceHost) {
+                    structureHandler.replaceWith(fragmentResult, false);
+                } else {
+                    structureHandler.setBody(fragmentResult, false);
+                }
+
+                return;
+
+            }
+
+        }
+
+
         /*
          * APPLY THE FRAGMENT'S TEMPLATE RESOLUTION so that all code inside the fragment is executed with its own
          * template resolution info (working as if it were a local variable)
@@ -0,0 +1,68 @@
+/*
+ * =============================================================================
+ *
+ *   Copyright (c) 2011-2016, The THYMELEAF team (http://www.thymeleaf.org)
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ * =============================================================================
+ */
+package org.thymeleaf.standard.processor;
+
+import org.thymeleaf.context.ITemplateContext;
+import org.thymeleaf.engine.AttributeName;
+import org.thymeleaf.model.IProcessableElementTag;
+import org.thymeleaf.processor.element.AbstractElementTagProcessor;
+import org.thymeleaf.processor.element.IElementTagStructureHandler;
+import org.thymeleaf.templatemode.TemplateMode;
+
+/**
+ * <p>
+ *   Marker processor for the <tt>th:parallel</tt> attribute, which marks the fragments inserted by
+ *   <tt>th:insert</tt> or <tt>th:replace</tt> in the same element to be rendered in parallel (see
+ *   {@link org.thymeleaf.TemplateEngine#setParallelFragmentExecutor(java.util.concurrent.Executor)}).
+ * </p>
+ *
+ * @author Daniel Fern&aacute;ndez
+ *
+ * @since 3.0.3
+ *
+ */
+public final class StandardParallelTagProcessor extends AbstractElementTagProcessor {
+
+    public static final int PRECEDENCE = 1500;
+    public static final String ATTR_NAME = "parallel";
+
+
+
+
+
+    public StandardParallelTagProcessor(final TemplateMode templateMode, final String dialectPrefix) {
+        super(templateMode, dialectPrefix, null, false, ATTR_NAME, true, PRECEDENCE);
+    }
+
+
+    @Override
+    protected void doProcess(
+            final ITemplateContext context,
+            final IProcessableElementTag tag,
+            final IElementTagStructureHandler structureHandler) {
+
+        // Nothing to do, this processor is just a marker (read by fragment insertion processors). Simply remove the attribute
+        final AttributeName attributeName = getMatchingAttributeName().getMatchingAttributeName();
+        structureHandler.removeAttribute(attributeName);
+
+    }
+
+
+}
@@ -39,6 +39,7 @@
 import org.thymeleaf.templatemode.TemplateMode;
 import org.thymeleaf.templateparser.ITemplateParser;
 import org.thymeleaf.templateparser.markup.decoupled.DecoupledTemplateLogic;
+import org.thymeleaf.templateparser.markup.decoupled.DecoupledTemplateLogicCache;
 import org.thymeleaf.templateparser.markup.decoupled.DecoupledTemplateLogicMarkupHandler;
 import org.thymeleaf.templateparser.markup.decoupled.DecoupledTemplateLogicUtils;
 import org.thymeleaf.templateparser.reader.ParserLevelCommentMarkupReader;
@@ -57,14 +58,27 @@ public abstract class AbstractMarkupTemplateParser implements ITemplateParser {
 
     private final IMarkupParser parser;
     private final boolean html;
+    private final DecoupledTemplateLogicCache decoupledTemplateLogicCache;
 
 
 
     protected AbstractMarkupTemplateParser(final ParseConfiguration parseConfiguration, final int bufferPoolSize, final int bufferSize) {
+        this(parseConfiguration, bufferPoolSize, bufferSize, new DecoupledTemplateLogicCache());
+    }
+
+
+    /**
+     * @since 3.0.3
+     */
+    protected AbstractMarkupTemplateParser(
+            final ParseConfiguration parseConfiguration, final int bufferPoolSize, final int bufferSize,
+            final DecoupledTemplateLogicCache decoupledTemplateLogicCache) {
         super();
         Validate.notNull(parseConfiguration, "Parse configuration cannot be null");
+        // Decoupled Template Logic Cache CAN be null (= no caching)
         this.parser = new MarkupParser(parseConfiguration, bufferPoolSize, bufferSize);
         this.html = parseConfiguration.getMode().equals(ParseConfiguration.ParsingMode.HTML);
+        this.decoupledTemplateLogicCache = decoupledTemplateLogicCache;
     }
 
 
@@ -152,7 +166,8 @@ private void parse(
             final DecoupledTemplateLogic decoupledTemplateLogic =
                     (useDecoupledLogic && resource != null ?
                             DecoupledTemplateLogicUtils.computeDecoupledTemplateLogic(
-                                    configuration, ownerTemplate, template, templateSelectors, resource, templateMode, this.parser) :
+                                    configuration, ownerTemplate, template, templateSelectors, resource, templateMode, this.parser,
+                                    this.decoupledTemplateLogicCache) :
                             null);
 
 
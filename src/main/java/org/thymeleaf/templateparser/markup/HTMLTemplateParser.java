@@ -20,6 +20,7 @@
 package org.thymeleaf.templateparser.markup;
 
 import org.attoparser.config.ParseConfiguration;
+import org.thymeleaf.templateparser.markup.decoupled.DecoupledTemplateLogicCache;
 
 /**
  *
@@ -61,6 +62,15 @@ public HTMLTemplateParser(final int bufferPoolSize, final int bufferSize) {
     }
 
 
+    /**
+     * @since 3.0.3
+     */
+    public HTMLTemplateParser(
+            final int bufferPoolSize, final int bufferSize, final DecoupledTemplateLogicCache decoupledTemplateLogicCache) {
+        super(MARKUP_PARSING_CONFIGURATION, bufferPoolSize, bufferSize, decoupledTemplateLogicCache);
+    }
+
+
     
     
 }
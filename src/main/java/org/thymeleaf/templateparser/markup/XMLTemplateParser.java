@@ -20,6 +20,7 @@
 package org.thymeleaf.templateparser.markup;
 
 import org.attoparser.config.ParseConfiguration;
+import org.thymeleaf.templateparser.markup.decoupled.DecoupledTemplateLogicCache;
 
 /**
  *
@@ -60,5 +61,14 @@ public XMLTemplateParser(final int bufferPoolSize, final int bufferSize) {
         super(MARKUP_PARSING_CONFIGURATION, bufferPoolSize, bufferSize);
     }
 
+
+    /**
+     * @since 3.0.3
+     */
+    public XMLTemplateParser(
+            final int bufferPoolSize, final int bufferSize, final DecoupledTemplateLogicCache decoupledTemplateLogicCache) {
+        super(MARKUP_PARSING_CONFIGURATION, bufferPoolSize, bufferSize, decoupledTemplateLogicCache);
+    }
+
     
 }
@@ -0,0 +1,295 @@
+/*
+ * =============================================================================
+ *
+ *   Copyright (c) 2011-2016, The THYMELEAF team (http://www.thymeleaf.org)
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ * =============================================================================
+ */
+package org.thymeleaf.templateparser.markup.decoupled;
+
+import org.thymeleaf.cache.StandardCache;
+import org.thymeleaf.templatemode.TemplateMode;
+import org.thymeleaf.templateresource.ITemplateResource;
+import org.thymeleaf.templateresource.ITemplateResourceMetadata;
+import org.thymeleaf.util.Validate;
+
+/**
+ * <p>
+ *   Cache for the {@link DecoupledTemplateLogic} computed from decoupled template logic resources, so that
+ *   these resources (normally <tt>.th.xml</tt> files) are not located and parsed again every time their
+ *   corresponding template (or a fragment of it) is parsed.
+ * </p>
+ * <p>
+ *   Entries are keyed by the decoupled logic resource and the template mode, and <em>negative</em> results
+ *   (i.e. no decoupled logic resource exists for a template) are cached too, so that parsing a template without
+ *   decoupled logic does not need to check for the existence of this resource every time.
+ * </p>
+ * <p>
+ *   The validity of entries is tied to the decoupled logic resource: once the <em>check interval</em> has passed
+ *   since an entry was computed (or last checked), it is only used again if the resource has not changed, as
+ *   reported by its {@link ITemplateResourceMetadata} (last modification date and length). Entries for resources
+ *   not providing metadata are computed again after the check interval. This means the file system will be
+ *   probed at most once per check interval for each decoupled logic resource.
+ * </p>
+ * <p>
+ *   Objects of this class are thread-safe.
+ * </p>
+ *
+ * @author Daniel Fern&aacute;ndez
+ * @since 3.0.3
+ *
+ */
+public final class DecoupledTemplateLogicCache {
+
+    /**
+     * Default maximum size of the cache: 500
+     */
+    public static final int DEFAULT_MAX_SIZE = 500;
+
+    /**
+     * Default check interval: 2 seconds
+     */
+    public static final long DEFAULT_CHECK_INTERVAL_MS = 2000L;
+
+
+    private final StandardCache<CacheKey,CacheEntry> cache;
+    private final long checkIntervalMs;
+
+
+
+    /**
+     * <p>
+     *   Creates a new decoupled template logic cache with the default maximum size and check interval.
+     * </p>
+     */
+    public DecoupledTemplateLogicCache() {
+        this(DEFAULT_MAX_SIZE, DEFAULT_CHECK_INTERVAL_MS);
+    }
+
+
+    /**
+     * <p>
+     *   Creates a new decoupled template logic cache.
+     * </p>
+     *
+     * @param maxSize the maximum number of entries in the cache (-1 for no limit).
+     * @param checkIntervalMs the time (in milliseconds) during which entries are used without checking
+     *                        their decoupled logic resources for changes.
+     */
+    public DecoupledTemplateLogicCache(final int maxSize, final long checkIntervalMs) {
+        super();
+        Validate.isTrue(checkIntervalMs >= 0L, "Check interval cannot be negative");
+        this.cache = new StandardCache<CacheKey,CacheEntry>("DECOUPLED_TEMPLATE_LOGIC_CACHE", false, 16, maxSize, null);
+        this.checkIntervalMs = checkIntervalMs;
+    }
+
+
+
+
+    /**
+     * <p>
+     *   Returns the cached result of computing the decoupled template logic for the specified resource, if
+     *   it is still valid.
+     * </p>
+     *
+     * @param decoupledResource the decoupled logic resource.
+     * @param templateMode the template mode.
+     * @return the cached result, or <tt>null</tt> if there is no (valid) cached result. Note a result might
+     *         itself be <em>negative</em> (see {@link CachedDecoupledTemplateLogic#getDecoupledTemplateLogic()}).
+     */
+    public CachedDecoupledTemplateLogic get(final ITemplateResource decoupledResource, final TemplateMode templateMode) {
+
+        final CacheKey key = new CacheKey(decoupledResource, templateMode);
+        final CacheEntry entry = this.cache.get(key);
+        if (entry == null) {
+            return null;
+        }
+
+        final long now = System.currentTimeMillis();
+        if (now - entry.checkTimeInMillis <= this.checkIntervalMs) {
+            return entry.result;
+        }
+
+        if (entry.hasMetadata && decoupledResource instanceof ITemplateResourceMetadata) {
+            final ITemplateResourceMetadata metadata = (ITemplateResourceMetadata) decoupledResource;
+            if (metadata.lastModified() == entry.lastModified && metadata.contentLength() == entry.contentLength) {
+                entry.checkTimeInMillis = now;
+                return entry.result;
+            }
+        }
+
+        this.cache.clearKey(key);
+        return null;
+
+    }
+
+
+    /**
+     * <p>
+     *   Puts the result of computing the decoupled template logic for a resource into the cache.
+     * </p>
+     * <p>
+     *   In order to detect changes happening while the resource is being read, this method should be
+     *   called with metadata obtained before computing the result (see {@link #snapshotMetadata(ITemplateResource)}).
+     * </p>
+     *
+     * @param decoupledResource the decoupled logic resource.
+     * @param templateMode the template mode.
+     * @param decoupledTemplateLogic the computed decoupled template logic, or <tt>null</tt> if the resource
+     *                               does not exist (negative result).
+     * @param metadataSnapshot the resource metadata, as returned by {@link #snapshotMetadata(ITemplateResource)}.
+     */
+    public void put(
+            final ITemplateResource decoupledResource, final TemplateMode templateMode,
+            final DecoupledTemplateLogic decoupledTemplateLogic, final long[] metadataSnapshot) {
+        final CacheKey key = new CacheKey(decoupledResource, templateMode);
+        // StandardCache does not replace existing entries, so any stale entry is removed first
+        this.cache.clearKey(key);
+        this.cache.put(key, new CacheEntry(new CachedDecoupledTemplateLogic(decoupledTemplateLogic), metadataSnapshot));
+    }
+
+
+    /**
+     * <p>
+     *   Obtains the current metadata (last modification date and length) of a decoupled logic resource,
+     *   or <tt>null</tt> if the resource does not provide metadata.
+     * </p>
+     *
+     * @param decoupledResource the decoupled logic resource.
+     * @return the metadata, or <tt>null</tt>.
+     */
+    public static long[] snapshotMetadata(final ITemplateResource decoupledResource) {
+        if (decoupledResource instanceof ITemplateResourceMetadata) {
+            final ITemplateResourceMetadata metadata = (ITemplateResourceMetadata) decoupledResource;
+            return new long[] { metadata.lastModified(), metadata.contentLength() };
+        }
+        return null;
+    }
+
+
+    /**
+     * <p>
+     *   Removes all entries from the cache.
+     * </p>
+     */
+    public void clear() {
+        this.cache.clear();
+    }
+
+
+
+
+    /**
+     * <p>
+     *   Result of computing the decoupled template logic for a resource, as stored in the cache.
+     * </p>
+     *
+     * @since 3.0.3
+     */
+    public static final class CachedDecoupledTemplateLogic {
+
+        private final DecoupledTemplateLogic decoupledTemplateLogic;
+
+        CachedDecoupledTemplateLogic(final DecoupledTemplateLogic decoupledTemplateLogic) {
+            super();
+            this.decoupledTemplateLogic = decoupledTemplateLogic;
+        }
+
+        /**
+         * <p>
+         *   Returns the decoupled template logic.
+         * </p>
+         *
+         * @return the decoupled template logic, or <tt>null</tt> if no decoupled logic resource existed.
+         */
+        public DecoupledTemplateLogic getDecoupledTemplateLogic() {
+            return this.decoupledTemplateLogic;
+        }
+
+    }
+
+
+
+
+    static final class CacheEntry {
+
+        final CachedDecoupledTemplateLogic result;
+        final boolean hasMetadata;
+        final long lastModified;
+        final long contentLength;
+        volatile long checkTimeInMillis;
+
+        CacheEntry(final CachedDecoupledTemplateLogic result, final long[] metadataSnapshot) {
+            super();
+            this.result = result;
+            this.hasMetadata = (metadataSnapshot != null);
+            this.lastModified = (metadataSnapshot != null? metadataSnapshot[0] : -1L);
+            this.contentLength = (metadataSnapshot != null? metadataSnapshot[1] : -1L);
+            this.checkTimeInMillis = System.currentTimeMillis();
+        }
+
+    }
+
+
+
+
+    static final class CacheKey {
+
+        private final Class<?> resourceClass;
+        private final String resourceDescription;
+        private final TemplateMode templateMode;
+        private final int h;
+
+        CacheKey(final ITemplateResource resource, final TemplateMode templateMode) {
+            super();
+            this.resourceClass = resource.getClass();
+            this.resourceDescription = resource.getDescription();
+            this.templateMode = templateMode;
+            this.h = computeHashCode();
+        }
+
+        private int computeHashCode() {
+            int result = this.resourceClass.hashCode();
+            result = 31 * result + (this.resourceDescription != null? this.resourceDescription.hashCode() : 0);
+            result = 31 * result + this.templateMode.hashCode();
+            return result;
+        }
+
+        @Override
+        public boolean equals(final Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof CacheKey)) {
+                return false;
+            }
+            final CacheKey that = (CacheKey) o;
+            if (this.h != that.h) {
+                return false;
+            }
+            return this.resourceClass == that.resourceClass &&
+                    this.templateMode == that.templateMode &&
+                    (this.resourceDescription == null?
+                            that.resourceDescription == null : this.resourceDescription.equals(that.resourceDescription));
+        }
+
+        @Override
+        public int hashCode() {
+            return this.h;
+        }
+
+    }
+
+}
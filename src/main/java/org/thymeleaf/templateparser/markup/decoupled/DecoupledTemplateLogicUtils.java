@@ -59,6 +59,37 @@ public static DecoupledTemplateLogic computeDecoupledTemplateLogic(
             final String ownerTemplate, final String template, final Set<String> templateSelectors,
             final ITemplateResource resource, final TemplateMode templateMode,
             final IMarkupParser parser) throws IOException, ParseException {
+        return computeDecoupledTemplateLogic(
+                configuration, ownerTemplate, template, templateSelectors, resource, templateMode, parser, null);
+    }
+
+
+    /**
+     * <p>
+     *   Computes the decoupled template logic for a template, using (and populating) the specified
+     *   {@link DecoupledTemplateLogicCache} so that decoupled logic resources are not checked for existence
+     *   and parsed again on every parse of the same template. Both positive and negative (no decoupled logic
+     *   resource exists) results are cached.
+     * </p>
+     *
+     * @param configuration the engine configuration.
+     * @param ownerTemplate the owner template, if the template is being parsed as a fragment.
+     * @param template the template.
+     * @param templateSelectors the selectors to be applied, if any.
+     * @param resource the template resource.
+     * @param templateMode the template mode.
+     * @param parser the parser to be used for the decoupled logic resource.
+     * @param cache the cache to be used (might be null, in which case no caching will be performed).
+     * @return the decoupled template logic, or null if there is none.
+     * @throws IOException if the decoupled logic resource could not be read.
+     * @throws ParseException if the decoupled logic resource could not be parsed.
+     * @since 3.0.3
+     */
+    public static DecoupledTemplateLogic computeDecoupledTemplateLogic(
+            final IEngineConfiguration configuration,
+            final String ownerTemplate, final String template, final Set<String> templateSelectors,
+            final ITemplateResource resource, final TemplateMode templateMode,
+            final IMarkupParser parser, final DecoupledTemplateLogicCache cache) throws IOException, ParseException {
 
         Validate.notNull(configuration, "Engine Configuration cannot be null");
         Validate.notNull(template, "Template cannot be null");
@@ -71,6 +102,20 @@ public static DecoupledTemplateLogic computeDecoupledTemplateLogic(
                 decoupledTemplateLogicResolver.resolveDecoupledTemplateLogic(
                         configuration, ownerTemplate, template, templateSelectors, resource, templateMode);
 
+        long[] metadataSnapshot = null;
+        if (cache != null) {
+
+            final DecoupledTemplateLogicCache.CachedDecoupledTemplateLogic cached =
+                    cache.get(decoupledResource, templateMode);
+            if (cached != null) {
+                return cached.getDecoupledTemplateLogic();
+            }
+
+            // Metadata is obtained before reading, so that changes happening meanwhile are detected on next check
+            metadataSnapshot = DecoupledTemplateLogicCache.snapshotMetadata(decoupledResource);
+
+        }
+
         if (!decoupledResource.exists()) {
 
             if (logger.isTraceEnabled()) {
@@ -80,6 +125,10 @@ public static DecoupledTemplateLogic computeDecoupledTemplateLogic(
                         new Object[] {TemplateEngine.threadIndex(), LoggingUtils.loggifyTemplateName(template), decoupledResource.getDescription()});
             }
 
+            if (cache != null) {
+                cache.put(decoupledResource, templateMode, null, metadataSnapshot);
+            }
+
             return null;
         }
 
@@ -101,7 +150,13 @@ public static DecoupledTemplateLogic computeDecoupledTemplateLogic(
 
         parser.parse(decoupledResource.reader(), decoupledMarkupHandler);
 
-        return decoupledMarkupHandler.getDecoupledTemplateLogic();
+        final DecoupledTemplateLogic decoupledTemplateLogic = decoupledMarkupHandler.getDecoupledTemplateLogic();
+
+        if (cache != null) {
+            cache.put(decoupledResource, templateMode, decoupledTemplateLogic, metadataSnapshot);
+        }
+
+        return decoupledTemplateLogic;
 
     }
 
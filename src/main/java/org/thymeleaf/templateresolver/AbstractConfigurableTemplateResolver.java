@@ -28,6 +28,7 @@
 import org.thymeleaf.cache.AlwaysValidCacheEntryValidity;
 import org.thymeleaf.cache.ICacheEntryValidity;
 import org.thymeleaf.cache.NonCacheableCacheEntryValidity;
+import org.thymeleaf.cache.StaleWhileRevalidateCacheEntryValidity;
 import org.thymeleaf.cache.TTLCacheEntryValidity;
 import org.thymeleaf.templatemode.TemplateMode;
 import org.thymeleaf.templateresource.ITemplateResource;
@@ -82,6 +83,16 @@ public abstract class AbstractConfigurableTemplateResolver extends AbstractTempl
      */
     public static final Long DEFAULT_CACHE_TTL_MS = null;
 
+    /**
+     * <p>
+     *   Default value for the <i>stale-while-revalidate</i> flag: false. This means TTL-expired
+     *   templates will be removed from cache and resolved and parsed again at the request that finds them expired.
+     * </p>
+     *
+     * @since 3.0.3
+     */
+    public static final boolean DEFAULT_CACHE_STALE_WHILE_REVALIDATE = false;
+
     
     private String prefix = null;
     private String suffix = null;
@@ -89,6 +100,7 @@ public abstract class AbstractConfigurableTemplateResolver extends AbstractTempl
     private TemplateMode templateMode = DEFAULT_TEMPLATE_MODE;
     private boolean cacheable = DEFAULT_CACHEABLE;
     private Long cacheTTLMs = DEFAULT_CACHE_TTL_MS;
+    private boolean cacheStaleWhileRevalidate = DEFAULT_CACHE_STALE_WHILE_REVALIDATE;
 
     private final HashMap<String,String> templateAliases = new HashMap<String, String>(8);
     
@@ -319,6 +331,42 @@ public final void setCacheTTLMs(final Long cacheTTLMs) {
         this.cacheTTLMs = cacheTTLMs;
     }
 
+
+    /**
+     * <p>
+     *   Returns whether templates whose cache TTL has expired will keep being served from cache
+     *   while they are revalidated in the background.
+     * </p>
+     *
+     * @return whether stale-while-revalidate is enabled.
+     * @since 3.0.3
+     */
+    public final boolean isCacheStaleWhileRevalidate() {
+        return this.cacheStaleWhileRevalidate;
+    }
+
+
+    /**
+     * <p>
+     *   Sets whether templates whose cache TTL has expired will keep being served from cache while they
+     *   are revalidated in the background (see {@link StaleWhileRevalidateCacheEntryValidity}), instead of
+     *   being removed from cache and resolved and parsed again synchronously by the request finding them expired.
+     * </p>
+     * <p>
+     *   Revalidation skips re-parsing templates whose resources have not changed. This flag has no effect
+     *   if no cache TTL is set (see {@link #setCacheTTLMs(Long)}).
+     * </p>
+     * <p>
+     *   Default value is {@link #DEFAULT_CACHE_STALE_WHILE_REVALIDATE}.
+     * </p>
+     *
+     * @param cacheStaleWhileRevalidate whether stale-while-revalidate should be enabled.
+     * @since 3.0.3
+     */
+    public final void setCacheStaleWhileRevalidate(final boolean cacheStaleWhileRevalidate) {
+        this.cacheStaleWhileRevalidate = cacheStaleWhileRevalidate;
+    }
+
     
     /**
      * <p>
@@ -1193,7 +1241,7 @@ protected ICacheEntryValidity computeValidity(final IEngineConfiguration configu
 
         if (this.cacheablePatternSpec.matches(template)) {
             if (this.cacheTTLMs != null) {
-                return new TTLCacheEntryValidity(this.cacheTTLMs.longValue());
+                return computeTTLValidity(this.cacheTTLMs.longValue());
             }
             return AlwaysValidCacheEntryValidity.INSTANCE;
         }
@@ -1203,7 +1251,7 @@ protected ICacheEntryValidity computeValidity(final IEngineConfiguration configu
         
         if (isCacheable()) {
             if (this.cacheTTLMs != null) {
-                return new TTLCacheEntryValidity(this.cacheTTLMs.longValue());
+                return computeTTLValidity(this.cacheTTLMs.longValue());
             }
             return AlwaysValidCacheEntryValidity.INSTANCE;
         }
@@ -1212,6 +1260,14 @@ protected ICacheEntryValidity computeValidity(final IEngineConfiguration configu
     }
 
 
+    private ICacheEntryValidity computeTTLValidity(final long ttlMs) {
+        if (this.cacheStaleWhileRevalidate) {
+            return new StaleWhileRevalidateCacheEntryValidity(ttlMs);
+        }
+        return new TTLCacheEntryValidity(ttlMs);
+    }
+
+
     
     
     @Override
@@ -19,9 +19,13 @@
  */
 package org.thymeleaf.templateresolver;
 
+import java.io.IOException;
 import java.util.Map;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.thymeleaf.IEngineConfiguration;
+import org.thymeleaf.cache.ICacheEntryValidity;
 import org.thymeleaf.templateresource.FileTemplateResource;
 import org.thymeleaf.templateresource.ITemplateResource;
 
@@ -31,6 +35,13 @@
  *   and creates {@link FileTemplateResource} instances for template resources.
  * </p>
  * <p>
+ *   When <em>watching for changes</em> is enabled (see {@link #setWatchForChanges(boolean)}), cacheable
+ *   templates are kept in cache for as long as their files do not change, independently of any configured
+ *   TTL. Changes are detected by means of a <tt>java.nio.file.WatchService</tt> (which requires Java 7), and
+ *   cause the changed template (and its dependent fragment entries) to be evicted from the template cache.
+ *   This allows live edition of templates without the cost of parsing them at every request.
+ * </p>
+ * <p>
  *   Note a class with this name existed since 1.0, but it was completely rewritten in Thymeleaf 3.0.
  * </p>
  *
@@ -42,12 +53,139 @@
 public class FileTemplateResolver extends AbstractConfigurableTemplateResolver {
 
 
+    private static final Logger logger = LoggerFactory.getLogger(FileTemplateResolver.class);
+
+    /**
+     * <p>
+     *   Default value for the flag determining whether template files will be watched for changes: false.
+     * </p>
+     *
+     * @since 3.0.3
+     */
+    public static final boolean DEFAULT_WATCH_FOR_CHANGES = false;
+
+
+    private volatile boolean watchForChanges = DEFAULT_WATCH_FOR_CHANGES;
+    private volatile TemplateFileWatcher watcher = null; // only written while holding the lock on this
+    private boolean watcherUnavailable = false; // guarded by this
+
+
     
     public FileTemplateResolver() {
         super();
     }
 
 
+
+
+    /**
+     * <p>
+     *   Returns whether template files will be watched for changes, in which case cacheable templates
+     *   will stay in cache until their files change (ignoring any configured TTL).
+     * </p>
+     *
+     * @return whether template files are watched for changes.
+     * @since 3.0.3
+     */
+    public final boolean isWatchForChanges() {
+        return this.watchForChanges;
+    }
+
+
+    /**
+     * <p>
+     *   Sets whether template files will be watched for changes. Watching requires Java 7 (it uses a
+     *   <tt>java.nio.file.WatchService</tt>), and is performed by a daemon thread which is started when the
+     *   first template is resolved. Setting this flag back to false will stop watching.
+     * </p>
+     * <p>
+     *   Template engines are not kept in memory by the watching thread, which stops by itself some time after
+     *   the engines using this resolver have been discarded (e.g. when an application is undeployed), and is
+     *   started again if needed.
+     * </p>
+     * <p>
+     *   Note this only affects templates that would be considered cacheable according to the rest of the
+     *   configuration of this resolver (see {@link #setCacheable(boolean)} and {@link #setCacheablePatterns(java.util.Set)}).
+     *   Templates whose directories cannot be watched will use their default cache validity.
+     * </p>
+     * <p>
+     *   Default value is {@link #DEFAULT_WATCH_FOR_CHANGES}.
+     * </p>
+     *
+     * @param watchForChanges whether template files should be watched for changes.
+     * @since 3.0.3
+     */
+    public final void setWatchForChanges(final boolean watchForChanges) {
+        this.watchForChanges = watchForChanges;
+        if (!watchForChanges) {
+            synchronized (this) {
+                if (this.watcher != null) {
+                    this.watcher.close();
+                    this.watcher = null;
+                }
+                this.watcherUnavailable = false;
+            }
+        }
+    }
+
+
+
+
+    @Override
+    protected ICacheEntryValidity computeValidity(
+            final IEngineConfiguration configuration, final String ownerTemplate, final String template, final Map<String, Object> templateResolutionAttributes) {
+
+        final ICacheEntryValidity validity =
+                super.computeValidity(configuration, ownerTemplate, template, templateResolutionAttributes);
+
+        if (!this.watchForChanges || !validity.isCacheable()) {
+            return validity;
+        }
+
+        final TemplateFileWatcher fileWatcher = getWatcher();
+        if (fileWatcher == null) {
+            return validity;
+        }
+
+        final String resourceName =
+                computeResourceName(
+                        configuration, ownerTemplate, template, getPrefix(), getSuffix(), getTemplateAliases(), templateResolutionAttributes);
+        final ICacheEntryValidity watchValidity =
+                fileWatcher.watch(resourceName, template, configuration.getTemplateManager());
+
+        return (watchValidity != null? watchValidity : validity);
+
+    }
+
+
+    private TemplateFileWatcher getWatcher() {
+        final TemplateFileWatcher currentWatcher = this.watcher;
+        if (currentWatcher != null && !currentWatcher.isClosed()) {
+            return currentWatcher;
+        }
+        return createWatcher();
+    }
+
+
+    private synchronized TemplateFileWatcher createWatcher() {
+        if ((this.watcher == null || this.watcher.isClosed()) && !this.watcherUnavailable) {
+            try {
+                this.watcher = new TemplateFileWatcher();
+            } catch (final IOException e) {
+                this.watcherUnavailable = true;
+                logger.warn("[THYMELEAF] Could not create watch service for template files. Templates resolved " +
+                        "by resolver \"" + getName() + "\" will use their default cache validity.", e);
+            } catch (final LinkageError e) {
+                // java.nio.file is not available (Java 6)
+                this.watcherUnavailable = true;
+                logger.warn("[THYMELEAF] Watching template files for changes requires Java 7 or newer. Templates " +
+                        "resolved by resolver \"" + getName() + "\" will use their default cache validity.");
+            }
+        }
+        return this.watcher;
+    }
+
+
     @Override
     protected ITemplateResource computeTemplateResource(
             final IEngineConfiguration configuration, final String ownerTemplate, final String template, final String resourceName, final String characterEncoding, final Map<String, Object> templateResolutionAttributes) {
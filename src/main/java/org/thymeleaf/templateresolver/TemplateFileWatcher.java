@@ -0,0 +1,365 @@
+/*
+ * =============================================================================
+ *
+ *   Copyright (c) 2011-2016, The THYMELEAF team (http://www.thymeleaf.org)
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ * =============================================================================
+ */
+package org.thymeleaf.templateresolver;
+
+import java.io.IOException;
+import java.lang.ref.WeakReference;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.thymeleaf.cache.ICacheEntryValidity;
+import org.thymeleaf.engine.TemplateManager;
+
+/*
+ * Watches the directories containing the templates resolved by a FileTemplateResolver by means of a
+ * java.nio.file.WatchService (therefore requiring Java 7), so that each template can be kept in cache until
+ * its file is created, modified or deleted.
+ *
+ * Each watched file keeps a 'generation' counter that is increased every time a change is detected on it. Cache
+ * entry validities created by this watcher capture the generation of their file at resolution time, and
+ * stop being valid as soon as it changes. Besides, the templates resolved for a changed file are eagerly removed
+ * from the template caches of the engines that resolved them (including their dependent fragment entries, see
+ * TemplateManager.clearCachesFor(String)), so that changed templates do not stay in memory until accessed again.
+ *
+ * Events are processed by a single daemon thread, started when the watcher is created. Template managers are only
+ * weakly referenced, and the thread closes the watcher (and finishes) once it finds no templates registered by
+ * live template managers, so that neither the thread nor the watch service keep an undeployed engine in memory.
+ * The FileTemplateResolver will create a new watcher if it needs one after that.
+ *
+ * @author Daniel Fernandez
+ * @since 3.0.3
+ */
+final class TemplateFileWatcher implements Runnable {
+
+    private static final Logger logger = LoggerFactory.getLogger(TemplateFileWatcher.class);
+
+    private static final AtomicInteger THREAD_INDEX = new AtomicInteger(0);
+
+    // Time without events after which the watcher checks whether it is still needed
+    private static final long IDLE_CHECK_INTERVAL_SECONDS = 30L;
+
+    private final WatchService watchService;
+    private final ConcurrentHashMap<Path,WatchKey> watchedDirectories;
+    private final ConcurrentHashMap<Path,WatchedFile> watchedFiles;
+    private final Thread thread;
+    private volatile boolean closed = false;
+
+
+
+    TemplateFileWatcher() throws IOException {
+        super();
+        this.watchService = FileSystems.getDefault().newWatchService();
+        this.watchedDirectories = new ConcurrentHashMap<Path,WatchKey>(8, 0.75f, 2);
+        this.watchedFiles = new ConcurrentHashMap<Path,WatchedFile>(32, 0.75f, 4);
+        this.thread = new Thread(this, "thymeleaf-template-watcher-" + THREAD_INDEX.incrementAndGet());
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+
+
+
+    /*
+     * Starts watching the file for the specified resource (if not watched already), and returns a validity
+     * for the template being resolved. Returns null if the file cannot be watched, in which case the caller
+     * should resort to its default validity.
+     */
+    ICacheEntryValidity watch(final String resourceName, final String template, final TemplateManager templateManager) {
+
+        if (this.closed) {
+            return null;
+        }
+
+        final Path file;
+        try {
+            file = Paths.get(resourceName).toAbsolutePath().normalize();
+        } catch (final RuntimeException e) {
+            // InvalidPathException: cannot be watched
+            return null;
+        }
+
+        final Path directory = file.getParent();
+        if (directory == null) {
+            return null;
+        }
+
+        if (!this.watchedDirectories.containsKey(directory)) {
+            try {
+                final WatchKey watchKey =
+                        directory.register(
+                                this.watchService,
+                                StandardWatchEventKinds.ENTRY_CREATE,
+                                StandardWatchEventKinds.ENTRY_MODIFY,
+                                StandardWatchEventKinds.ENTRY_DELETE);
+                // Registering the same directory twice returns the same key, so no need to check the result
+                this.watchedDirectories.put(directory, watchKey);
+            } catch (final IOException e) {
+                logger.warn(
+                        "[THYMELEAF] Could not watch directory \"{}\" for changes. Template \"{}\" will use its " +
+                        "default cache validity.", directory, template);
+                return null;
+            } catch (final ClosedWatchServiceException e) {
+                return null;
+            }
+        }
+
+        WatchedFile watchedFile = this.watchedFiles.get(file);
+        if (watchedFile == null) {
+            final WatchedFile newWatchedFile = new WatchedFile();
+            watchedFile = this.watchedFiles.putIfAbsent(file, newWatchedFile);
+            if (watchedFile == null) {
+                watchedFile = newWatchedFile;
+            }
+        }
+
+        // Generation is read before registering so that any concurrent change invalidates the new entry
+        final long generation = watchedFile.generation.get();
+        if (templateManager != null) {
+            watchedFile.templates.add(new WatchedTemplate(template, templateManager));
+        }
+
+        if (this.closed) {
+            // The watcher was closed (e.g. for being idle) while registering, so the template might not be watched
+            return null;
+        }
+
+        return new FileWatchCacheEntryValidity(this, watchedFile, generation);
+
+    }
+
+
+
+
+    boolean isClosed() {
+        return this.closed;
+    }
+
+
+    void close() {
+        this.closed = true;
+        try {
+            this.watchService.close();
+        } catch (final IOException ignored) {
+            // Nothing to do: the watching thread will finish anyway
+        }
+    }
+
+
+
+
+    public void run() {
+
+        while (!this.closed) {
+
+            final WatchKey watchKey;
+            try {
+                watchKey = this.watchService.poll(IDLE_CHECK_INTERVAL_SECONDS, TimeUnit.SECONDS);
+            } catch (final InterruptedException e) {
+                close();
+                break;
+            } catch (final ClosedWatchServiceException e) {
+                break;
+            }
+
+            if (watchKey == null) {
+                if (!purgeCollectedTemplates()) {
+                    // No live template managers have templates registered (e.g. they were undeployed), so stop
+                    close();
+                    break;
+                }
+                continue;
+            }
+
+            final Path directory = (Path) watchKey.watchable();
+
+            for (final WatchEvent<?> event : watchKey.pollEvents()) {
+                if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                    // Events might have been lost: consider all files in the directory changed
+                    invalidateDirectory(directory);
+                    continue;
+                }
+                final Path file = directory.resolve((Path) event.context());
+                final WatchedFile watchedFile = this.watchedFiles.get(file);
+                if (watchedFile != null) {
+                    invalidate(file, watchedFile);
+                }
+            }
+
+            if (!watchKey.reset()) {
+                // The directory is not accessible anymore (e.g. it was deleted)
+                this.watchedDirectories.remove(directory, watchKey);
+                invalidateDirectory(directory);
+            }
+
+        }
+
+        // Once closed, no entries created by this watcher can be considered valid anymore
+        for (final Map.Entry<Path,WatchedFile> entry : this.watchedFiles.entrySet()) {
+            invalidate(entry.getKey(), entry.getValue());
+        }
+
+    }
+
+
+    /*
+     * Removes the registered templates whose template managers have been garbage collected, and returns whether
+     * there is any registered template left.
+     */
+    private boolean purgeCollectedTemplates() {
+        boolean anyRegistered = false;
+        for (final WatchedFile watchedFile : this.watchedFiles.values()) {
+            for (final WatchedTemplate watchedTemplate : watchedFile.templates) {
+                if (watchedTemplate.templateManager.get() == null) {
+                    watchedFile.templates.remove(watchedTemplate);
+                } else {
+                    anyRegistered = true;
+                }
+            }
+        }
+        return anyRegistered;
+    }
+
+
+    private void invalidateDirectory(final Path directory) {
+        for (final Map.Entry<Path,WatchedFile> entry : this.watchedFiles.entrySet()) {
+            if (directory.equals(entry.getKey().getParent())) {
+                invalidate(entry.getKey(), entry.getValue());
+            }
+        }
+    }
+
+
+    private void invalidate(final Path file, final WatchedFile watchedFile) {
+
+        watchedFile.generation.incrementAndGet();
+
+        final Iterator<WatchedTemplate> templates = watchedFile.templates.iterator();
+        while (templates.hasNext()) {
+            final WatchedTemplate watchedTemplate = templates.next();
+            // Removing through the set (the iterator of CopyOnWriteArraySet does not support removal)
+            watchedFile.templates.remove(watchedTemplate);
+            final TemplateManager templateManager = watchedTemplate.templateManager.get();
+            if (templateManager == null) {
+                continue;
+            }
+            try {
+                templateManager.clearCachesFor(watchedTemplate.template);
+            } catch (final RuntimeException e) {
+                logger.warn(
+                        "[THYMELEAF] Could not clear cache entries for template \"" + watchedTemplate.template +
+                        "\" after a change in file \"" + file + "\"", e);
+            }
+        }
+
+        if (logger.isDebugEnabled()) {
+            logger.debug("[THYMELEAF] Change detected on template file \"{}\". Cached entries invalidated.", file);
+        }
+
+    }
+
+
+
+
+    static final class WatchedFile {
+
+        final AtomicLong generation = new AtomicLong(0L);
+        final CopyOnWriteArraySet<WatchedTemplate> templates = new CopyOnWriteArraySet<WatchedTemplate>();
+
+        WatchedFile() {
+            super();
+        }
+
+    }
+
+
+    static final class WatchedTemplate {
+
+        final String template;
+        final WeakReference<TemplateManager> templateManager;
+        private final int hashCode;
+
+        WatchedTemplate(final String template, final TemplateManager templateManager) {
+            super();
+            this.template = template;
+            this.templateManager = new WeakReference<TemplateManager>(templateManager);
+            this.hashCode = 31 * System.identityHashCode(templateManager) + template.hashCode();
+        }
+
+        @Override
+        public boolean equals(final Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof WatchedTemplate)) {
+                return false;
+            }
+            final WatchedTemplate other = (WatchedTemplate) o;
+            return this.templateManager.get() == other.templateManager.get() && this.template.equals(other.template);
+        }
+
+        @Override
+        public int hashCode() {
+            return this.hashCode;
+        }
+
+    }
+
+
+
+
+    static final class FileWatchCacheEntryValidity implements ICacheEntryValidity {
+
+        private final TemplateFileWatcher watcher;
+        private final WatchedFile watchedFile;
+        private final long generation;
+
+        FileWatchCacheEntryValidity(final TemplateFileWatcher watcher, final WatchedFile watchedFile, final long generation) {
+            super();
+            this.watcher = watcher;
+            this.watchedFile = watchedFile;
+            this.generation = generation;
+        }
+
+        public boolean isCacheable() {
+            return true;
+        }
+
+        public boolean isCacheStillValid() {
+            return !this.watcher.isClosed() && this.watchedFile.generation.get() == this.generation;
+        }
+
+    }
+
+}
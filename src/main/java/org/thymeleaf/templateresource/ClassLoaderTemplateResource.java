@@ -19,15 +19,13 @@
  */
 package org.thymeleaf.templateresource;
 
-import java.io.BufferedInputStream;
-import java.io.BufferedReader;
+import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
 import java.io.Reader;
+import java.net.URL;
 
-import org.thymeleaf.util.StringUtils;
 import org.thymeleaf.util.Validate;
 
 /**
@@ -43,7 +41,7 @@
  * @since 3.0.0
  * 
  */
-public final class ClassLoaderTemplateResource implements ITemplateResource {
+public final class ClassLoaderTemplateResource implements ITemplateResource, ITemplateResourceMetadata {
 
 
     private final ClassLoader classLoader;
@@ -91,11 +89,8 @@ public Reader reader() throws IOException {
             throw new FileNotFoundException(String.format("ClassLoader resource \"%s\" does not exist", this.path));
         }
 
-        if (!StringUtils.isEmptyOrWhitespace(this.characterEncoding)) {
-            return new BufferedReader(new InputStreamReader(new BufferedInputStream(inputStream), this.characterEncoding));
-        }
-
-        return new BufferedReader(new InputStreamReader(new BufferedInputStream(inputStream)));
+        // The whole resource is read and decoded in one go, and then handed to the parser as a single char[]
+        return DecodedResourceReader.forStream(inputStream, this.characterEncoding);
 
     }
 
@@ -119,4 +114,58 @@ public boolean exists() {
     }
 
 
+
+
+    /**
+     * <p>
+     *   Returns the last modification date of the resource. Note this is only known for resources that
+     *   live in the file system (i.e. not inside a <tt>.jar</tt> file).
+     * </p>
+     *
+     * @return the last modification date, or <tt>-1</tt> if it is unknown.
+     * @since 3.0.3
+     */
+    public long lastModified() {
+        final File file = computeFile();
+        if (file == null) {
+            return -1L;
+        }
+        final long lastModified = file.lastModified();
+        return (lastModified == 0L ? -1L : lastModified);
+    }
+
+
+
+
+    /**
+     * <p>
+     *   Returns the length of the resource. Note this is only known for resources that
+     *   live in the file system (i.e. not inside a <tt>.jar</tt> file).
+     * </p>
+     *
+     * @return the resource length, or <tt>-1</tt> if it is unknown.
+     * @since 3.0.3
+     */
+    public long contentLength() {
+        final File file = computeFile();
+        return (file != null && file.isFile() ? file.length() : -1L);
+    }
+
+
+
+
+    private File computeFile() {
+        final URL url = this.classLoader.getResource(this.path);
+        if (url == null || !"file".equals(url.getProtocol())) {
+            return null;
+        }
+        try {
+            return new File(url.toURI());
+        } catch (final Exception e) {
+            // Malformed URIs (e.g. unescaped characters) will simply mean we cannot know
+            return null;
+        }
+    }
+
+
 }
@@ -0,0 +1,318 @@
+/*
+ * =============================================================================
+ *
+ *   Copyright (c) 2011-2016, The THYMELEAF team (http://www.thymeleaf.org)
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ * =============================================================================
+ */
+package org.thymeleaf.templateresource;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+
+import org.thymeleaf.util.StringUtils;
+
+/*
+ * Reader on the complete, already decoded contents of a template resource.
+ *
+ * Template resources are read completely in one go: files by means of NIO file channels and streams by means
+ * of their read methods, both into a pooled, per-thread buffer (or a one-off buffer for big resources). Then
+ * the bytes are decoded into a single char[] with a fast path for US-ASCII, ISO-8859-1 and the ASCII subset of
+ * UTF-8, so that parsers are handed the decoded chars directly instead of going through several layers of
+ * buffered streams and readers (each one copying the contents again).
+ *
+ * Malformed or unmappable input is replaced, the same as java.io.InputStreamReader does. Also, the same as
+ * InputStreamReader, a null or empty encoding means the platform default charset will be used.
+ *
+ * This reader is not thread-safe (unlike java.io.CharArrayReader, it does not synchronize reads) as it is
+ * meant to be used by one parser only.
+ *
+ * @author Daniel Fernandez
+ * @since 3.0.3
+ */
+final class DecodedResourceReader extends Reader {
+
+    // Bigger buffers will not be kept for reuse, in order to avoid retaining too much memory per thread
+    private static final int POOLED_BUFFER_MAX_SIZE = 256 * 1024;
+    private static final int INITIAL_BUFFER_SIZE = 8192;
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+    private static final Charset US_ASCII = Charset.forName("US-ASCII");
+    private static final Charset ISO_8859_1 = Charset.forName("ISO-8859-1");
+
+    private static final ThreadLocal<byte[]> BYTE_BUFFER_POOL = new ThreadLocal<byte[]>();
+
+
+    private char[] buffer;
+    private final int length;
+    private int position;
+
+
+
+
+    static Reader forFile(final File file, final String characterEncoding) throws IOException {
+
+        final Charset charset = computeCharset(characterEncoding);
+
+        final FileInputStream inputStream = new FileInputStream(file);
+        try {
+
+            final FileChannel channel = inputStream.getChannel();
+            final long size = channel.size();
+
+            // Files are not memory-mapped: contents are decoded into a char[] straight away anyway, and mappings
+            // (only released on GC) would keep files locked on some platforms and fail badly on truncation
+            if (size >= Integer.MAX_VALUE) {
+                throw new IOException("File \"" + file.getAbsolutePath() + "\" is too big (" + size + " bytes)");
+            }
+
+            byte[] bytes = acquireByteBuffer((int) size + 1); // +1 so that reaching EOF needs no growth
+            int count = 0;
+            int read;
+            while ((read = channel.read(ByteBuffer.wrap(bytes, count, bytes.length - count))) != -1) {
+                count += read;
+                if (count == bytes.length) {
+                    // File grew since we asked for its size
+                    bytes = grow(bytes);
+                }
+            }
+
+            final DecodedResourceReader reader = decode(charset, bytes, count);
+            releaseByteBuffer(bytes);
+            return reader;
+
+        } finally {
+            inputStream.close();
+        }
+
+    }
+
+
+    static Reader forStream(final InputStream inputStream, final String characterEncoding) throws IOException {
+
+        final Charset charset = computeCharset(characterEncoding);
+
+        try {
+
+            byte[] bytes = acquireByteBuffer(Math.max(INITIAL_BUFFER_SIZE, inputStream.available() + 1));
+            int count = 0;
+            int read;
+            while ((read = inputStream.read(bytes, count, bytes.length - count)) != -1) {
+                count += read;
+                if (count == bytes.length) {
+                    bytes = grow(bytes);
+                }
+            }
+
+            final DecodedResourceReader reader = decode(charset, bytes, count);
+            releaseByteBuffer(bytes);
+            return reader;
+
+        } finally {
+            inputStream.close();
+        }
+
+    }
+
+
+
+
+    private static Charset computeCharset(final String characterEncoding) throws UnsupportedEncodingException {
+        if (StringUtils.isEmptyOrWhitespace(characterEncoding)) {
+            return Charset.defaultCharset();
+        }
+        try {
+            return Charset.forName(characterEncoding);
+        } catch (final IllegalArgumentException e) {
+            // Same exception as raised by java.io.InputStreamReader for unknown or illegal charset names
+            throw new UnsupportedEncodingException(characterEncoding);
+        }
+    }
+
+
+    private static CharsetDecoder newDecoder(final Charset charset) {
+        return charset.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    }
+
+
+    private static DecodedResourceReader decode(final Charset charset, final byte[] bytes, final int count)
+            throws IOException {
+
+        final boolean latin1 = ISO_8859_1.equals(charset);
+        if (!latin1 && !UTF8.equals(charset) && !US_ASCII.equals(charset)) {
+            return decode(charset, ByteBuffer.wrap(bytes, 0, count));
+        }
+
+        // None of these charsets produces more chars than bytes
+        final char[] chars = new char[count];
+
+        int i = 0;
+        if (latin1) {
+            for (; i < count; i++) {
+                chars[i] = (char) (bytes[i] & 0xFF);
+            }
+            return new DecodedResourceReader(chars, count);
+        }
+
+        // Fast path for ASCII chars, which are the same in both US-ASCII and UTF-8
+        while (i < count && bytes[i] >= 0) {
+            chars[i] = (char) bytes[i];
+            i++;
+        }
+        if (i == count) {
+            return new DecodedResourceReader(chars, count);
+        }
+
+        // Non-ASCII content found: decode the rest by means of a standard decoder. Non-ASCII chars
+        // always take more than one byte in UTF-8, so the remaining space at the array is enough.
+        final CharsetDecoder decoder = newDecoder(charset);
+        final ByteBuffer in = ByteBuffer.wrap(bytes, i, count - i);
+        final CharBuffer out = CharBuffer.wrap(chars, i, chars.length - i);
+        CoderResult result = decoder.decode(in, out, true);
+        if (!result.isUnderflow()) {
+            result.throwException();
+        }
+        result = decoder.flush(out);
+        if (!result.isUnderflow()) {
+            result.throwException();
+        }
+
+        return new DecodedResourceReader(chars, out.position());
+
+    }
+
+
+    private static DecodedResourceReader decode(final Charset charset, final ByteBuffer bytes)
+            throws CharacterCodingException {
+        final CharBuffer decoded = newDecoder(charset).decode(bytes);
+        if (decoded.hasArray() && decoded.arrayOffset() == 0) {
+            return new DecodedResourceReader(decoded.array(), decoded.limit());
+        }
+        final char[] chars = new char[decoded.remaining()];
+        decoded.get(chars);
+        return new DecodedResourceReader(chars, chars.length);
+    }
+
+
+
+
+    private static byte[] acquireByteBuffer(final int minSize) {
+        final byte[] pooled = BYTE_BUFFER_POOL.get();
+        if (pooled != null && pooled.length >= minSize) {
+            BYTE_BUFFER_POOL.set(null); // Will be returned when released, in case reads are nested
+            return pooled;
+        }
+        return new byte[Math.max(minSize, (pooled != null? pooled.length : 0))];
+    }
+
+
+    private static void releaseByteBuffer(final byte[] bytes) {
+        if (bytes.length <= POOLED_BUFFER_MAX_SIZE) {
+            final byte[] pooled = BYTE_BUFFER_POOL.get();
+            if (pooled == null || pooled.length < bytes.length) {
+                BYTE_BUFFER_POOL.set(bytes);
+            }
+        }
+    }
+
+
+    private static byte[] grow(final byte[] bytes) {
+        final byte[] newBytes = new byte[bytes.length * 2];
+        System.arraycopy(bytes, 0, newBytes, 0, bytes.length);
+        return newBytes;
+    }
+
+
+
+
+    private DecodedResourceReader(final char[] buffer, final int length) {
+        super();
+        this.buffer = buffer;
+        this.length = length;
+        this.position = 0;
+    }
+
+
+
+
+    @Override
+    public int read() throws IOException {
+        ensureOpen();
+        if (this.position >= this.length) {
+            return -1;
+        }
+        return this.buffer[this.position++];
+    }
+
+
+    @Override
+    public int read(final char[] cbuf, final int off, final int len) throws IOException {
+        ensureOpen();
+        if (len == 0) {
+            return 0;
+        }
+        if (this.position >= this.length) {
+            return -1;
+        }
+        final int n = Math.min(len, this.length - this.position);
+        System.arraycopy(this.buffer, this.position, cbuf, off, n);
+        this.position += n;
+        return n;
+    }
+
+
+    @Override
+    public long skip(final long n) throws IOException {
+        ensureOpen();
+        final long skipped = Math.max(0L, Math.min(n, (long) (this.length - this.position)));
+        this.position += (int) skipped;
+        return skipped;
+    }
+
+
+    @Override
+    public boolean ready() throws IOException {
+        ensureOpen();
+        return true;
+    }
+
+
+    @Override
+    public void close() {
+        this.buffer = null;
+    }
+
+
+    private void ensureOpen() throws IOException {
+        if (this.buffer == null) {
+            throw new IOException("Reader has been closed");
+        }
+    }
+
+}
@@ -19,17 +19,11 @@
  */
 package org.thymeleaf.templateresource;
 
-import java.io.BufferedInputStream;
-import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.InputStreamReader;
 import java.io.Reader;
 import java.io.Serializable;
 
-import org.thymeleaf.util.StringUtils;
 import org.thymeleaf.util.Validate;
 
 /**
@@ -44,7 +38,7 @@
  * @since 3.0.0
  * 
  */
-public final class FileTemplateResource implements ITemplateResource, Serializable {
+public final class FileTemplateResource implements ITemplateResource, ITemplateResourceMetadata, Serializable {
 
 
     private final String path;
@@ -99,13 +93,8 @@ public String getBaseName() {
 
     public Reader reader() throws IOException {
 
-        final InputStream inputStream = new FileInputStream(this.file);
-
-        if (!StringUtils.isEmptyOrWhitespace(this.characterEncoding)) {
-            return new BufferedReader(new InputStreamReader(new BufferedInputStream(inputStream), this.characterEncoding));
-        }
-
-        return new BufferedReader(new InputStreamReader(new BufferedInputStream(inputStream)));
+        // The whole file is read and decoded in one go, and then handed to the parser as a single char[]
+        return DecodedResourceReader.forFile(this.file, this.characterEncoding);
 
     }
 
@@ -130,4 +119,35 @@ public boolean exists() {
 
 
 
+
+    /**
+     * <p>
+     *   Returns the last modification date of the file.
+     * </p>
+     *
+     * @return the last modification date, or <tt>-1</tt> if the file does not exist.
+     * @since 3.0.3
+     */
+    public long lastModified() {
+        final long lastModified = this.file.lastModified();
+        return (lastModified == 0L ? -1L : lastModified);
+    }
+
+
+
+
+    /**
+     * <p>
+     *   Returns the length of the file.
+     * </p>
+     *
+     * @return the file length, or <tt>-1</tt> if the file does not exist.
+     * @since 3.0.3
+     */
+    public long contentLength() {
+        return (this.file.isFile() ? this.file.length() : -1L);
+    }
+
+
+
 }
@@ -0,0 +1,64 @@
+/*
+ * =============================================================================
+ *
+ *   Copyright (c) 2011-2016, The THYMELEAF team (http://www.thymeleaf.org)
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ * =============================================================================
+ */
+package org.thymeleaf.templateresource;
+
+/**
+ * <p>
+ *   Interface to be implemented by {@link ITemplateResource} objects able to report metadata about the
+ *   resource they represent (its last modification date and its length) without having to read its contents.
+ * </p>
+ * <p>
+ *   This metadata can be used by the engine in order to cheaply determine whether a resource has changed
+ *   since some information was computed from it (e.g. a persisted snapshot of its parsed model).
+ * </p>
+ * <p>
+ *   Note that both values are informative: implementations should return <tt>-1</tt> when the value is
+ *   unknown, in which case the engine will need to read the contents of the resource in order to check it.
+ * </p>
+ *
+ * @author Daniel Fern&aacute;ndez
+ *
+ * @see FileTemplateResource
+ * @see ClassLoaderTemplateResource
+ *
+ * @since 3.0.3
+ *
+ */
+public interface ITemplateResourceMetadata {
+
+    /**
+     * <p>
+     *   Returns the last modification date of the resource, in milliseconds since the epoch.
+     * </p>
+     *
+     * @return the last modification date, or <tt>-1</tt> if it is unknown or the resource does not exist.
+     */
+    public long lastModified();
+
+    /**
+     * <p>
+     *   Returns the length of the resource, in bytes.
+     * </p>
+     *
+     * @return the resource length, or <tt>-1</tt> if it is unknown or the resource does not exist.
+     */
+    public long contentLength();
+
+}
@@ -0,0 +1,167 @@
+/*
+ * =============================================================================
+ *
+ *   Copyright (c) 2011-2016, The THYMELEAF team (http://www.thymeleaf.org)
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ * =============================================================================
+ */
+package org.thymeleaf.util;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+
+import org.thymeleaf.context.ITemplateContext;
+import org.thymeleaf.engine.TemplateModel;
+import org.thymeleaf.exceptions.TemplateProcessingException;
+
+
+/**
+ * <p>
+ *   Character sequence that processes a {@link TemplateModel} concurrently in an {@link Executor}, starting
+ *   as soon as it is created.
+ * </p>
+ * <p>
+ *   It is used internally by the engine for rendering fragments in parallel. When written to a
+ *   {@link FragmentStitchingWriter}, writing does not wait for processing to finish: the writer will take
+ *   care of outputting the result once it is available, in document order. When written to any other writer or
+ *   when its contents are accessed as a {@link CharSequence}, the calling thread will wait for the result.
+ * </p>
+ * <p>
+ *   The context used for processing will be accessed by the executor thread, so it should not be accessed nor
+ *   modified by any other threads (see {@link org.thymeleaf.context.EngineContext#createSnapshot(org.thymeleaf.engine.TemplateData)}).
+ * </p>
+ * <p>
+ *   Fragments are never processed concurrently from a thread which is itself already processing a fragment
+ *   concurrently (i.e. <em>nested</em> parallel fragments): in such case the model is processed inline by the
+ *   calling thread. Otherwise the executor thread would block waiting for a task that might be queued behind it,
+ *   leading to thread starvation deadlocks in executors with bounded thread pools.
+ * </p>
+ * <p>
+ *   This is mostly an <strong>internal class</strong>, and its use is not recommended from user's code.
+ * </p>
+ * <p>
+ *   This class is <strong>not</strong> thread-safe (apart from the concurrent processing operation itself).
+ * </p>
+ *
+ *
+ * @author Daniel Fern&aacute;ndez
+ *
+ * @since 3.0.3
+ *
+ */
+public final class ConcurrentProcessingCharSequence extends AbstractLazyCharSequence {
+
+    /*
+     * Flags the threads currently processing a fragment on behalf of an object of this class, so that nested
+     * parallel fragments are processed inline instead of being submitted to the executor.
+     */
+    private static final ThreadLocal<Boolean> PROCESSING_THREAD = new ThreadLocal<Boolean>();
+
+    private final FutureTask<String> processing;
+
+
+    public ConcurrentProcessingCharSequence(
+            final ITemplateContext context, final TemplateModel templateModel, final Executor executor) {
+
+        super();
+
+        if (context == null) {
+            throw new IllegalArgumentException("Template Context is null, which is forbidden");
+        }
+        if (templateModel == null) {
+            throw new IllegalArgumentException("Template Model is null, which is forbidden");
+        }
+        if (executor == null) {
+            throw new IllegalArgumentException("Executor is null, which is forbidden");
+        }
+
+        this.processing = new FutureTask<String>(new Callable<String>() {
+            public String call() throws Exception {
+                final Boolean previous = PROCESSING_THREAD.get();
+                PROCESSING_THREAD.set(Boolean.TRUE);
+                try {
+                    final Writer stringWriter = new FastStringWriter();
+                    context.getConfiguration().getTemplateManager().process(templateModel, context, stringWriter);
+                    return stringWriter.toString();
+                } finally {
+                    if (previous == null) {
+                        PROCESSING_THREAD.remove();
+                    } else {
+                        PROCESSING_THREAD.set(previous);
+                    }
+                }
+            }
+        });
+
+        if (PROCESSING_THREAD.get() != null) {
+            // Nested parallel fragment: waiting for another task from an executor thread could deadlock
+            this.processing.run();
+            return;
+        }
+
+        try {
+            executor.execute(this.processing);
+        } catch (final RejectedExecutionException e) {
+            // The executor is saturated (or shutting down), so we will simply process the model ourselves
+            this.processing.run();
+        }
+
+    }
+
+
+
+
+    boolean isDone() {
+        return this.processing.isDone();
+    }
+
+
+    @Override
+    protected String resolveText() {
+        try {
+            return this.processing.get();
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new TemplateProcessingException("Interrupted while waiting for concurrent processing of fragment", e);
+        } catch (final ExecutionException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new TemplateProcessingException("Error during concurrent processing of fragment", cause);
+        }
+    }
+
+
+    @Override
+    protected void writeUnresolved(final Writer writer) throws IOException {
+        if (writer instanceof FragmentStitchingWriter) {
+            ((FragmentStitchingWriter) writer).defer(this);
+            return;
+        }
+        writer.write(toString());
+    }
+
+
+
+}
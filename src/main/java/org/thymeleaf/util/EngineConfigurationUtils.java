@@ -0,0 +1,93 @@
+/*
+ * =============================================================================
+ *
+ *   Copyright (c) 2011-2016, The THYMELEAF team (http://www.thymeleaf.org)
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ * =============================================================================
+ */
+package org.thymeleaf.util;
+
+import java.util.concurrent.Executor;
+
+import org.thymeleaf.IEngineConfiguration;
+import org.thymeleaf.IExtendedEngineConfiguration;
+import org.thymeleaf.engine.TemplateModelSnapshotStore;
+import org.thymeleaf.metrics.IEngineMetricsListener;
+import org.thymeleaf.templateparser.markup.decoupled.DecoupledTemplateLogicCache;
+
+/**
+ * <p>
+ *   Utility class for accessing the optional features of engine configurations (see
+ *   {@link IExtendedEngineConfiguration}), which are considered disabled for configurations not
+ *   implementing such interface.
+ * </p>
+ * <p>
+ *   This class is mainly for <strong>internal use</strong>.
+ * </p>
+ *
+ * @author Daniel Fern&aacute;ndez
+ *
+ * @since 3.0.3
+ *
+ */
+public final class EngineConfigurationUtils {
+
+
+    public static TemplateModelSnapshotStore getTemplateModelSnapshotStore(final IEngineConfiguration configuration) {
+        if (configuration instanceof IExtendedEngineConfiguration) {
+            return ((IExtendedEngineConfiguration) configuration).getTemplateModelSnapshotStore();
+        }
+        return null;
+    }
+
+
+    public static int getProcessingHandlerPoolSize(final IEngineConfiguration configuration) {
+        if (configuration instanceof IExtendedEngineConfiguration) {
+            return ((IExtendedEngineConfiguration) configuration).getProcessingHandlerPoolSize();
+        }
+        return 0;
+    }
+
+
+    public static IEngineMetricsListener getMetricsListener(final IEngineConfiguration configuration) {
+        if (configuration instanceof IExtendedEngineConfiguration) {
+            return ((IExtendedEngineConfiguration) configuration).getMetricsListener();
+        }
+        return null;
+    }
+
+
+    public static Executor getParallelFragmentExecutor(final IEngineConfiguration configuration) {
+        if (configuration instanceof IExtendedEngineConfiguration) {
+            return ((IExtendedEngineConfiguration) configuration).getParallelFragmentExecutor();
+        }
+        return null;
+    }
+
+
+    public static DecoupledTemplateLogicCache getDecoupledTemplateLogicCache(final IEngineConfiguration configuration) {
+        if (configuration instanceof IExtendedEngineConfiguration) {
+            return ((IExtendedEngineConfiguration) configuration).getDecoupledTemplateLogicCache();
+        }
+        return null;
+    }
+
+
+
+    private EngineConfigurationUtils() {
+        super();
+    }
+
+}
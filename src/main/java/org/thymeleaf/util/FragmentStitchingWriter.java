@@ -0,0 +1,192 @@
+/*
+ * =============================================================================
+ *
+ *   Copyright (c) 2011-2016, The THYMELEAF team (http://www.thymeleaf.org)
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ * =============================================================================
+ */
+package org.thymeleaf.util;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayDeque;
+
+
+/**
+ * <p>
+ *   Writer able to receive pieces of output whose contents are still being computed concurrently
+ *   (see {@link ConcurrentProcessingCharSequence}), without blocking the thread writing them.
+ * </p>
+ * <p>
+ *   Output is always written to the underlying writer in document order: once a piece of output is deferred,
+ *   anything written afterwards is kept in memory until all previously deferred pieces are available.
+ *   {@link #finish()} must be called once all output has been written in order to wait for (and write) the
+ *   remaining deferred pieces.
+ * </p>
+ * <p>
+ *   This is mostly an <strong>internal class</strong>, and its use is not recommended from user's code.
+ * </p>
+ * <p>
+ *   This class is <strong>not</strong> thread-safe.
+ * </p>
+ *
+ *
+ * @author Daniel Fern&aacute;ndez
+ *
+ * @since 3.0.3
+ *
+ */
+public final class FragmentStitchingWriter extends Writer {
+
+    private static final int DEFAULT_BUFFER_SIZE = 512;
+
+    private final Writer writer;
+    // Contains ConcurrentProcessingCharSequence and FastStringWriter objects (buffered output), in document order
+    private final ArrayDeque<Object> pending;
+
+
+
+    public FragmentStitchingWriter(final Writer writer) {
+        super();
+        Validate.notNull(writer, "Writer cannot be null");
+        this.writer = writer;
+        this.pending = new ArrayDeque<Object>(8);
+    }
+
+
+
+
+    void defer(final ConcurrentProcessingCharSequence sequence) throws IOException {
+        drainCompleted();
+        if (this.pending.isEmpty() && sequence.isDone()) {
+            this.writer.write(sequence.toString());
+            return;
+        }
+        this.pending.addLast(sequence);
+    }
+
+
+    /**
+     * <p>
+     *   Returns the underlying writer if output is currently in document order (i.e. there are no deferred
+     *   pieces of output pending after writing those already available), so that output can be written directly
+     *   to it, or <tt>null</tt> if output still needs to go through this writer.
+     * </p>
+     * <p>
+     *   This allows the engine to keep using specific features of the underlying writer (like writing
+     *   pre-encoded output to byte-based writers) whenever no concurrently rendered fragments are pending.
+     * </p>
+     *
+     * @return the underlying writer, or <tt>null</tt> if there is pending output.
+     * @throws IOException if the underlying writer raises it.
+     */
+    public Writer getDirectWriter() throws IOException {
+        drainCompleted();
+        return (this.pending.isEmpty()? this.writer : null);
+    }
+
+
+    /**
+     * <p>
+     *   Waits for all deferred pieces of output to be available and writes them (along with any output buffered
+     *   after them) to the underlying writer.
+     * </p>
+     *
+     * @throws IOException if the underlying writer raises it.
+     */
+    public void finish() throws IOException {
+        Object next;
+        while ((next = this.pending.pollFirst()) != null) {
+            // Calling toString() on deferred sequences will make us wait for them if needed
+            this.writer.write(next.toString());
+        }
+    }
+
+
+    private void drainCompleted() throws IOException {
+        Object next;
+        while ((next = this.pending.peekFirst()) != null) {
+            if (next instanceof ConcurrentProcessingCharSequence && !((ConcurrentProcessingCharSequence) next).isDone()) {
+                return;
+            }
+            this.pending.pollFirst();
+            this.writer.write(next.toString());
+        }
+    }
+
+
+    private Writer buffer() throws IOException {
+        drainCompleted();
+        if (this.pending.isEmpty()) {
+            return this.writer;
+        }
+        final Object last = this.pending.peekLast();
+        if (last instanceof FastStringWriter) {
+            return (FastStringWriter) last;
+        }
+        final FastStringWriter buffer = new FastStringWriter(DEFAULT_BUFFER_SIZE);
+        this.pending.addLast(buffer);
+        return buffer;
+    }
+
+
+
+
+    @Override
+    public void write(final int c) throws IOException {
+        buffer().write(c);
+    }
+
+
+    @Override
+    public void write(final String str) throws IOException {
+        buffer().write(str);
+    }
+
+
+    @Override
+    public void write(final String str, final int off, final int len) throws IOException {
+        buffer().write(str, off, len);
+    }
+
+
+    @Override
+    public void write(final char[] cbuf) throws IOException {
+        buffer().write(cbuf);
+    }
+
+
+    @Override
+    public void write(final char[] cbuf, final int off, final int len) throws IOException {
+        buffer().write(cbuf, off, len);
+    }
+
+
+    @Override
+    public void flush() throws IOException {
+        // Flushing does not wait for deferred output: only output already in document order is flushed
+        drainCompleted();
+        this.writer.flush();
+    }
+
+
+    @Override
+    public void close() throws IOException {
+        finish();
+        this.writer.close();
+    }
+
+
+}
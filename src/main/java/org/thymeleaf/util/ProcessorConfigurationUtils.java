@@ -307,6 +307,29 @@ public static IPostProcessor wrap(final IPostProcessor postProcessor, final IPro
 
 
 
+    /**
+     * <p>
+     *   Unwraps a wrapped implementation of any kind of {@link IProcessor}.
+     * </p>
+     * <p>
+     *   This method is meant for <strong>internal</strong> use only.
+     * </p>
+     *
+     * @param processor the processor to be unwrapped.
+     * @return the unwrapped processor.
+     * @since 3.0.3
+     */
+    public static IProcessor unwrap(final IProcessor processor) {
+        if (processor == null) {
+            return null;
+        }
+        if (processor instanceof AbstractProcessorWrapper) {
+            return ((AbstractProcessorWrapper) processor).unwrap();
+        }
+        return processor;
+    }
+
+
     /**
      * <p>
      *   Unwraps a wrapped implementation of {@link IElementProcessor}.